@@ -0,0 +1,22 @@
+package com.deliveryservice;
+
+import java.util.List;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Starts the application for benchmarks against its own in-memory database, without reaching the real
+ * observations feed. Seed it with {@link WeatherFixtures}.
+ */
+public final class BenchmarkContexts {
+    private BenchmarkContexts() {
+    }
+
+    public static ConfigurableApplicationContext start(WebApplicationType webApplicationType, String database) {
+        return new SpringApplicationBuilder(DeliveryServiceApplication.class)
+                .web(webApplicationType)
+                // Benchmarks send far more than one client's rate
+                .run(WeatherFixtures.arguments(database, List.of("delivery.admission.enabled=false")));
+    }
+}
@@ -0,0 +1,72 @@
+package com.deliveryservice.controller;
+
+import com.deliveryservice.BenchmarkContexts;
+import com.deliveryservice.WeatherFixtures;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+/**
+ * GET /delivery/feeRequest end to end: through the Spring MVC stack with MockMvc, and over HTTP against
+ * the embedded Tomcat.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FeeEndpointBenchmark {
+    private static final String FEE_REQUEST = "/delivery/feeRequest?city=Tallinn&vehicleType=Bike";
+
+    private ConfigurableApplicationContext context;
+    private MockMvc mockMvc;
+    private HttpClient httpClient;
+    private HttpRequest httpRequest;
+
+    @Setup
+    public void start() {
+        context = BenchmarkContexts.start(WebApplicationType.SERVLET, "endpoint-benchmark");
+        WeatherFixtures.seedWeather(context, 24, 60);
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        httpRequest = HttpRequest.newBuilder(URI.create("http://localhost:" + port + FEE_REQUEST)).GET().build();
+    }
+
+    @TearDown
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public MvcResult mockMvc() throws Exception {
+        return mockMvc.perform(MockMvcRequestBuilders.get(FEE_REQUEST)).andReturn();
+    }
+
+    @Benchmark
+    public String embeddedTomcat() throws Exception {
+        return httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString()).body();
+    }
+}
@@ -0,0 +1,37 @@
+package com.deliveryservice.model;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link PhenomenonCode#classify(String)} and {@link VehicleClass#of(String)} for phenomena from each class.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhenomenonClassificationBenchmark {
+    @Param({"Overcast", "Moderate rain", "Light snow shower", "Glaze", "Thunderstorm"})
+    public String phenomenon;
+
+    @Benchmark
+    public byte classify() {
+        return PhenomenonCode.classify(phenomenon);
+    }
+
+    @Benchmark
+    public VehicleClass vehicleClass() {
+        return VehicleClass.of("Scooter");
+    }
+}
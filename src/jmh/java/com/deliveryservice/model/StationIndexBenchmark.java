@@ -0,0 +1,66 @@
+package com.deliveryservice.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link StationIndex#findNearest} for delivery positions spread over Estonia, with and without a station
+ * filter. The feed has about 100 stations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StationIndexBenchmark {
+    private static final int POSITIONS = 1024;
+
+    @Param({"100", "1000"})
+    public int stations;
+
+    private StationIndex index;
+    private final double[] latitudes = new double[POSITIONS];
+    private final double[] longitudes = new double[POSITIONS];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        List<StationLocation> locations = new ArrayList<>();
+        for (int i = 0; i < stations; i++) {
+            locations.add(new StationLocation("station-" + i, 57.5 + random.nextDouble() * 2.2,
+                    21.7 + random.nextDouble() * 6.5));
+        }
+        index = new StationIndex(locations);
+        for (int i = 0; i < POSITIONS; i++) {
+            latitudes[i] = 57.5 + random.nextDouble() * 2.2;
+            longitudes[i] = 21.7 + random.nextDouble() * 6.5;
+        }
+    }
+
+    @Benchmark
+    public StationLocation findNearest() {
+        int i = next++ & (POSITIONS - 1);
+        return index.findNearest(latitudes[i], longitudes[i]);
+    }
+
+    @Benchmark
+    public StationLocation findNearestFiltered() {
+        int i = next++ & (POSITIONS - 1);
+        return index.findNearest(latitudes[i], longitudes[i], name -> name.length() % 2 == 0);
+    }
+}
@@ -0,0 +1,72 @@
+package com.deliveryservice.repository;
+
+import com.deliveryservice.BenchmarkContexts;
+import com.deliveryservice.WeatherFixtures;
+import com.deliveryservice.entity.WeatherData;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * The {@link WeatherDataRepository} lookups against H2, for growing amounts of stored history.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WeatherDataRepositoryBenchmark {
+    private static final Instant HISTORICAL = Instant.parse("2023-03-01T12:30:00Z");
+
+    /**
+     * Hourly observations stored per station.
+     */
+    @Param({"720", "8760"})
+    public int hoursPerStation;
+
+    private ConfigurableApplicationContext context;
+    private WeatherDataRepository repository;
+
+    @Setup
+    public void start() {
+        context = BenchmarkContexts.start(WebApplicationType.NONE, "repository-benchmark-" + hoursPerStation);
+        WeatherFixtures.seedWeather(context, hoursPerStation, 60);
+        repository = context.getBean(WeatherDataRepository.class);
+    }
+
+    @TearDown
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<WeatherData> inEffectAt() {
+        return repository.findFirstByStationNameAndTimestampLessThanEqualOrderByTimestampDesc("Pärnu", HISTORICAL);
+    }
+
+    @Benchmark
+    public List<WeatherData> latestPerStation() {
+        return repository.findLatestPerStation();
+    }
+
+    @Benchmark
+    public List<WeatherData> byTimestamp() {
+        return repository.findByTimestampIn(List.of(WeatherFixtures.NEWEST_OBSERVATION));
+    }
+}
@@ -0,0 +1,90 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.BenchmarkContexts;
+import com.deliveryservice.WeatherFixtures;
+import com.deliveryservice.dto.DeliveryFeeResponse;
+import com.deliveryservice.model.PhenomenonCode;
+import com.deliveryservice.model.VehicleClass;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * {@link DeliveryService#calculateDeliveryFee(String, String, String)} for the latest and for historical
+ * weather, and the bare {@link FeeRules} evaluation underneath it.
+ * <p>
+ * The rules are evaluated for quotes read from state arrays, one after the other, so the JIT cannot fold
+ * the evaluation of constant inputs and every branch of the rules is taken.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FeeCalculationBenchmark {
+    // A power of two, so the next quote is picked with a mask
+    private static final int QUOTES = 1024;
+
+    private ConfigurableApplicationContext context;
+    private DeliveryService deliveryService;
+    private VehicleClass[] vehicleClasses;
+    private double[] airTemperatures;
+    private double[] windSpeeds;
+    private byte[] phenomenonCodes;
+    private int next;
+
+    @Setup
+    public void start() {
+        context = BenchmarkContexts.start(WebApplicationType.NONE, "fee-benchmark");
+        WeatherFixtures.seedWeather(context, 24 * 90, 60);
+        deliveryService = context.getBean(DeliveryService.class);
+
+        // From mild to every extra fee and forbidden, like a winter of observations
+        Random random = new Random(42);
+        vehicleClasses = new VehicleClass[QUOTES];
+        airTemperatures = new double[QUOTES];
+        windSpeeds = new double[QUOTES];
+        phenomenonCodes = new byte[QUOTES];
+        for (int i = 0; i < QUOTES; i++) {
+            vehicleClasses[i] = VehicleClass.values()[random.nextInt(VehicleClass.values().length)];
+            airTemperatures[i] = -15 + random.nextDouble() * 25;
+            windSpeeds[i] = random.nextDouble() * 25;
+            phenomenonCodes[i] = (byte) random.nextInt(PhenomenonCode.GLAZE_HAIL_OR_THUNDER + 1);
+        }
+    }
+
+    @TearDown
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public DeliveryFeeResponse latestWeather() {
+        return deliveryService.calculateDeliveryFee("Tartu-Tõravere", "Scooter", null);
+    }
+
+    @Benchmark
+    public DeliveryFeeResponse historicalWeather() {
+        return deliveryService.calculateDeliveryFee("Tallinn-Harku", "car", "2023-02-11T17:45:00Z");
+    }
+
+    @Benchmark
+    public long feeRules() {
+        int quote = next++ & (QUOTES - 1);
+        return FeeRules.DEFAULT.feeCents(200, vehicleClasses[quote], airTemperatures[quote], windSpeeds[quote],
+                phenomenonCodes[quote]);
+    }
+}
@@ -0,0 +1,72 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.entity.WeatherData;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parses the recorded feed in src/test/resources/observations.xml, repeated to feeds of increasing size,
+ * with the importer's StAX parser and with the former DOM parsing as a baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ObservationsFeedParserBenchmark {
+    private static final Predicate<String> TRACKED = Set.of("Tallinn-Harku", "Tartu-Tõravere", "Pärnu")::contains;
+
+    /**
+     * How many times the stations of the recorded feed are repeated.
+     */
+    @Param({"1", "10", "100"})
+    public int copies;
+
+    private final ObservationsFeedParser streaming = new ObservationsFeedParser();
+    private final DomObservationsFeedParser dom = new DomObservationsFeedParser();
+    private byte[] feed;
+
+    @Setup
+    public void loadFeed() throws IOException {
+        String recorded;
+        try (InputStream input = ObservationsFeedParserBenchmark.class.getResourceAsStream("/observations.xml")) {
+            recorded = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        int start = recorded.indexOf("<station>");
+        int end = recorded.lastIndexOf("</station>") + "</station>".length();
+        StringBuilder scaled = new StringBuilder(recorded.substring(0, start));
+        for (int i = 0; i < copies; i++) {
+            scaled.append(recorded, start, end);
+        }
+        scaled.append(recorded.substring(end));
+        feed = scaled.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<WeatherData> stax() throws Exception {
+        return streaming.parse(new ByteArrayInputStream(feed), TRACKED);
+    }
+
+    @Benchmark
+    public List<WeatherData> dom() throws Exception {
+        return dom.parse(new ByteArrayInputStream(feed), TRACKED);
+    }
+}
@@ -0,0 +1,33 @@
+package com.deliveryservice.config;
+
+import com.deliveryservice.controller.AdmissionControlFilter;
+import com.deliveryservice.service.AdmissionControl;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Puts {@link AdmissionControlFilter} in front of the fee endpoints when {@code delivery.admission.enabled}
+ * is set. Partners identify themselves with the header named by {@code delivery.admission.api-key-header},
+ * other clients by their address, which behind a proxy is the forwarded one, see
+ * {@code server.forward-headers-strategy}. The other endpoints are administrative and not limited.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "delivery.admission.enabled", havingValue = "true")
+public class AdmissionControlConfiguration {
+
+    @Bean
+    public FilterRegistrationBean<AdmissionControlFilter> admissionControlFilter(
+            AdmissionControl admissionControl,
+            @Value("${delivery.admission.api-key-header:X-API-Key}") String apiKeyHeader) {
+        FilterRegistrationBean<AdmissionControlFilter> registration =
+                new FilterRegistrationBean<>(new AdmissionControlFilter(admissionControl, apiKeyHeader));
+        registration.addUrlPatterns("/delivery/feeRequest", "/delivery/feeRequest/batch");
+        // Ahead of the metrics and tracing filters, shed requests should cost as little as possible
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
@@ -0,0 +1,147 @@
+package com.deliveryservice.config;
+
+import java.lang.reflect.InvocationTargetException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.concurrent.ConcurrentTaskScheduler;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.scheduling.support.TaskUtils;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Opt-in execution mode that runs blocking work on virtual threads, enabled with
+ * {@code delivery.virtual-threads.enabled=true} (see the virtual-threads profile) on JDK 21 or later.
+ * <p>
+ * Tomcat handles every request on a new virtual thread, streamed batch responses are written from virtual
+ * threads and the scheduler starts a virtual thread for every run of the weather import, retention and other
+ * scheduled jobs, only the timing is left to one platform thread. The JDK 21 API
+ * is reached by reflection so the service still builds and runs on JDK 17 with the mode disabled.
+ * The CPU bound fee evaluation of batches stays on the common fork-join pool.
+ */
+@Slf4j
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "delivery.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadsConfiguration implements WebMvcConfigurer {
+    private final ThreadFactory virtualThreadFactory = virtualThreadFactory();
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        log.info("Handling requests on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(threadPerTask());
+    }
+
+    @Bean
+    public ThreadPerTaskScheduler taskScheduler() {
+        return new ThreadPerTaskScheduler(threadPerTask());
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(new TaskExecutorAdapter(threadPerTask()));
+    }
+
+    // Virtual threads are cheap to create and must not be pooled
+    private Executor threadPerTask() {
+        return task -> virtualThreadFactory.newThread(task).start();
+    }
+
+    /**
+     * Times the tasks on a single platform thread and runs each execution on a thread of its own. A periodic
+     * task that is still running when its next execution is due skips that execution, so runs never overlap.
+     */
+    static class ThreadPerTaskScheduler extends ConcurrentTaskScheduler implements DisposableBean {
+        private final Executor executor;
+        private final ScheduledExecutorService timer;
+
+        ThreadPerTaskScheduler(Executor executor) {
+            this(executor, Executors.newSingleThreadScheduledExecutor(
+                    new CustomizableThreadFactory("scheduling-timer-")));
+        }
+
+        private ThreadPerTaskScheduler(Executor executor, ScheduledExecutorService timer) {
+            super(executor, timer);
+            this.executor = executor;
+            this.timer = timer;
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable task, Trigger trigger) {
+            return super.schedule(handOff(task, true), trigger);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable task, Instant startTime) {
+            return super.schedule(handOff(task, false), startTime);
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, Instant startTime, Duration period) {
+            return super.scheduleAtFixedRate(handOff(task, true), startTime, period);
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, Duration period) {
+            return super.scheduleAtFixedRate(handOff(task, true), period);
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, Instant startTime, Duration delay) {
+            return super.scheduleWithFixedDelay(handOff(task, true), startTime, delay);
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, Duration delay) {
+            return super.scheduleWithFixedDelay(handOff(task, true), delay);
+        }
+
+        @Override
+        public void destroy() {
+            timer.shutdownNow();
+        }
+
+        private Runnable handOff(Runnable task, boolean repeated) {
+            Runnable logged = TaskUtils.decorateTaskWithErrorHandler(task, null, repeated);
+            AtomicBoolean running = new AtomicBoolean();
+            return () -> {
+                if (running.compareAndSet(false, true)) {
+                    executor.execute(() -> {
+                        try {
+                            logged.run();
+                        } finally {
+                            running.set(false);
+                        }
+                    });
+                }
+            };
+        }
+    }
+
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "virtual-", 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (NoSuchMethodException | ClassNotFoundException e) {
+            throw new IllegalStateException("Virtual threads need JDK 21 or later, running on "
+                    + Runtime.version(), e);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Virtual threads are not available", e);
+        }
+    }
+}
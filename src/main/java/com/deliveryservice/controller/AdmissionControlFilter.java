@@ -0,0 +1,92 @@
+package com.deliveryservice.controller;
+
+import com.deliveryservice.service.AdmissionControl;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Sheds fee requests that {@link AdmissionControl} does not admit, before they reach a controller or the
+ * database. Requests over their client's rate get 429, requests over the concurrency limit 503, both with
+ * Retry-After. An admitted request keeps its slot until its response is complete, for streamed batches
+ * that is when the asynchronous part ends.
+ * <p>
+ * Clients without a listed key are told apart by the remote address. Behind a trusted proxy Tomcat sets it
+ * to the client address from X-Forwarded-For, so clients of a CDN or load balancer do not share its bucket.
+ */
+public class AdmissionControlFilter extends OncePerRequestFilter {
+    private final AdmissionControl admissionControl;
+    private final String apiKeyHeader;
+
+    public AdmissionControlFilter(AdmissionControl admissionControl, String apiKeyHeader) {
+        this.admissionControl = admissionControl;
+        this.apiKeyHeader = apiKeyHeader;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        AdmissionControl.Decision decision = admissionControl.admit(request.getHeader(apiKeyHeader),
+                request.getRemoteAddr());
+        if (!decision.isAdmitted()) {
+            reject(response, decision);
+            return;
+        }
+        long start = System.nanoTime();
+        boolean async = false;
+        try {
+            chain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new CompletionListener(start));
+                async = true;
+            }
+        } finally {
+            if (!async) {
+                admissionControl.complete(start);
+            }
+        }
+    }
+
+    // Written directly rather than through the error page, a flood of rejections should be cheap
+    private static void reject(HttpServletResponse response, AdmissionControl.Decision decision) throws IOException {
+        boolean rateLimited = decision.outcome() == AdmissionControl.Outcome.RATE_LIMITED;
+        response.setStatus(rateLimited ? HttpStatus.TOO_MANY_REQUESTS.value() : HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(decision.retryAfterSeconds()));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getWriter().write(rateLimited ? "Request rate limit exceeded" : "Too many requests in progress");
+    }
+
+    // Every asynchronous request ends with onComplete, also after an error or a timeout
+    private final class CompletionListener implements AsyncListener {
+        private final long start;
+
+        CompletionListener(long start) {
+            this.start = start;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            admissionControl.complete(start);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
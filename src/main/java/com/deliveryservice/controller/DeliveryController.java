@@ -1,18 +1,61 @@
 package com.deliveryservice.controller;
 
 import com.deliveryservice.dto.DeliveryFeeResponse;
-import com.deliveryservice.entity.City;
-import com.deliveryservice.exceptions.ResourceNotFoundException;
-import com.deliveryservice.repository.CityRepository;
+import com.deliveryservice.dto.FeeQuoteRequest;
+import com.deliveryservice.dto.FeeQuoteResult;
+import com.deliveryservice.dto.SurchargeBucketResponse;
+import com.deliveryservice.dto.TariffProposal;
+import com.deliveryservice.dto.TariffSimulationResponse;
+import com.deliveryservice.exceptions.BatchTooLargeException;
+import com.deliveryservice.exceptions.CityNotFoundException;
+import com.deliveryservice.exceptions.InvalidAnalyticsQueryException;
+import com.deliveryservice.exceptions.VehicleTypeNotFoundException;
+import com.deliveryservice.exceptions.VehicleUsageForbiddenException;
+import com.deliveryservice.model.FeeVersion;
+import com.deliveryservice.model.SurchargeRollup;
+import com.deliveryservice.model.TariffSnapshot;
+import com.deliveryservice.model.VehicleTariff;
 import com.deliveryservice.service.DeliveryService;
+import com.deliveryservice.service.FeeMatrixPublisher;
+import com.deliveryservice.service.FeeMetrics;
+import com.deliveryservice.service.StationRegistry;
+import com.deliveryservice.service.SurchargeRollups;
+import com.deliveryservice.service.TariffRegistry;
+import com.deliveryservice.service.TariffSimulator;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.AllArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpInputMessage;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @AllArgsConstructor
 @RestController
@@ -20,21 +63,216 @@ import org.springframework.web.bind.annotation.RestController;
 public class DeliveryController {
     private final com.deliveryservice.service.weatherImporter weatherImporter;
     private final DeliveryService deliveryService;
-    private final CityRepository cityRepository;
-    @GetMapping("/feeRequest")
+    private final TariffRegistry tariffRegistry;
+    private final ObjectMapper objectMapper;
+    private final FeeMetrics feeMetrics;
+    private final StationRegistry stationRegistry;
+    private final SurchargeRollups surchargeRollups;
+    private final TariffSimulator tariffSimulator;
+    private final FeeMatrixPublisher feeMatrixPublisher;
+
+    private static final int MAX_BATCH_SIZE = 10_000;
+    private static final int MAX_ANALYTICS_BUCKETS = 10_000;
+    private static final String TARIFF_VERSION_HEADER = "X-Tariff-Version";
 
-    public ResponseEntity<DeliveryFeeResponse> calculateDeliveryFee(@RequestParam String city,
+    /**
+     * Calculates a delivery fee. The response carries an ETag and Last-Modified built from the weather
+     * observation and tariff version it depends on, so a matching conditional request is answered with
+     * 304 without calculating the fee. It may be cached until the next scheduled weather import.
+     * The tariff version is also returned in the X-Tariff-Version header.
+     * <p>
+     * Instead of a city, the delivery can be located by {@code lat} and {@code lon}: the weather is then
+     * taken from the nearest active station and the regional base fee from the nearest city.
+     */
+    @GetMapping("/feeRequest")
+    public ResponseEntity<DeliveryFeeResponse> calculateDeliveryFee(@RequestParam(required = false) String city,
+                                                                    @RequestParam(required = false) Double lat,
+                                                                    @RequestParam(required = false) Double lon,
                                                                     @RequestParam String vehicleType,
-                                                                    @RequestParam(required = false) String datetime) {
+                                                                    @RequestParam(required = false) String datetime,
+                                                                    ServletWebRequest webRequest)
+            throws MissingServletRequestParameterException {
+        if (city == null && (lat == null || lon == null)) {
+            throw new MissingServletRequestParameterException(lat == null ? "lat" : "lon", "Double");
+        }
+        long start = System.nanoTime();
+        TariffSnapshot tariffs = tariffRegistry.current();
+        String stationName;
+        String cityName;
+        if (city != null) {
+            stationName = stationRegistry.resolveStationName(tariffs, city);
+            cityName = stationName;
+        } else {
+            stationName = stationRegistry.findNearestStation(lat, lon);
+            cityName = stationRegistry.findNearestCity(tariffs, lat, lon);
+        }
+        FeeMetrics.Outcome outcome = FeeMetrics.Outcome.ERROR;
+        try {
+            if (stationName == null || cityName == null) {
+                throw new CityNotFoundException("No weather station or city found near the given location");
+            }
+            Optional<FeeVersion> version = deliveryService.findFeeVersion(tariffs, stationName, datetime);
+            // Evaluated without the response, the validators must not stay on an error raised below
+            if (version.isPresent() && new ServletWebRequest(webRequest.getRequest()).checkNotModified(
+                    version.get().getETag(), version.get().getLastModified().toEpochMilli())) {
+                outcome = FeeMetrics.Outcome.NOT_MODIFIED;
+                return cached(ResponseEntity.status(HttpStatus.NOT_MODIFIED), tariffs, version.get()).build();
+            }
+            DeliveryFeeResponse fee = deliveryService.calculateDeliveryFee(tariffs, cityName, stationName, vehicleType,
+                    datetime);
+            outcome = FeeMetrics.Outcome.OK;
+            return version.isPresent() ? cached(ResponseEntity.ok(), tariffs, version.get()).body(fee)
+                    : ResponseEntity.ok().header(TARIFF_VERSION_HEADER, Long.toString(tariffs.getVersion())).body(fee);
+        } catch (CityNotFoundException | VehicleTypeNotFoundException e) {
+            outcome = FeeMetrics.Outcome.NOT_FOUND;
+            throw e;
+        } catch (VehicleUsageForbiddenException e) {
+            outcome = FeeMetrics.Outcome.FORBIDDEN;
+            throw e;
+        } finally {
+            feeMetrics.record(tariffs, cityName, vehicleType, outcome, System.nanoTime() - start);
+        }
+    }
+
+    // Only on answers with a fee or a 304, a CDN must not keep serving an error until the next import
+    private ResponseEntity.BodyBuilder cached(ResponseEntity.BodyBuilder response, TariffSnapshot tariffs,
+                                              FeeVersion version) {
+        return response.cacheControl(CacheControl.maxAge(weatherImporter.getTimeUntilNextImport()))
+                .eTag(version.getETag())
+                .lastModified(version.getLastModified())
+                .header(TARIFF_VERSION_HEADER, Long.toString(tariffs.getVersion()));
+    }
 
-        if ("Tallinn".equalsIgnoreCase(city)) {
-            city = "Tallinn-Harku";
+    /**
+     * Quotes many deliveries in one call. The response is a JSON array streamed in request order, holding
+     * either {@code fee} or {@code error} for every quote. The request body is read quote by quote, so a
+     * batch over the limit is refused before the rest of it is read.
+     */
+    @PostMapping(value = "/feeRequest/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> calculateDeliveryFees(HttpServletRequest request) throws IOException {
+        List<FeeQuoteRequest> requests = readBatch(new ServletServerHttpRequest(request));
+        TariffSnapshot tariffs = tariffRegistry.current();
+        // A null quote stays null and is answered with an error entry
+        List<FeeQuoteRequest> stationRequests = requests.stream()
+                .map(quote -> quote == null ? null : new FeeQuoteRequest(
+                        quote.getCity() == null ? null
+                                : stationRegistry.resolveStationName(tariffs, quote.getCity()),
+                        quote.getVehicleType(),
+                        quote.getDatetime()))
+                .toList();
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                deliveryService.calculateDeliveryFees(tariffs, stationRequests, chunk -> {
+                    try {
+                        for (FeeQuoteResult result : chunk) {
+                            writer.writeValue(generator, result);
+                        }
+                        generator.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(TARIFF_VERSION_HEADER, Long.toString(tariffs.getVersion()))
+                .body(body);
+    }
+
+    private List<FeeQuoteRequest> readBatch(HttpInputMessage input) throws IOException {
+        List<FeeQuoteRequest> requests = new ArrayList<>();
+        try (JsonParser parser = objectMapper.createParser(input.getBody())) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new HttpMessageNotReadableException("A batch must be a JSON array of quotes", input);
+            }
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (requests.size() == MAX_BATCH_SIZE) {
+                    throw new BatchTooLargeException("At most " + MAX_BATCH_SIZE + " quotes are allowed per batch");
+                }
+                requests.add(objectMapper.readValue(parser, FeeQuoteRequest.class));
+            }
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotReadableException("Invalid batch: " + e.getOriginalMessage(), e, input);
         }
-        if ("Tartu".equalsIgnoreCase(city)) {
-            city = "Tartu-Tõravere";
+        return requests;
+    }
+
+    /**
+     * Reports the weather surcharges of a vehicle type at the station of a city, per hour or UTC day, from
+     * the incrementally maintained rollups: the observations taken, how many forbade the vehicle type, the
+     * average surcharge of the others and the hours the vehicle type was forbidden. Only buckets with data
+     * are listed; hourly buckets reach back {@code weather.rollup.hourly-retention}.
+     *
+     * @param from        Start of the first bucket, inclusive.
+     * @param to          End of the range, exclusive.
+     * @param granularity "hour" or "day".
+     */
+    @GetMapping("/analytics/surcharges")
+    public List<SurchargeBucketResponse> getSurchargeRollups(@RequestParam String city,
+                                                             @RequestParam String vehicleType,
+                                                             @RequestParam Instant from,
+                                                             @RequestParam Instant to,
+                                                             @RequestParam(defaultValue = "day") String granularity) {
+        SurchargeRollup.Granularity bucketSize;
+        try {
+            bucketSize = SurchargeRollup.Granularity.valueOf(granularity.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidAnalyticsQueryException("granularity must be hour or day");
+        }
+        if (!from.isBefore(to)) {
+            throw new InvalidAnalyticsQueryException("from must be before to");
+        }
+        if (Duration.between(from, to).toSeconds() / bucketSize.getSeconds() > MAX_ANALYTICS_BUCKETS) {
+            throw new InvalidAnalyticsQueryException("At most " + MAX_ANALYTICS_BUCKETS + " buckets are allowed per query");
         }
-        DeliveryFeeResponse fee = deliveryService.calculateDeliveryFee(city, vehicleType, datetime);
-        return ResponseEntity.ok(fee);
+        TariffSnapshot tariffs = tariffRegistry.current();
+        VehicleTariff vehicle = tariffs.findVehicle(vehicleType);
+        if (vehicle == null) {
+            throw new VehicleTypeNotFoundException("No such vehicle type");
+        }
+        return surchargeRollups.query(stationRegistry.resolveStationName(tariffs, city), vehicle.getVehicleClass(),
+                        bucketSize, from, to).stream()
+                .map(SurchargeBucketResponse::from)
+                .toList();
+    }
+
+    /**
+     * Rebuilds the surcharge rollups from the whole weather history in the background, e.g. after a backfill.
+     */
+    @PostMapping("/analytics/rebuild")
+    public ResponseEntity<String> rebuildSurchargeRollups() {
+        surchargeRollups.rebuildInBackground();
+        return ResponseEntity.accepted().body("Surcharge rollup rebuild started");
+    }
+
+    /**
+     * Prices the weather history under a proposed tariff and under the current one, per station and vehicle
+     * type, e.g. before changing fees or surcharge rules. The proposal lists only what changes.
+     *
+     * @param from Start of the history, inclusive; a year before {@code to} if not given.
+     * @param to   End of the history, exclusive; now if not given.
+     */
+    @PostMapping("/simulation")
+    public TariffSimulationResponse simulateTariff(@RequestBody(required = false) TariffProposal proposal,
+                                                   @RequestParam(required = false) Instant from,
+                                                   @RequestParam(required = false) Instant to) {
+        Instant end = to != null ? to : Instant.now();
+        return tariffSimulator.simulate(proposal != null ? proposal : new TariffProposal(),
+                from != null ? from : end.minus(Duration.ofDays(365)), end);
+    }
+
+    /**
+     * Streams the fee of every city and vehicle type as server-sent events: a "snapshot" of the whole
+     * matrix first, then a "delta" with the changed entries after every import or fee update that changes
+     * a fee or a forbidden state.
+     */
+    @GetMapping(value = "/fees/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamFees() {
+        return feeMatrixPublisher.subscribe();
     }
 
     @PostMapping("/cron")
@@ -49,12 +287,7 @@ public class DeliveryController {
 
     @PostMapping("/city/setFee")
     public ResponseEntity<?> setCityFee(@RequestParam String cityName, @RequestParam Double fee) {
-        City city = cityRepository.findByCityIgnoreCase(cityName)
-                .orElseThrow(() -> new ResourceNotFoundException("City not found: " + cityName));
-
-        city.setFee(fee);
-        cityRepository.save(city);
-
+        deliveryService.updateCityFee(cityName, fee);
         return new ResponseEntity<>("Fee updated for city: " + cityName, HttpStatus.OK);
     }
 
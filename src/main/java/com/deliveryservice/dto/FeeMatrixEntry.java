@@ -0,0 +1,27 @@
+package com.deliveryservice.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * Current fee of one vehicle type at the station of one city, as pushed by the fee stream.
+ */
+@AllArgsConstructor
+@EqualsAndHashCode
+@Getter
+public class FeeMatrixEntry {
+    private String city;
+    private String vehicleType;
+    /** Null if the vehicle type is forbidden or the station has no observation. */
+    private BigDecimal fee;
+    private boolean forbidden;
+    /**
+     * Time of the observation the fee is based on, null if the station has none. A newer observation with
+     * the same outcome is not a change.
+     */
+    @EqualsAndHashCode.Exclude
+    private Instant observedAt;
+}
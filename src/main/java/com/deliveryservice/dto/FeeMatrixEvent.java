@@ -0,0 +1,21 @@
+package com.deliveryservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Payload of a fee stream event: the whole matrix in a snapshot, or the entries that changed or
+ * disappeared since the previous version in a delta.
+ */
+@AllArgsConstructor
+@Getter
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class FeeMatrixEvent {
+    private long version;
+    private long tariffVersion;
+    private List<FeeMatrixEntry> fees;
+    /** Only city and vehicleType are set. */
+    private List<FeeMatrixEntry> removed;
+}
@@ -0,0 +1,16 @@
+package com.deliveryservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class FeeQuoteRequest {
+    private String city;
+    private String vehicleType;
+    private String datetime;
+}
@@ -0,0 +1,25 @@
+package com.deliveryservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.math.BigDecimal;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Outcome of a single quote in a batch: either the fee or the reason it could not be calculated.
+ */
+@AllArgsConstructor
+@Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FeeQuoteResult {
+    private BigDecimal fee;
+    private String error;
+
+    public static FeeQuoteResult fee(BigDecimal fee) {
+        return new FeeQuoteResult(fee, null);
+    }
+
+    public static FeeQuoteResult error(String error) {
+        return new FeeQuoteResult(null, error);
+    }
+}
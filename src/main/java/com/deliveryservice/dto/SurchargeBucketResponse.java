@@ -0,0 +1,38 @@
+package com.deliveryservice.dto;
+
+import com.deliveryservice.model.SurchargeRollup;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Surcharge aggregates of one vehicle type at one station in one hour or day.
+ */
+@AllArgsConstructor
+@Getter
+public class SurchargeBucketResponse {
+    private Instant start;
+    private int observations;
+    private int forbiddenObservations;
+    /** Average surcharge of the priced observations, null if all were forbidden. */
+    private BigDecimal averageSurcharge;
+    /** Hours some observation was in effect. */
+    private BigDecimal coveredHours;
+    /** Hours the observation in effect forbade the vehicle type. */
+    private BigDecimal forbiddenHours;
+
+    public static SurchargeBucketResponse from(SurchargeRollup.Bucket bucket) {
+        int priced = bucket.pricedObservations();
+        return new SurchargeBucketResponse(bucket.start(), bucket.observations(), bucket.forbiddenObservations(),
+                priced == 0 ? null : BigDecimal.valueOf(bucket.surchargeCents())
+                        .divide(BigDecimal.valueOf(priced * 100L), 2, RoundingMode.HALF_UP),
+                hours(bucket.coveredSeconds()),
+                hours(bucket.forbiddenSeconds()));
+    }
+
+    private static BigDecimal hours(int seconds) {
+        return BigDecimal.valueOf(seconds).divide(BigDecimal.valueOf(3600), 2, RoundingMode.HALF_UP);
+    }
+}
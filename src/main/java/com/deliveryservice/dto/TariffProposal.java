@@ -0,0 +1,46 @@
+package com.deliveryservice.dto;
+
+import com.deliveryservice.model.VehicleClass;
+import java.util.List;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * A proposed tariff for the what-if simulation, as changes to the current one. Everything left out stays as
+ * it is; fees are in euros.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class TariffProposal {
+    /** Regional base fees by city name or alias. */
+    private Map<String, Double> cityFees;
+    /** Base fees by vehicle type. */
+    private Map<String, Double> vehicleFees;
+    private Rules rules;
+
+    /**
+     * Changes of the weather surcharge rules. Surcharges are given per vehicle class, phenomena by their
+     * code name: RAIN, SNOW_OR_SLEET or GLAZE_HAIL_OR_THUNDER.
+     */
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Getter
+    @Setter
+    public static class Rules {
+        private Double coldThreshold;
+        private Double freezingThreshold;
+        private Double windSurchargeThreshold;
+        private Double windForbiddenThreshold;
+        private Map<VehicleClass, Double> coldFees;
+        private Map<VehicleClass, Double> freezingFees;
+        private Map<VehicleClass, Double> windFees;
+        private Map<VehicleClass, Boolean> forbiddenInStrongWind;
+        private Map<VehicleClass, Map<String, Double>> phenomenonFees;
+        private Map<VehicleClass, List<String>> forbiddenPhenomena;
+    }
+}
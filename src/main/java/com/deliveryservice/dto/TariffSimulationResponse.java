@@ -0,0 +1,41 @@
+package com.deliveryservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Outcome of a what-if simulation: every historical observation priced once per vehicle type under the
+ * current and the proposed tariff, as if one delivery had been quoted per observation.
+ */
+@AllArgsConstructor
+@Getter
+public class TariffSimulationResponse {
+    private Instant from;
+    private Instant to;
+    private long observations;
+    private long elapsedMillis;
+    private Impact total;
+    /** Per station and vehicle type, ordered by station and vehicle type. */
+    private List<Impact> stations;
+
+    @AllArgsConstructor
+    @Getter
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Impact {
+        private String station;
+        /** The city whose regional base fee applies at the station, null in the total. */
+        private String city;
+        private String vehicleType;
+        private long quotes;
+        private BigDecimal currentRevenue;
+        private BigDecimal proposedRevenue;
+        private BigDecimal revenueDelta;
+        private long currentForbidden;
+        private long proposedForbidden;
+        private long forbiddenDelta;
+    }
+}
@@ -10,7 +10,8 @@ import lombok.Setter;
 @Table(name = "vehicle_type")
 public class Vehicle {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "vehicle_type_seq")
+    @SequenceGenerator(name = "vehicle_type_seq", sequenceName = "vehicle_type_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "vehicle")
@@ -10,10 +10,12 @@ import java.time.Instant;
 @Getter
 @Setter
 @Entity
-@Table(name = "weather_data")
+@Table(name = "weather_data",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"station_name", "timestamp"}))
 public class WeatherData {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "weather_data_seq")
+    @SequenceGenerator(name = "weather_data_seq", sequenceName = "weather_data_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "station_name")
@@ -0,0 +1,11 @@
+package com.deliveryservice.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidAnalyticsQueryException extends RuntimeException {
+    public InvalidAnalyticsQueryException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.deliveryservice.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class SimulationBusyException extends RuntimeException {
+    public SimulationBusyException(String message) {
+        super(message);
+    }
+}
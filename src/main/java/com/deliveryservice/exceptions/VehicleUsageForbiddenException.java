@@ -1,7 +1,8 @@
 package com.deliveryservice.exceptions;
 
+// Raised at the API boundary only, the fee calculation reports forbidden usage as a result, so no stack trace is needed
 public class VehicleUsageForbiddenException extends RuntimeException {
     public VehicleUsageForbiddenException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
\ No newline at end of file
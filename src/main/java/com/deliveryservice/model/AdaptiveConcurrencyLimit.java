@@ -0,0 +1,90 @@
+package com.deliveryservice.model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limit on concurrently handled requests that adapts to their latency, additive increase and
+ * multiplicative decrease.
+ * <p>
+ * A request that completes within the target latency while at least half of the limit is in use counts as
+ * a success, and every {@code limit} successes raise the limit by one. A request that takes longer lowers
+ * the limit by the backoff factor, at most once per target latency so a burst of slow completions from the
+ * same overload is one decrease. The limit stays within [min, max]. Requests below the limit are admitted
+ * with a compare-and-set, all state is in atomics.
+ */
+public final class AdaptiveConcurrencyLimit {
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyNanos;
+    private final double backoff;
+    private final AtomicInteger limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger successes = new AtomicInteger();
+    private final AtomicLong lastDecreaseNanos;
+    // Exponentially weighted, updates may be lost under contention which only makes it less smooth
+    private volatile long smoothedLatencyNanos;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, long targetLatencyNanos,
+                                    double backoff, long nowNanos) {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Expected 1 <= min <= initial <= max");
+        }
+        if (backoff <= 0 || backoff >= 1) {
+            throw new IllegalArgumentException("The backoff must be between 0 and 1");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetLatencyNanos = targetLatencyNanos;
+        this.backoff = backoff;
+        this.limit = new AtomicInteger(initialLimit);
+        this.lastDecreaseNanos = new AtomicLong(nowNanos - targetLatencyNanos);
+        this.smoothedLatencyNanos = targetLatencyNanos / 2;
+    }
+
+    /**
+     * @return Whether the request may run; if so, {@link #release} must be called when it completes.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit.get()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Completes an admitted request and adapts the limit to its latency.
+     */
+    public void release(long latencyNanos, long nowNanos) {
+        int before = inFlight.getAndDecrement();
+        smoothedLatencyNanos += (latencyNanos - smoothedLatencyNanos) / 8;
+        int current = limit.get();
+        if (latencyNanos > targetLatencyNanos) {
+            long last = lastDecreaseNanos.get();
+            if (nowNanos - last >= targetLatencyNanos && lastDecreaseNanos.compareAndSet(last, nowNanos)) {
+                limit.set(Math.max(minLimit, (int) (current * backoff)));
+                successes.set(0);
+            }
+        } else if (before * 2 >= current && current < maxLimit && successes.incrementAndGet() >= current) {
+            successes.set(0);
+            limit.compareAndSet(current, current + 1);
+        }
+    }
+
+    public int getLimit() {
+        return limit.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getSmoothedLatencyNanos() {
+        return smoothedLatencyNanos;
+    }
+}
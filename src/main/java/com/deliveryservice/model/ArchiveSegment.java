@@ -0,0 +1,263 @@
+package com.deliveryservice.model;
+
+import com.deliveryservice.entity.WeatherData;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, memory-mapped archive of the observations of one station, usually of one calendar month.
+ * <p>
+ * The file holds a small header and four columns. The header has {@link #MAGIC}, {@link #FORMAT_VERSION},
+ * the station name and WMO code (each an unsigned short length and UTF-8 bytes), the base time in epoch
+ * seconds, the number of observations and a dictionary of up to 255 phenomenon texts. The columns hold,
+ * per observation in time order: the seconds since the base time as int, air temperature and wind speed
+ * in tenths as short ({@link Short#MIN_VALUE} if not observed) and the phenomenon as byte, the 1-based
+ * dictionary position or 0 for none. An observation takes 9 bytes and the columns have fixed widths, so
+ * lookups binary search the mapped file in place and only the header is read onto the heap.
+ */
+public final class ArchiveSegment implements ObservationColumns {
+    public static final int MAGIC = 0x57415243;
+    public static final int FORMAT_VERSION = 1;
+
+    private static final short MISSING = Short.MIN_VALUE;
+    private static final int MAX_PHENOMENA = 255;
+
+    private final ByteBuffer buffer;
+    private final String stationName;
+    private final String wmoCode;
+    private final long baseEpochSecond;
+    private final int size;
+    private final String[] phenomena;
+    private final byte[] phenomenonCodes;
+    private final int timestamps;
+    private final int airTemperatures;
+    private final int windSpeeds;
+    private final int phenomenonIndexes;
+
+    private ArchiveSegment(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.order(ByteOrder.BIG_ENDIAN);
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a weather archive segment");
+        }
+        int version = buffer.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported weather archive format " + version);
+        }
+        stationName = readString(buffer);
+        wmoCode = readString(buffer);
+        baseEpochSecond = buffer.getLong();
+        size = buffer.getInt();
+        int dictionarySize = Byte.toUnsignedInt(buffer.get());
+        phenomena = new String[dictionarySize + 1];
+        phenomenonCodes = new byte[dictionarySize + 1];
+        for (int i = 1; i <= dictionarySize; i++) {
+            phenomena[i] = readString(buffer);
+            phenomenonCodes[i] = PhenomenonCode.classify(phenomena[i]);
+        }
+        timestamps = buffer.position();
+        airTemperatures = timestamps + size * 4;
+        windSpeeds = airTemperatures + size * 2;
+        phenomenonIndexes = windSpeeds + size * 2;
+        if (phenomenonIndexes + size > buffer.limit()) {
+            throw new IOException("Truncated weather archive segment");
+        }
+    }
+
+    /**
+     * Maps a segment file. The mapping stays valid after the file is replaced or deleted.
+     *
+     * @throws IOException If the file cannot be read or is not a segment.
+     */
+    public static ArchiveSegment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new ArchiveSegment(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            throw new IOException(e.getMessage() + ": " + file, e);
+        }
+    }
+
+    /**
+     * Writes the observations of one station to a new segment file, replacing the target atomically.
+     * Values are kept to a tenth, as the feed reports them. Of observations with the same time, the last
+     * one is kept.
+     *
+     * @param observations Observations of the station, in time order.
+     */
+    public static void write(Path target, String stationName, List<WeatherData> observations) throws IOException {
+        List<WeatherData> rows = new ArrayList<>(observations.size());
+        for (WeatherData row : observations) {
+            if (!rows.isEmpty() && rows.get(rows.size() - 1).getTimestamp().equals(row.getTimestamp())) {
+                rows.set(rows.size() - 1, row);
+            } else {
+                rows.add(row);
+            }
+        }
+        if (rows.isEmpty()) {
+            throw new IllegalArgumentException("A segment needs at least one observation");
+        }
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        String wmoCode = null;
+        for (WeatherData row : rows) {
+            if (row.getWeatherPhenomenon() != null && !row.getWeatherPhenomenon().isEmpty()
+                    && dictionary.size() < MAX_PHENOMENA) {
+                dictionary.putIfAbsent(row.getWeatherPhenomenon(), dictionary.size() + 1);
+            }
+            wmoCode = row.getWmoCode() != null ? row.getWmoCode() : wmoCode;
+        }
+        long base = rows.get(0).getTimestamp().getEpochSecond();
+
+        int headerSize = 4 + 4 + stringSize(stationName) + stringSize(wmoCode) + 8 + 4 + 1;
+        for (String phenomenon : dictionary.keySet()) {
+            headerSize += stringSize(phenomenon);
+        }
+        ByteBuffer out = ByteBuffer.allocate(headerSize + rows.size() * 9).order(ByteOrder.BIG_ENDIAN);
+        out.putInt(MAGIC).putInt(FORMAT_VERSION);
+        writeString(out, stationName);
+        writeString(out, wmoCode);
+        out.putLong(base).putInt(rows.size()).put((byte) dictionary.size());
+        dictionary.keySet().forEach(phenomenon -> writeString(out, phenomenon));
+        for (WeatherData row : rows) {
+            out.putInt(Math.toIntExact(row.getTimestamp().getEpochSecond() - base));
+        }
+        rows.forEach(row -> out.putShort(toTenths(row.getAirTemperature())));
+        rows.forEach(row -> out.putShort(toTenths(row.getWindSpeed())));
+        // Phenomena beyond the dictionary limit are stored as none
+        rows.forEach(row -> out.put((byte) (int) dictionary.getOrDefault(row.getWeatherPhenomenon(), 0)));
+        out.flip();
+
+        Files.createDirectories(target.getParent());
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public String getStationName() {
+        return stationName;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long epochSecond(int index) {
+        return baseEpochSecond + buffer.getInt(timestamps + index * 4);
+    }
+
+    /**
+     * @return The index of the last observation at or before the given time, or -1 if there is none.
+     */
+    public int floor(long epochSecond) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (epochSecond(middle) <= epochSecond) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * @return The index of the first observation at or after the given time, {@link #size()} if there is none.
+     */
+    @Override
+    public int ceiling(long epochSecond) {
+        return floor(epochSecond - 1) + 1;
+    }
+
+    @Override
+    public float airTemperature(int index) {
+        short tenths = buffer.getShort(airTemperatures + index * 2);
+        return tenths == MISSING ? Float.NaN : tenths / 10f;
+    }
+
+    @Override
+    public float windSpeed(int index) {
+        short tenths = buffer.getShort(windSpeeds + index * 2);
+        return tenths == MISSING ? Float.NaN : tenths / 10f;
+    }
+
+    @Override
+    public byte phenomenonCode(int index) {
+        return phenomenonCodes[Byte.toUnsignedInt(buffer.get(phenomenonIndexes + index))];
+    }
+
+    public WeatherObservation observation(int index) {
+        int phenomenon = Byte.toUnsignedInt(buffer.get(phenomenonIndexes + index));
+        return new WeatherObservation(stationName, wmoCode,
+                fromTenths(buffer.getShort(airTemperatures + index * 2)),
+                fromTenths(buffer.getShort(windSpeeds + index * 2)),
+                phenomena[phenomenon],
+                Instant.ofEpochSecond(epochSecond(index)),
+                phenomenonCodes[phenomenon]);
+    }
+
+    /**
+     * @return All observations as rows, e.g. to merge them with newer rows into a replacement segment.
+     */
+    public List<WeatherData> toWeatherData() {
+        List<WeatherData> rows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            WeatherObservation observation = observation(i);
+            WeatherData row = new WeatherData();
+            row.setStationName(stationName);
+            row.setWmoCode(wmoCode);
+            row.setAirTemperature(observation.getAirTemperature());
+            row.setWindSpeed(observation.getWindSpeed());
+            row.setWeatherPhenomenon(observation.getWeatherPhenomenon());
+            row.setTimestamp(observation.getTimestamp());
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static short toTenths(Double value) {
+        if (value == null || value.isNaN()) {
+            return MISSING;
+        }
+        return (short) Math.max(MISSING + 1, Math.min(Short.MAX_VALUE, Math.round(value * 10)));
+    }
+
+    private static Double fromTenths(short tenths) {
+        return tenths == MISSING ? null : tenths / 10.0;
+    }
+
+    private static int stringSize(String value) {
+        return 2 + (value == null ? 0 : value.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    private static void writeString(ByteBuffer out, String value) {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        out.putShort((short) bytes.length).put(bytes);
+    }
+
+    // An empty string reads as null, the feed sends no empty names or codes
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return bytes.length == 0 ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,11 @@
+package com.deliveryservice.model;
+
+import lombok.Value;
+
+@Value
+public class CityTariff {
+    /** Dense position of the city within its tariff snapshot, stable across fee updates. */
+    int index;
+    String city;
+    long feeCents;
+}
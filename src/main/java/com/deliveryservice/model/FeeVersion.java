@@ -0,0 +1,23 @@
+package com.deliveryservice.model;
+
+import java.time.Instant;
+import lombok.Value;
+
+/**
+ * Identifies the inputs a delivery fee was calculated from: the weather observation and the tariff version.
+ * Two requests with equal versions are guaranteed to produce the same fee.
+ */
+@Value
+public class FeeVersion {
+    Instant observationTimestamp;
+    long tariffVersion;
+    Instant tariffUpdatedAt;
+
+    public String getETag() {
+        return "\"" + observationTimestamp.getEpochSecond() + "-" + tariffVersion + "\"";
+    }
+
+    public Instant getLastModified() {
+        return observationTimestamp.isAfter(tariffUpdatedAt) ? observationTimestamp : tariffUpdatedAt;
+    }
+}
@@ -0,0 +1,81 @@
+package com.deliveryservice.model;
+
+/**
+ * A fixed-capacity batch of observations of one station, filled in time order, e.g. while reading rows from
+ * the database. Not thread-safe while it is filled; hand it to other threads only once it is complete.
+ */
+public final class ObservationBatch implements ObservationColumns {
+    private final String stationName;
+    private final long[] epochSeconds;
+    private final float[] airTemperatures;
+    private final float[] windSpeeds;
+    private final byte[] phenomenonCodes;
+    private int size;
+
+    public ObservationBatch(String stationName, int capacity) {
+        this.stationName = stationName;
+        this.epochSeconds = new long[capacity];
+        this.airTemperatures = new float[capacity];
+        this.windSpeeds = new float[capacity];
+        this.phenomenonCodes = new byte[capacity];
+    }
+
+    /**
+     * @return Whether the observation was added, false if the batch is full.
+     */
+    public boolean add(long epochSecond, float airTemperature, float windSpeed, byte phenomenonCode) {
+        if (size == epochSeconds.length) {
+            return false;
+        }
+        epochSeconds[size] = epochSecond;
+        airTemperatures[size] = airTemperature;
+        windSpeeds[size] = windSpeed;
+        phenomenonCodes[size] = phenomenonCode;
+        size++;
+        return true;
+    }
+
+    public String getStationName() {
+        return stationName;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long epochSecond(int index) {
+        return epochSeconds[index];
+    }
+
+    @Override
+    public float airTemperature(int index) {
+        return airTemperatures[index];
+    }
+
+    @Override
+    public float windSpeed(int index) {
+        return windSpeeds[index];
+    }
+
+    @Override
+    public byte phenomenonCode(int index) {
+        return phenomenonCodes[index];
+    }
+
+    @Override
+    public int ceiling(long epochSecond) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (epochSeconds[middle] < epochSecond) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,23 @@
+package com.deliveryservice.model;
+
+/**
+ * Read access to the observations of one station held in primitive columns, in time order, so bulk
+ * evaluations can walk them without creating an object per observation. Missing temperature or wind
+ * speed values read as {@code NaN}.
+ */
+public interface ObservationColumns {
+    int size();
+
+    long epochSecond(int index);
+
+    float airTemperature(int index);
+
+    float windSpeed(int index);
+
+    byte phenomenonCode(int index);
+
+    /**
+     * @return Index of the first observation taken at or after the given time, or size if there is none.
+     */
+    int ceiling(long epochSecond);
+}
@@ -0,0 +1,70 @@
+package com.deliveryservice.model;
+
+import java.util.Locale;
+
+/**
+ * Compact classification of the free-text weather phenomenon reported by the stations.
+ * <p>
+ * Observations are classified once when they enter memory, so the fee calculation only has to
+ * compare a byte instead of scanning keyword lists for every request.
+ */
+public final class PhenomenonCode {
+    public static final byte NONE = 0;
+    public static final byte RAIN = 1;
+    public static final byte SNOW_OR_SLEET = 2;
+    public static final byte GLAZE_HAIL_OR_THUNDER = 3;
+
+    private static final String[] SNOW_OR_SLEET_KEYWORDS = {"snow", "sleet", "snowfall", "snow shower", "snow flurries"};
+    private static final String[] RAIN_KEYWORDS = {"rain", "drizzle", "rainfall", "rain shower", "light rain", "heavy rain"};
+    private static final String[] GLAZE_HAIL_OR_THUNDER_KEYWORDS = {"glaze", "hail", "thunder", "thunderstorm"};
+
+    private static final String[] NAMES = {"NONE", "RAIN", "SNOW_OR_SLEET", "GLAZE_HAIL_OR_THUNDER"};
+
+    private PhenomenonCode() {
+    }
+
+    /**
+     * @param name The name of a code constant, e.g. "RAIN", ignoring case.
+     * @return The code.
+     * @throws IllegalArgumentException If there is no such code.
+     */
+    public static byte forName(String name) {
+        for (byte code = 0; code < NAMES.length; code++) {
+            if (NAMES[code].equalsIgnoreCase(name)) {
+                return code;
+            }
+        }
+        throw new IllegalArgumentException("No such phenomenon code: " + name);
+    }
+
+    /**
+     * Classifies a phenomenon description. Snow and sleet take precedence over rain, which takes
+     * precedence over glaze, hail and thunder.
+     *
+     * @param weatherPhenomenon The phenomenon as reported by the station, may be null or empty.
+     * @return One of the codes declared in this class.
+     */
+    public static byte classify(String weatherPhenomenon) {
+        if (weatherPhenomenon == null || weatherPhenomenon.isEmpty()) {
+            return NONE;
+        }
+        String phenomenon = weatherPhenomenon.toLowerCase(Locale.ROOT);
+        if (containsAny(phenomenon, SNOW_OR_SLEET_KEYWORDS)) {
+            return SNOW_OR_SLEET;
+        } else if (containsAny(phenomenon, RAIN_KEYWORDS)) {
+            return RAIN;
+        } else if (containsAny(phenomenon, GLAZE_HAIL_OR_THUNDER_KEYWORDS)) {
+            return GLAZE_HAIL_OR_THUNDER;
+        }
+        return NONE;
+    }
+
+    private static boolean containsAny(String phenomenon, String[] keywords) {
+        for (String keyword : keywords) {
+            if (phenomenon.contains(keyword)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,164 @@
+package com.deliveryservice.model;
+
+import java.util.Arrays;
+
+/**
+ * Timestamp-sorted observation history of a single station, stored column-wise in primitive arrays.
+ * <p>
+ * Writers are serialized on the instance. Readers take the current {@link Columns} view without locking:
+ * appends fill spare capacity beyond the published size and then publish a larger view, every other
+ * modification copies the arrays first, so a published view never changes underneath a reader.
+ * Missing temperature or wind speed values are stored as {@code NaN}.
+ */
+public final class StationHistory {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final long retentionSeconds;
+    private volatile Columns columns = Columns.EMPTY;
+
+    /**
+     * @param retentionSeconds How far back from its newest observation the station keeps history.
+     */
+    public StationHistory(long retentionSeconds) {
+        this.retentionSeconds = retentionSeconds;
+    }
+
+    public Columns columns() {
+        return columns;
+    }
+
+    public synchronized void append(long epochSecond, float airTemperature, float windSpeed, byte phenomenonCode) {
+        Columns current = columns;
+        int size = current.size;
+        if (size > 0 && epochSecond <= current.epochSeconds[size - 1]) {
+            insertOutOfOrder(current, epochSecond, airTemperature, windSpeed, phenomenonCode);
+            return;
+        }
+        if (size == current.epochSeconds.length) {
+            current = compact(current, epochSecond - retentionSeconds, size + 1);
+            size = current.size;
+        }
+        current.epochSeconds[size] = epochSecond;
+        current.airTemperatures[size] = airTemperature;
+        current.windSpeeds[size] = windSpeed;
+        current.phenomenonCodes[size] = phenomenonCode;
+        columns = new Columns(current.epochSeconds, current.airTemperatures, current.windSpeeds,
+                current.phenomenonCodes, size + 1);
+    }
+
+    // Late or repeated observations are rare, so they take the copying path
+    private void insertOutOfOrder(Columns current, long epochSecond, float airTemperature, float windSpeed,
+                                  byte phenomenonCode) {
+        int size = current.size;
+        int position = Arrays.binarySearch(current.epochSeconds, 0, size, epochSecond);
+        boolean replace = position >= 0;
+        if (!replace) {
+            position = -position - 1;
+        }
+        if (current.epochSeconds[size - 1] - epochSecond > retentionSeconds) {
+            return;
+        }
+        int newSize = replace ? size : size + 1;
+        Columns copy = Columns.allocate(Math.max(current.epochSeconds.length, newSize));
+        copyRange(current, 0, copy, 0, position);
+        int tail = replace ? position + 1 : position;
+        copyRange(current, tail, copy, position + 1, size - tail);
+        copy.epochSeconds[position] = epochSecond;
+        copy.airTemperatures[position] = airTemperature;
+        copy.windSpeeds[position] = windSpeed;
+        copy.phenomenonCodes[position] = phenomenonCode;
+        columns = new Columns(copy.epochSeconds, copy.airTemperatures, copy.windSpeeds, copy.phenomenonCodes, newSize);
+    }
+
+    // Drops observations older than the cutoff into fresh arrays that can hold at least minCapacity entries
+    private static Columns compact(Columns current, long cutoff, int minCapacity) {
+        int first = current.ceiling(cutoff);
+        int retained = current.size - first;
+        Columns copy = Columns.allocate(Math.max(INITIAL_CAPACITY, Math.max(minCapacity - first, retained * 2)));
+        copyRange(current, first, copy, 0, retained);
+        return new Columns(copy.epochSeconds, copy.airTemperatures, copy.windSpeeds, copy.phenomenonCodes, retained);
+    }
+
+    private static void copyRange(Columns from, int fromIndex, Columns to, int toIndex, int length) {
+        System.arraycopy(from.epochSeconds, fromIndex, to.epochSeconds, toIndex, length);
+        System.arraycopy(from.airTemperatures, fromIndex, to.airTemperatures, toIndex, length);
+        System.arraycopy(from.windSpeeds, fromIndex, to.windSpeeds, toIndex, length);
+        System.arraycopy(from.phenomenonCodes, fromIndex, to.phenomenonCodes, toIndex, length);
+    }
+
+    /**
+     * Immutable view over the first {@code size} entries of the column arrays.
+     */
+    public static final class Columns implements ObservationColumns {
+        static final Columns EMPTY = new Columns(new long[0], new float[0], new float[0], new byte[0], 0);
+
+        private final long[] epochSeconds;
+        private final float[] airTemperatures;
+        private final float[] windSpeeds;
+        private final byte[] phenomenonCodes;
+        private final int size;
+
+        private Columns(long[] epochSeconds, float[] airTemperatures, float[] windSpeeds, byte[] phenomenonCodes,
+                        int size) {
+            this.epochSeconds = epochSeconds;
+            this.airTemperatures = airTemperatures;
+            this.windSpeeds = windSpeeds;
+            this.phenomenonCodes = phenomenonCodes;
+            this.size = size;
+        }
+
+        private static Columns allocate(int capacity) {
+            return new Columns(new long[capacity], new float[capacity], new float[capacity], new byte[capacity], 0);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @return Index of the last observation taken at or before the given time, or -1 if there is none.
+         */
+        public int floor(long epochSecond) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (epochSeconds[mid] <= epochSecond) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return high;
+        }
+
+        /**
+         * @return Index of the first observation taken at or after the given time, or size if there is none.
+         */
+        @Override
+        public int ceiling(long epochSecond) {
+            return floor(epochSecond - 1) + 1;
+        }
+
+        @Override
+        public long epochSecond(int index) {
+            return epochSeconds[index];
+        }
+
+        @Override
+        public float airTemperature(int index) {
+            return airTemperatures[index];
+        }
+
+        @Override
+        public float windSpeed(int index) {
+            return windSpeeds[index];
+        }
+
+        @Override
+        public byte phenomenonCode(int index) {
+            return phenomenonCodes[index];
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.deliveryservice.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Immutable k-d tree over station positions for nearest-station lookups.
+ * <p>
+ * Positions are stored as points on the unit sphere, where the straight-line distance between two points
+ * grows with their great-circle distance. A search is therefore exact anywhere on the globe, without
+ * trigonometry per visited node. The tree is implicit: the median of every range is its node, so the
+ * whole index is two flat arrays.
+ */
+public final class StationIndex {
+    public static final StationIndex EMPTY = new StationIndex(List.of());
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private final StationLocation[] stations;
+    private final double[] points;
+
+    public StationIndex(Collection<StationLocation> stations) {
+        List<Node> nodes = new ArrayList<>(stations.size());
+        for (StationLocation station : stations) {
+            nodes.add(new Node(station, toPoint(station.getLatitude(), station.getLongitude())));
+        }
+        build(nodes, 0, nodes.size(), 0);
+
+        this.stations = new StationLocation[nodes.size()];
+        this.points = new double[nodes.size() * 3];
+        for (int i = 0; i < nodes.size(); i++) {
+            this.stations[i] = nodes.get(i).station;
+            System.arraycopy(nodes.get(i).point, 0, this.points, i * 3, 3);
+        }
+    }
+
+    public int size() {
+        return stations.length;
+    }
+
+    /**
+     * @return The station closest to the given position, or null if the index is empty.
+     */
+    public StationLocation findNearest(double latitude, double longitude) {
+        return findNearest(latitude, longitude, null);
+    }
+
+    /**
+     * @param stationName Decides by station name whether a station may be returned, null accepts all.
+     * @return The closest accepted station, or null if there is none.
+     */
+    public StationLocation findNearest(double latitude, double longitude, Predicate<String> stationName) {
+        Search search = new Search(toPoint(latitude, longitude), stationName);
+        search(search, 0, stations.length, 0);
+        return search.best < 0 ? null : stations[search.best];
+    }
+
+    /**
+     * @return The great-circle distance in kilometres.
+     */
+    public static double distanceKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double dLatitude = Math.toRadians(latitude2 - latitude1);
+        double dLongitude = Math.toRadians(longitude2 - longitude1);
+        double a = Math.pow(Math.sin(dLatitude / 2), 2) + Math.cos(Math.toRadians(latitude1))
+                * Math.cos(Math.toRadians(latitude2)) * Math.pow(Math.sin(dLongitude / 2), 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    // Splits [from, to) at its median on the axis of this depth, recursively
+    private static void build(List<Node> nodes, int from, int to, int axis) {
+        if (to - from <= 1) {
+            return;
+        }
+        nodes.subList(from, to).sort(Comparator.comparingDouble(node -> node.point[axis]));
+        int median = (from + to) >>> 1;
+        build(nodes, from, median, (axis + 1) % 3);
+        build(nodes, median + 1, to, (axis + 1) % 3);
+    }
+
+    private void search(Search search, int from, int to, int axis) {
+        if (from >= to) {
+            return;
+        }
+        int median = (from + to) >>> 1;
+        int offset = median * 3;
+        if (search.stationName == null || search.stationName.test(stations[median].getName())) {
+            double dx = search.point[0] - points[offset];
+            double dy = search.point[1] - points[offset + 1];
+            double dz = search.point[2] - points[offset + 2];
+            double distance = dx * dx + dy * dy + dz * dz;
+            if (distance < search.bestDistance) {
+                search.best = median;
+                search.bestDistance = distance;
+            }
+        }
+        double split = search.point[axis] - points[offset + axis];
+        int next = (axis + 1) % 3;
+        if (split < 0) {
+            search(search, from, median, next);
+            if (split * split < search.bestDistance) {
+                search(search, median + 1, to, next);
+            }
+        } else {
+            search(search, median + 1, to, next);
+            if (split * split < search.bestDistance) {
+                search(search, from, median, next);
+            }
+        }
+    }
+
+    private static double[] toPoint(double latitude, double longitude) {
+        double phi = Math.toRadians(latitude);
+        double lambda = Math.toRadians(longitude);
+        double cosPhi = Math.cos(phi);
+        return new double[]{cosPhi * Math.cos(lambda), cosPhi * Math.sin(lambda), Math.sin(phi)};
+    }
+
+    private record Node(StationLocation station, double[] point) {
+    }
+
+    private static final class Search {
+        final double[] point;
+        final Predicate<String> stationName;
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+
+        Search(double[] point, Predicate<String> stationName) {
+            this.point = point;
+            this.stationName = stationName;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.deliveryservice.model;
+
+import lombok.Value;
+
+/**
+ * Name and position of an observation station, as published in the observations feed.
+ */
+@Value
+public class StationLocation {
+    String name;
+    double latitude;
+    double longitude;
+}
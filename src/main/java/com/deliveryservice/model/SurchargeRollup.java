@@ -0,0 +1,212 @@
+package com.deliveryservice.model;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hourly and daily weather surcharge aggregates of a single station, per {@link VehicleClass}.
+ * <p>
+ * Every bucket counts the observations taken in it, the surcharge sum and count of the priced ones and the
+ * forbidden ones. It also accumulates time: an observation is in effect from its timestamp until the next
+ * one, at most {@code maxGapSeconds}, and that interval is split over the buckets it spans as covered and,
+ * per class, forbidden seconds. The interval after the newest observation is therefore only counted when
+ * the next one arrives. Buckets are dense primitive arrays indexed by bucket number, so a bucket is
+ * updated and read in constant time; days are UTC days. Hourly buckets are only kept for
+ * {@code hourlyRetentionSeconds} back from the newest observation, daily buckets are kept for good.
+ * <p>
+ * Observations must be appended in time order, older or repeated ones are ignored. All methods are
+ * serialized on the instance.
+ */
+public final class SurchargeRollup {
+    public static final int CLASSES = VehicleClass.values().length;
+
+    public enum Granularity {
+        HOUR(3600), DAY(86400);
+
+        private final long seconds;
+
+        Granularity(long seconds) {
+            this.seconds = seconds;
+        }
+
+        public long getSeconds() {
+            return seconds;
+        }
+    }
+
+    // Per bucket: observations, covered seconds, then per class forbidden observations, surcharge sum, forbidden seconds
+    private static final int OBSERVATIONS = 0;
+    private static final int COVERED_SECONDS = 1;
+    private static final int CLASS_BASE = 2;
+    private static final int FORBIDDEN_OBSERVATIONS = 0;
+    private static final int SURCHARGE_CENTS = 1;
+    private static final int FORBIDDEN_SECONDS = 2;
+    private static final int CLASS_FIELDS = 3;
+    private static final int FIELDS = CLASS_BASE + CLASSES * CLASS_FIELDS;
+
+    private final long maxGapSeconds;
+    private final Buckets hours;
+    private final Buckets days;
+    private long lastEpochSecond = Long.MIN_VALUE;
+    private final long[] lastFees = new long[CLASSES];
+
+    /**
+     * @param hourlyRetentionSeconds How far back from the newest observation hourly buckets are kept.
+     * @param maxGapSeconds          How long an observation stays in effect when no newer one follows.
+     */
+    public SurchargeRollup(long hourlyRetentionSeconds, long maxGapSeconds) {
+        this.maxGapSeconds = maxGapSeconds;
+        this.hours = new Buckets(Granularity.HOUR.seconds, hourlyRetentionSeconds / Granularity.HOUR.seconds + 1);
+        this.days = new Buckets(Granularity.DAY.seconds, Long.MAX_VALUE);
+    }
+
+    /**
+     * Adds an observation.
+     *
+     * @param surcharges Per vehicle class ordinal, the surcharge in cents or a negative forbidden result of
+     *                   the fee rules.
+     * @return Whether the observation was added, i.e. it is newer than the last one.
+     */
+    public synchronized boolean append(long epochSecond, long[] surcharges) {
+        if (epochSecond <= lastEpochSecond) {
+            return false;
+        }
+        if (lastEpochSecond != Long.MIN_VALUE) {
+            long end = Math.min(epochSecond, lastEpochSecond + maxGapSeconds);
+            hours.addInterval(lastEpochSecond, end, lastFees);
+            days.addInterval(lastEpochSecond, end, lastFees);
+        }
+        hours.addObservation(epochSecond, surcharges);
+        days.addObservation(epochSecond, surcharges);
+        lastEpochSecond = epochSecond;
+        System.arraycopy(surcharges, 0, lastFees, 0, CLASSES);
+        return true;
+    }
+
+    public synchronized long getLastEpochSecond() {
+        return lastEpochSecond;
+    }
+
+    /**
+     * @return The buckets of the class that start in [from, to) and have observations or covered time, in
+     * time order.
+     */
+    public synchronized List<Bucket> query(Granularity granularity, VehicleClass vehicleClass, Instant from,
+                                           Instant to) {
+        Buckets buckets = granularity == Granularity.HOUR ? hours : days;
+        long first = Math.max(Math.floorDiv(from.getEpochSecond() + granularity.seconds - 1, granularity.seconds),
+                buckets.first);
+        long end = Math.min(Math.floorDiv(to.getEpochSecond() + granularity.seconds - 1, granularity.seconds),
+                buckets.first + buckets.count);
+        List<Bucket> result = new ArrayList<>();
+        int classOffset = CLASS_BASE + vehicleClass.ordinal() * CLASS_FIELDS;
+        for (long bucket = first; bucket < end; bucket++) {
+            int offset = (int) (bucket - buckets.first) * FIELDS;
+            int[] data = buckets.data;
+            if (data[offset + OBSERVATIONS] == 0 && data[offset + COVERED_SECONDS] == 0) {
+                continue;
+            }
+            result.add(new Bucket(Instant.ofEpochSecond(bucket * granularity.seconds),
+                    data[offset + OBSERVATIONS],
+                    data[offset + COVERED_SECONDS],
+                    data[offset + classOffset + FORBIDDEN_OBSERVATIONS],
+                    data[offset + classOffset + SURCHARGE_CENTS],
+                    data[offset + classOffset + FORBIDDEN_SECONDS]));
+        }
+        return result;
+    }
+
+    /**
+     * Aggregates of one vehicle class in one bucket.
+     *
+     * @param coveredSeconds   Time within the bucket some observation was in effect.
+     * @param surchargeCents   Sum of the surcharges of the priced observations.
+     * @param forbiddenSeconds Time within the bucket the observation in effect forbade the class.
+     */
+    public record Bucket(Instant start, int observations, int coveredSeconds, int forbiddenObservations,
+                         long surchargeCents, int forbiddenSeconds) {
+
+        public int pricedObservations() {
+            return observations - forbiddenObservations;
+        }
+    }
+
+    private static final class Buckets {
+        private static final int INITIAL_CAPACITY = 32;
+
+        private final long seconds;
+        private final long retainedBuckets;
+        private int[] data = new int[0];
+        // Bucket number of the first entry and number of entries in use
+        private long first;
+        private int count;
+
+        Buckets(long seconds, long retainedBuckets) {
+            this.seconds = seconds;
+            this.retainedBuckets = retainedBuckets;
+        }
+
+        void addObservation(long epochSecond, long[] surcharges) {
+            int offset = offset(Math.floorDiv(epochSecond, seconds));
+            if (offset < 0) {
+                return;
+            }
+            data[offset + OBSERVATIONS]++;
+            for (int vehicleClass = 0; vehicleClass < CLASSES; vehicleClass++) {
+                int classOffset = offset + CLASS_BASE + vehicleClass * CLASS_FIELDS;
+                if (surcharges[vehicleClass] < 0) {
+                    data[classOffset + FORBIDDEN_OBSERVATIONS]++;
+                } else {
+                    data[classOffset + SURCHARGE_CENTS] += (int) surcharges[vehicleClass];
+                }
+            }
+        }
+
+        void addInterval(long from, long to, long[] surcharges) {
+            for (long start = from; start < to; ) {
+                long bucket = Math.floorDiv(start, seconds);
+                long end = Math.min(to, (bucket + 1) * seconds);
+                int offset = offset(bucket);
+                if (offset >= 0) {
+                    int covered = (int) (end - start);
+                    data[offset + COVERED_SECONDS] += covered;
+                    for (int vehicleClass = 0; vehicleClass < CLASSES; vehicleClass++) {
+                        if (surcharges[vehicleClass] < 0) {
+                            data[offset + CLASS_BASE + vehicleClass * CLASS_FIELDS + FORBIDDEN_SECONDS] += covered;
+                        }
+                    }
+                }
+                start = end;
+            }
+        }
+
+        // Offset of the bucket's fields, growing or compacting the array as needed, or -1 if it is too old
+        private int offset(long bucket) {
+            if (count == 0) {
+                first = bucket;
+            } else if (bucket < first) {
+                return -1;
+            }
+            if ((bucket - first + 1) * FIELDS > data.length) {
+                grow(bucket);
+            }
+            int index = (int) (bucket - first);
+            count = Math.max(count, index + 1);
+            return index * FIELDS;
+        }
+
+        // Drops buckets beyond the retention and makes room for the given bucket
+        private void grow(long bucket) {
+            long retainedFirst = Math.max(first, bucket - retainedBuckets + 1);
+            int dropped = (int) Math.min(count, retainedFirst - first);
+            int kept = count - dropped;
+            long needed = bucket - retainedFirst + 1;
+            int[] grown = new int[(int) Math.max(INITIAL_CAPACITY, Math.max(needed, kept * 2L)) * FIELDS];
+            System.arraycopy(data, dropped * FIELDS, grown, 0, kept * FIELDS);
+            data = grown;
+            first = retainedFirst;
+            count = kept;
+        }
+    }
+}
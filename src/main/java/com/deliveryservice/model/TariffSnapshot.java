@@ -0,0 +1,173 @@
+package com.deliveryservice.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable, versioned view of all regional base fees and city aliases.
+ * <p>
+ * Every entry is reachable under its name as stored and under its lower-cased name, so a lookup with the
+ * canonical spelling is a single hash lookup and only other spellings pay for normalization.
+ * <p>
+ * The version is a fingerprint of the fees and aliases rather than a counter, so every replica and every
+ * restart gives the same tariffs the same version, and equal versions always mean equal fees.
+ */
+public final class TariffSnapshot {
+    public static final TariffSnapshot EMPTY = new TariffSnapshot(Instant.EPOCH, List.of(), List.of(), Map.of());
+
+    private final long version;
+    private final Instant updatedAt;
+    private final List<CityTariff> cities;
+    private final List<VehicleTariff> vehicles;
+    private final Map<String, String> aliases;
+    private final Map<String, CityTariff> citiesByName;
+    private final Map<String, VehicleTariff> vehiclesByName;
+    private final Map<String, String> stationsByAlias;
+
+    /**
+     * @param aliases Alternative city names, mapped to the station name used for cities and weather data.
+     */
+    public TariffSnapshot(Instant updatedAt, List<CityTariff> cities, List<VehicleTariff> vehicles,
+                          Map<String, String> aliases) {
+        this.updatedAt = updatedAt;
+        this.cities = List.copyOf(cities);
+        this.vehicles = List.copyOf(vehicles);
+        this.aliases = Map.copyOf(aliases);
+        this.version = fingerprint(this.cities, this.vehicles, this.aliases);
+
+        Map<String, CityTariff> citiesByName = new HashMap<>();
+        for (CityTariff city : cities) {
+            citiesByName.putIfAbsent(normalize(city.getCity()), city);
+            citiesByName.put(city.getCity(), city);
+        }
+        Map<String, VehicleTariff> vehiclesByName = new HashMap<>();
+        for (VehicleTariff vehicle : vehicles) {
+            vehiclesByName.putIfAbsent(normalize(vehicle.getVehicle()), vehicle);
+            vehiclesByName.put(vehicle.getVehicle(), vehicle);
+        }
+        Map<String, String> stationsByAlias = new HashMap<>();
+        aliases.forEach((alias, station) -> {
+            stationsByAlias.putIfAbsent(normalize(alias), station);
+            stationsByAlias.put(alias, station);
+        });
+        this.citiesByName = Map.copyOf(citiesByName);
+        this.vehiclesByName = Map.copyOf(vehiclesByName);
+        this.stationsByAlias = Map.copyOf(stationsByAlias);
+    }
+
+    /**
+     * @return A non-negative fingerprint of the cities, vehicle types, their fees and the aliases.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public List<CityTariff> getCities() {
+        return cities;
+    }
+
+    public List<VehicleTariff> getVehicles() {
+        return vehicles;
+    }
+
+    /**
+     * @return The city tariff, ignoring case, or null if the city is unknown.
+     */
+    public CityTariff findCity(String city) {
+        CityTariff tariff = citiesByName.get(city);
+        return tariff != null ? tariff : citiesByName.get(normalize(city));
+    }
+
+    /**
+     * @return The vehicle tariff, ignoring case, or null if the vehicle type is unknown.
+     */
+    public VehicleTariff findVehicle(String vehicleType) {
+        VehicleTariff tariff = vehiclesByName.get(vehicleType);
+        return tariff != null ? tariff : vehiclesByName.get(normalize(vehicleType));
+    }
+
+    /**
+     * Resolves a city name or alias (e.g. "Tallinn" to "Tallinn-Harku"), ignoring case.
+     *
+     * @return The station name, or the given name if it is neither an alias nor a known city.
+     */
+    public String resolveStationName(String city) {
+        String station = stationsByAlias.get(city);
+        if (station == null) {
+            station = stationsByAlias.get(normalize(city));
+        }
+        if (station != null) {
+            return station;
+        }
+        CityTariff tariff = findCity(city);
+        return tariff != null ? tariff.getCity() : city;
+    }
+
+    /**
+     * @return A copy with the fee of the given city replaced.
+     */
+    public TariffSnapshot withCityFee(CityTariff city, long feeCents, Instant updatedAt) {
+        List<CityTariff> updated = new ArrayList<>(cities);
+        updated.set(city.getIndex(), new CityTariff(city.getIndex(), city.getCity(), feeCents));
+        return new TariffSnapshot(updatedAt, updated, vehicles, aliases);
+    }
+
+    /**
+     * @return A copy with the fee of the given vehicle type replaced.
+     */
+    public TariffSnapshot withVehicleFee(VehicleTariff vehicle, long feeCents, Instant updatedAt) {
+        List<VehicleTariff> updated = new ArrayList<>(vehicles);
+        updated.set(vehicle.getIndex(), new VehicleTariff(vehicle.getIndex(), vehicle.getVehicle(), feeCents,
+                vehicle.getVehicleClass()));
+        return new TariffSnapshot(updatedAt, cities, updated, aliases);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder tariffs = new StringBuilder("version ").append(version).append(": cities");
+        cities.forEach(city -> tariffs.append(' ').append(city.getCity()).append('=').append(city.getFeeCents()));
+        tariffs.append(", vehicles");
+        vehicles.forEach(vehicle -> tariffs.append(' ').append(vehicle.getVehicle()).append('=')
+                .append(vehicle.getFeeCents()));
+        return tariffs.toString();
+    }
+
+    private static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    // The first 63 bits of a SHA-256 over the content in a fixed order
+    private static long fingerprint(List<CityTariff> cities, List<VehicleTariff> vehicles,
+                                    Map<String, String> aliases) {
+        StringBuilder content = new StringBuilder();
+        for (CityTariff city : cities) {
+            content.append("city\t").append(city.getCity()).append('\t').append(city.getFeeCents()).append('\n');
+        }
+        for (VehicleTariff vehicle : vehicles) {
+            content.append("vehicle\t").append(vehicle.getVehicle()).append('\t').append(vehicle.getFeeCents())
+                    .append('\n');
+        }
+        new TreeMap<>(aliases).forEach((alias, station) ->
+                content.append("alias\t").append(alias).append('\t').append(station).append('\n'));
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.toString()
+                    .getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong() >>> 1;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
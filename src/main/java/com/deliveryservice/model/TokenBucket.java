@@ -0,0 +1,58 @@
+package com.deliveryservice.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket of a single client, as a generic cell rate algorithm.
+ * <p>
+ * Instead of a token count that has to be refilled, the bucket keeps the theoretical arrival time: the
+ * time at which it would be full again. A request is admitted if that time is at most {@code burst}
+ * intervals ahead, and then moves it one interval on. The whole state is one long, so admitting is a
+ * compare-and-set that only contends with requests of the same client.
+ */
+public final class TokenBucket {
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong theoreticalArrival;
+
+    /**
+     * @param ratePerSecond Sustained requests per second.
+     * @param burst         Requests that may be sent at once after the client was idle.
+     * @param nowNanos      Current {@link System#nanoTime()}, the bucket starts full.
+     */
+    public TokenBucket(double ratePerSecond, int burst, long nowNanos) {
+        if (ratePerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        this.intervalNanos = Math.max(1, (long) (1e9 / ratePerSecond));
+        this.toleranceNanos = intervalNanos * (burst - 1);
+        this.theoreticalArrival = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Takes a token if one is available.
+     *
+     * @return 0 if the request is admitted, otherwise the nanoseconds until a token is available.
+     */
+    public long tryTake(long nowNanos) {
+        while (true) {
+            long arrival = theoreticalArrival.get();
+            long wait = arrival - toleranceNanos - nowNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            long next = Math.max(arrival, nowNanos) + intervalNanos;
+            if (theoreticalArrival.compareAndSet(arrival, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * @return Whether the bucket has been refilled completely, so it can be dropped and later recreated
+     * without the client noticing.
+     */
+    public boolean isFull(long nowNanos) {
+        return theoreticalArrival.get() - nowNanos <= 0;
+    }
+}
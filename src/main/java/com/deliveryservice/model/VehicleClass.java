@@ -0,0 +1,26 @@
+package com.deliveryservice.model;
+
+/**
+ * Vehicle categories the weather surcharge rules distinguish between.
+ */
+public enum VehicleClass {
+    CAR,
+    SCOOTER,
+    BIKE,
+    OTHER;
+
+    /**
+     * Maps a vehicle type name to its class, ignoring case. Unknown names map to {@link #OTHER}, which
+     * has no weather surcharges, just like cars.
+     */
+    public static VehicleClass of(String vehicleType) {
+        if ("Car".equalsIgnoreCase(vehicleType)) {
+            return CAR;
+        } else if ("Scooter".equalsIgnoreCase(vehicleType)) {
+            return SCOOTER;
+        } else if ("Bike".equalsIgnoreCase(vehicleType)) {
+            return BIKE;
+        }
+        return OTHER;
+    }
+}
@@ -0,0 +1,12 @@
+package com.deliveryservice.model;
+
+import lombok.Value;
+
+@Value
+public class VehicleTariff {
+    /** Dense position of the vehicle type within its tariff snapshot, stable across fee updates. */
+    int index;
+    String vehicle;
+    long feeCents;
+    VehicleClass vehicleClass;
+}
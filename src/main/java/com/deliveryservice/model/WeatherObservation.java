@@ -0,0 +1,30 @@
+package com.deliveryservice.model;
+
+import com.deliveryservice.entity.WeatherData;
+import java.time.Instant;
+import lombok.Value;
+
+/**
+ * Immutable copy of a single station observation, safe to share between request threads.
+ */
+@Value
+public class WeatherObservation {
+    String stationName;
+    String wmoCode;
+    Double airTemperature;
+    Double windSpeed;
+    String weatherPhenomenon;
+    Instant timestamp;
+    byte phenomenonCode;
+
+    public static WeatherObservation from(WeatherData weatherData) {
+        return new WeatherObservation(
+                weatherData.getStationName(),
+                weatherData.getWmoCode(),
+                weatherData.getAirTemperature(),
+                weatherData.getWindSpeed(),
+                weatherData.getWeatherPhenomenon(),
+                weatherData.getTimestamp(),
+                PhenomenonCode.classify(weatherData.getWeatherPhenomenon()));
+    }
+}
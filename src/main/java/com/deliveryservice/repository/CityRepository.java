@@ -2,11 +2,20 @@ package com.deliveryservice.repository;
 
 import com.deliveryservice.entity.City;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
 @Repository
 public interface CityRepository extends JpaRepository<City, Long> {
     Optional<City> findByCityIgnoreCase(String cityName);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update City c set c.fee = :fee where c.city = :city")
+    int updateFee(@Param("city") String city, @Param("fee") Double fee);
 }
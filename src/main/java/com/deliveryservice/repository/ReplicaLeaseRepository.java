@@ -0,0 +1,45 @@
+package com.deliveryservice.repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Leases in the replica_lease table, used to let only one replica at a time run a job.
+ * <p>
+ * Acquiring and renewing is one conditional UPDATE, so the database decides between replicas that try at
+ * the same time. Leases are never released early: a lease outlives the job run it was taken for, so a
+ * replica whose schedule fires a little later finds it taken for the same tick.
+ */
+@Repository
+public class ReplicaLeaseRepository {
+    private static final String ACQUIRE = "update replica_lease set owner = ?, expires_at = ? "
+            + "where name = ? and (owner = ? or expires_at <= ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ReplicaLeaseRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Takes the lease if it is free or expired, or renews it if the owner already holds it.
+     *
+     * @param name      The lease, which must exist in the replica_lease table.
+     * @param owner     The replica taking the lease.
+     * @param now       The current time.
+     * @param expiresAt The end of the lease if it is taken.
+     * @return Whether the owner holds the lease until expiresAt.
+     */
+    public boolean tryAcquire(String name, String owner, Instant now, Instant expiresAt) {
+        return jdbcTemplate.update(ACQUIRE, owner, Timestamp.from(expiresAt), name, owner, Timestamp.from(now)) == 1;
+    }
+
+    /**
+     * @return The current owner of the lease, which may have expired, or null if it was never taken.
+     */
+    public String findOwner(String name) {
+        return jdbcTemplate.queryForObject("select owner from replica_lease where name = ?", String.class, name);
+    }
+}
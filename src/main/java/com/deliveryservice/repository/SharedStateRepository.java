@@ -0,0 +1,70 @@
+package com.deliveryservice.repository;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Versioned values in the shared_state table that every replica reads.
+ */
+@Repository
+public class SharedStateRepository {
+    /** Changes whenever an import has stored new observations, its value is the newest observation time. */
+    public static final String WEATHER_DATA = "weather-data";
+    /** The cron expression of the weather import, null until it is first changed. */
+    public static final String IMPORT_CRON = "import-cron";
+    /** Changes whenever the archive job has moved observations to the archive, its value is the archived month. */
+    public static final String WEATHER_ARCHIVE = "weather-archive";
+    /** How far the retention job has downsampled, an instant, null until its first run. */
+    public static final String WEATHER_RETENTION = "weather-retention";
+    /**
+     * Changes whenever a replica has updated a fee, its value is the tariff version and the time it took effect,
+     * as {@code version@instant}.
+     */
+    public static final String TARIFFS = "tariffs";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SharedStateRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return All entries by name, read with a single query.
+     */
+    public Map<String, Entry> findAll() {
+        Map<String, Entry> entries = new HashMap<>();
+        jdbcTemplate.query("select name, content, version from shared_state", resultSet -> {
+            entries.put(resultSet.getString(1), new Entry(resultSet.getString(2), resultSet.getLong(3)));
+        });
+        return entries;
+    }
+
+    /**
+     * Replaces the value of an entry and increments its version.
+     *
+     * @return The new version.
+     */
+    @Transactional
+    public long update(String name, String value) {
+        jdbcTemplate.update("update shared_state set content = ?, version = version + 1 where name = ?", value, name);
+        Long version = jdbcTemplate.queryForObject("select version from shared_state where name = ?", Long.class, name);
+        return version;
+    }
+
+    /**
+     * Replaces the value of an entry if it still holds the expected one. The version is left alone, so the other
+     * replicas do not reload for it.
+     *
+     * @return Whether the value was replaced.
+     */
+    public boolean compareAndSet(String name, String expected, String value) {
+        return jdbcTemplate.update("update shared_state set content = ? where name = ? and content is not distinct from ?",
+                value, name, expected) == 1;
+    }
+
+    public record Entry(String value, long version) {
+    }
+}
@@ -0,0 +1,12 @@
+package com.deliveryservice.repository;
+
+import com.deliveryservice.entity.Station;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface StationRepository extends JpaRepository<Station, Long> {
+    List<Station> findByNameIn(Collection<String> names);
+}
@@ -2,11 +2,20 @@ package com.deliveryservice.repository;
 
 import com.deliveryservice.entity.Vehicle;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
 @Repository
 public interface VehicleRepository extends JpaRepository<Vehicle, Long> {
     Optional<Vehicle> findByVehicleIgnoreCase(String vehicle);
-}
\ No newline at end of file
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update Vehicle v set v.fee = :fee where v.vehicle = :vehicle")
+    int updateFee(@Param("vehicle") String vehicle, @Param("fee") Double fee);
+}
@@ -0,0 +1,70 @@
+package com.deliveryservice.repository;
+
+import com.deliveryservice.entity.WeatherData;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Reads and removes the weather_data rows that move to the archive tier.
+ * <p>
+ * Rows are deleted by their (station, timestamp) key in batches, like the downsampler deletes by id, so
+ * only rows that were read and archived are removed, never ones inserted into the range in the meantime.
+ */
+@Repository
+public class WeatherDataArchiver {
+    private static final String SELECT_RANGE = "select station_name, wmo_code, air_temperature, wind_speed, "
+            + "weather_phenomenon, timestamp from weather_data where timestamp >= ? and timestamp < ? "
+            + "order by station_name, timestamp";
+    private static final String DELETE = "delete from weather_data where station_name = ? and timestamp = ?";
+    private static final int DELETE_BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public WeatherDataArchiver(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Optional<Instant> findOldestTimestamp() {
+        Timestamp oldest = jdbcTemplate.queryForObject("select min(timestamp) from weather_data", Timestamp.class);
+        return Optional.ofNullable(oldest).map(Timestamp::toInstant);
+    }
+
+    /**
+     * @return The rows in [from, to), ordered by station and time.
+     */
+    public List<WeatherData> findRange(Instant from, Instant to) {
+        return jdbcTemplate.query(SELECT_RANGE, (resultSet, rowNumber) -> {
+            WeatherData row = new WeatherData();
+            row.setStationName(resultSet.getString(1));
+            row.setWmoCode(resultSet.getString(2));
+            row.setAirTemperature(resultSet.getObject(3, Double.class));
+            row.setWindSpeed(resultSet.getObject(4, Double.class));
+            row.setWeatherPhenomenon(resultSet.getString(5));
+            row.setTimestamp(resultSet.getTimestamp(6).toInstant());
+            return row;
+        }, Timestamp.from(from), Timestamp.from(to));
+    }
+
+    /**
+     * Deletes the rows with the station and timestamp of the given ones.
+     *
+     * @return The number of deleted rows.
+     */
+    public int delete(List<WeatherData> rows) {
+        int deleted = 0;
+        for (int start = 0; start < rows.size(); start += DELETE_BATCH_SIZE) {
+            List<WeatherData> batch = rows.subList(start, Math.min(start + DELETE_BATCH_SIZE, rows.size()));
+            for (int count : jdbcTemplate.batchUpdate(DELETE, batch, batch.size(), (statement, row) -> {
+                statement.setString(1, row.getStationName());
+                statement.setTimestamp(2, Timestamp.from(row.getTimestamp()));
+            })[0]) {
+                deleted += count;
+            }
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,104 @@
+package com.deliveryservice.repository;
+
+import com.deliveryservice.entity.WeatherData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Plain JDBC batch insert path for large numbers of weather_data rows.
+ * <p>
+ * Bypasses the persistence context entirely: nothing is tracked, flushed or dirty-checked, and rows go
+ * to the database in JDBC batches. Ids come from the same sequence the entity uses.
+ * <p>
+ * {@link #insertNew(List)} skips rows whose (station, timestamp) is already stored, so loads that overlap
+ * each other or an earlier, interrupted load can run safely.
+ */
+@Repository
+public class WeatherDataBulkWriter {
+    private static final String INSERT = "insert into weather_data "
+            + "(id, station_name, wmo_code, air_temperature, wind_speed, weather_phenomenon, timestamp) "
+            + "values (next value for weather_data_seq, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_IF_ABSENT = "insert into weather_data "
+            + "(id, station_name, wmo_code, air_temperature, wind_speed, weather_phenomenon, timestamp) "
+            + "select next value for weather_data_seq, ?, ?, ?, ?, ?, ? "
+            + "where not exists (select 1 from weather_data where station_name = ? and timestamp = ?)";
+    private static final int BATCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public WeatherDataBulkWriter(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Inserts the rows in batches. Fails on the first row that violates the unique (station, timestamp) key.
+     *
+     * @return The number of rows inserted.
+     */
+    public int insert(List<WeatherData> rows) {
+        jdbcTemplate.batchUpdate(INSERT, rows, BATCH_SIZE, WeatherDataBulkWriter::bind);
+        return rows.size();
+    }
+
+    /**
+     * Inserts the rows that are not stored yet, in batches. A concurrent writer can still insert the same
+     * key between the check and the insert; the affected batch is then rolled back as a whole and retried row
+     * by row, so every row it inserts is counted.
+     *
+     * @return The number of rows inserted, the others were duplicates.
+     */
+    public int insertNew(List<WeatherData> rows) {
+        int inserted = 0;
+        for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+            List<WeatherData> batch = rows.subList(from, Math.min(from + BATCH_SIZE, rows.size()));
+            try {
+                int[][] counts = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(INSERT_IF_ABSENT,
+                        batch, batch.size(), WeatherDataBulkWriter::bindIfAbsent));
+                for (int count : counts[0]) {
+                    inserted += count;
+                }
+            } catch (DuplicateKeyException e) {
+                for (WeatherData row : batch) {
+                    try {
+                        inserted += jdbcTemplate.update(INSERT_IF_ABSENT, statement -> bindIfAbsent(statement, row));
+                    } catch (DuplicateKeyException duplicate) {
+                        // Inserted by the concurrent writer in the meantime
+                    }
+                }
+            }
+        }
+        return inserted;
+    }
+
+    private static void bindIfAbsent(PreparedStatement statement, WeatherData row) throws SQLException {
+        bind(statement, row);
+        statement.setString(7, row.getStationName());
+        statement.setTimestamp(8, Timestamp.from(row.getTimestamp()));
+    }
+
+    private static void bind(PreparedStatement statement, WeatherData row) throws SQLException {
+        statement.setString(1, row.getStationName());
+        statement.setString(2, row.getWmoCode());
+        setDouble(statement, 3, row.getAirTemperature());
+        setDouble(statement, 4, row.getWindSpeed());
+        statement.setString(5, row.getWeatherPhenomenon());
+        statement.setTimestamp(6, Timestamp.from(row.getTimestamp()));
+    }
+
+    private static void setDouble(PreparedStatement statement, int index, Double value) throws SQLException {
+        if (value == null) {
+            statement.setNull(index, Types.DOUBLE);
+        } else {
+            statement.setDouble(index, value);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.deliveryservice.repository;
+
+import com.deliveryservice.model.ObservationBatch;
+import com.deliveryservice.model.PhenomenonCode;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Streams weather_data rows into primitive {@link ObservationBatch}es instead of entities, for bulk
+ * evaluations over long ranges. Phenomena are classified once per distinct text.
+ */
+@Repository
+public class WeatherDataColumnReader {
+    private static final String SELECT_RANGE = "select station_name, timestamp, air_temperature, wind_speed, "
+            + "weather_phenomenon from weather_data where timestamp >= ? and timestamp < ? "
+            + "order by station_name, timestamp";
+    private static final int FETCH_SIZE = 4096;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public WeatherDataColumnReader(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Reads the rows in [from, to) station by station, in time order, and hands them over in batches of at
+     * most batchSize observations. A batch is never reused after it was handed over.
+     */
+    public void read(Instant from, Instant to, int batchSize, Consumer<ObservationBatch> batches) {
+        Map<String, Byte> phenomenonCodes = new HashMap<>();
+        ObservationBatch[] current = new ObservationBatch[1];
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_RANGE);
+            statement.setFetchSize(FETCH_SIZE);
+            statement.setTimestamp(1, Timestamp.from(from));
+            statement.setTimestamp(2, Timestamp.from(to));
+            return statement;
+        }, (RowCallbackHandler) resultSet -> {
+            String station = resultSet.getString(1);
+            ObservationBatch batch = current[0];
+            if (batch != null && !batch.getStationName().equals(station)) {
+                batches.accept(batch);
+                batch = null;
+            }
+            if (batch == null) {
+                batch = new ObservationBatch(station, batchSize);
+                current[0] = batch;
+            }
+            long epochSecond = resultSet.getTimestamp(2).toInstant().getEpochSecond();
+            float airTemperature = getFloat(resultSet, 3);
+            float windSpeed = getFloat(resultSet, 4);
+            byte phenomenonCode = phenomenonCodes.computeIfAbsent(resultSet.getString(5), PhenomenonCode::classify);
+            if (!batch.add(epochSecond, airTemperature, windSpeed, phenomenonCode)) {
+                batches.accept(batch);
+                batch = new ObservationBatch(station, batchSize);
+                batch.add(epochSecond, airTemperature, windSpeed, phenomenonCode);
+                current[0] = batch;
+            }
+        });
+        if (current[0] != null) {
+            batches.accept(current[0]);
+        }
+    }
+
+    private static float getFloat(ResultSet resultSet, int column) throws SQLException {
+        float value = resultSet.getFloat(column);
+        return resultSet.wasNull() ? Float.NaN : value;
+    }
+}
@@ -0,0 +1,66 @@
+package com.deliveryservice.repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Thins out old weather_data rows to one observation per station and hour.
+ * <p>
+ * The last observation of every hour is kept, so a historical request still finds an observation in effect
+ * at most an hour older than the one it would have found in the raw data. Deletes go out in small batches
+ * of single-row statements that each commit on their own, so no lock is held for long.
+ */
+@Repository
+public class WeatherDataDownsampler {
+    private static final String SELECT_RANGE = "select id, station_name, timestamp from weather_data "
+            + "where timestamp >= ? and timestamp < ? order by station_name, timestamp desc";
+    private static final String DELETE = "delete from weather_data where id = ?";
+    private static final int DELETE_BATCH_SIZE = 500;
+    private static final long HOUR_SECONDS = 3600;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public WeatherDataDownsampler(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Optional<Instant> findOldestTimestamp() {
+        Timestamp oldest = jdbcTemplate.queryForObject("select min(timestamp) from weather_data", Timestamp.class);
+        return Optional.ofNullable(oldest).map(Timestamp::toInstant);
+    }
+
+    /**
+     * Deletes all but the last observation per station and hour in the given range.
+     *
+     * @param from Start of the range, inclusive. Should be aligned to a full hour.
+     * @param to   End of the range, exclusive. Should be aligned to a full hour.
+     * @return The number of deleted rows.
+     */
+    public int downsample(Instant from, Instant to) {
+        List<Long> redundant = new ArrayList<>();
+        String[] previousStation = {null};
+        long[] previousHour = {Long.MIN_VALUE};
+        jdbcTemplate.query(SELECT_RANGE, resultSet -> {
+            String station = resultSet.getString(2);
+            long hour = Math.floorDiv(resultSet.getTimestamp(3).toInstant().getEpochSecond(), HOUR_SECONDS);
+            // Rows come newest first within a station, so anything after the first row of an hour is redundant
+            if (station.equals(previousStation[0]) && hour == previousHour[0]) {
+                redundant.add(resultSet.getLong(1));
+            } else {
+                previousStation[0] = station;
+                previousHour[0] = hour;
+            }
+        }, Timestamp.from(from), Timestamp.from(to));
+
+        for (int start = 0; start < redundant.size(); start += DELETE_BATCH_SIZE) {
+            List<Long> batch = redundant.subList(start, Math.min(start + DELETE_BATCH_SIZE, redundant.size()));
+            jdbcTemplate.batchUpdate(DELETE, batch, batch.size(), (statement, id) -> statement.setLong(1, id));
+        }
+        return redundant.size();
+    }
+}
@@ -2,13 +2,36 @@ package com.deliveryservice.repository;
 
 import com.deliveryservice.entity.WeatherData;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface WeatherDataRepository extends JpaRepository<WeatherData, Long> {
-    Optional<WeatherData> findWeatherDataByStationNameAndTimestampOrderByTimestampDesc(String city, Instant latestTimestamp);
-    Optional<WeatherData> findWeatherDataByStationName(String city);
-}
\ No newline at end of file
+    Optional<WeatherData> findFirstByStationNameAndTimestampLessThanEqualOrderByTimestampDesc(String stationName, Instant timestamp);
+
+    List<WeatherData> findAllByOrderByTimestampAsc();
+
+    List<WeatherData> findAllByTimestampGreaterThanEqualOrderByTimestampAsc(Instant timestamp);
+
+    List<WeatherData> findAllByStationNameAndTimestampGreaterThanEqualAndTimestampLessThanOrderByTimestampAsc(
+            String stationName, Instant from, Instant to);
+
+    @Query("select distinct w.stationName from WeatherData w")
+    List<String> findStationNames();
+
+    @Query("select max(w.timestamp) from WeatherData w")
+    Optional<Instant> findNewestTimestamp();
+
+    List<WeatherData> findByTimestampIn(Collection<Instant> timestamps);
+
+    // One grouped pass instead of a correlated subquery per row, which degrades badly with years of history
+    @Query(nativeQuery = true, value = "select w.* from weather_data w join "
+            + "(select station_name, max(timestamp) as latest from weather_data group by station_name) l "
+            + "on w.station_name = l.station_name and w.timestamp = l.latest")
+    List<WeatherData> findLatestPerStation();
+}
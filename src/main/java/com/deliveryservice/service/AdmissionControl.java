@@ -0,0 +1,189 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.model.AdaptiveConcurrencyLimit;
+import com.deliveryservice.model.TokenBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+/**
+ * Decides whether a fee request is handled or shed.
+ * <p>
+ * Every client has a {@link TokenBucket} of {@code delivery.admission.client-rate} requests per second with
+ * a burst of {@code delivery.admission.client-burst}. A client is identified by its API key if the key is
+ * one of {@code delivery.admission.api-keys}, and otherwise by its address, so a client cannot escape its
+ * limit by sending a new made-up key with every request. Requests within their client's rate must then fit
+ * under the global {@link AdaptiveConcurrencyLimit}, which shrinks when requests take longer than
+ * {@code delivery.admission.target-latency}, so excess load is shed before it occupies request threads and
+ * database connections. The buckets are in maps and each one is a single atomic, so admission takes no
+ * lock. Buckets of idle addresses are dropped every {@code delivery.admission.idle-sweep}; beyond
+ * {@code delivery.admission.max-clients} addresses, new ones are hashed onto {@value #OVERFLOW_BUCKETS}
+ * shared buckets, so a flood of addresses only slows down the few that share a bucket with it, never the
+ * partners with a key. Decisions are counted in {@value #DECISIONS} by outcome, the limit and the requests
+ * in flight are gauges.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "delivery.admission.enabled", havingValue = "true")
+public class AdmissionControl {
+    public static final String DECISIONS = "delivery.admission.decisions";
+    static final int OVERFLOW_BUCKETS = 1024;
+
+    public enum Outcome {
+        ADMITTED, RATE_LIMITED, OVERLOADED;
+
+        private final String tag = name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param retryAfterSeconds When the client should try again, 0 if the request was admitted.
+     */
+    public record Decision(Outcome outcome, long retryAfterSeconds) {
+        public boolean isAdmitted() {
+            return outcome == Outcome.ADMITTED;
+        }
+    }
+
+    private static final Decision ADMITTED = new Decision(Outcome.ADMITTED, 0);
+
+    private final double clientRate;
+    private final int clientBurst;
+    private final int maxClients;
+    private final TaskScheduler taskScheduler;
+    private final Duration idleSweep;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    private final Map<String, TokenBucket> partners;
+    private final ConcurrentMap<String, TokenBucket> addresses = new ConcurrentHashMap<>();
+    private final TokenBucket[] overflow = new TokenBucket[OVERFLOW_BUCKETS];
+    private final Counter[] decisions = new Counter[Outcome.values().length];
+
+    public AdmissionControl(MeterRegistry meterRegistry, TaskScheduler taskScheduler,
+                            @Value("${delivery.admission.api-keys:}") Set<String> apiKeys,
+                            @Value("${delivery.admission.client-rate:50}") double clientRate,
+                            @Value("${delivery.admission.client-burst:100}") int clientBurst,
+                            @Value("${delivery.admission.max-clients:100000}") int maxClients,
+                            @Value("${delivery.admission.initial-limit:64}") int initialLimit,
+                            @Value("${delivery.admission.min-limit:8}") int minLimit,
+                            @Value("${delivery.admission.max-limit:200}") int maxLimit,
+                            @Value("${delivery.admission.target-latency:100ms}") Duration targetLatency,
+                            @Value("${delivery.admission.backoff:0.9}") double backoff,
+                            @Value("${delivery.admission.idle-sweep:60s}") Duration idleSweep) {
+        this.clientRate = clientRate;
+        this.clientBurst = clientBurst;
+        this.maxClients = maxClients;
+        this.taskScheduler = taskScheduler;
+        this.idleSweep = idleSweep;
+        this.concurrencyLimit = new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit,
+                targetLatency.toNanos(), backoff, System.nanoTime());
+        long now = System.nanoTime();
+        // Known up front, so partners are never pushed into the overflow by unknown addresses
+        this.partners = apiKeys.stream()
+                .filter(apiKey -> !apiKey.isBlank())
+                .collect(Collectors.toUnmodifiableMap(Function.identity(),
+                        apiKey -> new TokenBucket(clientRate, clientBurst, now)));
+        for (int i = 0; i < overflow.length; i++) {
+            overflow[i] = new TokenBucket(clientRate, clientBurst, now);
+        }
+        for (Outcome outcome : Outcome.values()) {
+            decisions[outcome.ordinal()] = Counter.builder(DECISIONS)
+                    .description("Admission decisions on fee requests")
+                    .tag("outcome", outcome.tag)
+                    .register(meterRegistry);
+        }
+        Gauge.builder("delivery.admission.limit", concurrencyLimit, AdaptiveConcurrencyLimit::getLimit)
+                .description("Adaptive limit on concurrent fee requests")
+                .register(meterRegistry);
+        Gauge.builder("delivery.admission.in-flight", concurrencyLimit, AdaptiveConcurrencyLimit::getInFlight)
+                .description("Admitted fee requests in flight")
+                .register(meterRegistry);
+        Gauge.builder("delivery.admission.clients", addresses, ConcurrentMap::size)
+                .description("Addresses with a token bucket of their own")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        taskScheduler.scheduleWithFixedDelay(this::dropIdleClients, idleSweep);
+    }
+
+    /**
+     * Takes a token of the client and a slot of the concurrency limit. An admitted request must be
+     * {@link #complete completed}.
+     *
+     * @param apiKey  The API key the request was sent with, may be null. Unknown keys are ignored.
+     * @param address The address the request came from.
+     */
+    public Decision admit(String apiKey, String address) {
+        long now = System.nanoTime();
+        TokenBucket partner = apiKey == null ? null : partners.get(apiKey);
+        long wait = (partner != null ? partner : bucket(address, now)).tryTake(now);
+        if (wait > 0) {
+            decisions[Outcome.RATE_LIMITED.ordinal()].increment();
+            return new Decision(Outcome.RATE_LIMITED, Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait - 1) + 1));
+        }
+        if (!concurrencyLimit.tryAcquire()) {
+            decisions[Outcome.OVERLOADED.ordinal()].increment();
+            // A slot frees up within about one request latency
+            long latency = concurrencyLimit.getSmoothedLatencyNanos();
+            return new Decision(Outcome.OVERLOADED, Math.max(1, TimeUnit.NANOSECONDS.toSeconds(latency - 1) + 1));
+        }
+        decisions[Outcome.ADMITTED.ordinal()].increment();
+        return ADMITTED;
+    }
+
+    /**
+     * Releases the slot of an admitted request.
+     *
+     * @param startNanos {@link System#nanoTime()} when the request was admitted.
+     */
+    public void complete(long startNanos) {
+        long now = System.nanoTime();
+        concurrencyLimit.release(now - startNanos, now);
+    }
+
+    public int getConcurrencyLimit() {
+        return concurrencyLimit.getLimit();
+    }
+
+    /**
+     * Drops the buckets of addresses that have been idle long enough to be full again.
+     *
+     * @return The number of buckets dropped.
+     */
+    public int dropIdleClients() {
+        long now = System.nanoTime();
+        int before = addresses.size();
+        addresses.values().removeIf(bucket -> bucket.isFull(now));
+        int dropped = before - addresses.size();
+        if (dropped > 0) {
+            log.debug("Dropped the token buckets of {} idle addresses", dropped);
+        }
+        return dropped;
+    }
+
+    private TokenBucket bucket(String address, long now) {
+        TokenBucket bucket = addresses.get(address);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (addresses.size() >= maxClients) {
+            return overflow[Math.floorMod(address.hashCode(), overflow.length)];
+        }
+        return addresses.computeIfAbsent(address, name -> new TokenBucket(clientRate, clientBurst, now));
+    }
+}
@@ -1,31 +1,42 @@
 package com.deliveryservice.service;
 
 import com.deliveryservice.dto.DeliveryFeeResponse;
-import com.deliveryservice.entity.City;
-import com.deliveryservice.entity.Vehicle;
-import com.deliveryservice.entity.WeatherData;
+import com.deliveryservice.dto.FeeQuoteRequest;
+import com.deliveryservice.dto.FeeQuoteResult;
 import com.deliveryservice.exceptions.CityNotFoundException;
-import com.deliveryservice.exceptions.ResourceNotFoundException;
 import com.deliveryservice.exceptions.VehicleTypeNotFoundException;
 import com.deliveryservice.exceptions.VehicleUsageForbiddenException;
-import com.deliveryservice.repository.CityRepository;
-import com.deliveryservice.repository.VehicleRepository;
-import com.deliveryservice.repository.WeatherDataRepository;
-import java.math.BigDecimal;
+import com.deliveryservice.model.CityTariff;
+import com.deliveryservice.model.FeeVersion;
+import com.deliveryservice.model.TariffSnapshot;
+import com.deliveryservice.model.VehicleTariff;
+import com.deliveryservice.model.WeatherObservation;
 import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.Arrays;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Service;
 
 @AllArgsConstructor
 @Service
 public class DeliveryService {
-    CityRepository cityRepository;
-    VehicleRepository vehicleRepository;
-    WeatherDataRepository weatherDataRepository;
+    TariffRegistry tariffRegistry;
+    LatestWeatherCache latestWeatherCache;
+    WeatherHistoryIndex weatherHistoryIndex;
+    QuoteAuditLog quoteAuditLog;
+    private final FeeRules feeRules = FeeRules.DEFAULT;
+
+    private static final String NO_WEATHER_DATA = "No weather data found for the specified city and datetime";
+    private static final String CITY_NOT_FOUND = "City not found";
+    private static final String VEHICLE_NOT_FOUND = "No such vehicle type";
+    private static final String VEHICLE_FORBIDDEN = "Usage of selected vehicle type is forbidden";
+    private static final int BATCH_CHUNK_SIZE = 1024;
 
     /**
      * Calculates the delivery fee based on the provided cityName, vehicleType, and datetime.
@@ -34,111 +45,175 @@ public class DeliveryService {
      * @param vehicleType The type of vehicle used for the delivery (e.g., "Scooter" or "Bike").
      * @param datetime    The datetime string in ISO 8601 format (e.g., "2022-12-01T15:30:00Z") for which the weather data will be considered.
      *                    If null, the latest weather data available will be used.
-     * @return The calculated delivery fee as a double.
+     * @return The calculated delivery fee.
      * @throws CityNotFoundException          If the specified city is not found.
      * @throws VehicleTypeNotFoundException   If the specified vehicle type is not found.
      * @throws VehicleUsageForbiddenException If the usage of the specified vehicle type is forbidden due to weather conditions.
      */
 
     public DeliveryFeeResponse calculateDeliveryFee(String cityName, String vehicleType, String datetime) {
-        Optional<WeatherData> latestWeatherDataOpt = findLatestWeatherData(cityName, datetime);
+        return calculateDeliveryFee(tariffRegistry.current(), cityName, vehicleType, datetime);
+    }
+
+    /**
+     * Calculates the delivery fee against the given tariff snapshot, see
+     * {@link #calculateDeliveryFee(String, String, String)}.
+     */
+    public DeliveryFeeResponse calculateDeliveryFee(TariffSnapshot tariffs, String cityName, String vehicleType,
+                                                    String datetime) {
+        return calculateDeliveryFee(tariffs, cityName, cityName, vehicleType, datetime);
+    }
+
+    /**
+     * Calculates the delivery fee with the regional base fee of one station and the weather observed at
+     * another, e.g. for a delivery address that is closer to some weather station than to any city.
+     *
+     * @param cityName    The station name the regional base fee is looked up by.
+     * @param stationName The station whose weather data is considered.
+     * @see #calculateDeliveryFee(String, String, String)
+     */
+    public DeliveryFeeResponse calculateDeliveryFee(TariffSnapshot tariffs, String cityName, String stationName,
+                                                    String vehicleType, String datetime) {
+        Optional<WeatherObservation> latestWeatherDataOpt = findLatestWeatherData(stationName, datetime);
 
         if (latestWeatherDataOpt.isEmpty()) {
-            throw new CityNotFoundException("No weather data found for the specified city and datetime");
+            throw new CityNotFoundException(NO_WEATHER_DATA);
         }
 
-        WeatherData latestWeatherData = latestWeatherDataOpt.get();
+        WeatherObservation latestWeatherData = latestWeatherDataOpt.get();
 
-        BigDecimal rbf = calculateRegionalBaseFee(cityName, vehicleType);
-        BigDecimal atef = calculateAirTemperatureExtraFee(vehicleType, latestWeatherData.getAirTemperature());
-        BigDecimal wsef = calculateWindSpeedExtraFee(vehicleType, latestWeatherData.getWindSpeed());
-        BigDecimal wpef = calculateWeatherPhenomenonExtraFee(vehicleType, latestWeatherData.getWeatherPhenomenon());
+        CityTariff city = tariffs.findCity(cityName);
+        if (city == null) {
+            throw new CityNotFoundException(CITY_NOT_FOUND);
+        }
+        VehicleTariff vehicle = tariffs.findVehicle(vehicleType);
+        if (vehicle == null) {
+            throw new VehicleTypeNotFoundException(VEHICLE_NOT_FOUND);
+        }
 
-        BigDecimal totalFee = rbf.add(atef).add(wsef).add(wpef);
+        long feeCents = feeRules.feeCents(
+                city.getFeeCents() + vehicle.getFeeCents(),
+                vehicle.getVehicleClass(),
+                orNaN(latestWeatherData.getAirTemperature()),
+                orNaN(latestWeatherData.getWindSpeed()),
+                latestWeatherData.getPhenomenonCode());
+        quoteAuditLog.record(datetime, city, vehicle, tariffs.getVersion(), latestWeatherData, feeCents);
 
-        return new DeliveryFeeResponse(totalFee);
-    }
-
-    private Optional<WeatherData> findLatestWeatherData(String cityName, String datetime) {
-        if (datetime != null) {
-            Instant latestTimestamp = Instant.parse(datetime);
-            return weatherDataRepository
-                    .findWeatherDataByStationNameAndTimestampOrderByTimestampDesc(cityName, latestTimestamp)
-                    .stream()
-                    .max(Comparator.comparing(WeatherData::getTimestamp));
-        } else {
-            return weatherDataRepository
-                    .findWeatherDataByStationName(cityName)
-                    .stream()
-                    .findFirst();
+        if (FeeRules.isForbidden(feeCents)) {
+            throw new VehicleUsageForbiddenException(VEHICLE_FORBIDDEN);
         }
+        return new DeliveryFeeResponse(FeeRules.toDecimal(feeCents));
     }
 
-    private BigDecimal calculateRegionalBaseFee(String cityName, String vehicleType) {
-        City city = cityRepository.findByCityIgnoreCase(cityName)
-                .orElseThrow(() -> new CityNotFoundException("City not found"));
-        Vehicle vehicle = vehicleRepository.findByVehicleIgnoreCase(vehicleType)
-                .orElseThrow(() -> new VehicleTypeNotFoundException("No such vehicle type"));
-        return BigDecimal.valueOf(city.getFee()).add(BigDecimal.valueOf(vehicle.getFee()));
-    }
-
-    private BigDecimal calculateAirTemperatureExtraFee(String vehicleType, Double airTemperature) {
-        if (("Scooter".equalsIgnoreCase(vehicleType) || "Bike".equalsIgnoreCase(vehicleType))) {
-            if (airTemperature < -10) {
-                return BigDecimal.valueOf(1.0);
-            } else if (airTemperature >= -10 && airTemperature < 0) {
-                return BigDecimal.valueOf(0.5);
+    /**
+     * Calculates the delivery fees of many quotes at once.
+     * <p>
+     * Every distinct observation is resolved only once for the whole batch and all tariffs come from one
+     * snapshot, the
+     * fees are then evaluated in parallel, chunk by chunk. Quotes that cannot be priced get an error result
+     * instead of failing the batch.
+     *
+     * @param tariffs  The tariff snapshot all quotes are priced with.
+     * @param requests The quotes, with city names already resolved to station names, null for a missing one.
+     * @param results  Receives the results chunk by chunk, in request order.
+     */
+    public void calculateDeliveryFees(TariffSnapshot tariffs, List<FeeQuoteRequest> requests,
+                                      Consumer<List<FeeQuoteResult>> results) {
+        int size = requests.size();
+        WeatherObservation[] observations = new WeatherObservation[size];
+        CityTariff[] cities = new CityTariff[size];
+        VehicleTariff[] vehicles = new VehicleTariff[size];
+        String[] errors = new String[size];
+
+        Map<String, Optional<WeatherObservation>> observationsByKey = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            FeeQuoteRequest request = requests.get(i);
+            if (request == null || request.getCity() == null || request.getVehicleType() == null) {
+                errors[i] = "city and vehicleType are required";
+                continue;
+            }
+            String datetime = request.getDatetime();
+            Optional<WeatherObservation> observation;
+            try {
+                observation = observationsByKey.computeIfAbsent(request.getCity() + '@' + datetime,
+                        key -> findLatestWeatherData(request.getCity(), datetime));
+            } catch (DateTimeParseException e) {
+                errors[i] = "Invalid datetime: " + datetime;
+                continue;
+            }
+            CityTariff city = tariffs.findCity(request.getCity());
+            VehicleTariff vehicle = tariffs.findVehicle(request.getVehicleType());
+            if (observation.isEmpty()) {
+                errors[i] = NO_WEATHER_DATA;
+            } else if (city == null) {
+                errors[i] = CITY_NOT_FOUND;
+            } else if (vehicle == null) {
+                errors[i] = VEHICLE_NOT_FOUND;
+            } else {
+                observations[i] = observation.get();
+                cities[i] = city;
+                vehicles[i] = vehicle;
             }
         }
-        return BigDecimal.valueOf(0.0);
-    }
 
-    private BigDecimal calculateWindSpeedExtraFee(String vehicleType, Double windSpeed) {
-        if ("Bike".equalsIgnoreCase(vehicleType)) {
-            if (windSpeed >= 10 && windSpeed <= 20) {
-                return BigDecimal.valueOf(0.5);
-            } else if (windSpeed > 20) {
-                throw new VehicleUsageForbiddenException("Usage of selected vehicle type is forbidden");
-            }
+        for (int from = 0; from < size; from += BATCH_CHUNK_SIZE) {
+            FeeQuoteResult[] chunk = IntStream.range(from, Math.min(from + BATCH_CHUNK_SIZE, size))
+                    .parallel()
+                    .mapToObj(i -> {
+                        if (errors[i] != null) {
+                            return FeeQuoteResult.error(errors[i]);
+                        }
+                        WeatherObservation observation = observations[i];
+                        long feeCents = feeRules.feeCents(cities[i].getFeeCents() + vehicles[i].getFeeCents(),
+                                vehicles[i].getVehicleClass(),
+                                orNaN(observation.getAirTemperature()),
+                                orNaN(observation.getWindSpeed()),
+                                observation.getPhenomenonCode());
+                        quoteAuditLog.record(requests.get(i).getDatetime(), cities[i], vehicles[i],
+                                tariffs.getVersion(), observation, feeCents);
+                        return FeeRules.isForbidden(feeCents)
+                                ? FeeQuoteResult.error(VEHICLE_FORBIDDEN)
+                                : FeeQuoteResult.fee(FeeRules.toDecimal(feeCents));
+                    })
+                    .toArray(FeeQuoteResult[]::new);
+            results.accept(Arrays.asList(chunk));
         }
-        return BigDecimal.valueOf(0.0);
     }
 
-    private BigDecimal calculateWeatherPhenomenonExtraFee(String vehicleType, String weatherPhenomenon) {
-        if (vehicleType.equalsIgnoreCase("Scooter") || vehicleType.equalsIgnoreCase("Bike")) {
-            if (isSnowOrSleet(weatherPhenomenon)) {
-                return BigDecimal.valueOf(1);
-            } else if (isRain(weatherPhenomenon)) {
-                return BigDecimal.valueOf(0.5);
-            } else if (isGlazeHailOrThunder(weatherPhenomenon)) {
-                throw new VehicleUsageForbiddenException("Usage of selected vehicle type is forbidden");
-            }
+    /**
+     * Determines which observation and tariff version the fee for the given city and datetime would be
+     * calculated from, without calculating it.
+     *
+     * @return The version, or empty if there is no weather data or the datetime is invalid.
+     */
+    public Optional<FeeVersion> findFeeVersion(TariffSnapshot tariffs, String cityName, String datetime) {
+        try {
+            return findLatestWeatherData(cityName, datetime)
+                    .map(observation -> new FeeVersion(observation.getTimestamp(), tariffs.getVersion(),
+                            tariffs.getUpdatedAt()));
+        } catch (DateTimeParseException e) {
+            return Optional.empty();
         }
-        return BigDecimal.valueOf(0);
     }
 
-    public void updateVehicleFee(String vehicleType, Double fee) {
-        Vehicle vehicle = vehicleRepository.findByVehicleIgnoreCase(vehicleType)
-                .orElseThrow(() -> new ResourceNotFoundException("Vehicle not found: " + vehicleType));
-        vehicle.setFee(fee);
-        vehicleRepository.save(vehicle);
+    private Optional<WeatherObservation> findLatestWeatherData(String cityName, String datetime) {
+        if (datetime != null) {
+            return weatherHistoryIndex.findInEffectAt(cityName, Instant.parse(datetime));
+        } else {
+            // Served from memory, the snapshot is kept current by the weather importer
+            return latestWeatherCache.findLatest(cityName);
+        }
     }
 
-    private boolean isSnowOrSleet(String weatherPhenomenon) {
-        List<String> snowOrSleetKeywords = Arrays.asList("snow", "sleet", "snowfall", "snow shower", "snow flurries");
-
-        return snowOrSleetKeywords.stream().anyMatch(keyword -> weatherPhenomenon.toLowerCase().contains(keyword));
+    public void updateCityFee(String cityName, Double fee) {
+        tariffRegistry.updateCityFee(cityName, fee);
     }
 
-    private boolean isRain(String weatherPhenomenon) {
-        List<String> rainKeywords = Arrays.asList("rain", "drizzle", "rainfall", "rain shower", "light rain", "heavy rain");
-
-        return rainKeywords.stream().anyMatch(keyword -> weatherPhenomenon.toLowerCase().contains(keyword));
+    public void updateVehicleFee(String vehicleType, Double fee) {
+        tariffRegistry.updateVehicleFee(vehicleType, fee);
     }
 
-    private boolean isGlazeHailOrThunder(String weatherPhenomenon) {
-        List<String> glazeHailOrThunderKeywords = Arrays.asList("glaze", "hail", "thunder", "thunderstorm");
-
-        return glazeHailOrThunderKeywords.stream().anyMatch(keyword -> weatherPhenomenon.toLowerCase().contains(keyword));
+    private static double orNaN(Double value) {
+        return value == null ? Double.NaN : value;
     }
 }
\ No newline at end of file
@@ -0,0 +1,382 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.dto.FeeMatrixEntry;
+import com.deliveryservice.dto.FeeMatrixEvent;
+import com.deliveryservice.exceptions.StreamCapacityExceededException;
+import com.deliveryservice.model.CityTariff;
+import com.deliveryservice.model.TariffSnapshot;
+import com.deliveryservice.model.VehicleTariff;
+import com.deliveryservice.model.WeatherObservation;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Pushes the current fee of every city and vehicle type to server-sent event subscribers.
+ * <p>
+ * A subscriber first gets a "snapshot" event with the whole matrix, then a "delta" event with the
+ * entries that changed whenever an import or a fee update changes a fee or a forbidden state. The event
+ * id is the matrix version, which only advances with such a change. The matrix is recomputed from the
+ * latest weather and the tariffs when either publishes a new snapshot, and each event is serialized once
+ * for all subscribers.
+ * <p>
+ * Idle subscribers hold no thread, only their asynchronous request. Events are queued per subscriber
+ * and written by {@code delivery.fees.stream.sender-threads} sender threads, at most one per subscriber
+ * at a time, so the publishing import or fee update never waits for a client. A subscriber that falls
+ * {@code delivery.fees.stream.queue-size} events behind has its backlog replaced by one snapshot.
+ * A comment is sent every {@code delivery.fees.stream.heartbeat} to keep connections open through
+ * proxies and to notice clients that went away.
+ * <p>
+ * Servlet writes block while a client does not read. A write that takes longer than
+ * {@code delivery.fees.stream.write-timeout} marks its subscriber as stalled: it gets no further events,
+ * its stream is completed with an error as soon as the write returns, and the sender pool gets an extra
+ * thread for as long as the write blocks, so stalled clients never take sender threads from the others.
+ * The blocked write itself ends at the latest with the server's connection timeout.
+ */
+@Slf4j
+@Service
+public class FeeMatrixPublisher {
+    static final String SNAPSHOT = "snapshot";
+    static final String DELTA = "delta";
+
+    private final TariffRegistry tariffRegistry;
+    private final LatestWeatherCache latestWeatherCache;
+    private final ObjectMapper objectMapper;
+    private final TaskScheduler taskScheduler;
+    private final FeeRules feeRules = FeeRules.DEFAULT;
+    private final int maxSubscribers;
+    private final int queueSize;
+    private final Duration timeout;
+    private final Duration heartbeat;
+    private final Duration writeTimeout;
+    private final ThreadPoolExecutor senders;
+    private final int senderThreads;
+    // Guarded by senders
+    private int stalledWrites;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Counter resyncs;
+    private final Counter stalled;
+    // Guarded by this, the snapshot is also read by slow subscribers
+    private TariffSnapshot tariffs;
+    private Map<String, WeatherObservation> observations;
+    private Map<String, FeeMatrixEntry> matrix = Map.of();
+    private long version;
+    private volatile Event snapshot;
+
+    public FeeMatrixPublisher(TariffRegistry tariffRegistry, LatestWeatherCache latestWeatherCache,
+                              ObjectMapper objectMapper, TaskScheduler taskScheduler, MeterRegistry meterRegistry,
+                              @Value("${delivery.fees.stream.max-subscribers:10000}") int maxSubscribers,
+                              @Value("${delivery.fees.stream.queue-size:16}") int queueSize,
+                              @Value("${delivery.fees.stream.timeout:1h}") Duration timeout,
+                              @Value("${delivery.fees.stream.heartbeat:30s}") Duration heartbeat,
+                              @Value("${delivery.fees.stream.write-timeout:10s}") Duration writeTimeout,
+                              @Value("${delivery.fees.stream.sender-threads:2}") int senderThreads) {
+        this.tariffRegistry = tariffRegistry;
+        this.latestWeatherCache = latestWeatherCache;
+        this.objectMapper = objectMapper;
+        this.taskScheduler = taskScheduler;
+        this.maxSubscribers = maxSubscribers;
+        this.queueSize = queueSize;
+        this.timeout = timeout;
+        this.heartbeat = heartbeat;
+        this.writeTimeout = writeTimeout;
+        this.senderThreads = senderThreads;
+        AtomicInteger threads = new AtomicInteger();
+        // Grown and shrunk with the stalled writes, idle threads beyond the core size end right away
+        this.senders = new ThreadPoolExecutor(senderThreads, senderThreads, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), task -> {
+                    Thread thread = new Thread(task, "fee-stream-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        Gauge.builder("delivery.fees.stream.subscribers", subscribers, Set::size)
+                .description("Fee stream subscribers")
+                .register(meterRegistry);
+        this.resyncs = Counter.builder("delivery.fees.stream.resyncs")
+                .description("Slow fee stream subscribers whose backlog was replaced by a snapshot")
+                .register(meterRegistry);
+        this.stalled = Counter.builder("delivery.fees.stream.stalled")
+                .description("Fee stream subscribers dropped because a write took longer than the write timeout")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        tariffRegistry.addListener(this::refresh);
+        latestWeatherCache.addListener(this::refresh);
+        refresh();
+        taskScheduler.scheduleWithFixedDelay(this::sendHeartbeats, heartbeat);
+        taskScheduler.scheduleWithFixedDelay(this::dropStalledSubscribers, writeTimeout.dividedBy(2));
+    }
+
+    @PreDestroy
+    public void stop() {
+        senders.shutdownNow();
+        subscribers.forEach(subscriber -> {
+            try {
+                subscriber.emitter.complete();
+            } catch (IllegalStateException e) {
+                // Tomcat already recycled the response of a connection that closed during shutdown
+            }
+        });
+    }
+
+    /**
+     * Registers a subscriber that starts with the current snapshot.
+     *
+     * @throws StreamCapacityExceededException If there are too many subscribers already.
+     */
+    public SseEmitter subscribe() {
+        if (subscribers.size() >= maxSubscribers) {
+            throw new StreamCapacityExceededException("Too many fee stream subscribers, try again later");
+        }
+        Subscriber subscriber = new Subscriber(new SseEmitter(timeout.toMillis()));
+        subscriber.emitter.onCompletion(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onTimeout(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onError(error -> subscribers.remove(subscriber));
+        // Under the lock, so no delta is published between the snapshot and the registration
+        synchronized (this) {
+            subscribers.add(subscriber);
+            subscriber.offer(snapshot);
+        }
+        return subscriber.emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Recomputes the matrix and publishes the entries that changed, if any.
+     */
+    public synchronized void refresh() {
+        TariffSnapshot currentTariffs = tariffRegistry.current();
+        Map<String, WeatherObservation> currentObservations = latestWeatherCache.getObservations();
+        if (currentTariffs == tariffs && currentObservations == observations) {
+            return;
+        }
+        tariffs = currentTariffs;
+        observations = currentObservations;
+        Map<String, FeeMatrixEntry> updated = compute(currentTariffs, currentObservations);
+        List<FeeMatrixEntry> changed = new ArrayList<>();
+        updated.forEach((key, entry) -> {
+            if (!entry.equals(matrix.get(key))) {
+                changed.add(entry);
+            }
+        });
+        List<FeeMatrixEntry> removed = new ArrayList<>();
+        matrix.forEach((key, entry) -> {
+            if (!updated.containsKey(key)) {
+                removed.add(new FeeMatrixEntry(entry.getCity(), entry.getVehicleType(), null, false, null));
+            }
+        });
+        matrix = updated;
+        boolean unchanged = snapshot != null && changed.isEmpty() && removed.isEmpty();
+        if (!unchanged) {
+            version++;
+        }
+        // Also when only observation times moved, so new subscribers see them
+        snapshot = event(SNAPSHOT, new FeeMatrixEvent(version, currentTariffs.getVersion(),
+                List.copyOf(updated.values()), List.of()));
+        if (unchanged || subscribers.isEmpty()) {
+            return;
+        }
+        Event delta = event(DELTA, new FeeMatrixEvent(version, currentTariffs.getVersion(), changed, removed));
+        subscribers.forEach(subscriber -> subscriber.offer(delta));
+        log.debug("Fee matrix version {} with {} changes pushed to {} subscribers", version,
+                changed.size() + removed.size(), subscribers.size());
+    }
+
+    private Map<String, FeeMatrixEntry> compute(TariffSnapshot currentTariffs,
+                                                Map<String, WeatherObservation> currentObservations) {
+        Map<String, FeeMatrixEntry> entries = new LinkedHashMap<>();
+        for (CityTariff city : currentTariffs.getCities()) {
+            WeatherObservation observation = currentObservations.get(city.getCity());
+            for (VehicleTariff vehicle : currentTariffs.getVehicles()) {
+                FeeMatrixEntry entry;
+                if (observation == null) {
+                    entry = new FeeMatrixEntry(city.getCity(), vehicle.getVehicle(), null, false, null);
+                } else {
+                    long feeCents = feeRules.feeCents(city.getFeeCents() + vehicle.getFeeCents(),
+                            vehicle.getVehicleClass(), orNaN(observation.getAirTemperature()),
+                            orNaN(observation.getWindSpeed()), observation.getPhenomenonCode());
+                    boolean forbidden = FeeRules.isForbidden(feeCents);
+                    entry = new FeeMatrixEntry(city.getCity(), vehicle.getVehicle(),
+                            forbidden ? null : FeeRules.toDecimal(feeCents), forbidden, observation.getTimestamp());
+                }
+                entries.put(city.getCity() + '\n' + vehicle.getVehicle(), entry);
+            }
+        }
+        return entries;
+    }
+
+    private Event event(String name, FeeMatrixEvent payload) {
+        try {
+            return new Event(name, payload.getVersion(), objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize the fee matrix", e);
+        }
+    }
+
+    private void sendHeartbeats() {
+        subscribers.forEach(subscriber -> subscriber.offer(Event.HEARTBEAT));
+    }
+
+    // Never touches the emitters, a blocked write holds the emitter's lock
+    private void dropStalledSubscribers() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.markStalled(now)) {
+                subscribers.remove(subscriber);
+                stalled.increment();
+                resizeSenders(1);
+                log.debug("Fee stream subscriber stalled for more than {}, dropped", writeTimeout);
+            }
+        }
+    }
+
+    // One extra sender thread per stalled write, so the other subscribers keep all sender threads
+    private void resizeSenders(int change) {
+        synchronized (senders) {
+            stalledWrites += change;
+            int size = senderThreads + stalledWrites;
+            if (change > 0) {
+                senders.setMaximumPoolSize(size);
+                senders.setCorePoolSize(size);
+            } else {
+                senders.setCorePoolSize(size);
+                senders.setMaximumPoolSize(size);
+            }
+        }
+    }
+
+    private static double orNaN(Double value) {
+        return value == null ? Double.NaN : value;
+    }
+
+    /**
+     * A serialized event, or a heartbeat comment if the name is null.
+     */
+    private record Event(String name, long id, String json) {
+        static final Event HEARTBEAT = new Event(null, 0, null);
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        // Guarded by this
+        private final ArrayDeque<Event> queue = new ArrayDeque<>();
+        private boolean sending;
+        private long writeStart;
+        private boolean stalled;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(Event event) {
+            synchronized (this) {
+                if (stalled) {
+                    return;
+                }
+                if (queue.size() >= queueSize) {
+                    // The snapshot already includes every queued delta and the new one
+                    queue.clear();
+                    queue.add(snapshot);
+                    resyncs.increment();
+                } else {
+                    queue.add(event);
+                }
+                if (sending) {
+                    return;
+                }
+                sending = true;
+            }
+            senders.execute(this::send);
+        }
+
+        /**
+         * @return Whether the current write has taken longer than the write timeout and the subscriber was
+         * not marked as stalled before.
+         */
+        synchronized boolean markStalled(long now) {
+            if (stalled || writeStart == 0 || now - writeStart < writeTimeout.toNanos()) {
+                return false;
+            }
+            stalled = true;
+            queue.clear();
+            return true;
+        }
+
+        private void send() {
+            while (true) {
+                Event event;
+                synchronized (this) {
+                    event = queue.poll();
+                    if (event == null) {
+                        sending = false;
+                        return;
+                    }
+                    // Never 0, which means no write in progress
+                    writeStart = System.nanoTime() | 1;
+                }
+                boolean failed = false;
+                try {
+                    if (event.name() == null) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    } else {
+                        emitter.send(SseEmitter.event().name(event.name()).id(Long.toString(event.id()))
+                                .data(event.json(), MediaType.APPLICATION_JSON));
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    // The client went away or the emitter completed
+                    failed = true;
+                }
+                boolean wasStalled;
+                synchronized (this) {
+                    writeStart = 0;
+                    wasStalled = stalled;
+                    if (failed || wasStalled) {
+                        queue.clear();
+                        sending = false;
+                    }
+                }
+                if (wasStalled) {
+                    resizeSenders(-1);
+                    if (!failed) {
+                        emitter.completeWithError(new TimeoutException("Fee stream write took longer than "
+                                + writeTimeout));
+                    }
+                    return;
+                }
+                if (failed) {
+                    subscribers.remove(this);
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.model.CityTariff;
+import com.deliveryservice.model.TariffSnapshot;
+import com.deliveryservice.model.VehicleTariff;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.springframework.stereotype.Component;
+
+/**
+ * Latency of fee requests by city, vehicle type and outcome.
+ * <p>
+ * One timer per combination is registered whenever the tariff snapshot changes and kept in an array
+ * indexed by the tariff indexes, so recording a request is an array lookup and a histogram update without
+ * any allocation. Unknown cities and vehicle types are recorded under "other", which keeps the number of
+ * time series bounded no matter what clients send.
+ */
+@Component
+public class FeeMetrics {
+    public static final String FEE_REQUESTS = "delivery.fee.requests";
+    static final String OTHER = "other";
+
+    public enum Outcome {
+        OK, NOT_MODIFIED, FORBIDDEN, NOT_FOUND, ERROR;
+
+        private final String tag = name().toLowerCase(Locale.ROOT);
+    }
+
+    private static final Outcome[] OUTCOMES = Outcome.values();
+
+    private final MeterRegistry meterRegistry;
+    private volatile Table table = new Table(-1, 0, new Timer[0]);
+
+    public FeeMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public void record(TariffSnapshot tariffs, String stationName, String vehicleType, Outcome outcome, long nanos) {
+        Table current = table;
+        if (current.tariffVersion != tariffs.getVersion()) {
+            current = register(tariffs);
+        }
+        CityTariff city = stationName == null ? null : tariffs.findCity(stationName);
+        VehicleTariff vehicle = vehicleType == null ? null : tariffs.findVehicle(vehicleType);
+        // The last city and vehicle slot are the "other" series
+        int cityIndex = city != null ? city.getIndex() : tariffs.getCities().size();
+        int vehicleIndex = vehicle != null ? vehicle.getIndex() : current.vehicleSlots - 1;
+        current.timers[(cityIndex * current.vehicleSlots + vehicleIndex) * OUTCOMES.length + outcome.ordinal()]
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private synchronized Table register(TariffSnapshot tariffs) {
+        if (table.tariffVersion == tariffs.getVersion()) {
+            return table;
+        }
+        int citySlots = tariffs.getCities().size() + 1;
+        int vehicleSlots = tariffs.getVehicles().size() + 1;
+        Timer[] timers = new Timer[citySlots * vehicleSlots * OUTCOMES.length];
+        for (int c = 0; c < citySlots; c++) {
+            String city = c < tariffs.getCities().size() ? tariffs.getCities().get(c).getCity() : OTHER;
+            for (int v = 0; v < vehicleSlots; v++) {
+                String vehicle = v < tariffs.getVehicles().size() ? tariffs.getVehicles().get(v).getVehicle() : OTHER;
+                for (Outcome outcome : OUTCOMES) {
+                    timers[(c * vehicleSlots + v) * OUTCOMES.length + outcome.ordinal()] = Timer.builder(FEE_REQUESTS)
+                            .description("Fee request latency")
+                            .tag("city", city)
+                            .tag("vehicle", vehicle.toLowerCase(Locale.ROOT))
+                            .tag("outcome", outcome.tag)
+                            .publishPercentiles(0.5, 0.95, 0.99)
+                            .publishPercentileHistogram()
+                            .register(meterRegistry);
+                }
+            }
+        }
+        Table registered = new Table(tariffs.getVersion(), vehicleSlots, timers);
+        table = registered;
+        return registered;
+    }
+
+    private record Table(long tariffVersion, int vehicleSlots, Timer[] timers) {
+    }
+}
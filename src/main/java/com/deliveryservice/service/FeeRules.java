@@ -0,0 +1,229 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.model.PhenomenonCode;
+import com.deliveryservice.model.VehicleClass;
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Table-driven weather surcharge rules, evaluated in fixed-point cents.
+ * <p>
+ * All surcharges are looked up by {@link VehicleClass} ordinal, and phenomena by their precomputed
+ * {@link PhenomenonCode}, so evaluating a fee allocates nothing. A forbidden combination is reported
+ * as a negative result instead of an exception; see {@link #isForbidden(long)}.
+ */
+public final class FeeRules {
+    /** Result of an evaluation when wind speed forbids the vehicle. */
+    public static final long FORBIDDEN_BY_WIND = -1;
+    /** Result of an evaluation when the weather phenomenon forbids the vehicle. */
+    public static final long FORBIDDEN_BY_PHENOMENON = -2;
+    /** Marks a phenomenon table cell that forbids the vehicle instead of adding a surcharge. */
+    public static final int FORBIDDEN = -1;
+
+    private static final int CLASSES = VehicleClass.values().length;
+    private static final int PHENOMENA = PhenomenonCode.GLAZE_HAIL_OR_THUNDER + 1;
+
+    public static final FeeRules DEFAULT = new FeeRules(
+            -10, 0, 10, 20,
+            //        CAR SCOOTER BIKE OTHER
+            new int[]{0, 100, 100, 0},
+            new int[]{0, 50, 50, 0},
+            new int[]{0, 0, 50, 0},
+            new boolean[]{false, false, true, false},
+            new int[][]{
+                    // NONE, RAIN, SNOW_OR_SLEET, GLAZE_HAIL_OR_THUNDER
+                    {0, 0, 0, 0},
+                    {0, 50, 100, FORBIDDEN},
+                    {0, 50, 100, FORBIDDEN},
+                    {0, 0, 0, 0}});
+
+    private final double coldThreshold;
+    private final double freezingThreshold;
+    private final double windSurchargeThreshold;
+    private final double windForbiddenThreshold;
+    private final int[] coldCents;
+    private final int[] freezingCents;
+    private final int[] windCents;
+    private final boolean[] forbiddenInStrongWind;
+    private final int[] phenomenonCents;
+
+    /**
+     * @param coldThreshold          Temperatures below this add {@code coldCents}.
+     * @param freezingThreshold      Temperatures from {@code coldThreshold} up to below this add {@code freezingCents}.
+     * @param windSurchargeThreshold Wind speeds from this up to {@code windForbiddenThreshold} add {@code windCents}.
+     * @param windForbiddenThreshold Wind speeds above this forbid the classes flagged in {@code forbiddenInStrongWind}.
+     * @param phenomenonCents        Surcharge per vehicle class and phenomenon code, or {@link #FORBIDDEN}.
+     */
+    public FeeRules(double coldThreshold, double freezingThreshold,
+                    double windSurchargeThreshold, double windForbiddenThreshold,
+                    int[] coldCents, int[] freezingCents, int[] windCents, boolean[] forbiddenInStrongWind,
+                    int[][] phenomenonCents) {
+        this.coldThreshold = coldThreshold;
+        this.freezingThreshold = freezingThreshold;
+        this.windSurchargeThreshold = windSurchargeThreshold;
+        this.windForbiddenThreshold = windForbiddenThreshold;
+        this.coldCents = perClass(coldCents.clone());
+        this.freezingCents = perClass(freezingCents.clone());
+        this.windCents = perClass(windCents.clone());
+        this.forbiddenInStrongWind = forbiddenInStrongWind.clone();
+        if (this.forbiddenInStrongWind.length != CLASSES || phenomenonCents.length != CLASSES) {
+            throw new IllegalArgumentException("Expected one entry per vehicle class");
+        }
+        this.phenomenonCents = new int[CLASSES * PHENOMENA];
+        for (int vehicleClass = 0; vehicleClass < CLASSES; vehicleClass++) {
+            if (phenomenonCents[vehicleClass].length != PHENOMENA) {
+                throw new IllegalArgumentException("Expected one entry per phenomenon code");
+            }
+            System.arraycopy(phenomenonCents[vehicleClass], 0, this.phenomenonCents, vehicleClass * PHENOMENA, PHENOMENA);
+        }
+    }
+
+    /**
+     * Calculates the total fee of a delivery.
+     *
+     * @param baseFeeCents    Regional base fee of the city and vehicle type, in cents.
+     * @param vehicleClass    Class of the vehicle type.
+     * @param airTemperature  Observed air temperature, {@code NaN} if unknown.
+     * @param windSpeed       Observed wind speed, {@code NaN} if unknown.
+     * @param phenomenonCode  Observed phenomenon, see {@link PhenomenonCode}.
+     * @return The fee in cents, or {@link #FORBIDDEN_BY_WIND} / {@link #FORBIDDEN_BY_PHENOMENON}.
+     */
+    public long feeCents(long baseFeeCents, VehicleClass vehicleClass, double airTemperature, double windSpeed,
+                         byte phenomenonCode) {
+        int vehicle = vehicleClass.ordinal();
+        long fee = baseFeeCents;
+
+        if (airTemperature < coldThreshold) {
+            fee += coldCents[vehicle];
+        } else if (airTemperature < freezingThreshold) {
+            fee += freezingCents[vehicle];
+        }
+
+        if (windSpeed > windForbiddenThreshold) {
+            if (forbiddenInStrongWind[vehicle]) {
+                return FORBIDDEN_BY_WIND;
+            }
+        } else if (windSpeed >= windSurchargeThreshold) {
+            fee += windCents[vehicle];
+        }
+
+        int phenomenon = phenomenonCents[vehicle * PHENOMENA + phenomenonCode];
+        if (phenomenon == FORBIDDEN) {
+            return FORBIDDEN_BY_PHENOMENON;
+        }
+        return fee + phenomenon;
+    }
+
+    /**
+     * @return A builder that starts from these rules, e.g. to evaluate a proposed change of them.
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    public static boolean isForbidden(long feeCents) {
+        return feeCents < 0;
+    }
+
+    public static long toCents(double fee) {
+        return Math.round(fee * 100);
+    }
+
+    /**
+     * Converts cents to the decimal representation the API has always returned: at least one fraction
+     * digit, two when needed (e.g. 4.0 and 4.25).
+     */
+    public static BigDecimal toDecimal(long cents) {
+        return cents % 10 == 0 ? BigDecimal.valueOf(cents / 10, 1) : BigDecimal.valueOf(cents, 2);
+    }
+
+    /**
+     * Collects changed thresholds and surcharges; all surcharges are in cents per {@link VehicleClass}.
+     */
+    public static final class Builder {
+        private double coldThreshold;
+        private double freezingThreshold;
+        private double windSurchargeThreshold;
+        private double windForbiddenThreshold;
+        private final int[] coldCents;
+        private final int[] freezingCents;
+        private final int[] windCents;
+        private final boolean[] forbiddenInStrongWind;
+        private final int[][] phenomenonCents = new int[CLASSES][];
+
+        private Builder(FeeRules rules) {
+            coldThreshold = rules.coldThreshold;
+            freezingThreshold = rules.freezingThreshold;
+            windSurchargeThreshold = rules.windSurchargeThreshold;
+            windForbiddenThreshold = rules.windForbiddenThreshold;
+            coldCents = rules.coldCents.clone();
+            freezingCents = rules.freezingCents.clone();
+            windCents = rules.windCents.clone();
+            forbiddenInStrongWind = rules.forbiddenInStrongWind.clone();
+            for (int vehicleClass = 0; vehicleClass < CLASSES; vehicleClass++) {
+                phenomenonCents[vehicleClass] = Arrays.copyOfRange(rules.phenomenonCents,
+                        vehicleClass * PHENOMENA, (vehicleClass + 1) * PHENOMENA);
+            }
+        }
+
+        public Builder coldThreshold(double coldThreshold) {
+            this.coldThreshold = coldThreshold;
+            return this;
+        }
+
+        public Builder freezingThreshold(double freezingThreshold) {
+            this.freezingThreshold = freezingThreshold;
+            return this;
+        }
+
+        public Builder windSurchargeThreshold(double windSurchargeThreshold) {
+            this.windSurchargeThreshold = windSurchargeThreshold;
+            return this;
+        }
+
+        public Builder windForbiddenThreshold(double windForbiddenThreshold) {
+            this.windForbiddenThreshold = windForbiddenThreshold;
+            return this;
+        }
+
+        public Builder coldCents(VehicleClass vehicleClass, int cents) {
+            coldCents[vehicleClass.ordinal()] = cents;
+            return this;
+        }
+
+        public Builder freezingCents(VehicleClass vehicleClass, int cents) {
+            freezingCents[vehicleClass.ordinal()] = cents;
+            return this;
+        }
+
+        public Builder windCents(VehicleClass vehicleClass, int cents) {
+            windCents[vehicleClass.ordinal()] = cents;
+            return this;
+        }
+
+        public Builder forbiddenInStrongWind(VehicleClass vehicleClass, boolean forbidden) {
+            forbiddenInStrongWind[vehicleClass.ordinal()] = forbidden;
+            return this;
+        }
+
+        /**
+         * @param cents The surcharge, or {@link #FORBIDDEN}.
+         */
+        public Builder phenomenonCents(VehicleClass vehicleClass, byte phenomenonCode, int cents) {
+            phenomenonCents[vehicleClass.ordinal()][phenomenonCode] = cents;
+            return this;
+        }
+
+        public FeeRules build() {
+            return new FeeRules(coldThreshold, freezingThreshold, windSurchargeThreshold, windForbiddenThreshold,
+                    coldCents, freezingCents, windCents, forbiddenInStrongWind, phenomenonCents);
+        }
+    }
+
+    private static int[] perClass(int[] cents) {
+        if (cents.length != CLASSES) {
+            throw new IllegalArgumentException("Expected one entry per vehicle class");
+        }
+        return cents;
+    }
+}
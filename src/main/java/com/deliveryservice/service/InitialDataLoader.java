@@ -5,45 +5,45 @@ import com.deliveryservice.entity.Vehicle;
 import com.deliveryservice.repository.CityRepository;
 import com.deliveryservice.repository.VehicleRepository;
 import jakarta.annotation.PostConstruct;
+import java.util.List;
 import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+@Slf4j
 @AllArgsConstructor
 @Service
 public class InitialDataLoader {
 
     CityRepository cityRepository;
     VehicleRepository vehicleRepository;
+    TariffRegistry tariffRegistry;
+    TransactionTemplate transactionTemplate;
 
     @PostConstruct
     public void loadInitialData() {
-        City city1 = new City();
-        city1.setCity("Tallinn-Harku");
-        city1.setFee(2.5);
-        cityRepository.save(city1);
-
-        City city2 = new City();
-        city2.setCity("Tartu-Tõravere");
-        city2.setFee(2.0);
-        cityRepository.save(city2);
-
-        City city3 = new City();
-        city3.setCity("Pärnu");
-        city3.setFee(1.5);
-        cityRepository.save(city3);
-
-        Vehicle vehicle1 = new Vehicle();
-        vehicle1.setVehicle("car");
-        vehicle1.setFee(1.5);
-        vehicleRepository.save(vehicle1);
-
-        Vehicle vehicle2 = new Vehicle();
-        vehicle2.setVehicle("scooter");
-        vehicle2.setFee(1.0);
-        vehicleRepository.save(vehicle2);
-
-        Vehicle vehicle3 = new Vehicle();
-        vehicle3.setVehicle("bike");
-        vehicle3.setFee(0.5);
-        vehicleRepository.save(vehicle3);
+        // Replicas share the database, only the first one to start seeds it
+        if (cityRepository.count() > 0) {
+            tariffRegistry.reload();
+            return;
+        }
+        // One transaction, so the inserts of each table go out as a single JDBC batch
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                cityRepository.saveAll(List.of(
+                        new City("Tallinn-Harku", 2.5),
+                        new City("Tartu-Tõravere", 2.0),
+                        new City("Pärnu", 1.5)));
+                vehicleRepository.saveAll(List.of(
+                        new Vehicle("car", 1.5),
+                        new Vehicle("scooter", 1.0),
+                        new Vehicle("bike", 0.5)));
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Another replica seeded at the same time, the unique names rolled back this copy
+            log.info("Tariffs already seeded by another replica");
+        }
+        tariffRegistry.reload();
     }
 }
@@ -0,0 +1,106 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.entity.WeatherData;
+import com.deliveryservice.model.WeatherObservation;
+import com.deliveryservice.repository.WeatherDataRepository;
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * Holds the most recent observation of every station in memory.
+ * <p>
+ * The content is an immutable snapshot that is replaced as a whole, so readers never see a
+ * half-applied import and never touch the database.
+ */
+@Slf4j
+@Service
+public class LatestWeatherCache {
+    private final WeatherDataRepository weatherDataRepository;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.EMPTY);
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    public LatestWeatherCache(WeatherDataRepository weatherDataRepository) {
+        this.weatherDataRepository = weatherDataRepository;
+    }
+
+    /**
+     * Rebuilds the snapshot from the newest row of every station in the weather_data table.
+     */
+    @PostConstruct
+    public void reload() {
+        Map<String, WeatherObservation> latest = new HashMap<>();
+        mergeInto(latest, weatherDataRepository.findLatestPerStation());
+        snapshot.set(new Snapshot(Map.copyOf(latest), Instant.now()));
+        log.debug("Latest weather snapshot rebuilt with {} stations", latest.size());
+        notifyListeners();
+    }
+
+    /**
+     * Publishes freshly imported observations. Stations missing from the import keep their previous
+     * observation, and an observation never replaces a newer one.
+     */
+    public void publish(Collection<WeatherData> imported) {
+        snapshot.updateAndGet(current -> {
+            Map<String, WeatherObservation> latest = new HashMap<>(current.observations);
+            mergeInto(latest, imported);
+            return new Snapshot(Map.copyOf(latest), Instant.now());
+        });
+        notifyListeners();
+    }
+
+    /**
+     * Registers a listener that runs after every new snapshot is published, on the publishing thread. It
+     * must return quickly, imports wait for it.
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public Optional<WeatherObservation> findLatest(String stationName) {
+        return Optional.ofNullable(snapshot.get().observations.get(stationName));
+    }
+
+    public Map<String, WeatherObservation> getObservations() {
+        return snapshot.get().observations;
+    }
+
+    /**
+     * @return Time elapsed since the snapshot was last rebuilt or published to.
+     */
+    public Duration getAge() {
+        return Duration.between(snapshot.get().publishedAt, Instant.now());
+    }
+
+    private void notifyListeners() {
+        for (Runnable listener : listeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                log.warn("Latest weather listener failed", e);
+            }
+        }
+    }
+
+    private static void mergeInto(Map<String, WeatherObservation> latest, Collection<WeatherData> weatherData) {
+        for (WeatherData data : weatherData) {
+            WeatherObservation current = latest.get(data.getStationName());
+            if (current == null || !data.getTimestamp().isBefore(current.getTimestamp())) {
+                latest.put(data.getStationName(), WeatherObservation.from(data));
+            }
+        }
+    }
+
+    private record Snapshot(Map<String, WeatherObservation> observations, Instant publishedAt) {
+        static final Snapshot EMPTY = new Snapshot(Map.of(), Instant.EPOCH);
+    }
+}
@@ -0,0 +1,148 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.entity.WeatherData;
+import com.deliveryservice.model.StationLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Streaming parser for archived observations in CSV form, one observation per line.
+ * <p>
+ * The first line names the columns, in any order: {@code station_name} and {@code timestamp} are required,
+ * {@code wmo_code}, {@code air_temperature}, {@code wind_speed}, {@code weather_phenomenon},
+ * {@code latitude} and {@code longitude} are optional. Timestamps are ISO-8601 instants or epoch seconds.
+ * Fields may be double-quoted. Lines that cannot be read are counted and skipped.
+ */
+@Slf4j
+public class ObservationsCsvParser {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * @param observations Receives one WeatherData per line, in file order.
+     * @param locations    Receives the position of the station of every line that has one.
+     * @return The number of lines skipped because they could not be read.
+     * @throws IOException If the header lacks a required column or the input cannot be read.
+     */
+    public long parse(InputStream input, Consumer<WeatherData> observations, Consumer<StationLocation> locations)
+            throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), BUFFER_SIZE);
+        String header = reader.readLine();
+        if (header == null) {
+            return 0;
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = split(header.startsWith("\uFEFF") ? header.substring(1) : header);
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        int station = required(columns, "station_name");
+        int timestamp = required(columns, "timestamp");
+        int wmoCode = columns.getOrDefault("wmo_code", -1);
+        int airTemperature = columns.getOrDefault("air_temperature", -1);
+        int windSpeed = columns.getOrDefault("wind_speed", -1);
+        int phenomenon = columns.getOrDefault("weather_phenomenon", -1);
+        int latitude = columns.getOrDefault("latitude", -1);
+        int longitude = columns.getOrDefault("longitude", -1);
+
+        long skipped = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            List<String> fields = split(line);
+            try {
+                WeatherData weatherData = new WeatherData();
+                weatherData.setStationName(fields.get(station).trim());
+                weatherData.setTimestamp(parseInstant(fields.get(timestamp).trim()));
+                weatherData.setWmoCode(emptyToNull(field(fields, wmoCode)));
+                weatherData.setAirTemperature(parseDouble(field(fields, airTemperature)));
+                weatherData.setWindSpeed(parseDouble(field(fields, windSpeed)));
+                weatherData.setWeatherPhenomenon(emptyToNull(field(fields, phenomenon)));
+                if (weatherData.getStationName().isEmpty()) {
+                    throw new IllegalArgumentException("Empty station name");
+                }
+                Double stationLatitude = parseDouble(field(fields, latitude));
+                Double stationLongitude = parseDouble(field(fields, longitude));
+                if (stationLatitude != null && stationLongitude != null) {
+                    locations.accept(new StationLocation(weatherData.getStationName(), stationLatitude,
+                            stationLongitude));
+                }
+                observations.accept(weatherData);
+            } catch (IndexOutOfBoundsException | IllegalArgumentException | DateTimeParseException e) {
+                skipped++;
+                log.debug("Skipping unreadable observation '{}': {}", line, e.toString());
+            }
+        }
+        return skipped;
+    }
+
+    private static int required(Map<String, Integer> columns, String name) throws IOException {
+        Integer index = columns.get(name);
+        if (index == null) {
+            throw new IOException("Missing column " + name);
+        }
+        return index;
+    }
+
+    private static String field(List<String> fields, int index) {
+        return index < 0 || index >= fields.size() ? "" : fields.get(index).trim();
+    }
+
+    // Splits on commas outside double quotes, "" inside quotes is a literal quote
+    private static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static Instant parseInstant(String value) {
+        if (!value.isEmpty() && value.chars().allMatch(Character::isDigit)) {
+            return Instant.ofEpochSecond(Long.parseLong(value));
+        }
+        return Instant.parse(value);
+    }
+
+    // Malformed numbers fail the line, unlike in the feed where a single bad value is dropped
+    private static Double parseDouble(String value) {
+        return value.isEmpty() ? null : Double.valueOf(value);
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+}
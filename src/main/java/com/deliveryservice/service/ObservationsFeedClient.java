@@ -0,0 +1,160 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.entity.WeatherData;
+import com.deliveryservice.model.StationLocation;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import javax.xml.stream.XMLStreamException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fetches the observations feed with conditional requests and gzip transfer encoding.
+ * <p>
+ * The validators of the last imported response are sent with the next request, so an unchanged feed
+ * costs a 304 without a body. They are only kept once the caller has {@link #markImported stored} the
+ * observations, a failed import fetches the whole feed again. The whole response, body included, must
+ * arrive within {@code weather.import.read-timeout}, so a stalled body cannot hold the import thread. A
+ * single HTTP client is reused so connections are kept alive between runs.
+ */
+@Slf4j
+@Component
+public class ObservationsFeedClient {
+    private final URI feedUri;
+    private final Duration readTimeout;
+    private final HttpClient httpClient;
+    private final ObservationsFeedParser feedParser = new ObservationsFeedParser();
+    private final WeatherImportMetrics metrics;
+    private volatile String eTag;
+    private volatile String lastModified;
+
+    /**
+     * A fetched feed with the validators to send once its observations are stored.
+     *
+     * @param observations The observations of the tracked stations, empty if the feed has not changed.
+     */
+    public record Fetch(List<WeatherData> observations, String eTag, String lastModified) {
+        static final Fetch NOT_MODIFIED = new Fetch(List.of(), null, null);
+    }
+
+    public ObservationsFeedClient(
+            @Value("${weather.import.url:https://www.ilmateenistus.ee/ilma_andmed/xml/observations.php}") String feedUrl,
+            @Value("${weather.import.connect-timeout:5s}") Duration connectTimeout,
+            @Value("${weather.import.read-timeout:15s}") Duration readTimeout,
+            WeatherImportMetrics metrics) {
+        this.feedUri = URI.create(feedUrl);
+        this.readTimeout = readTimeout;
+        this.metrics = metrics;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * @param trackedStation Decides by station name whether a station is imported.
+     * @throws IOException If the feed cannot be fetched in time or the server answers with an unexpected
+     *                     status.
+     */
+    public Fetch fetch(Predicate<String> trackedStation) throws IOException, InterruptedException {
+        return fetch(trackedStation, location -> {
+        });
+    }
+
+    /**
+     * @param locations Receives the position of every tracked station, only if the feed has changed.
+     * @see #fetch(Predicate)
+     */
+    public Fetch fetch(Predicate<String> trackedStation, Consumer<StationLocation> locations)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(feedUri)
+                .timeout(readTimeout)
+                .header("Accept-Encoding", "gzip")
+                .GET();
+        String currentETag = eTag;
+        String currentLastModified = lastModified;
+        if (currentETag != null) {
+            request.header("If-None-Match", currentETag);
+        }
+        if (currentLastModified != null) {
+            request.header("If-Modified-Since", currentLastModified);
+        }
+
+        long start = System.nanoTime();
+        HttpResponse<byte[]> response = send(request.build());
+        long received = System.nanoTime();
+        metrics.recordFetch(received - start);
+        int status = response.statusCode();
+        if (status == 304) {
+            log.debug("Observations feed not modified");
+            metrics.recordNotModified();
+            return Fetch.NOT_MODIFIED;
+        }
+        if (status != 200) {
+            throw new IOException("Unexpected status " + status + " from " + feedUri);
+        }
+        try (InputStream body = decode(response)) {
+            List<WeatherData> weatherData = feedParser.parse(body, trackedStation, locations);
+            metrics.recordParse(System.nanoTime() - received);
+            return new Fetch(weatherData, response.headers().firstValue("ETag").orElse(null),
+                    response.headers().firstValue("Last-Modified").orElse(null));
+        } catch (XMLStreamException e) {
+            throw new IOException("Malformed observations feed", e);
+        }
+    }
+
+    /**
+     * Sends the validators of the fetched feed with the following requests, to be called once its
+     * observations are stored.
+     */
+    public void markImported(Fetch fetch) {
+        if (fetch != Fetch.NOT_MODIFIED) {
+            eTag = fetch.eTag();
+            lastModified = fetch.lastModified();
+        }
+    }
+
+    // The request timeout only covers the headers, the deadline here covers the body too
+    private HttpResponse<byte[]> send(HttpRequest request) throws IOException, InterruptedException {
+        CompletableFuture<HttpResponse<byte[]>> response =
+                httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+        try {
+            return response.get(readTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            response.cancel(true);
+            throw new HttpTimeoutException("Observations feed not received within " + readTimeout);
+        } catch (InterruptedException e) {
+            response.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IOException("Fetching the observations feed failed", e.getCause());
+        }
+    }
+
+    private static InputStream decode(HttpResponse<byte[]> response) throws IOException {
+        boolean gzip = response.headers().firstValue("Content-Encoding")
+                .map(encoding -> encoding.equalsIgnoreCase("gzip"))
+                .orElse(false);
+        InputStream body = new ByteArrayInputStream(response.body());
+        return gzip ? new GZIPInputStream(body) : body;
+    }
+}
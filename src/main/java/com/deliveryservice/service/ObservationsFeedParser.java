@@ -0,0 +1,155 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.entity.WeatherData;
+import com.deliveryservice.model.StationLocation;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Single-pass StAX parser for the ilmateenistus observations feed.
+ * <p>
+ * The feed looks like {@code <observations timestamp="..."><station><name>..</name>...</station>...</observations>}.
+ * Stations that are not tracked are skipped as soon as their name is read, without collecting their
+ * values. Empty or malformed numeric values are imported as null instead of failing the whole import.
+ */
+@Slf4j
+public class ObservationsFeedParser {
+    private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
+    /**
+     * @param input          The feed document.
+     * @param trackedStation Decides by station name whether a station is imported.
+     * @return One WeatherData per tracked station, stamped with the feed timestamp.
+     */
+    public List<WeatherData> parse(InputStream input, Predicate<String> trackedStation) throws XMLStreamException {
+        return parse(input, trackedStation, location -> {
+        });
+    }
+
+    /**
+     * @param locations Receives the position of every tracked station that has one.
+     * @see #parse(InputStream, Predicate)
+     */
+    public List<WeatherData> parse(InputStream input, Predicate<String> trackedStation,
+                                   Consumer<StationLocation> locations) throws XMLStreamException {
+        List<WeatherData> weatherDataList = new ArrayList<>();
+        parse(input, trackedStation, locations, weatherDataList::add);
+        return weatherDataList;
+    }
+
+    /**
+     * Streams the observations instead of collecting them. Any number of {@code observations} elements may
+     * follow each other below a common root, as in an archive of feed snapshots.
+     *
+     * @param observations Receives one WeatherData per tracked station and snapshot, in document order.
+     */
+    public void parse(InputStream input, Predicate<String> trackedStation, Consumer<StationLocation> locations,
+                      Consumer<WeatherData> observations) throws XMLStreamException {
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(input);
+        try {
+            Instant timestamp = null;
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                String element = reader.getLocalName();
+                if ("observations".equals(element)) {
+                    timestamp = Instant.ofEpochSecond(Long.parseLong(reader.getAttributeValue(null, "timestamp")));
+                } else if ("station".equals(element)) {
+                    WeatherData weatherData = readStation(reader, trackedStation, locations);
+                    if (weatherData != null) {
+                        weatherData.setTimestamp(timestamp);
+                        observations.accept(weatherData);
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    // Reads up to the end of the current station element, returns null for stations that are not tracked
+    private static WeatherData readStation(XMLStreamReader reader, Predicate<String> trackedStation,
+                                           Consumer<StationLocation> locations) throws XMLStreamException {
+        WeatherData weatherData = new WeatherData();
+        Double latitude = null;
+        Double longitude = null;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT && "station".equals(reader.getLocalName())) {
+                if (weatherData.getStationName() == null) {
+                    return null;
+                }
+                if (latitude != null && longitude != null) {
+                    locations.accept(new StationLocation(weatherData.getStationName(), latitude, longitude));
+                }
+                return weatherData;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            switch (reader.getLocalName()) {
+                case "name" -> {
+                    String name = reader.getElementText().trim();
+                    if (!trackedStation.test(name)) {
+                        skipStation(reader);
+                        return null;
+                    }
+                    weatherData.setStationName(name);
+                }
+                case "latitude" -> latitude = parseDouble(reader.getElementText());
+                case "longitude" -> longitude = parseDouble(reader.getElementText());
+                case "wmocode" -> weatherData.setWmoCode(reader.getElementText().trim());
+                case "airtemperature" -> weatherData.setAirTemperature(parseDouble(reader.getElementText()));
+                case "windspeed" -> weatherData.setWindSpeed(parseDouble(reader.getElementText()));
+                case "phenomenon" -> weatherData.setWeatherPhenomenon(reader.getElementText().trim());
+                default -> {
+                    // Not imported
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void skipStation(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static Double parseDouble(String text) {
+        String value = text.trim();
+        if (value.isEmpty()) {
+            return null;
+        }
+        try {
+            return Double.valueOf(value);
+        } catch (NumberFormatException e) {
+            log.debug("Ignoring malformed numeric value '{}'", value);
+            return null;
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+}
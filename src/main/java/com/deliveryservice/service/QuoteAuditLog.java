@@ -0,0 +1,243 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.model.CityTariff;
+import com.deliveryservice.model.VehicleTariff;
+import com.deliveryservice.model.WeatherObservation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Records every fee quote for billing reconciliation, off the request path.
+ * <p>
+ * Request threads claim a slot of a preallocated ring buffer with one compare-and-set, fill it with
+ * references to objects they already hold and publish it with a volatile write, so recording a quote
+ * neither locks nor allocates. A single writer thread drains the ring in order and appends the quotes to
+ * memory-mapped segment files, see {@link QuoteAuditSegmentWriter} for the layout and
+ * {@link QuoteAuditReader} to read them. When the ring is full a quote is dropped right away
+ * ({@code delivery.audit.when-full=drop}) or after waiting up to {@code delivery.audit.back-off-timeout}
+ * for the writer ({@code back-off}); dropped quotes are counted in {@code delivery.audit.dropped}.
+ */
+@Slf4j
+@Component
+public class QuoteAuditLog {
+    public static final String DROPPED = "delivery.audit.dropped";
+
+    public enum WhenFull {
+        DROP, BACK_OFF
+    }
+
+    private static final int DRAIN_BATCH = 256;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    private static final long FORCE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long segmentSize;
+    private final WhenFull whenFull;
+    private final long backOffNanos;
+    private final Slot[] slots;
+    private final int mask;
+    // Next sequence to claim, and next sequence the writer drains; every slot below drained is free again
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long drained;
+    private final Counter dropped;
+    private final Counter written;
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public QuoteAuditLog(@Value("${delivery.audit.enabled:false}") boolean enabled,
+                         @Value("${delivery.audit.directory:audit}") Path directory,
+                         @Value("${delivery.audit.buffer-size:65536}") int bufferSize,
+                         @Value("${delivery.audit.segment-size:64MB}") DataSize segmentSize,
+                         @Value("${delivery.audit.when-full:drop}") WhenFull whenFull,
+                         @Value("${delivery.audit.back-off-timeout:5ms}") Duration backOffTimeout,
+                         MeterRegistry meterRegistry) {
+        if (Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("delivery.audit.buffer-size must be a power of two: " + bufferSize);
+        }
+        this.enabled = enabled;
+        this.directory = directory;
+        this.segmentSize = segmentSize.toBytes();
+        this.whenFull = whenFull;
+        this.backOffNanos = backOffTimeout.toNanos();
+        this.slots = new Slot[enabled ? bufferSize : 0];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot(i - (long) slots.length);
+        }
+        this.mask = bufferSize - 1;
+        this.dropped = Counter.builder(DROPPED)
+                .description("Fee quotes not audited because the audit buffer was full")
+                .register(meterRegistry);
+        this.written = Counter.builder("delivery.audit.written")
+                .description("Fee quotes written to the audit log")
+                .register(meterRegistry);
+        Gauge.builder("delivery.audit.backlog", this, log -> log.claimed.get() - log.drained)
+                .description("Fee quotes waiting in the audit buffer")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this::drain, "quote-audit-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        log.info("Auditing fee quotes to {}", directory.toAbsolutePath());
+    }
+
+    /**
+     * Stops accepting quotes, writes the ones still buffered and closes the current segment.
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (writerThread != null) {
+            running = false;
+            writerThread.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
+    /**
+     * Records a quote that was priced or forbidden.
+     *
+     * @param datetime    The requested datetime as given, null for the latest weather.
+     * @param city        The tariff the regional base fee came from.
+     * @param vehicle     The tariff the vehicle base fee came from.
+     * @param observation The observation the fee was calculated from.
+     * @param feeCents    The fee, or a negative forbidden reason, see {@link FeeRules#feeCents}.
+     */
+    public void record(String datetime, CityTariff city, VehicleTariff vehicle, long tariffVersion,
+                       WeatherObservation observation, long feeCents) {
+        if (!enabled || !running) {
+            return;
+        }
+        long sequence = claim();
+        if (sequence < 0) {
+            dropped.increment();
+            return;
+        }
+        Slot slot = slots[(int) sequence & mask];
+        slot.quotedAtMillis = System.currentTimeMillis();
+        slot.datetime = datetime;
+        slot.city = city;
+        slot.vehicle = vehicle;
+        slot.tariffVersion = tariffVersion;
+        slot.observation = observation;
+        slot.feeCents = feeCents;
+        // The volatile write publishes the plain writes above to the writer thread
+        slot.sequence = sequence;
+    }
+
+    public long getDropped() {
+        return (long) dropped.count();
+    }
+
+    // The claimed sequence, or -1 if the ring stayed full
+    private long claim() {
+        long deadline = 0;
+        int spins = 0;
+        while (true) {
+            long sequence = claimed.get();
+            if (sequence - drained < slots.length) {
+                if (claimed.compareAndSet(sequence, sequence + 1)) {
+                    return sequence;
+                }
+                continue;
+            }
+            if (whenFull == WhenFull.DROP) {
+                return -1;
+            }
+            long now = System.nanoTime();
+            if (deadline == 0) {
+                deadline = now + backOffNanos;
+            } else if (now - deadline >= 0) {
+                return -1;
+            }
+            if (++spins < 100) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(Math.min(IDLE_PARK_NANOS, deadline - now));
+            }
+        }
+    }
+
+    private void drain() {
+        try (QuoteAuditSegmentWriter writer = new QuoteAuditSegmentWriter(directory, segmentSize)) {
+            long lastForce = System.nanoTime();
+            boolean unforced = false;
+            while (true) {
+                int count = drainBatch(writer);
+                if (count > 0) {
+                    unforced = true;
+                } else if (!running && claimed.get() == drained) {
+                    break;
+                } else {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                if (unforced && System.nanoTime() - lastForce > FORCE_INTERVAL_NANOS) {
+                    writer.force();
+                    lastForce = System.nanoTime();
+                    unforced = false;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            running = false;
+            log.error("Fee quote audit log stopped, quotes are no longer audited", e);
+        }
+    }
+
+    private int drainBatch(QuoteAuditSegmentWriter writer) throws IOException {
+        long next = drained;
+        int count = 0;
+        while (count < DRAIN_BATCH) {
+            Slot slot = slots[(int) next & mask];
+            if (slot.sequence != next) {
+                break;
+            }
+            writer.append(slot.quotedAtMillis, slot.datetime, slot.city, slot.vehicle,
+                    slot.tariffVersion, slot.observation, slot.feeCents);
+            // Not keeping old snapshots reachable through the ring
+            slot.datetime = null;
+            slot.city = null;
+            slot.vehicle = null;
+            slot.observation = null;
+            next++;
+            count++;
+        }
+        if (count > 0) {
+            drained = next;
+            written.increment(count);
+        }
+        return count;
+    }
+
+    private static final class Slot {
+        volatile long sequence;
+        long quotedAtMillis;
+        String datetime;
+        CityTariff city;
+        VehicleTariff vehicle;
+        long tariffVersion;
+        WeatherObservation observation;
+        long feeCents;
+
+        Slot(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+}
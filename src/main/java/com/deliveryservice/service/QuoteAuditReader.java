@@ -0,0 +1,178 @@
+package com.deliveryservice.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Reads the segment files of the {@link QuoteAuditLog}.
+ * <p>
+ * As a tool, prints the quotes of the given segment files or directories as CSV, oldest segment first:
+ * {@code java -cp DeliveryService.jar -Dloader.main=com.deliveryservice.service.QuoteAuditReader
+ * org.springframework.boot.loader.PropertiesLauncher audit > quotes.csv}
+ */
+public final class QuoteAuditReader {
+    private static final String CSV_HEADER = "quoted_at,requested_at,tariff_version,city,station,vehicle_type,"
+            + "city_fee,vehicle_fee,observed_at,air_temperature,wind_speed,weather_phenomenon,fee,forbidden_reason";
+
+    private QuoteAuditReader() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: QuoteAuditReader <segment file or directory>...");
+            System.exit(2);
+        }
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+        out.println(CSV_HEADER);
+        for (String arg : args) {
+            Path path = Path.of(arg);
+            for (Path segment : Files.isDirectory(path) ? segments(path) : List.of(path)) {
+                read(segment, quote -> out.println(toCsv(quote)));
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * @return The segment files in the directory, in the order they were written.
+     */
+    public static List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> QuoteAuditSegmentWriter.segmentNumber(file.getFileName().toString()) > 0)
+                    .sorted(Comparator.comparingLong(file ->
+                            QuoteAuditSegmentWriter.segmentNumber(file.getFileName().toString())))
+                    .toList();
+        }
+    }
+
+    /**
+     * Reads the quotes of one segment in the order they were written. A segment that is still being written
+     * can be read, it ends at the last complete quote.
+     *
+     * @throws IOException If the file is not a segment or is corrupt.
+     */
+    public static void read(Path segment, Consumer<Quote> quotes) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        if (buffer.remaining() < QuoteAuditSegmentWriter.HEADER_SIZE
+                || buffer.getInt() != QuoteAuditSegmentWriter.MAGIC) {
+            throw new IOException("Not a quote audit segment: " + segment);
+        }
+        int version = buffer.getInt();
+        if (version != QuoteAuditSegmentWriter.FORMAT_VERSION) {
+            throw new IOException("Unsupported quote audit format " + version + ": " + segment);
+        }
+        buffer.getLong();
+
+        Map<Integer, String> names = new HashMap<>();
+        while (buffer.hasRemaining()) {
+            byte tag = buffer.get();
+            if (tag == QuoteAuditSegmentWriter.END) {
+                return;
+            } else if (tag == QuoteAuditSegmentWriter.NAME) {
+                int id = buffer.getInt();
+                byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+                buffer.get(bytes);
+                names.put(id, new String(bytes, StandardCharsets.UTF_8));
+            } else if (tag == QuoteAuditSegmentWriter.QUOTE) {
+                quotes.accept(readQuote(buffer, names));
+            } else {
+                throw new IOException("Corrupt quote audit segment " + segment + " at " + (buffer.position() - 1));
+            }
+        }
+    }
+
+    private static Quote readQuote(MappedByteBuffer buffer, Map<Integer, String> names) {
+        Instant quotedAt = Instant.ofEpochMilli(buffer.getLong());
+        long requestedAt = buffer.getLong();
+        long tariffVersion = buffer.getLong();
+        String city = names.get(buffer.getInt());
+        String station = names.get(buffer.getInt());
+        String vehicleType = names.get(buffer.getInt());
+        int cityFeeCents = buffer.getInt();
+        int vehicleFeeCents = buffer.getInt();
+        Instant observedAt = Instant.ofEpochSecond(buffer.getLong());
+        float airTemperature = buffer.getFloat();
+        float windSpeed = buffer.getFloat();
+        int phenomenon = buffer.getInt();
+        int feeCents = buffer.getInt();
+        return new Quote(quotedAt, requestedAt == Long.MIN_VALUE ? null : Instant.ofEpochMilli(requestedAt),
+                tariffVersion, city, station, vehicleType, cityFeeCents, vehicleFeeCents, observedAt,
+                Float.isNaN(airTemperature) ? null : (double) airTemperature,
+                Float.isNaN(windSpeed) ? null : (double) windSpeed,
+                phenomenon < 0 ? null : names.get(phenomenon), feeCents);
+    }
+
+    private static String toCsv(Quote quote) {
+        List<Object> fields = new ArrayList<>(List.of(quote.quotedAt(),
+                quote.requestedAt() == null ? "" : quote.requestedAt(), quote.tariffVersion(),
+                quote.city(), quote.station(), quote.vehicleType(),
+                FeeRules.toDecimal(quote.cityFeeCents()), FeeRules.toDecimal(quote.vehicleFeeCents()),
+                quote.observedAt(), quote.airTemperature() == null ? "" : quote.airTemperature(),
+                quote.windSpeed() == null ? "" : quote.windSpeed(),
+                quote.weatherPhenomenon() == null ? "" : quote.weatherPhenomenon()));
+        fields.add(quote.isForbidden() ? "" : quote.fee());
+        fields.add(quote.forbiddenReason() == null ? "" : quote.forbiddenReason());
+        StringBuilder line = new StringBuilder();
+        for (Object field : fields) {
+            if (!line.isEmpty()) {
+                line.append(',');
+            }
+            String value = String.valueOf(field);
+            line.append(value.contains(",") || value.contains("\"")
+                    ? '"' + value.replace("\"", "\"\"") + '"'
+                    : value);
+        }
+        return line.toString();
+    }
+
+    /**
+     * One audited quote.
+     *
+     * @param requestedAt The requested datetime, null for the latest weather.
+     * @param feeCents    The fee, or the negative forbidden reason of {@link FeeRules#feeCents}.
+     */
+    public record Quote(Instant quotedAt, Instant requestedAt, long tariffVersion, String city, String station,
+                        String vehicleType, long cityFeeCents, long vehicleFeeCents, Instant observedAt,
+                        Double airTemperature, Double windSpeed, String weatherPhenomenon, long feeCents) {
+
+        public boolean isForbidden() {
+            return FeeRules.isForbidden(feeCents);
+        }
+
+        public BigDecimal fee() {
+            return isForbidden() ? null : FeeRules.toDecimal(feeCents);
+        }
+
+        /**
+         * @return "wind" or "phenomenon" for forbidden quotes, null otherwise.
+         */
+        public String forbiddenReason() {
+            if (feeCents == FeeRules.FORBIDDEN_BY_WIND) {
+                return "wind";
+            }
+            return feeCents == FeeRules.FORBIDDEN_BY_PHENOMENON ? "phenomenon" : null;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.model.CityTariff;
+import com.deliveryservice.model.VehicleTariff;
+import com.deliveryservice.model.WeatherObservation;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Appends audited quotes to memory-mapped segment files, used by the single writer of {@link QuoteAuditLog}.
+ * <p>
+ * A segment is named {@code quotes-<n>.audit} with a zero-padded, increasing number and is mapped at its
+ * full size up front. It starts with a 16 byte header: {@link #MAGIC}, {@link #FORMAT_VERSION} and the
+ * creation time in epoch milliseconds. Entries follow, each starting with a tag byte, all numbers big-endian:
+ * <ul>
+ *     <li>{@link #NAME}: int id, unsigned short length, UTF-8 bytes (at most 1024). Defines a name (city,
+ *     station, vehicle type or phenomenon) used by the quotes after it in the same segment, so every segment
+ *     reads on its own.</li>
+ *     <li>{@link #QUOTE}: {@value #QUOTE_SIZE} bytes: long quoted at (epoch ms), long requested datetime
+ *     (epoch ms, {@link Long#MIN_VALUE} for the latest weather), long tariff version, int city name id,
+ *     int station name id, int vehicle type name id, int city base fee and int vehicle base fee (cents),
+ *     long observation time (epoch s), float air temperature, float wind speed (NaN if not observed), int
+ *     phenomenon name id (-1 if none) and int fee (cents, or the negative forbidden reason of
+ *     {@link FeeRules#feeCents}).</li>
+ * </ul>
+ * The tag byte is written last, so a segment cut off by a crash ends at the first zero tag, like one that
+ * was rotated before it was full.
+ */
+@Slf4j
+class QuoteAuditSegmentWriter implements Closeable {
+    static final int MAGIC = 0x51415544;
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final byte END = 0;
+    static final byte NAME = 1;
+    static final byte QUOTE = 2;
+    static final int QUOTE_SIZE = 68;
+    static final String PREFIX = "quotes-";
+    static final String SUFFIX = ".audit";
+    private static final int MAX_NAME_BYTES = 1024;
+    // The header and the largest possible quote with four new names
+    private static final int MIN_SEGMENT_SIZE = HEADER_SIZE + 1 + QUOTE_SIZE + 4 * (1 + 6 + MAX_NAME_BYTES);
+
+    private final Path directory;
+    private final long segmentSize;
+    private long segmentNumber;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private final Map<String, Integer> names = new HashMap<>();
+
+    QuoteAuditSegmentWriter(Path directory, long segmentSize) throws IOException {
+        if (segmentSize < MIN_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("delivery.audit.segment-size must be at least " + MIN_SEGMENT_SIZE
+                    + " bytes: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        // Never appends to an existing segment, a new run starts after the last one
+        try (Stream<Path> files = Files.list(directory)) {
+            segmentNumber = files.map(file -> segmentNumber(file.getFileName().toString()))
+                    .max(Long::compare)
+                    .orElse(0L);
+        }
+    }
+
+    void append(long quotedAtMillis, String datetime, CityTariff city, VehicleTariff vehicle, long tariffVersion,
+                WeatherObservation observation, long feeCents) throws IOException {
+        String stationName = observation.getStationName();
+        String phenomenon = observation.getWeatherPhenomenon();
+        // At most four new names and the quote, so the whole entry lands in one segment
+        int needed = 1 + QUOTE_SIZE + nameSize(city.getCity()) + nameSize(stationName)
+                + nameSize(vehicle.getVehicle()) + (phenomenon == null ? 0 : nameSize(phenomenon));
+        if (buffer == null || buffer.remaining() < needed) {
+            rotate();
+        }
+        int cityId = nameId(city.getCity());
+        int stationId = nameId(stationName);
+        int vehicleId = nameId(vehicle.getVehicle());
+        int phenomenonId = phenomenon == null ? -1 : nameId(phenomenon);
+
+        int start = buffer.position();
+        buffer.position(start + 1);
+        buffer.putLong(quotedAtMillis);
+        buffer.putLong(datetime == null ? Long.MIN_VALUE : Instant.parse(datetime).toEpochMilli());
+        buffer.putLong(tariffVersion);
+        buffer.putInt(cityId);
+        buffer.putInt(stationId);
+        buffer.putInt(vehicleId);
+        buffer.putInt((int) city.getFeeCents());
+        buffer.putInt((int) vehicle.getFeeCents());
+        buffer.putLong(observation.getTimestamp().getEpochSecond());
+        buffer.putFloat(orNaN(observation.getAirTemperature()));
+        buffer.putFloat(orNaN(observation.getWindSpeed()));
+        buffer.putInt(phenomenonId);
+        buffer.putInt((int) feeCents);
+        buffer.put(start, QUOTE);
+    }
+
+    /**
+     * Flushes the written entries of the current segment to the storage device.
+     */
+    void force() {
+        if (buffer != null) {
+            buffer.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            force();
+            channel.close();
+            channel = null;
+            buffer = null;
+        }
+    }
+
+    static long segmentNumber(String fileName) {
+        if (!fileName.startsWith(PREFIX) || !fileName.endsWith(SUFFIX)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(fileName.substring(PREFIX.length(), fileName.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private void rotate() throws IOException {
+        close();
+        segmentNumber++;
+        Path segment = directory.resolve(String.format(Locale.ROOT, "%s%012d%s", PREFIX, segmentNumber, SUFFIX));
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        // Zero filled and sparse until written, so the unused tail costs no disk space
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putInt(FORMAT_VERSION);
+        buffer.putLong(System.currentTimeMillis());
+        names.clear();
+        log.debug("Auditing fee quotes to {}", segment);
+    }
+
+    private int nameSize(String name) {
+        return names.containsKey(name) ? 0 : 1 + 6 + Math.min(MAX_NAME_BYTES, name.length() * 3);
+    }
+
+    private int nameId(String name) {
+        Integer id = names.get(name);
+        if (id != null) {
+            return id;
+        }
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, MAX_NAME_BYTES);
+        int newId = names.size();
+        int start = buffer.position();
+        buffer.position(start + 1);
+        buffer.putInt(newId);
+        buffer.putShort((short) length);
+        buffer.put(bytes, 0, length);
+        buffer.put(start, NAME);
+        names.put(name, newId);
+        return newId;
+    }
+
+    private static float orNaN(Double value) {
+        return value == null ? Float.NaN : value.floatValue();
+    }
+}
@@ -0,0 +1,77 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.repository.ReplicaLeaseRepository;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Decides which replica runs the weather import, the archive job and the retention job, one lease per job.
+ * <p>
+ * Every replica tries to take the lease when its schedule fires; the first one wins it for
+ * {@code weather.coordination.lease-ttl} and keeps renewing it on its following runs. The others stand by
+ * until it expires, e.g. because its owner stopped. The TTL should exceed the clock skew between replicas
+ * plus the duration of an import.
+ */
+@Slf4j
+@Service
+public class ReplicaLease {
+    static final String WEATHER_IMPORT = "weather-import";
+    static final String WEATHER_ARCHIVE = "weather-archive";
+    static final String WEATHER_RETENTION = "weather-retention";
+
+    private final ReplicaLeaseRepository leaseRepository;
+    private final Duration ttl;
+    private final String replicaId;
+    private final Set<String> held = ConcurrentHashMap.newKeySet();
+
+    public ReplicaLease(ReplicaLeaseRepository leaseRepository,
+                        @Value("${weather.coordination.lease-ttl:5m}") Duration ttl,
+                        @Value("${weather.coordination.replica-id:}") String replicaId) {
+        this.leaseRepository = leaseRepository;
+        this.ttl = ttl;
+        this.replicaId = replicaId.isEmpty() ? defaultReplicaId() : replicaId;
+    }
+
+    /**
+     * @return Whether this replica holds the import lease now, after taking or renewing it.
+     */
+    public boolean tryAcquireImport() {
+        return tryAcquire(WEATHER_IMPORT);
+    }
+
+    /**
+     * @param name The lease, a row of the replica_lease table.
+     * @return Whether this replica holds the lease now, after taking or renewing it.
+     */
+    public boolean tryAcquire(String name) {
+        Instant now = Instant.now();
+        boolean acquired = leaseRepository.tryAcquire(name, replicaId, now, now.plus(ttl));
+        if (acquired ? held.add(name) : held.remove(name)) {
+            log.info(acquired ? "Replica {} took the {} lease" : "Replica {} lost the {} lease", replicaId, name);
+        }
+        return acquired;
+    }
+
+    public String getReplicaId() {
+        return replicaId;
+    }
+
+    private static String defaultReplicaId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "unknown";
+        }
+        // The random part keeps replicas apart that share host and pid, e.g. in containers or tests
+        return host + "-" + ProcessHandle.current().pid() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
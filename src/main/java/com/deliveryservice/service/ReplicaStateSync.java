@@ -0,0 +1,136 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.entity.WeatherData;
+import com.deliveryservice.model.WeatherObservation;
+import com.deliveryservice.repository.SharedStateRepository;
+import com.deliveryservice.repository.WeatherDataRepository;
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps the in-memory state of this replica in line with imports and settings made by other replicas.
+ * <p>
+ * Every {@code weather.coordination.poll-interval} the versions in the shared_state table are read with
+ * one small query. When the weather-data version has moved, only observations at or after the newest one
+ * known here are loaded and published; when the import-cron version has moved, the import is rescheduled;
+ * when the weather-archive version has moved, the archive directory is listed again; when the tariffs
+ * version has moved, the tariffs are reloaded.
+ */
+@Slf4j
+@Service
+public class ReplicaStateSync {
+    private final SharedStateRepository sharedState;
+    private final WeatherDataRepository weatherDataRepository;
+    private final LatestWeatherCache latestWeatherCache;
+    private final WeatherHistoryIndex weatherHistoryIndex;
+    private final SurchargeRollups surchargeRollups;
+    private final StationRegistry stationRegistry;
+    private final WeatherArchive weatherArchive;
+    private final weatherImporter weatherImporter;
+    private final TariffRegistry tariffRegistry;
+    private final TaskScheduler taskScheduler;
+    private final Duration pollInterval;
+    // -1 until the first poll, which therefore always catches up
+    private long weatherDataVersion = -1;
+    private long importCronVersion = -1;
+    private long weatherArchiveVersion = -1;
+    private long tariffsVersion = -1;
+
+    public ReplicaStateSync(SharedStateRepository sharedState, WeatherDataRepository weatherDataRepository,
+                            LatestWeatherCache latestWeatherCache, WeatherHistoryIndex weatherHistoryIndex,
+                            SurchargeRollups surchargeRollups,
+                            StationRegistry stationRegistry, WeatherArchive weatherArchive,
+                            weatherImporter weatherImporter, TariffRegistry tariffRegistry,
+                            TaskScheduler taskScheduler,
+                            @Value("${weather.coordination.poll-interval:10s}") Duration pollInterval) {
+        this.sharedState = sharedState;
+        this.weatherDataRepository = weatherDataRepository;
+        this.latestWeatherCache = latestWeatherCache;
+        this.weatherHistoryIndex = weatherHistoryIndex;
+        this.surchargeRollups = surchargeRollups;
+        this.stationRegistry = stationRegistry;
+        this.weatherArchive = weatherArchive;
+        this.weatherImporter = weatherImporter;
+        this.tariffRegistry = tariffRegistry;
+        this.taskScheduler = taskScheduler;
+        this.pollInterval = pollInterval;
+    }
+
+    @PostConstruct
+    public void start() {
+        poll();
+        taskScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                poll();
+            } catch (Exception e) {
+                log.warn("Polling the shared replica state failed: {}", e.toString());
+            }
+        }, pollInterval);
+    }
+
+    /**
+     * Applies changes made by other replicas since the last poll.
+     */
+    public synchronized void poll() {
+        Map<String, SharedStateRepository.Entry> state = sharedState.findAll();
+        SharedStateRepository.Entry weatherData = state.get(SharedStateRepository.WEATHER_DATA);
+        if (weatherData != null && weatherData.version() != weatherDataVersion) {
+            refreshWeather();
+            weatherDataVersion = weatherData.version();
+        }
+        SharedStateRepository.Entry importCron = state.get(SharedStateRepository.IMPORT_CRON);
+        if (importCron != null && importCron.version() != importCronVersion) {
+            if (importCron.value() != null && !importCron.value().equals(weatherImporter.getCronExpression())) {
+                log.info("Import schedule changed to {} by another replica", importCron.value());
+                try {
+                    weatherImporter.applyCronExpression(importCron.value());
+                } catch (IllegalArgumentException e) {
+                    // Written by a replica that validated differently, the current schedule stays
+                    log.warn("Ignoring the shared import schedule: {}", e.getMessage());
+                }
+            }
+            importCronVersion = importCron.version();
+        }
+        SharedStateRepository.Entry weatherArchiveState = state.get(SharedStateRepository.WEATHER_ARCHIVE);
+        // The first poll follows the catalog listing at startup
+        if (weatherArchiveState != null && weatherArchiveState.version() != weatherArchiveVersion) {
+            if (weatherArchiveVersion != -1) {
+                weatherArchive.refreshCatalog();
+            }
+            weatherArchiveVersion = weatherArchiveState.version();
+        }
+        SharedStateRepository.Entry tariffs = state.get(SharedStateRepository.TARIFFS);
+        // Always reloaded, the value alone cannot tell whether this replica missed an update in between
+        if (tariffs != null && tariffs.version() != tariffsVersion) {
+            tariffRegistry.reload();
+            tariffsVersion = tariffs.version();
+        }
+    }
+
+    private void refreshWeather() {
+        Optional<Instant> newest = latestWeatherCache.getObservations().values().stream()
+                .map(WeatherObservation::getTimestamp)
+                .max(Instant::compareTo);
+        if (newest.isEmpty()) {
+            latestWeatherCache.reload();
+            weatherHistoryIndex.reload();
+            surchargeRollups.rebuildInBackground();
+        } else {
+            // Re-publishing the newest known observations is harmless, both snapshots replace equal timestamps
+            List<WeatherData> rows = weatherDataRepository.findAllByTimestampGreaterThanEqualOrderByTimestampAsc(
+                    newest.get());
+            latestWeatherCache.publish(rows);
+            weatherHistoryIndex.append(rows);
+            surchargeRollups.append(rows);
+        }
+        stationRegistry.reload();
+    }
+}
@@ -0,0 +1,52 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.model.TariffSnapshot;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports whether this replica can price deliveries: the tariff snapshot holds cities and vehicle types and
+ * the latest weather snapshot holds observations.
+ * <p>
+ * Part of the readiness health group ({@code /actuator/health/readiness}), so a replica receives traffic
+ * only once the startup import, or a poll of the data imported by another replica, has warmed it. The
+ * snapshots are never emptied again, so the replica stays ready after that, also when the feed fails.
+ */
+@Slf4j
+@Component("snapshots")
+public class SnapshotReadiness implements HealthIndicator {
+    private final TariffRegistry tariffRegistry;
+    private final LatestWeatherCache latestWeatherCache;
+    private final AtomicBoolean ready = new AtomicBoolean();
+
+    public SnapshotReadiness(TariffRegistry tariffRegistry, LatestWeatherCache latestWeatherCache) {
+        this.tariffRegistry = tariffRegistry;
+        this.latestWeatherCache = latestWeatherCache;
+    }
+
+    public boolean isReady() {
+        if (ready.get()) {
+            return true;
+        }
+        TariffSnapshot tariffs = tariffRegistry.current();
+        boolean warm = !tariffs.getCities().isEmpty() && !tariffs.getVehicles().isEmpty()
+                && !latestWeatherCache.getObservations().isEmpty();
+        if (warm && ready.compareAndSet(false, true)) {
+            log.info("Tariff and weather snapshots warm, ready {} ms after JVM start",
+                    ManagementFactory.getRuntimeMXBean().getUptime());
+        }
+        return warm;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder health = isReady() ? Health.up() : Health.outOfService();
+        return health.withDetail("tariffVersion", tariffRegistry.current().getVersion())
+                .withDetail("weatherStations", latestWeatherCache.getObservations().size())
+                .build();
+    }
+}
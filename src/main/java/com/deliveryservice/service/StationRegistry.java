@@ -0,0 +1,170 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.entity.Station;
+import com.deliveryservice.model.StationIndex;
+import com.deliveryservice.model.StationLocation;
+import com.deliveryservice.model.TariffSnapshot;
+import com.deliveryservice.model.WeatherObservation;
+import com.deliveryservice.repository.StationRepository;
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Knows every station of the observations feed and where it is.
+ * <p>
+ * Stations are persisted in the station table and held in an immutable snapshot with two spatial indexes:
+ * one over all stations, used to find the closest region with a tariff, and one over the active stations,
+ * those whose latest observation is at most {@code weather.stations.active-window} older than the newest
+ * observation of any station and has both air temperature and wind speed. A station that stops reporting
+ * either value, or stops reporting at all, no longer prices positions near it. Station name lookups are
+ * served from the same snapshot.
+ */
+@Slf4j
+@Service
+public class StationRegistry {
+    private final StationRepository stationRepository;
+    private final LatestWeatherCache latestWeatherCache;
+    private final Duration activeWindow;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.EMPTY);
+
+    public StationRegistry(StationRepository stationRepository, LatestWeatherCache latestWeatherCache,
+                           @Value("${weather.stations.active-window:3h}") Duration activeWindow) {
+        this.stationRepository = stationRepository;
+        this.latestWeatherCache = latestWeatherCache;
+        this.activeWindow = activeWindow;
+    }
+
+    /**
+     * Rebuilds the snapshot from the station table and the latest observations.
+     */
+    @PostConstruct
+    public synchronized void reload() {
+        List<StationLocation> stations = new ArrayList<>();
+        for (Station station : stationRepository.findAll()) {
+            stations.add(new StationLocation(station.getName(), station.getLatitude(), station.getLongitude()));
+        }
+        publish(stations);
+    }
+
+    /**
+     * Persists stations that are new or have moved and republishes the snapshot, so stations whose
+     * observations were just published become active.
+     */
+    public synchronized void register(Collection<StationLocation> located) {
+        Snapshot current = snapshot.get();
+        Map<String, StationLocation> changed = new HashMap<>();
+        for (StationLocation location : located) {
+            if (!location.equals(current.stationsByName.get(location.getName()))) {
+                changed.put(location.getName(), location);
+            }
+        }
+        if (!changed.isEmpty()) {
+            List<Station> rows = new ArrayList<>();
+            Map<String, StationLocation> pending = new HashMap<>(changed);
+            for (Station station : stationRepository.findByNameIn(changed.keySet())) {
+                StationLocation location = pending.remove(station.getName());
+                station.setLatitude(location.getLatitude());
+                station.setLongitude(location.getLongitude());
+                rows.add(station);
+            }
+            pending.values().forEach(location ->
+                    rows.add(new Station(location.getName(), location.getLatitude(), location.getLongitude())));
+            stationRepository.saveAll(rows);
+            log.info("Registered {} new or moved stations", changed.size());
+        }
+
+        Map<String, StationLocation> stations = new HashMap<>();
+        current.stations.forEach(station -> stations.put(station.getName(), station));
+        stations.putAll(changed);
+        publish(stations.values());
+    }
+
+    /**
+     * Resolves a station name or city alias (e.g. "Tallinn" to "Tallinn-Harku"), ignoring case.
+     *
+     * @return The station name, or the given name if it is neither a station nor known to the tariffs.
+     */
+    public String resolveStationName(TariffSnapshot tariffs, String name) {
+        Snapshot current = snapshot.get();
+        StationLocation station = current.stationsByName.get(name);
+        if (station == null) {
+            station = current.stationsByName.get(normalize(name));
+        }
+        return station != null ? station.getName() : tariffs.resolveStationName(name);
+    }
+
+    /**
+     * @return The name of the active station closest to the given position, or null if no station is active.
+     */
+    public String findNearestStation(double latitude, double longitude) {
+        StationLocation station = snapshot.get().active.findNearest(latitude, longitude);
+        return station != null ? station.getName() : null;
+    }
+
+    /**
+     * @return The name of the closest station that has a regional base fee, or null if there is none.
+     */
+    public String findNearestCity(TariffSnapshot tariffs, double latitude, double longitude) {
+        StationLocation station = snapshot.get().all.findNearest(latitude, longitude,
+                name -> tariffs.findCity(name) != null);
+        return station != null ? station.getName() : null;
+    }
+
+    public Collection<StationLocation> getStations() {
+        return snapshot.get().stations;
+    }
+
+    private void publish(Collection<StationLocation> stations) {
+        Map<String, WeatherObservation> observations = latestWeatherCache.getObservations();
+        Instant newest = observations.values().stream()
+                .map(WeatherObservation::getTimestamp)
+                .max(Instant::compareTo)
+                .orElse(Instant.MAX);
+        Instant activeSince = newest.minus(activeWindow);
+        List<StationLocation> active = stations.stream()
+                .filter(station -> {
+                    WeatherObservation latest = observations.get(station.getName());
+                    return latest != null && !latest.getTimestamp().isBefore(activeSince)
+                            && latest.getAirTemperature() != null && latest.getWindSpeed() != null;
+                })
+                .toList();
+        snapshot.set(new Snapshot(stations, active));
+        log.debug("Station snapshot rebuilt with {} stations, {} active", stations.size(), active.size());
+    }
+
+    private static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(List.of(), List.of());
+
+        final List<StationLocation> stations;
+        final Map<String, StationLocation> stationsByName;
+        final StationIndex all;
+        final StationIndex active;
+
+        Snapshot(Collection<StationLocation> stations, List<StationLocation> active) {
+            this.stations = List.copyOf(stations);
+            Map<String, StationLocation> stationsByName = new HashMap<>();
+            for (StationLocation station : stations) {
+                stationsByName.putIfAbsent(normalize(station.getName()), station);
+                stationsByName.put(station.getName(), station);
+            }
+            this.stationsByName = Map.copyOf(stationsByName);
+            this.all = new StationIndex(stations);
+            this.active = new StationIndex(active);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.entity.WeatherData;
+import com.deliveryservice.model.SurchargeRollup;
+import com.deliveryservice.model.VehicleClass;
+import com.deliveryservice.model.WeatherObservation;
+import com.deliveryservice.repository.WeatherDataRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Weather surcharge and forbidden-time aggregates per station, vehicle class and hour or day, see
+ * {@link SurchargeRollup}.
+ * <p>
+ * The importer and {@link ReplicaStateSync} append every new observation, so a range query never has to
+ * evaluate the fee rules again. When the rules change, or after a backfill of older observations, the
+ * rollups are rebuilt from the whole history, database and archive, in a fork-join pool with one task per
+ * station. A rebuild also runs in the background at startup, on a thread of its own so it never holds up the
+ * shared task scheduler, which runs the imports, replica polls, lease renewals and heartbeats.
+ */
+@Slf4j
+@Service
+public class SurchargeRollups {
+    // Beyond any stored observation, for scans up to the newest one
+    private static final Instant END_OF_HISTORY = Instant.parse("3000-01-01T00:00:00Z");
+    private static final VehicleClass[] CLASSES = VehicleClass.values();
+
+    private final WeatherHistoryIndex weatherHistoryIndex;
+    private final WeatherDataRepository weatherDataRepository;
+    private final WeatherArchive weatherArchive;
+    private final ExecutorService rebuilds = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "rollup-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final FeeRules feeRules = FeeRules.DEFAULT;
+    private final long hourlyRetentionSeconds;
+    private final long maxGapSeconds;
+    private final int rebuildParallelism;
+    private final Object rebuildLock = new Object();
+    private volatile ConcurrentMap<String, SurchargeRollup> stations = new ConcurrentHashMap<>();
+
+    public SurchargeRollups(WeatherHistoryIndex weatherHistoryIndex, WeatherDataRepository weatherDataRepository,
+                            WeatherArchive weatherArchive,
+                            @Value("${weather.rollup.hourly-retention:90d}") Duration hourlyRetention,
+                            @Value("${weather.rollup.max-gap:3h}") Duration maxGap,
+                            @Value("${weather.rollup.rebuild-parallelism:4}") int rebuildParallelism) {
+        this.weatherHistoryIndex = weatherHistoryIndex;
+        this.weatherDataRepository = weatherDataRepository;
+        this.weatherArchive = weatherArchive;
+        this.hourlyRetentionSeconds = hourlyRetention.toSeconds();
+        this.maxGapSeconds = maxGap.toSeconds();
+        this.rebuildParallelism = rebuildParallelism;
+    }
+
+    @PostConstruct
+    public void init() {
+        rebuildInBackground();
+    }
+
+    @PreDestroy
+    public void stop() {
+        rebuilds.shutdownNow();
+    }
+
+    /**
+     * Adds freshly imported observations. Observations older than the newest one of their station are
+     * ignored, they are only counted by the next {@link #rebuild()}.
+     */
+    public synchronized void append(Collection<WeatherData> imported) {
+        List<WeatherData> rows = new ArrayList<>(imported);
+        rows.sort(Comparator.comparing(WeatherData::getTimestamp));
+        long[] surcharges = new long[SurchargeRollup.CLASSES];
+        for (WeatherData row : rows) {
+            SurchargeRollup rollup = stations.computeIfAbsent(row.getStationName(), name -> newRollup());
+            append(rollup, WeatherObservation.from(row), surcharges);
+        }
+    }
+
+    /**
+     * @return The buckets of the station and vehicle class that start in [from, to), empty if the station
+     * has no observations.
+     */
+    public List<SurchargeRollup.Bucket> query(String stationName, VehicleClass vehicleClass,
+                                              SurchargeRollup.Granularity granularity, Instant from, Instant to) {
+        SurchargeRollup rollup = stations.get(stationName);
+        return rollup == null ? List.of() : rollup.query(granularity, vehicleClass, from, to);
+    }
+
+    /**
+     * Starts a {@link #rebuild()} on the rebuild thread, after the rebuilds requested before.
+     */
+    public void rebuildInBackground() {
+        rebuilds.execute(() -> {
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                log.warn("Rebuilding the surcharge rollups failed: {}", e.toString());
+                log.debug("Rebuilding the surcharge rollups failed", e);
+            }
+        });
+    }
+
+    /**
+     * Replaces the rollups of all stations with ones evaluated from their whole history. Observations
+     * stored meanwhile are caught up before the rebuilt rollups are published.
+     *
+     * @return The number of stations rebuilt.
+     */
+    public int rebuild() {
+        synchronized (rebuildLock) {
+            long start = System.nanoTime();
+            TreeSet<String> names = new TreeSet<>(weatherDataRepository.findStationNames());
+            names.addAll(weatherArchive.getStationNames());
+
+            ForkJoinPool pool = new ForkJoinPool(rebuildParallelism);
+            Map<String, SurchargeRollup> rebuilt;
+            try {
+                rebuilt = pool.invoke(new RebuildTask(List.copyOf(names)));
+            } finally {
+                pool.shutdown();
+            }
+
+            synchronized (this) {
+                long[] surcharges = new long[SurchargeRollup.CLASSES];
+                rebuilt.forEach((name, rollup) -> weatherHistoryIndex.scan(name, after(rollup), END_OF_HISTORY,
+                        observation -> append(rollup, observation, surcharges)));
+                ConcurrentMap<String, SurchargeRollup> published = new ConcurrentHashMap<>(rebuilt);
+                // Stations first seen while rebuilding
+                stations.forEach(published::putIfAbsent);
+                stations = published;
+            }
+            log.info("Surcharge rollups of {} stations rebuilt in {} ms", rebuilt.size(),
+                    Duration.ofNanos(System.nanoTime() - start).toMillis());
+            return rebuilt.size();
+        }
+    }
+
+    private static Instant after(SurchargeRollup rollup) {
+        long last = rollup.getLastEpochSecond();
+        return last == Long.MIN_VALUE ? Instant.EPOCH : Instant.ofEpochSecond(last + 1);
+    }
+
+    private SurchargeRollup newRollup() {
+        return new SurchargeRollup(hourlyRetentionSeconds, maxGapSeconds);
+    }
+
+    private void append(SurchargeRollup rollup, WeatherObservation observation, long[] surcharges) {
+        double airTemperature = orNaN(observation.getAirTemperature());
+        double windSpeed = orNaN(observation.getWindSpeed());
+        for (VehicleClass vehicleClass : CLASSES) {
+            surcharges[vehicleClass.ordinal()] = feeRules.feeCents(0, vehicleClass, airTemperature, windSpeed,
+                    observation.getPhenomenonCode());
+        }
+        rollup.append(observation.getTimestamp().getEpochSecond(), surcharges);
+    }
+
+    private static double orNaN(Double value) {
+        return value == null ? Double.NaN : value;
+    }
+
+    // Splits the stations in halves down to one station per task; the tasks block on database scans
+    private final class RebuildTask extends RecursiveTask<Map<String, SurchargeRollup>> {
+        private final List<String> names;
+
+        RebuildTask(List<String> names) {
+            this.names = names;
+        }
+
+        @Override
+        protected Map<String, SurchargeRollup> compute() {
+            if (names.size() == 1) {
+                SurchargeRollup rollup = newRollup();
+                long[] surcharges = new long[SurchargeRollup.CLASSES];
+                weatherHistoryIndex.scan(names.get(0), Instant.EPOCH, END_OF_HISTORY,
+                        observation -> append(rollup, observation, surcharges));
+                return Map.of(names.get(0), rollup);
+            }
+            Map<String, SurchargeRollup> result = new HashMap<>();
+            if (names.isEmpty()) {
+                return result;
+            }
+            int middle = names.size() / 2;
+            RebuildTask left = new RebuildTask(names.subList(0, middle));
+            left.fork();
+            result.putAll(new RebuildTask(names.subList(middle, names.size())).compute());
+            result.putAll(left.join());
+            return result;
+        }
+    }
+}
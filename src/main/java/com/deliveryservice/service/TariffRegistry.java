@@ -0,0 +1,177 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.entity.City;
+import com.deliveryservice.entity.Vehicle;
+import com.deliveryservice.exceptions.ResourceNotFoundException;
+import com.deliveryservice.model.CityTariff;
+import com.deliveryservice.model.TariffSnapshot;
+import com.deliveryservice.model.VehicleClass;
+import com.deliveryservice.model.VehicleTariff;
+import com.deliveryservice.repository.CityRepository;
+import com.deliveryservice.repository.SharedStateRepository;
+import com.deliveryservice.repository.VehicleRepository;
+import jakarta.annotation.PostConstruct;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Publishes the current {@link TariffSnapshot}.
+ * <p>
+ * Readers only dereference the current snapshot. Fee updates are serialized, written through to the database
+ * with a single UPDATE statement and then published as a new snapshot version, so concurrent admin updates can
+ * no longer overwrite each other. The same transaction bumps the tariffs entry of the shared_state table, on
+ * which the other replicas reload, see {@link ReplicaStateSync}. The entry also records when the tariff version
+ * took effect, so every replica, also after a restart, publishes it with the same Last-Modified time. Every
+ * new version is logged with its fees, so the tariff version of an audited quote can be traced back to the
+ * fees it stands for.
+ */
+@Slf4j
+@Service
+public class TariffRegistry {
+    private static final Map<String, String> CITY_ALIASES = Map.of(
+            "Tallinn", "Tallinn-Harku",
+            "Tartu", "Tartu-Tõravere");
+
+    private final CityRepository cityRepository;
+    private final VehicleRepository vehicleRepository;
+    private final SharedStateRepository sharedState;
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicReference<TariffSnapshot> snapshot = new AtomicReference<>(TariffSnapshot.EMPTY);
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    public TariffRegistry(CityRepository cityRepository, VehicleRepository vehicleRepository,
+                          SharedStateRepository sharedState, TransactionTemplate transactionTemplate) {
+        this.cityRepository = cityRepository;
+        this.vehicleRepository = vehicleRepository;
+        this.sharedState = sharedState;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    public TariffSnapshot current() {
+        return snapshot.get();
+    }
+
+    /**
+     * Registers a listener that runs after every new snapshot is published, on the publishing thread. It
+     * must return quickly, fee updates wait for it.
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Rebuilds the snapshot from the city and vehicle_type tables.
+     */
+    @PostConstruct
+    public synchronized void reload() {
+        List<City> cityRows = new ArrayList<>(cityRepository.findAll());
+        cityRows.sort(Comparator.comparing(City::getCity));
+        List<CityTariff> cities = new ArrayList<>();
+        for (City city : cityRows) {
+            cities.add(new CityTariff(cities.size(), city.getCity(), FeeRules.toCents(city.getFee())));
+        }
+
+        List<Vehicle> vehicleRows = new ArrayList<>(vehicleRepository.findAll());
+        vehicleRows.sort(Comparator.comparing(Vehicle::getVehicle));
+        List<VehicleTariff> vehicles = new ArrayList<>();
+        for (Vehicle vehicle : vehicleRows) {
+            vehicles.add(new VehicleTariff(vehicles.size(), vehicle.getVehicle(), FeeRules.toCents(vehicle.getFee()),
+                    VehicleClass.of(vehicle.getVehicle())));
+        }
+
+        long version = new TariffSnapshot(Instant.EPOCH, cities, vehicles, CITY_ALIASES).getVersion();
+        TariffSnapshot reloaded = new TariffSnapshot(updatedAt(version), cities, vehicles, CITY_ALIASES);
+        // Unchanged tariffs keep their snapshot, so readers see no new Last-Modified time
+        TariffSnapshot current = snapshot.get();
+        if (reloaded.getVersion() != current.getVersion() || !reloaded.getUpdatedAt().equals(current.getUpdatedAt())) {
+            publish(reloaded);
+        }
+        log.debug("Tariff snapshot rebuilt with {} cities and {} vehicle types", cities.size(), vehicles.size());
+    }
+
+    /**
+     * @return When the tariff version took effect as recorded in shared_state. A version that is not recorded
+     * yet, seeded tables or a tariff changed in the database, is recorded as taking effect now, unless another
+     * replica records it first.
+     */
+    private Instant updatedAt(long version) {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            SharedStateRepository.Entry entry = sharedState.findAll().get(SharedStateRepository.TARIFFS);
+            String recorded = entry == null ? null : entry.value();
+            Instant recordedAt = recordedAt(recorded, version);
+            if (recordedAt != null) {
+                return recordedAt;
+            }
+            Instant now = Instant.now();
+            if (entry == null || sharedState.compareAndSet(SharedStateRepository.TARIFFS, recorded, record(version, now))) {
+                return now;
+            }
+        }
+        return Instant.now();
+    }
+
+    private static Instant recordedAt(String recorded, long version) {
+        int separator = recorded == null ? -1 : recorded.indexOf('@');
+        if (separator < 0 || !recorded.substring(0, separator).equals(Long.toString(version))) {
+            return null;
+        }
+        try {
+            return Instant.parse(recorded.substring(separator + 1));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static String record(long version, Instant updatedAt) {
+        return version + "@" + updatedAt;
+    }
+
+    public synchronized void updateCityFee(String cityName, Double fee) {
+        TariffSnapshot current = snapshot.get();
+        CityTariff city = current.findCity(cityName);
+        publish(transactionTemplate.execute(status -> {
+            if (city == null || cityRepository.updateFee(city.getCity(), fee) == 0) {
+                throw new ResourceNotFoundException("City not found: " + cityName);
+            }
+            return share(current.withCityFee(city, FeeRules.toCents(fee), Instant.now()));
+        }));
+    }
+
+    public synchronized void updateVehicleFee(String vehicleType, Double fee) {
+        TariffSnapshot current = snapshot.get();
+        VehicleTariff vehicle = current.findVehicle(vehicleType);
+        publish(transactionTemplate.execute(status -> {
+            if (vehicle == null || vehicleRepository.updateFee(vehicle.getVehicle(), fee) == 0) {
+                throw new ResourceNotFoundException("Vehicle not found: " + vehicleType);
+            }
+            return share(current.withVehicleFee(vehicle, FeeRules.toCents(fee), Instant.now()));
+        }));
+    }
+
+    // In the transaction of the fee update, so other replicas cannot miss a committed change
+    private TariffSnapshot share(TariffSnapshot updated) {
+        sharedState.update(SharedStateRepository.TARIFFS, record(updated.getVersion(), updated.getUpdatedAt()));
+        return updated;
+    }
+
+    private void publish(TariffSnapshot published) {
+        snapshot.set(published);
+        log.info("Tariff {}", published);
+        for (Runnable listener : listeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                log.warn("Tariff snapshot listener failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.dto.TariffProposal;
+import com.deliveryservice.dto.TariffSimulationResponse;
+import com.deliveryservice.exceptions.InvalidTariffProposalException;
+import com.deliveryservice.exceptions.SimulationBusyException;
+import com.deliveryservice.model.ArchiveSegment;
+import com.deliveryservice.model.CityTariff;
+import com.deliveryservice.model.ObservationColumns;
+import com.deliveryservice.model.PhenomenonCode;
+import com.deliveryservice.model.StationHistory;
+import com.deliveryservice.model.StationLocation;
+import com.deliveryservice.model.TariffSnapshot;
+import com.deliveryservice.model.VehicleClass;
+import com.deliveryservice.model.VehicleTariff;
+import com.deliveryservice.repository.WeatherDataColumnReader;
+import com.deliveryservice.repository.WeatherDataRepository;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiConsumer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Re-prices the weather history under a proposed tariff and compares it with the current one.
+ * <p>
+ * Every observation in the range is priced for every vehicle type, with the regional base fee of the
+ * station's city or else of the city nearest to the station, under both tariffs. The history is read as
+ * primitive columns: the in-memory history where it reaches, archive segments straight from their mapping
+ * and older database rows in {@link com.deliveryservice.model.ObservationBatch}es. Every observation is
+ * counted once: database rows are read up to the start of the station's in-memory history, and rows
+ * backfilled into an archived month only if the archive does not hold the same one. Each batch is evaluated
+ * as a task of a dedicated fork-join pool of {@code weather.simulation.parallelism} threads while the next
+ * ones are read. The live fee path is not touched: the tariffs are copied from the current snapshot and only
+ * one simulation runs at a time.
+ */
+@Slf4j
+@Service
+public class TariffSimulator {
+    private static final int BATCH_SIZE = 16_384;
+    // Per vehicle type: quotes, revenue in cents and forbidden quotes under the current and proposed tariff
+    private static final int QUOTES = 0;
+    private static final int CURRENT_REVENUE = 1;
+    private static final int PROPOSED_REVENUE = 2;
+    private static final int CURRENT_FORBIDDEN = 3;
+    private static final int PROPOSED_FORBIDDEN = 4;
+    private static final int FIELDS = 5;
+
+    private final TariffRegistry tariffRegistry;
+    private final StationRegistry stationRegistry;
+    private final WeatherHistoryIndex weatherHistoryIndex;
+    private final WeatherArchive weatherArchive;
+    private final WeatherDataRepository weatherDataRepository;
+    private final WeatherDataColumnReader columnReader;
+    private final FeeRules currentRules = FeeRules.DEFAULT;
+    private final int parallelism;
+    private final Duration maxRange;
+    private final Semaphore running = new Semaphore(1);
+
+    public TariffSimulator(TariffRegistry tariffRegistry, StationRegistry stationRegistry,
+                           WeatherHistoryIndex weatherHistoryIndex, WeatherArchive weatherArchive,
+                           WeatherDataRepository weatherDataRepository, WeatherDataColumnReader columnReader,
+                           @Value("${weather.simulation.parallelism:0}") int parallelism,
+                           @Value("${weather.simulation.max-range:400d}") Duration maxRange) {
+        this.tariffRegistry = tariffRegistry;
+        this.stationRegistry = stationRegistry;
+        this.weatherHistoryIndex = weatherHistoryIndex;
+        this.weatherArchive = weatherArchive;
+        this.weatherDataRepository = weatherDataRepository;
+        this.columnReader = columnReader;
+        // By default one core is left to the request threads
+        this.parallelism = parallelism > 0 ? parallelism
+                : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        this.maxRange = maxRange;
+    }
+
+    /**
+     * Prices the observations in [from, to) under the current tariff and under the proposal.
+     *
+     * @throws InvalidTariffProposalException If the proposal names unknown cities, vehicle types or phenomena,
+     *                                        or the range is empty or too long.
+     * @throws SimulationBusyException        If another simulation is running.
+     */
+    public TariffSimulationResponse simulate(TariffProposal proposal, Instant from, Instant to) {
+        if (!from.isBefore(to)) {
+            throw new InvalidTariffProposalException("from must be before to");
+        }
+        if (Duration.between(from, to).compareTo(maxRange) > 0) {
+            throw new InvalidTariffProposalException("The range must not be longer than " + maxRange.toDays() + " days");
+        }
+        TariffSnapshot current = tariffRegistry.current();
+        TariffSnapshot proposed = proposedTariffs(current, proposal);
+        FeeRules proposedRules = proposal.getRules() == null ? currentRules : proposedRules(proposal.getRules());
+        if (!running.tryAcquire()) {
+            throw new SimulationBusyException("Another simulation is running, try again later");
+        }
+        try {
+            return new Run(current, proposed, proposedRules, from, to).execute();
+        } finally {
+            running.release();
+        }
+    }
+
+    private TariffSnapshot proposedTariffs(TariffSnapshot current, TariffProposal proposal) {
+        TariffSnapshot proposed = current;
+        Instant now = Instant.now();
+        if (proposal.getCityFees() != null) {
+            for (Map.Entry<String, Double> fee : proposal.getCityFees().entrySet()) {
+                CityTariff city = proposed.findCity(stationRegistry.resolveStationName(current, fee.getKey()));
+                if (city == null) {
+                    throw new InvalidTariffProposalException("No such city: " + fee.getKey());
+                }
+                proposed = proposed.withCityFee(city, toCents(fee.getValue()), now);
+            }
+        }
+        if (proposal.getVehicleFees() != null) {
+            for (Map.Entry<String, Double> fee : proposal.getVehicleFees().entrySet()) {
+                VehicleTariff vehicle = proposed.findVehicle(fee.getKey());
+                if (vehicle == null) {
+                    throw new InvalidTariffProposalException("No such vehicle type: " + fee.getKey());
+                }
+                proposed = proposed.withVehicleFee(vehicle, toCents(fee.getValue()), now);
+            }
+        }
+        return proposed;
+    }
+
+    private FeeRules proposedRules(TariffProposal.Rules rules) {
+        FeeRules.Builder builder = currentRules.toBuilder();
+        if (rules.getColdThreshold() != null) {
+            builder.coldThreshold(rules.getColdThreshold());
+        }
+        if (rules.getFreezingThreshold() != null) {
+            builder.freezingThreshold(rules.getFreezingThreshold());
+        }
+        if (rules.getWindSurchargeThreshold() != null) {
+            builder.windSurchargeThreshold(rules.getWindSurchargeThreshold());
+        }
+        if (rules.getWindForbiddenThreshold() != null) {
+            builder.windForbiddenThreshold(rules.getWindForbiddenThreshold());
+        }
+        forEach(rules.getColdFees(), (vehicleClass, fee) -> builder.coldCents(vehicleClass, (int) toCents(fee)));
+        forEach(rules.getFreezingFees(), (vehicleClass, fee) -> builder.freezingCents(vehicleClass, (int) toCents(fee)));
+        forEach(rules.getWindFees(), (vehicleClass, fee) -> builder.windCents(vehicleClass, (int) toCents(fee)));
+        forEach(rules.getForbiddenInStrongWind(), builder::forbiddenInStrongWind);
+        forEach(rules.getPhenomenonFees(), (vehicleClass, fees) -> fees.forEach((phenomenon, fee) ->
+                builder.phenomenonCents(vehicleClass, phenomenonCode(phenomenon), (int) toCents(fee))));
+        forEach(rules.getForbiddenPhenomena(), (vehicleClass, phenomena) -> phenomena.forEach(phenomenon ->
+                builder.phenomenonCents(vehicleClass, phenomenonCode(phenomenon), FeeRules.FORBIDDEN)));
+        return builder.build();
+    }
+
+    private static <V> void forEach(Map<VehicleClass, V> values, BiConsumer<VehicleClass, V> action) {
+        if (values != null) {
+            values.forEach(action);
+        }
+    }
+
+    private static byte phenomenonCode(String name) {
+        try {
+            return PhenomenonCode.forName(name);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidTariffProposalException(e.getMessage());
+        }
+    }
+
+    private static long toCents(Double fee) {
+        if (fee == null || fee < 0 || fee.isNaN()) {
+            throw new InvalidTariffProposalException("Fees must not be negative: " + fee);
+        }
+        return FeeRules.toCents(fee);
+    }
+
+    /**
+     * Base fees of one station under both tariffs, per vehicle type in snapshot order.
+     */
+    private record Pricing(String station, String city, long[] currentBase, long[] proposedBase) {
+    }
+
+    private final class Run {
+        private final TariffSnapshot current;
+        private final TariffSnapshot proposed;
+        private final FeeRules proposedRules;
+        private final Instant from;
+        private final Instant to;
+        private final List<VehicleTariff> vehicles;
+        private final VehicleClass[] classes;
+        private final Map<String, StationLocation> locations = new HashMap<>();
+        // Only used on the calling thread; null values mark stations without a city to price them with
+        private final Map<String, Pricing> pricing = new HashMap<>();
+        private final List<Future<long[]>> tasks = new ArrayList<>();
+        private final List<Pricing> taskPricing = new ArrayList<>();
+        private ForkJoinPool pool;
+
+        Run(TariffSnapshot current, TariffSnapshot proposed, FeeRules proposedRules, Instant from, Instant to) {
+            this.current = current;
+            this.proposed = proposed;
+            this.proposedRules = proposedRules;
+            this.from = from;
+            this.to = to;
+            this.vehicles = current.getVehicles();
+            this.classes = vehicles.stream().map(VehicleTariff::getVehicleClass).toArray(VehicleClass[]::new);
+            stationRegistry.getStations().forEach(station -> locations.put(station.getName(), station));
+        }
+
+        TariffSimulationResponse execute() {
+            long start = System.nanoTime();
+            pool = new ForkJoinPool(parallelism);
+            try {
+                submitAll();
+                return collect(start);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        // In-memory history where it reaches, before it the archive and the database
+        private void submitAll() {
+            Map<String, Long> memoryStarts = new HashMap<>();
+            long fromSecond = from.getEpochSecond();
+            long toSecond = to.getEpochSecond();
+            List<String> storedStations = weatherDataRepository.findStationNames();
+            Set<String> stations = new HashSet<>(storedStations);
+            stations.addAll(weatherHistoryIndex.getStationNames());
+            stations.addAll(weatherArchive.getStationNames());
+            for (String station : stations) {
+                StationHistory history = weatherHistoryIndex.getHistory(station);
+                StationHistory.Columns columns = history == null ? null : history.columns();
+                long memoryStart = columns == null || columns.size() == 0 ? Long.MAX_VALUE : columns.epochSecond(0);
+                memoryStarts.put(station, memoryStart);
+                if (columns != null) {
+                    submit(station, columns, columns.ceiling(fromSecond), columns.ceiling(toSecond));
+                }
+                long end = Math.min(toSecond, memoryStart);
+                if (end > fromSecond) {
+                    for (ArchiveSegment segment : weatherArchive.segments(station, from, Instant.ofEpochSecond(end))) {
+                        submit(station, segment, segment.ceiling(fromSecond), segment.ceiling(end));
+                    }
+                }
+            }
+            // Rows the in-memory history also holds are not read, unless a station has no history in memory
+            long databaseEnd = storedStations.stream().allMatch(station -> memoryStarts.get(station) != Long.MAX_VALUE)
+                    ? Math.min(toSecond, memoryStarts.values().stream()
+                            .filter(memoryStart -> memoryStart != Long.MAX_VALUE)
+                            .mapToLong(Long::longValue).max().orElse(toSecond))
+                    : toSecond;
+            if (databaseEnd > fromSecond) {
+                columnReader.read(from, Instant.ofEpochSecond(databaseEnd), BATCH_SIZE, batch -> {
+                    long end = memoryStarts.getOrDefault(batch.getStationName(), Long.MAX_VALUE);
+                    submitStored(batch.getStationName(), batch, batch.ceiling(end));
+                });
+            }
+        }
+
+        // Rows in archived months were backfilled after the archive run, which merges them into the segment
+        // next time. Until then both may hold the same observation, e.g. after a backfill ran twice.
+        private void submitStored(String station, ObservationColumns batch, int end) {
+            int start = 0;
+            for (int i = 0; i < end && weatherArchive.covers(station, Instant.ofEpochSecond(batch.epochSecond(i)));
+                 i++) {
+                if (weatherArchive.contains(station, batch.epochSecond(i))) {
+                    submit(station, batch, start, i);
+                    start = i + 1;
+                }
+            }
+            submit(station, batch, start, end);
+        }
+
+        private void submit(String station, ObservationColumns columns, int start, int end) {
+            Pricing stationPricing = pricing.computeIfAbsent(station, this::pricing);
+            if (stationPricing == null || start >= end) {
+                return;
+            }
+            for (int chunk = start; chunk < end; chunk += BATCH_SIZE) {
+                int chunkStart = chunk;
+                int chunkEnd = Math.min(end, chunk + BATCH_SIZE);
+                tasks.add(pool.submit(() -> evaluate(stationPricing, columns, chunkStart, chunkEnd)));
+                taskPricing.add(stationPricing);
+            }
+        }
+
+        private Pricing pricing(String station) {
+            String city = current.findCity(station) != null ? current.findCity(station).getCity() : null;
+            StationLocation location = locations.get(station);
+            if (city == null && location != null) {
+                city = stationRegistry.findNearestCity(current, location.getLatitude(), location.getLongitude());
+            }
+            if (city == null) {
+                log.debug("Simulation skips station {}, no city to price it with", station);
+                return null;
+            }
+            long currentCity = current.findCity(city).getFeeCents();
+            long proposedCity = proposed.findCity(city).getFeeCents();
+            long[] currentBase = new long[vehicles.size()];
+            long[] proposedBase = new long[vehicles.size()];
+            for (int i = 0; i < vehicles.size(); i++) {
+                currentBase[i] = currentCity + vehicles.get(i).getFeeCents();
+                proposedBase[i] = proposedCity + proposed.getVehicles().get(i).getFeeCents();
+            }
+            return new Pricing(station, city, currentBase, proposedBase);
+        }
+
+        private long[] evaluate(Pricing stationPricing, ObservationColumns columns, int start, int end) {
+            long[] totals = new long[classes.length * FIELDS];
+            long[] currentBase = stationPricing.currentBase();
+            long[] proposedBase = stationPricing.proposedBase();
+            for (int i = start; i < end; i++) {
+                double airTemperature = columns.airTemperature(i);
+                double windSpeed = columns.windSpeed(i);
+                byte phenomenonCode = columns.phenomenonCode(i);
+                for (int vehicle = 0; vehicle < classes.length; vehicle++) {
+                    int offset = vehicle * FIELDS;
+                    long currentFee = currentRules.feeCents(currentBase[vehicle], classes[vehicle], airTemperature,
+                            windSpeed, phenomenonCode);
+                    long proposedFee = proposedRules.feeCents(proposedBase[vehicle], classes[vehicle],
+                            airTemperature, windSpeed, phenomenonCode);
+                    totals[offset + QUOTES]++;
+                    if (FeeRules.isForbidden(currentFee)) {
+                        totals[offset + CURRENT_FORBIDDEN]++;
+                    } else {
+                        totals[offset + CURRENT_REVENUE] += currentFee;
+                    }
+                    if (FeeRules.isForbidden(proposedFee)) {
+                        totals[offset + PROPOSED_FORBIDDEN]++;
+                    } else {
+                        totals[offset + PROPOSED_REVENUE] += proposedFee;
+                    }
+                }
+            }
+            return totals;
+        }
+
+        private TariffSimulationResponse collect(long start) {
+            Map<String, long[]> byStation = new TreeMap<>();
+            long[] total = new long[classes.length * FIELDS];
+            for (int i = 0; i < tasks.size(); i++) {
+                long[] totals = join(tasks.get(i));
+                long[] station = byStation.computeIfAbsent(taskPricing.get(i).station(), name -> new long[total.length]);
+                for (int field = 0; field < totals.length; field++) {
+                    station[field] += totals[field];
+                    total[field] += totals[field];
+                }
+            }
+            List<TariffSimulationResponse.Impact> impacts = new ArrayList<>();
+            byStation.forEach((station, totals) -> {
+                for (int vehicle = 0; vehicle < classes.length; vehicle++) {
+                    impacts.add(impact(station, pricing.get(station).city(), vehicles.get(vehicle).getVehicle(),
+                            totals, vehicle * FIELDS));
+                }
+            });
+            long[] overall = new long[FIELDS];
+            for (int field = 0; field < total.length; field++) {
+                overall[field % FIELDS] += total[field];
+            }
+            long observations = classes.length == 0 ? 0 : overall[QUOTES] / classes.length;
+            long elapsedMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+            log.info("Simulated {} observations in {} tasks in {} ms", observations, tasks.size(), elapsedMillis);
+            return new TariffSimulationResponse(from, to, observations, elapsedMillis,
+                    impact(null, null, null, overall, 0), impacts);
+        }
+
+        private long[] join(Future<long[]> task) {
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Simulation interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Simulation failed", e.getCause());
+            }
+        }
+
+        private TariffSimulationResponse.Impact impact(String station, String city, String vehicleType,
+                                                       long[] totals, int offset) {
+            long currentRevenue = totals[offset + CURRENT_REVENUE];
+            long proposedRevenue = totals[offset + PROPOSED_REVENUE];
+            long currentForbidden = totals[offset + CURRENT_FORBIDDEN];
+            long proposedForbidden = totals[offset + PROPOSED_FORBIDDEN];
+            return new TariffSimulationResponse.Impact(station, city, vehicleType, totals[offset + QUOTES],
+                    toDecimal(currentRevenue), toDecimal(proposedRevenue), toDecimal(proposedRevenue - currentRevenue),
+                    currentForbidden, proposedForbidden, proposedForbidden - currentForbidden);
+        }
+    }
+
+    private static BigDecimal toDecimal(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+}
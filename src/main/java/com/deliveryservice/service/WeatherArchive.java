@@ -0,0 +1,287 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.entity.WeatherData;
+import com.deliveryservice.model.ArchiveSegment;
+import com.deliveryservice.model.WeatherObservation;
+import com.deliveryservice.repository.SharedStateRepository;
+import com.deliveryservice.repository.WeatherDataArchiver;
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Long-term weather history in immutable per-station, per-month {@link ArchiveSegment} files.
+ * <p>
+ * Once a calendar month (UTC) lies entirely more than {@code weather.archive.after} in the past, the archive
+ * job writes its rows to {@code <weather.archive.directory>/<station>/<yyyy-MM>.wseg} and deletes them from
+ * weather_data. Rows that arrive for an archived month later, e.g. from a backfill, are merged into a
+ * replacement segment on the next run. Segments are mapped when first read, only their headers are kept
+ * on the heap. The directory must be shared by all replicas: the job runs on the holder of the
+ * weather-archive lease, the other replicas rescan the directory when they see its version change.
+ */
+@Slf4j
+@Service
+public class WeatherArchive {
+    static final String SEGMENT_SUFFIX = ".wseg";
+
+    private final WeatherDataArchiver archiver;
+    private final ReplicaLease replicaLease;
+    private final SharedStateRepository sharedState;
+    private final TransactionTemplate transactionTemplate;
+    private final Path directory;
+    private final Duration after;
+    private final Clock clock;
+    private volatile Map<String, NavigableMap<YearMonth, Path>> catalog = Map.of();
+    private final ConcurrentMap<Path, ArchiveSegment> segments = new ConcurrentHashMap<>();
+
+    @Autowired
+    public WeatherArchive(WeatherDataArchiver archiver, ReplicaLease replicaLease, SharedStateRepository sharedState,
+                          TransactionTemplate transactionTemplate,
+                          @Value("${weather.archive.directory:archive}") Path directory,
+                          @Value("${weather.archive.after:180d}") Duration after) {
+        this(archiver, replicaLease, sharedState, transactionTemplate, directory, after, Clock.systemUTC());
+    }
+
+    WeatherArchive(WeatherDataArchiver archiver, ReplicaLease replicaLease, SharedStateRepository sharedState,
+                   TransactionTemplate transactionTemplate, Path directory, Duration after, Clock clock) {
+        this.archiver = archiver;
+        this.replicaLease = replicaLease;
+        this.sharedState = sharedState;
+        this.transactionTemplate = transactionTemplate;
+        this.directory = directory;
+        this.after = after;
+        this.clock = clock;
+    }
+
+    /**
+     * Lists the segment files in the archive directory. Segments mapped before are mapped again when next
+     * read, as another replica may have replaced them.
+     */
+    @PostConstruct
+    public synchronized void refreshCatalog() {
+        Map<String, NavigableMap<YearMonth, Path>> rebuilt = new HashMap<>();
+        if (Files.isDirectory(directory)) {
+            try (Stream<Path> files = Files.walk(directory, 2)) {
+                files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX)).forEach(file -> {
+                    String name = file.getFileName().toString();
+                    try {
+                        YearMonth month = YearMonth.parse(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                        String station = URLDecoder.decode(file.getParent().getFileName().toString(),
+                                StandardCharsets.UTF_8);
+                        rebuilt.computeIfAbsent(station, key -> new TreeMap<>()).put(month, file);
+                    } catch (DateTimeParseException | IllegalArgumentException e) {
+                        log.warn("Ignoring unexpected file in the weather archive: {}", file);
+                    }
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot list the weather archive " + directory, e);
+            }
+        }
+        catalog = rebuilt;
+        segments.clear();
+        log.debug("Weather archive catalog has {} segments of {} stations",
+                rebuilt.values().stream().mapToInt(Map::size).sum(), rebuilt.size());
+    }
+
+    /**
+     * @return The stations with archived observations.
+     */
+    public Set<String> getStationNames() {
+        return catalog.keySet();
+    }
+
+    /**
+     * @return Whether the time falls before the end of the last archived month of the station, so the
+     * archive rather than weather_data holds the observation in effect.
+     */
+    public boolean covers(String stationName, Instant time) {
+        NavigableMap<YearMonth, Path> months = catalog.get(stationName);
+        return months != null && time.isBefore(start(months.lastKey().plusMonths(1)));
+    }
+
+    /**
+     * Finds the last archived observation of the station at or before the given time.
+     */
+    public Optional<WeatherObservation> findInEffectAt(String stationName, Instant time) {
+        NavigableMap<YearMonth, Path> months = catalog.get(stationName);
+        if (months == null) {
+            return Optional.empty();
+        }
+        long epochSecond = time.getEpochSecond();
+        // The month of the time, or earlier months if it has nothing at or before the time
+        for (Map.Entry<YearMonth, Path> month = months.floorEntry(YearMonth.from(time.atOffset(ZoneOffset.UTC)));
+             month != null; month = months.lowerEntry(month.getKey())) {
+            ArchiveSegment segment = segment(month.getValue());
+            int index = segment.floor(epochSecond);
+            if (index >= 0) {
+                return Optional.of(segment.observation(index));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @return Whether the archive holds an observation of the station taken at exactly the given time.
+     */
+    public boolean contains(String stationName, long epochSecond) {
+        NavigableMap<YearMonth, Path> months = catalog.get(stationName);
+        Path file = months == null ? null
+                : months.get(YearMonth.from(Instant.ofEpochSecond(epochSecond).atOffset(ZoneOffset.UTC)));
+        if (file == null) {
+            return false;
+        }
+        ArchiveSegment segment = segment(file);
+        int index = segment.floor(epochSecond);
+        return index >= 0 && segment.epochSecond(index) == epochSecond;
+    }
+
+    /**
+     * Passes the archived observations of the station in [from, to) to the consumer, in time order.
+     */
+    public void scan(String stationName, Instant from, Instant to, Consumer<WeatherObservation> observations) {
+        long end = to.getEpochSecond();
+        for (ArchiveSegment segment : segments(stationName, from, to)) {
+            for (int i = segment.ceiling(from.getEpochSecond()); i < segment.size() && segment.epochSecond(i) < end; i++) {
+                observations.accept(segment.observation(i));
+            }
+        }
+    }
+
+    /**
+     * @return The segments of the station that may hold observations in [from, to), in time order. They may
+     * also hold observations outside of the range.
+     */
+    public List<ArchiveSegment> segments(String stationName, Instant from, Instant to) {
+        NavigableMap<YearMonth, Path> months = catalog.get(stationName);
+        if (months == null || !from.isBefore(to)) {
+            return List.of();
+        }
+        YearMonth first = YearMonth.from(from.atOffset(ZoneOffset.UTC));
+        YearMonth last = YearMonth.from(to.atOffset(ZoneOffset.UTC));
+        return months.subMap(first, true, last, true).values().stream().map(this::segment).toList();
+    }
+
+    /**
+     * Moves every month that lies entirely before the archive window from weather_data to the archive, if
+     * this replica holds the archive lease.
+     *
+     * @return The number of observations moved.
+     */
+    @Scheduled(cron = "${weather.archive.cron:0 50 3 * * *}")
+    public synchronized int archive() {
+        if (!replicaLease.tryAcquire(ReplicaLease.WEATHER_ARCHIVE)) {
+            log.debug("Weather archive skipped, another replica holds the lease");
+            return 0;
+        }
+        YearMonth cutoff = YearMonth.from(clock.instant().minus(after).atOffset(ZoneOffset.UTC));
+        Optional<Instant> oldest = archiver.findOldestTimestamp();
+        if (oldest.isEmpty()) {
+            return 0;
+        }
+        int moved = 0;
+        for (YearMonth month = YearMonth.from(oldest.get().atOffset(ZoneOffset.UTC)); month.isBefore(cutoff);
+             month = month.plusMonths(1)) {
+            YearMonth archived = month;
+            moved += transactionTemplate.execute(status -> archive(archived));
+        }
+        if (moved > 0) {
+            refreshCatalog();
+            sharedState.update(SharedStateRepository.WEATHER_ARCHIVE, cutoff.minusMonths(1).toString());
+            log.info("Archived {} observations before {}", moved, cutoff);
+        }
+        return moved;
+    }
+
+    // Segments first, then the rows that were written to them, a row inserted into the month in the meantime
+    // stays for the next run. After a crash in between, the next run merges the same rows again.
+    private int archive(YearMonth month) {
+        Instant from = start(month);
+        Instant to = start(month.plusMonths(1));
+        List<WeatherData> rows = archiver.findRange(from, to);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        Map<String, List<WeatherData>> byStation = new HashMap<>();
+        for (WeatherData row : rows) {
+            byStation.computeIfAbsent(row.getStationName(), station -> new ArrayList<>()).add(row);
+        }
+        try {
+            for (Map.Entry<String, List<WeatherData>> station : byStation.entrySet()) {
+                Path file = directory.resolve(URLEncoder.encode(station.getKey(), StandardCharsets.UTF_8))
+                        .resolve(month + SEGMENT_SUFFIX);
+                List<WeatherData> merged = station.getValue();
+                if (Files.exists(file)) {
+                    merged = merge(ArchiveSegment.open(file).toWeatherData(), merged);
+                }
+                ArchiveSegment.write(file, station.getKey(), merged);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write the weather archive of " + month, e);
+        }
+        archiver.delete(rows);
+        log.debug("Archived {} observations of {} stations for {}", rows.size(), byStation.size(), month);
+        return rows.size();
+    }
+
+    // Both lists in time order, rows from weather_data win over archived ones with the same time
+    private static List<WeatherData> merge(List<WeatherData> archived, List<WeatherData> rows) {
+        List<WeatherData> merged = new ArrayList<>(archived.size() + rows.size());
+        int a = 0;
+        int r = 0;
+        while (a < archived.size() || r < rows.size()) {
+            if (r == rows.size() || (a < archived.size()
+                    && archived.get(a).getTimestamp().isBefore(rows.get(r).getTimestamp()))) {
+                merged.add(archived.get(a++));
+            } else {
+                if (a < archived.size() && archived.get(a).getTimestamp().equals(rows.get(r).getTimestamp())) {
+                    a++;
+                }
+                merged.add(rows.get(r++));
+            }
+        }
+        return merged;
+    }
+
+    private ArchiveSegment segment(Path file) {
+        return segments.computeIfAbsent(file, path -> {
+            try {
+                return ArchiveSegment.open(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static Instant start(YearMonth month) {
+        return month.atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+    }
+}
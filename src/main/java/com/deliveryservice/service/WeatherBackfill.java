@@ -0,0 +1,298 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.entity.WeatherData;
+import com.deliveryservice.model.StationLocation;
+import com.deliveryservice.repository.WeatherDataBulkWriter;
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import javax.xml.stream.XMLStreamException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Loads a directory of archived observations into weather_data.
+ * <p>
+ * Archives are feed snapshots ({@code .xml}) or CSV files ({@code .csv}, see {@link ObservationsCsvParser}),
+ * optionally gzip compressed. Files are streamed through a file channel in large chunks and parsed in
+ * parallel, one file per thread, and rows go through {@link WeatherDataBulkWriter#insertNew(List)}, so
+ * observations that are already stored are skipped. Every finished file is appended to a checkpoint file;
+ * a run that is interrupted and started again skips those files and re-reads only the unfinished ones.
+ */
+@Slf4j
+@Service
+public class WeatherBackfill {
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+    private static final int WRITE_BATCH_SIZE = 5000;
+
+    private final WeatherDataBulkWriter bulkWriter;
+    private final LatestWeatherCache latestWeatherCache;
+    private final WeatherHistoryIndex weatherHistoryIndex;
+    private final StationRegistry stationRegistry;
+    private final int parallelism;
+    private final Duration progressInterval;
+    private final ObservationsFeedParser feedParser = new ObservationsFeedParser();
+    private final ObservationsCsvParser csvParser = new ObservationsCsvParser();
+
+    public WeatherBackfill(WeatherDataBulkWriter bulkWriter, LatestWeatherCache latestWeatherCache,
+                           WeatherHistoryIndex weatherHistoryIndex, StationRegistry stationRegistry,
+                           @Value("${weather.backfill.parallelism:0}") int parallelism,
+                           @Value("${weather.backfill.progress-interval:10s}") Duration progressInterval) {
+        this.bulkWriter = bulkWriter;
+        this.latestWeatherCache = latestWeatherCache;
+        this.weatherHistoryIndex = weatherHistoryIndex;
+        this.stationRegistry = stationRegistry;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.progressInterval = progressInterval;
+    }
+
+    /**
+     * Loads every archive below the directory that is not listed in the checkpoint file, then refreshes the
+     * in-memory weather snapshots and the station registry.
+     *
+     * @param directory  The archive directory, searched recursively.
+     * @param checkpoint The file finished archives are recorded in, created if missing.
+     * @return What was loaded by this run.
+     * @throws IOException If the directory cannot be listed, an archive cannot be read or is malformed.
+     */
+    public Result run(Path directory, Path checkpoint) throws IOException, InterruptedException {
+        Set<String> finished = readCheckpoint(checkpoint);
+        List<Path> archives;
+        try (Stream<Path> files = Files.walk(directory)) {
+            archives = files.filter(Files::isRegularFile)
+                    .filter(WeatherBackfill::isArchive)
+                    .filter(file -> !finished.contains(checkpointEntry(directory, file)))
+                    .sorted()
+                    .toList();
+        }
+        Progress progress = new Progress(archives.size(), totalSize(archives));
+        log.info("Backfilling {} archives ({} MB) from {}, {} already done", archives.size(),
+                progress.totalBytes >> 20, directory, finished.size());
+
+        Map<String, StationLocation> locations = new ConcurrentHashMap<>();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, namedThreads("weather-backfill-"));
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(
+                namedThreads("weather-backfill-progress-"));
+        reporter.scheduleAtFixedRate(() -> log.info(progress.toString()), progressInterval.toMillis(),
+                progressInterval.toMillis(), TimeUnit.MILLISECONDS);
+        try {
+            List<Future<?>> loads = new ArrayList<>();
+            for (Path archive : archives) {
+                loads.add(workers.submit(() -> {
+                    load(archive, progress, location -> locations.put(location.getName(), location));
+                    appendCheckpoint(checkpoint, checkpointEntry(directory, archive));
+                    progress.files.incrementAndGet();
+                    return null;
+                }));
+            }
+            for (Future<?> load : loads) {
+                load.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IllegalStateException("Backfill failed", e.getCause());
+        } finally {
+            workers.shutdownNow();
+            reporter.shutdownNow();
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
+        latestWeatherCache.reload();
+        weatherHistoryIndex.reload();
+        // Republishes the registry even without new stations, backfilled observations may change the active set
+        stationRegistry.register(locations.values());
+        Result result = progress.result();
+        log.info("Backfill done: {}", progress);
+        return result;
+    }
+
+    private void load(Path archive, Progress progress, Consumer<StationLocation> locations) throws IOException {
+        List<WeatherData> batch = new ArrayList<>(WRITE_BATCH_SIZE);
+        Consumer<WeatherData> observations = weatherData -> {
+            progress.read.increment();
+            if (weatherData.getTimestamp() == null) {
+                progress.skipped.increment();
+                return;
+            }
+            batch.add(weatherData);
+            if (batch.size() == WRITE_BATCH_SIZE) {
+                write(batch, progress);
+            }
+        };
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ);
+             InputStream input = open(archive, channel, progress)) {
+            String name = archive.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".csv") || name.endsWith(".csv.gz")) {
+                progress.skipped.add(csvParser.parse(input, observations, locations));
+            } else {
+                feedParser.parse(input, station -> true, locations, observations);
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Malformed archive " + archive, e);
+        }
+        write(batch, progress);
+        log.debug("Backfilled {}", archive);
+    }
+
+    private void write(List<WeatherData> batch, Progress progress) {
+        int inserted = bulkWriter.insertNew(batch);
+        progress.inserted.add(inserted);
+        progress.duplicates.add(batch.size() - inserted);
+        batch.clear();
+    }
+
+    // Chunked channel reads, counted before decompression so progress matches the archive sizes
+    private static InputStream open(Path archive, FileChannel channel, Progress progress) {
+        InputStream input = new BufferedInputStream(
+                new CountingInputStream(Channels.newInputStream(channel), progress.bytes), READ_BUFFER_SIZE);
+        boolean gzip = archive.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gz");
+        try {
+            return gzip ? new GZIPInputStream(input, READ_BUFFER_SIZE) : input;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Malformed archive " + archive, e);
+        }
+    }
+
+    private static boolean isArchive(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".xml") || name.endsWith(".xml.gz") || name.endsWith(".csv") || name.endsWith(".csv.gz");
+    }
+
+    // Relative path, size and modification time, so a file that is replaced is loaded again
+    private static String checkpointEntry(Path directory, Path file) {
+        try {
+            return directory.relativize(file) + "\t" + Files.size(file) + "\t" + Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Set<String> readCheckpoint(Path checkpoint) throws IOException {
+        return Files.exists(checkpoint)
+                ? new HashSet<>(Files.readAllLines(checkpoint, StandardCharsets.UTF_8))
+                : new HashSet<>();
+    }
+
+    private static synchronized void appendCheckpoint(Path checkpoint, String entry) throws IOException {
+        Files.writeString(checkpoint, entry + System.lineSeparator(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+    }
+
+    private static long totalSize(List<Path> archives) throws IOException {
+        long total = 0;
+        for (Path archive : archives) {
+            total += Files.size(archive);
+        }
+        return total;
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * @param files      Archives loaded by this run.
+     * @param read       Observations read from them.
+     * @param inserted   Observations inserted.
+     * @param duplicates Observations that were already stored.
+     * @param skipped     Observations that could not be read or have no time.
+     */
+    public record Result(int files, long read, long inserted, long duplicates, long skipped, Duration elapsed) {
+    }
+
+    private static final class Progress {
+        final int totalFiles;
+        final long totalBytes;
+        final long startNanos = System.nanoTime();
+        final AtomicInteger files = new AtomicInteger();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder read = new LongAdder();
+        final LongAdder inserted = new LongAdder();
+        final LongAdder duplicates = new LongAdder();
+        final LongAdder skipped = new LongAdder();
+
+        Progress(int totalFiles, long totalBytes) {
+            this.totalFiles = totalFiles;
+            this.totalBytes = totalBytes;
+        }
+
+        Result result() {
+            return new Result(files.get(), read.sum(), inserted.sum(), duplicates.sum(), skipped.sum(),
+                    Duration.ofNanos(System.nanoTime() - startNanos));
+        }
+
+        @Override
+        public String toString() {
+            double seconds = Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+            return String.format(Locale.ROOT,
+                    "%d/%d archives, %d/%d MB (%.0f%%), %,d read, %,d inserted, %,d duplicates, %,d skipped, "
+                            + "%,.0f rows/s",
+                    files.get(), totalFiles, bytes.sum() >> 20, totalBytes >> 20,
+                    totalBytes == 0 ? 100.0 : 100.0 * bytes.sum() / totalBytes,
+                    read.sum(), inserted.sum(), duplicates.sum(), skipped.sum(), read.sum() / seconds);
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private final LongAdder count;
+
+        CountingInputStream(InputStream input, LongAdder count) {
+            super(input);
+            this.count = count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read >= 0) {
+                count.increment();
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count.add(read);
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.deliveryservice.service;
+
+import java.nio.file.Path;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs {@link WeatherBackfill} once the application has started and shuts the application down afterwards.
+ * <p>
+ * Enabled by setting {@code weather.backfill.directory}, e.g.
+ * {@code java -jar delivery-service.jar --weather.backfill.directory=/data/observations --spring.main.web-application-type=none
+ * --spring.datasource.url=jdbc:h2:file:/data/weather}. The checkpoint defaults to {@code .backfill-checkpoint} in
+ * the archive directory.
+ * <p>
+ * The command refuses to start against an in-memory database: the observations would be gone when it exits,
+ * while the checkpoint would still mark their files as loaded.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty("weather.backfill.directory")
+public class WeatherBackfillCommand implements ApplicationRunner {
+    private final WeatherBackfill weatherBackfill;
+    private final ConfigurableApplicationContext context;
+    private final Path directory;
+    private final Path checkpoint;
+
+    public WeatherBackfillCommand(WeatherBackfill weatherBackfill, ConfigurableApplicationContext context,
+                                  @Value("${weather.backfill.directory}") Path directory,
+                                  @Value("${weather.backfill.checkpoint:}") String checkpoint,
+                                  @Value("${spring.datasource.url:}") String datasourceUrl) {
+        if (isInMemory(datasourceUrl)) {
+            throw new IllegalStateException("The backfill would be lost with the in-memory database "
+                    + datasourceUrl + ", set spring.datasource.url to the database of the service");
+        }
+        this.weatherBackfill = weatherBackfill;
+        this.context = context;
+        this.directory = directory;
+        this.checkpoint = checkpoint.isEmpty() ? directory.resolve(".backfill-checkpoint") : Path.of(checkpoint);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        int exitCode = 0;
+        try {
+            WeatherBackfill.Result result = weatherBackfill.run(directory, checkpoint);
+            log.info("Backfilled {} archives in {}: {} observations inserted, {} duplicates, {} skipped",
+                    result.files(), result.elapsed(), result.inserted(), result.duplicates(), result.skipped());
+        } catch (Exception e) {
+            log.error("Backfill from {} failed, run again to resume", directory, e);
+            exitCode = 1;
+        }
+        int code = exitCode;
+        System.exit(SpringApplication.exit(context, () -> code));
+    }
+
+    // Without a URL Spring Boot starts an embedded in-memory database as well
+    static boolean isInMemory(String datasourceUrl) {
+        return datasourceUrl.isEmpty() || datasourceUrl.startsWith("jdbc:h2:mem:")
+                || datasourceUrl.startsWith("jdbc:hsqldb:mem:") || datasourceUrl.startsWith("jdbc:derby:memory:");
+    }
+}
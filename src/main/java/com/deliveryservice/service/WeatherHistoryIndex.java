@@ -0,0 +1,153 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.entity.WeatherData;
+import com.deliveryservice.model.PhenomenonCode;
+import com.deliveryservice.model.StationHistory;
+import com.deliveryservice.model.WeatherObservation;
+import com.deliveryservice.repository.WeatherDataRepository;
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * In-memory, per-station weather history used to answer historical fee requests.
+ * <p>
+ * Every station keeps the observations of the configured retention window, counted back from its newest
+ * observation, so a lookup for "the observation in effect at time T" is a binary search over primitive
+ * arrays. Requests that reach further back than the retained history fall back to the database, or to the
+ * {@link WeatherArchive} for months that were moved there.
+ */
+@Slf4j
+@Service
+public class WeatherHistoryIndex {
+    private final WeatherDataRepository weatherDataRepository;
+    private final WeatherArchive weatherArchive;
+    private final long retentionSeconds;
+    private volatile ConcurrentMap<String, StationHistory> stations = new ConcurrentHashMap<>();
+
+    public WeatherHistoryIndex(WeatherDataRepository weatherDataRepository, WeatherArchive weatherArchive,
+                               @Value("${weather.history.retention:90d}") Duration retention) {
+        this.weatherDataRepository = weatherDataRepository;
+        this.weatherArchive = weatherArchive;
+        this.retentionSeconds = retention.toSeconds();
+    }
+
+    /**
+     * Rebuilds the index from the rows of the weather_data table within the retention window of the newest
+     * observation, older rows would be evicted right away and may span years after a backfill.
+     */
+    @PostConstruct
+    public void reload() {
+        ConcurrentMap<String, StationHistory> rebuilt = new ConcurrentHashMap<>();
+        Collection<WeatherData> rows = weatherDataRepository.findNewestTimestamp()
+                .map(newest -> weatherDataRepository.findAllByTimestampGreaterThanEqualOrderByTimestampAsc(
+                        newest.minusSeconds(retentionSeconds)))
+                .orElse(List.of());
+        append(rebuilt, rows);
+        stations = rebuilt;
+        log.debug("Weather history index rebuilt from {} observations", rows.size());
+    }
+
+    /**
+     * Adds freshly imported observations to the history of their stations.
+     */
+    public void append(Collection<WeatherData> imported) {
+        append(stations, imported);
+    }
+
+    /**
+     * Finds the observation that was in effect at the given time, i.e. the last one taken at or before it.
+     *
+     * @param stationName The name of the station.
+     * @param time        The point in time of interest.
+     * @return The observation, or empty if the station has no observation at or before the given time.
+     */
+    public Optional<WeatherObservation> findInEffectAt(String stationName, Instant time) {
+        StationHistory history = stations.get(stationName);
+        // Without a history in memory, e.g. when the station stopped reporting before the retention window
+        // of the newest observation, its rows can still be in the database or the archive
+        if (history != null) {
+            StationHistory.Columns columns = history.columns();
+            int index = columns.floor(time.getEpochSecond());
+            if (index >= 0) {
+                return Optional.of(toObservation(stationName, columns, index));
+            }
+        }
+        if (weatherArchive.covers(stationName, time)) {
+            return weatherArchive.findInEffectAt(stationName, time);
+        }
+        Optional<WeatherObservation> stored = weatherDataRepository
+                .findFirstByStationNameAndTimestampLessThanEqualOrderByTimestampDesc(stationName, time)
+                .map(WeatherObservation::from);
+        // The rows right after the archived months may be missing, then the last archived one is in effect
+        return stored.isPresent() ? stored : weatherArchive.findInEffectAt(stationName, time);
+    }
+
+    /**
+     * Passes all observations of the station in [from, to) to the consumer in time order, from the archive
+     * and the database. Unlike {@link #findInEffectAt}, observations keep their phenomenon text.
+     */
+    public void scan(String stationName, Instant from, Instant to, Consumer<WeatherObservation> observations) {
+        List<WeatherData> rows = weatherDataRepository
+                .findAllByStationNameAndTimestampGreaterThanEqualAndTimestampLessThanOrderByTimestampAsc(
+                        stationName, from, to);
+        // Rows backfilled into an archived month stay in the database until the next archive run
+        int[] next = {0};
+        weatherArchive.scan(stationName, from, to, archived -> {
+            while (next[0] < rows.size() && rows.get(next[0]).getTimestamp().isBefore(archived.getTimestamp())) {
+                observations.accept(WeatherObservation.from(rows.get(next[0]++)));
+            }
+            observations.accept(archived);
+        });
+        for (int i = next[0]; i < rows.size(); i++) {
+            observations.accept(WeatherObservation.from(rows.get(i)));
+        }
+    }
+
+    public Set<String> getStationNames() {
+        return stations.keySet();
+    }
+
+    public StationHistory getHistory(String stationName) {
+        return stations.get(stationName);
+    }
+
+    private void append(ConcurrentMap<String, StationHistory> target, Collection<WeatherData> weatherData) {
+        for (WeatherData data : weatherData) {
+            target.computeIfAbsent(data.getStationName(), name -> new StationHistory(retentionSeconds))
+                    .append(data.getTimestamp().getEpochSecond(),
+                            toFloat(data.getAirTemperature()),
+                            toFloat(data.getWindSpeed()),
+                            PhenomenonCode.classify(data.getWeatherPhenomenon()));
+        }
+    }
+
+    private static WeatherObservation toObservation(String stationName, StationHistory.Columns columns, int index) {
+        return new WeatherObservation(
+                stationName,
+                null,
+                toDouble(columns.airTemperature(index)),
+                toDouble(columns.windSpeed(index)),
+                null,
+                Instant.ofEpochSecond(columns.epochSecond(index)),
+                columns.phenomenonCode(index));
+    }
+
+    private static float toFloat(Double value) {
+        return value == null ? Float.NaN : value.floatValue();
+    }
+
+    private static Double toDouble(float value) {
+        return Float.isNaN(value) ? null : (double) value;
+    }
+}
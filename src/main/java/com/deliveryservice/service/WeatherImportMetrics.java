@@ -0,0 +1,78 @@
+package com.deliveryservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.TimeUnit;
+import org.springframework.stereotype.Component;
+
+/**
+ * Timers and counters of the weather import runs.
+ */
+@Component
+public class WeatherImportMetrics {
+    private final Timer fetch;
+    private final Timer parse;
+    private final Timer imported;
+    private final Timer unchanged;
+    private final Timer failed;
+    private final Timer standby;
+    private final Counter notModified;
+    private final Counter rowsPersisted;
+    private final Counter failures;
+
+    public WeatherImportMetrics(MeterRegistry meterRegistry) {
+        this.fetch = Timer.builder("weather.import.fetch")
+                .description("Time to download the observations feed")
+                .register(meterRegistry);
+        this.parse = Timer.builder("weather.import.parse")
+                .description("Time to decompress and parse the observations feed body")
+                .register(meterRegistry);
+        this.imported = run(meterRegistry, "imported");
+        this.unchanged = run(meterRegistry, "unchanged");
+        this.failed = run(meterRegistry, "failed");
+        this.standby = run(meterRegistry, "standby");
+        this.notModified = Counter.builder("weather.import.not.modified")
+                .description("Feed requests answered with 304 Not Modified")
+                .register(meterRegistry);
+        this.rowsPersisted = Counter.builder("weather.import.rows.persisted")
+                .description("Observations stored by the import")
+                .register(meterRegistry);
+        this.failures = Counter.builder("weather.import.failures")
+                .description("Import runs that failed")
+                .register(meterRegistry);
+    }
+
+    void recordFetch(long nanos) {
+        fetch.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordParse(long nanos) {
+        parse.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordNotModified() {
+        notModified.increment();
+    }
+
+    void recordRun(int persisted, long nanos) {
+        (persisted > 0 ? imported : unchanged).record(nanos, TimeUnit.NANOSECONDS);
+        rowsPersisted.increment(persisted);
+    }
+
+    void recordFailure(long nanos) {
+        failed.record(nanos, TimeUnit.NANOSECONDS);
+        failures.increment();
+    }
+
+    void recordStandby(long nanos) {
+        standby.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static Timer run(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("weather.import")
+                .description("Duration of a whole import run")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,89 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.repository.SharedStateRepository;
+import com.deliveryservice.repository.WeatherDataDownsampler;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps the weather_data table bounded.
+ * <p>
+ * Raw observations are kept for the configured window. Older data is downsampled to hourly rows, one chunk
+ * of time at a time, so historical fee requests keep working while every statement stays short. The job
+ * keeps how far it got in the weather-retention entry of shared_state and only looks at data that became
+ * older than the window since the last run, also after a restart or on another replica. It runs on the
+ * holder of the weather-retention lease.
+ */
+@Slf4j
+@Service
+public class WeatherRetentionJob {
+    private final WeatherDataDownsampler downsampler;
+    private final ReplicaLease replicaLease;
+    private final SharedStateRepository sharedState;
+    private final Duration rawWindow;
+    private final Duration chunk;
+    private final Clock clock;
+
+    @Autowired
+    public WeatherRetentionJob(WeatherDataDownsampler downsampler, ReplicaLease replicaLease,
+                               SharedStateRepository sharedState,
+                               @Value("${weather.retention.raw-window:90d}") Duration rawWindow,
+                               @Value("${weather.retention.chunk:6h}") Duration chunk) {
+        this(downsampler, replicaLease, sharedState, rawWindow, chunk, Clock.systemUTC());
+    }
+
+    WeatherRetentionJob(WeatherDataDownsampler downsampler, ReplicaLease replicaLease,
+                        SharedStateRepository sharedState, Duration rawWindow, Duration chunk, Clock clock) {
+        if (chunk.isNegative() || chunk.isZero() || chunk.toSeconds() % 3600 != 0) {
+            throw new IllegalArgumentException("Retention chunk must be a positive number of hours: " + chunk);
+        }
+        this.downsampler = downsampler;
+        this.replicaLease = replicaLease;
+        this.sharedState = sharedState;
+        this.rawWindow = rawWindow;
+        this.chunk = chunk;
+        this.clock = clock;
+    }
+
+    /**
+     * Downsamples everything older than the raw window that has not been downsampled yet, if this replica
+     * holds the retention lease.
+     *
+     * @return The number of deleted rows.
+     */
+    @Scheduled(cron = "${weather.retention.cron:0 45 * * * *}")
+    public synchronized int run() {
+        if (!replicaLease.tryAcquire(ReplicaLease.WEATHER_RETENTION)) {
+            log.debug("Weather retention skipped, another replica holds the lease");
+            return 0;
+        }
+        Instant cutoff = clock.instant().minus(rawWindow).truncatedTo(ChronoUnit.HOURS);
+        SharedStateRepository.Entry mark = sharedState.findAll().get(SharedStateRepository.WEATHER_RETENTION);
+        Instant from;
+        if (mark != null && mark.value() != null) {
+            from = Instant.parse(mark.value());
+        } else {
+            from = downsampler.findOldestTimestamp().map(oldest -> oldest.truncatedTo(ChronoUnit.HOURS)).orElse(cutoff);
+        }
+        int deleted = 0;
+        while (from.isBefore(cutoff)) {
+            Instant to = from.plus(chunk).isAfter(cutoff) ? cutoff : from.plus(chunk);
+            deleted += downsampler.downsample(from, to);
+            from = to;
+        }
+        if (mark == null || !from.toString().equals(mark.value())) {
+            sharedState.update(SharedStateRepository.WEATHER_RETENTION, from.toString());
+        }
+        if (deleted > 0) {
+            log.info("Downsampled weather data before {}, deleted {} rows", cutoff, deleted);
+        }
+        return deleted;
+    }
+}
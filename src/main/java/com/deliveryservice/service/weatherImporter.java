@@ -1,67 +1,209 @@
 package com.deliveryservice.service;
 
 import com.deliveryservice.entity.WeatherData;
+import com.deliveryservice.model.StationLocation;
+import com.deliveryservice.repository.SharedStateRepository;
 import com.deliveryservice.repository.WeatherDataRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
-import org.quartz.CronExpression;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.support.CronExpression;
 import org.springframework.scheduling.support.CronTrigger;
 import org.springframework.stereotype.Service;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Logger;
 import lombok.extern.slf4j.Slf4j;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class weatherImporter {
     private final WeatherDataRepository weatherDataRepository;
+    private final LatestWeatherCache latestWeatherCache;
+    private final WeatherHistoryIndex weatherHistoryIndex;
+    private final SurchargeRollups surchargeRollups;
     private final TaskScheduler taskScheduler;
-    private String cronExpression = "0 15 * * * *";
+    private final ObservationsFeedClient feedClient;
+    private final WeatherImportMetrics metrics;
+    private final StationRegistry stationRegistry;
+    private final MeterRegistry meterRegistry;
+    private final ReplicaLease replicaLease;
+    private final SharedStateRepository sharedState;
+    private final Duration startupRetry;
+    // Parsed once, the time until the next import is computed on every fee request
+    private volatile CronExpression cronExpression = CronExpression.parse("0 15 * * * *");
     private ScheduledFuture<?> scheduledTask;
+    // Serializes whole imports, the startup import, its retries and the cron may otherwise overlap
+    private final Lock importLock = new ReentrantLock();
     private static final Logger logger = LoggerFactory.getLogger(weatherImporter.class);
 
     @PostConstruct
-    // Fetching data right after application start
+    // Fetching data right after application start, in the background so a slow feed cannot stall the startup
     public void init() {
+        taskScheduler.schedule(this::importAtStartup, Instant.now());
+        startImportingWeatherData();
+    }
+    public weatherImporter(WeatherDataRepository weatherDataRepository, LatestWeatherCache latestWeatherCache,
+                           WeatherHistoryIndex weatherHistoryIndex, SurchargeRollups surchargeRollups,
+                           TaskScheduler taskScheduler,
+                           ObservationsFeedClient feedClient, WeatherImportMetrics metrics,
+                           MeterRegistry meterRegistry, StationRegistry stationRegistry,
+                           ReplicaLease replicaLease, SharedStateRepository sharedState,
+                           @Value("${weather.import.startup-retry:30s}") Duration startupRetry) {
+        this.weatherDataRepository = weatherDataRepository;
+        this.latestWeatherCache = latestWeatherCache;
+        this.weatherHistoryIndex = weatherHistoryIndex;
+        this.surchargeRollups = surchargeRollups;
+        this.taskScheduler = taskScheduler;
+        this.feedClient = feedClient;
+        this.metrics = metrics;
+        this.meterRegistry = meterRegistry;
+        this.stationRegistry = stationRegistry;
+        this.replicaLease = replicaLease;
+        this.sharedState = sharedState;
+        this.startupRetry = startupRetry;
+        registerStalenessGauges(stationRegistry.getStations());
+    }
+
+    public synchronized void startImportingWeatherData() {
+        if (scheduledTask == null) {
+            scheduledTask = taskScheduler.schedule(this::importWeatherData, new CronTrigger(cronExpression.toString()));
+        }
+    }
+
+    // Until there is weather data, e.g. the feed is unreachable on a first start, waiting for the cron is too long
+    private void importAtStartup() {
+        importWeatherData();
+        if (latestWeatherCache.getObservations().isEmpty()) {
+            logger.info("No weather data yet, retrying the import in {}", startupRetry);
+            taskScheduler.schedule(this::importAtStartup, Instant.now().plus(startupRetry));
+        }
+    }
+
+    /**
+     * Fetches the feed, persists observations that are not stored yet and publishes them to the in-memory
+     * snapshot, history and surcharge rollups. Every station of the feed is registered with its position.
+     * An unchanged feed or an already imported feed timestamp persists nothing, so the import can run as
+     * often as every minute.
+     * <p>
+     * Only the replica holding the {@link ReplicaLease} imports, the others return right away and pick up
+     * the new observations when they see the weather-data version change, see {@link ReplicaStateSync}.
+     * <p>
+     * Imports run one at a time. An import that overlaps a running one waits for it and then finds its
+     * observations already stored.
+     *
+     * @return The number of observations persisted.
+     */
+    public int importWeatherData() {
+        importLock.lock();
+        try {
+            return importLocked();
+        } finally {
+            importLock.unlock();
+        }
+    }
+
+    private int importLocked() {
+        long start = System.nanoTime();
         try {
-            List<WeatherData> newWeatherData = requestWeatherData();
-            weatherDataRepository.saveAll(newWeatherData);
+            if (!replicaLease.tryAcquireImport()) {
+                logger.debug("Weather import skipped, another replica holds the lease");
+                metrics.recordStandby(System.nanoTime() - start);
+                return 0;
+            }
+            List<StationLocation> locations = new ArrayList<>();
+            ObservationsFeedClient.Fetch fetch = feedClient.fetch(name -> true, locations::add);
+            List<WeatherData> newWeatherData = withoutStoredObservations(fetch.observations());
+            if (!newWeatherData.isEmpty()) {
+                weatherDataRepository.saveAll(newWeatherData);
+                latestWeatherCache.publish(newWeatherData);
+                weatherHistoryIndex.append(newWeatherData);
+                surchargeRollups.append(newWeatherData);
+            }
+            if (!locations.isEmpty()) {
+                stationRegistry.register(locations);
+                registerStalenessGauges(locations);
+            }
+            if (!newWeatherData.isEmpty()) {
+                Instant newest = newWeatherData.stream().map(WeatherData::getTimestamp).max(Instant::compareTo).get();
+                sharedState.update(SharedStateRepository.WEATHER_DATA, newest.toString());
+            }
+            // Only now, after a failure the feed is fetched again rather than answered with 304
+            feedClient.markImported(fetch);
+            metrics.recordRun(newWeatherData.size(), System.nanoTime() - start);
+            return newWeatherData.size();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            metrics.recordFailure(System.nanoTime() - start);
         } catch (Exception e) {
+            metrics.recordFailure(System.nanoTime() - start);
+            logger.warn("Error importing weather data: {}", e.toString());
             logger.debug("Error importing weather data", e);
         }
-        startImportingWeatherData();
+        return 0;
     }
-    public weatherImporter(WeatherDataRepository weatherDataRepository, TaskScheduler taskScheduler) {
-        this.weatherDataRepository = weatherDataRepository;
-        this.taskScheduler = taskScheduler;
+
+    // Registering an existing gauge again returns it, so every import can pass all stations
+    private void registerStalenessGauges(Collection<StationLocation> stations) {
+        for (StationLocation station : stations) {
+            Gauge.builder("weather.data.staleness", latestWeatherCache, cache -> staleness(cache, station.getName()))
+                    .description("Age of the latest observation of a station")
+                    .tag("station", station.getName())
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        }
     }
-    private static final String API_URL = "https://www.ilmateenistus.ee/ilma_andmed/xml/observations.php";
 
-    private static final String[] STATIONS = {"Tallinn-Harku", "Tartu-Tõravere", "Pärnu"};
+    // Seconds since the latest observation of the station, NaN if there is none
+    private static double staleness(LatestWeatherCache cache, String station) {
+        return cache.findLatest(station)
+                .map(latest -> (double) Duration.between(latest.getTimestamp(), Instant.now()).toSeconds())
+                .orElse(Double.NaN);
+    }
 
-    public void startImportingWeatherData() {
-        if (scheduledTask == null) {
-            scheduledTask = taskScheduler.schedule(() -> {
-                try {
-                    List<WeatherData> newWeatherData = requestWeatherData();
-                    weatherDataRepository.saveAll(newWeatherData);
-                } catch (Exception e) {
-                    logger.debug("Error importing weather data", e);
-                }
-            }, new CronTrigger(cronExpression));
+    // (station, timestamp) is unique in weather_data, the snapshot answers most checks without a query
+    private List<WeatherData> withoutStoredObservations(List<WeatherData> fetched) {
+        List<WeatherData> candidates = fetched.stream()
+                .filter(data -> data.getTimestamp() != null)
+                .filter(data -> latestWeatherCache.findLatest(data.getStationName())
+                        .map(latest -> latest.getTimestamp().isBefore(data.getTimestamp()))
+                        .orElse(true))
+                .toList();
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+        Set<Instant> timestamps = candidates.stream().map(WeatherData::getTimestamp).collect(Collectors.toSet());
+        Set<String> stored = weatherDataRepository.findByTimestampIn(timestamps).stream()
+                .map(data -> data.getStationName() + '@' + data.getTimestamp())
+                .collect(Collectors.toSet());
+        return candidates.stream()
+                .filter(data -> !stored.contains(data.getStationName() + '@' + data.getTimestamp()))
+                .toList();
+    }
+
+    /**
+     * @return Time left until the next scheduled import, zero if it is due.
+     */
+    public Duration getTimeUntilNextImport() {
+        ZonedDateTime now = ZonedDateTime.now();
+        ZonedDateTime next = cronExpression.next(now);
+        if (next == null) {
+            return Duration.ZERO;
         }
+        return Duration.between(now, next);
     }
 
     private void stopImportingWeatherData() {
@@ -71,61 +213,40 @@ public class weatherImporter {
         }
     }
 
+    /**
+     * Reschedules the import on this replica and publishes the expression to all other replicas. The
+     * expression is applied here first, so an expression that cannot be scheduled never reaches them.
+     *
+     * @throws IllegalArgumentException If the expression is not a valid cron expression.
+     */
     public void setCronExpression(String cronExpression) {
-        if (!CronExpression.isValidExpression(cronExpression)) {
-            throw new IllegalArgumentException("Invalid cron expression: " + cronExpression);
-        }
-        this.cronExpression = cronExpression;
+        applyCronExpression(cronExpression);
+        sharedState.update(SharedStateRepository.IMPORT_CRON, cronExpression);
+    }
+
+    /**
+     * Reschedules the import on this replica only.
+     *
+     * @throws IllegalArgumentException If the expression is not a valid cron expression, the current
+     *                                  schedule is kept then.
+     */
+    public synchronized void applyCronExpression(String cronExpression) {
+        CronExpression parsed = parse(cronExpression);
+        this.cronExpression = parsed;
         stopImportingWeatherData();
         startImportingWeatherData();
     }
 
-    private List<WeatherData> requestWeatherData() throws Exception {
-        List<WeatherData> weatherDataList = new ArrayList<>();
-        // Create the HTTP connection and set the request method to GET
-        URL url = new URL(API_URL);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("GET");
-
-        // Check if the response code indicates a successful response (200)
-        if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
-            // Create a new DocumentBuilderFactory and DocumentBuilder
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = factory.newDocumentBuilder();
-
-            // Parse the response into a Document object
-            Document doc = builder.parse(connection.getInputStream());
-
-            // Loop through the "station" elements in the XML response
-            NodeList stationList = doc.getElementsByTagName("station");
-            for (int i = 0; i < stationList.getLength(); i++) {
-                Element station = (Element) stationList.item(i);
-                String name = station.getElementsByTagName("name").item(0).getTextContent();
-                if (containsStation(name)) {
-                    // Create a new WeatherData object and set its properties
-                    WeatherData weatherData = new WeatherData();
-                    weatherData.setStationName(name);
-                    weatherData.setWmoCode(station.getElementsByTagName("wmocode").item(0).getTextContent());
-                    weatherData.setAirTemperature(Double.valueOf(station.getElementsByTagName("airtemperature").item(0).getTextContent()));
-                    weatherData.setWindSpeed(Double.valueOf(station.getElementsByTagName("windspeed").item(0).getTextContent()));
-                    weatherData.setWeatherPhenomenon(station.getElementsByTagName("phenomenon").item(0).getTextContent());
-                    weatherData.setTimestamp(Instant.ofEpochSecond(Long.parseLong(doc.getDocumentElement().getAttribute("timestamp"))));
-                    weatherDataList.add(weatherData);
-                }
-            }
-        }
-
-        // Close the connection and return the list of WeatherData objects
-        connection.disconnect();
-        return weatherDataList;
+    public String getCronExpression() {
+        return cronExpression.toString();
     }
-    // Helper method to check if a station is in the list of allowed stations
-    private static boolean containsStation(String stationName) {
-        for (String allowedStation : STATIONS) {
-            if (allowedStation.equalsIgnoreCase(stationName)) {
-                return true;
-            }
+
+    // The parser the scheduler uses, so whatever is accepted here can also be scheduled
+    private static CronExpression parse(String cronExpression) {
+        try {
+            return CronExpression.parse(cronExpression);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cron expression: " + cronExpression, e);
         }
-        return false;
     }
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+create sequence city_seq start with 1 increment by 50;
+create sequence vehicle_type_seq start with 1 increment by 50;
+create sequence weather_data_seq start with 1 increment by 50;
+
+create table city (
+    id   bigint not null,
+    city varchar(255),
+    fee  float(53),
+    primary key (id)
+);
+
+create table vehicle_type (
+    id      bigint not null,
+    vehicle varchar(255),
+    fee     float(53),
+    primary key (id)
+);
+
+create table weather_data (
+    id                 bigint not null,
+    station_name       varchar(255),
+    wmo_code           varchar(255),
+    air_temperature    float(53),
+    wind_speed         float(53),
+    weather_phenomenon varchar(255),
+    timestamp          timestamp(6) with time zone,
+    primary key (id)
+);
+
+-- Serves the per-station "in effect at" and latest lookups and keeps imports idempotent
+create unique index weather_data_station_timestamp_idx on weather_data (station_name, timestamp);
+-- Serves the import duplicate check, the history reload and the retention job's time range scans
+create index weather_data_timestamp_idx on weather_data (timestamp);
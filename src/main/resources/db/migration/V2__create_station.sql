@@ -0,0 +1,12 @@
+create sequence station_seq start with 1 increment by 50;
+
+-- Every station of the observations feed with its position, read into the station registry at startup
+create table station (
+    id        bigint not null,
+    name      varchar(255) not null,
+    latitude  float(53) not null,
+    longitude float(53) not null,
+    primary key (id)
+);
+
+create unique index station_name_idx on station (name);
@@ -0,0 +1,19 @@
+-- Time-limited leases, a replica owns a lease while expires_at is in the future
+create table replica_lease (
+    name       varchar(64) not null,
+    owner      varchar(255),
+    expires_at timestamp(6) with time zone not null,
+    primary key (name)
+);
+
+insert into replica_lease (name, owner, expires_at) values ('weather-import', null, timestamp with time zone '1970-01-01 00:00:00+00');
+
+-- Values shared by all replicas, version is incremented on every change so replicas can poll it cheaply
+create table shared_state (
+    name    varchar(64) not null,
+    content varchar(255),
+    version bigint not null,
+    primary key (name)
+);
+
+insert into shared_state (name, content, version) values ('weather-data', null, 0), ('import-cron', null, 0);
@@ -0,0 +1,4 @@
+-- The archive job runs on one replica at a time, the others rescan the archive when its version changes
+insert into replica_lease (name, owner, expires_at) values ('weather-archive', null, timestamp with time zone '1970-01-01 00:00:00+00');
+
+insert into shared_state (name, content, version) values ('weather-archive', null, 0);
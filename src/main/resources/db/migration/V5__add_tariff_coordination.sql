@@ -0,0 +1,2 @@
+-- Replicas reload the tariffs when a fee update on another replica bumps this version
+insert into shared_state (name, content, version) values ('tariffs', null, 0);
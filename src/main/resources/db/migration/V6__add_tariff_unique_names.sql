@@ -0,0 +1,6 @@
+-- Replicas starting together could each seed the tariffs, keep the first row of every name
+delete from city c where exists (select 1 from city d where d.city = c.city and d.id < c.id);
+delete from vehicle_type v where exists (select 1 from vehicle_type w where w.vehicle = v.vehicle and w.id < v.id);
+
+create unique index city_city_idx on city (city);
+create unique index vehicle_type_vehicle_idx on vehicle_type (vehicle);
@@ -0,0 +1,4 @@
+-- The retention job runs on one replica at a time and keeps how far it has downsampled where every replica sees it
+insert into replica_lease (name, owner, expires_at) values ('weather-retention', null, timestamp with time zone '1970-01-01 00:00:00+00');
+
+insert into shared_state (name, content, version) values ('weather-retention', null, 0);
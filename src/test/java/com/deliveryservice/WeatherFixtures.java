@@ -0,0 +1,80 @@
+package com.deliveryservice;
+
+import com.deliveryservice.entity.WeatherData;
+import com.deliveryservice.repository.WeatherDataBulkWriter;
+import com.deliveryservice.service.LatestWeatherCache;
+import com.deliveryservice.service.WeatherHistoryIndex;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Command line arguments that run the application against its own in-memory database, without reaching the
+ * real observations feed, and generated observations to seed it with. Shared by the load tests and the
+ * benchmarks.
+ */
+public final class WeatherFixtures {
+    public static final String[] STATIONS = {"Tallinn-Harku", "Tartu-Tõravere", "Pärnu"};
+    public static final Instant NEWEST_OBSERVATION = Instant.parse("2023-03-26T09:00:00Z");
+    /**
+     * Every 11th generated observation has glaze, starting this many observations before the newest one.
+     */
+    public static final int GLAZE_OFFSET = 5;
+
+    private WeatherFixtures() {
+    }
+
+    /**
+     * @param database   Name of the in-memory database, a new one per application.
+     * @param properties Additional properties as name=value, each set at most once.
+     * @return The command line arguments to run the application with.
+     */
+    public static String[] arguments(String database, List<String> properties) {
+        List<String> all = new ArrayList<>(List.of(
+                "weather.import.url=http://localhost:9/observations.php",
+                "spring.datasource.url=jdbc:h2:mem:" + database,
+                "server.port=0",
+                "spring.main.banner-mode=off",
+                "logging.level.root=warn"));
+        all.addAll(properties);
+        // As arguments, default properties would lose against application.properties
+        return all.stream().map(property -> "--" + property).toArray(String[]::new);
+    }
+
+    /**
+     * Stores observations for the tracked stations every {@code intervalMinutes}, ending at
+     * {@link #NEWEST_OBSERVATION}, and reloads the in-memory weather views.
+     */
+    public static void seedWeather(ConfigurableApplicationContext context, int perStation, int intervalMinutes) {
+        seedWeather(context, List.of(STATIONS), perStation, intervalMinutes);
+    }
+
+    /**
+     * Stores observations for the given stations like {@link #seedWeather(ConfigurableApplicationContext, int, int)}.
+     */
+    public static void seedWeather(ConfigurableApplicationContext context, List<String> stations, int perStation,
+                                   int intervalMinutes) {
+        WeatherDataBulkWriter bulkWriter = context.getBean(WeatherDataBulkWriter.class);
+        List<WeatherData> rows = new ArrayList<>();
+        for (String station : stations) {
+            for (int i = perStation - 1; i >= 0; i--) {
+                WeatherData row = new WeatherData();
+                row.setStationName(station);
+                row.setWmoCode("26038");
+                row.setAirTemperature(-15.0 + i % 25);
+                row.setWindSpeed((double) (i % 23));
+                row.setWeatherPhenomenon(i % 11 == GLAZE_OFFSET ? "Glaze" : i % 3 == 0 ? "Light snow shower" : "Moderate rain");
+                row.setTimestamp(NEWEST_OBSERVATION.minusSeconds(i * 60L * intervalMinutes));
+                rows.add(row);
+                if (rows.size() == 10_000) {
+                    bulkWriter.insert(rows);
+                    rows.clear();
+                }
+            }
+        }
+        bulkWriter.insert(rows);
+        context.getBean(LatestWeatherCache.class).reload();
+        context.getBean(WeatherHistoryIndex.class).reload();
+    }
+}
@@ -0,0 +1,124 @@
+package com.deliveryservice.controller;
+
+import com.deliveryservice.service.AdmissionControl;
+import com.deliveryservice.service.LatestWeatherCache;
+import com.deliveryservice.service.StationRegistry;
+import com.deliveryservice.service.TariffRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(locations = "/application-test.properties", properties = {
+        "spring.datasource.url=jdbc:h2:mem:admission-control-test",
+        "delivery.admission.enabled=true",
+        "delivery.admission.api-keys=flooding-partner,well-behaved-partner,steady-partner",
+        "delivery.admission.client-rate=0.1",
+        "delivery.admission.client-burst=2",
+        "delivery.admission.max-clients=1"})
+class AdmissionControlFilterTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private LatestWeatherCache latestWeatherCache;
+    @Autowired
+    private TariffRegistry tariffRegistry;
+    @Autowired
+    private StationRegistry stationRegistry;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void reloadSnapshots() {
+        latestWeatherCache.reload();
+        tariffRegistry.reload();
+        stationRegistry.reload();
+    }
+
+    @Sql(value = "/GeneralRulesFee.sql")
+    @Test
+    void clientsOverTheirRateAreShedWithRetryAfter() throws Exception {
+        double rateLimitedBefore = decisions("rate_limited");
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get("/delivery/feeRequest")
+                            .header("X-API-Key", "flooding-partner")
+                            .param("city", "Tartu")
+                            .param("vehicleType", "Bike"))
+                    .andExpect(status().isOk());
+        }
+        mockMvc.perform(get("/delivery/feeRequest")
+                        .header("X-API-Key", "flooding-partner")
+                        .param("city", "Tartu")
+                        .param("vehicleType", "Bike"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "10"));
+        Assertions.assertEquals(rateLimitedBefore + 1, decisions("rate_limited"));
+
+        // Other clients have their own buckets
+        mockMvc.perform(get("/delivery/feeRequest")
+                        .header("X-API-Key", "well-behaved-partner")
+                        .param("city", "Tartu")
+                        .param("vehicleType", "Bike"))
+                .andExpect(status().isOk());
+        // Administrative endpoints are not limited
+        mockMvc.perform(get("/delivery/analytics/surcharges")
+                        .header("X-API-Key", "flooding-partner")
+                        .param("city", "Tartu")
+                        .param("vehicleType", "Bike")
+                        .param("from", "2023-03-01T00:00:00Z")
+                        .param("to", "2023-04-01T00:00:00Z"))
+                .andExpect(status().isOk());
+    }
+
+    @Sql(value = "/GeneralRulesFee.sql")
+    @Test
+    void unknownKeysDoNotEscapeTheLimitOfTheirAddress() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(feeRequest("made-up-key-" + i, "192.0.2.10"))
+                    .andExpect(status().isOk());
+        }
+        // A fresh key gets no fresh burst, the address is out of tokens
+        mockMvc.perform(feeRequest("made-up-key-2", "192.0.2.10"))
+                .andExpect(status().isTooManyRequests());
+        mockMvc.perform(feeRequest(null, "192.0.2.10"))
+                .andExpect(status().isTooManyRequests());
+
+        // Beyond max-clients new addresses are hashed onto overflow buckets, not into the flooder's
+        for (int i = 0; i < 20; i++) {
+            mockMvc.perform(feeRequest("made-up-key", "198.51.100." + i))
+                    .andExpect(status().isOk());
+        }
+        // A partner with a listed key keeps its own bucket, even from the flooding address
+        mockMvc.perform(feeRequest("steady-partner", "192.0.2.10"))
+                .andExpect(status().isOk());
+    }
+
+    private static MockHttpServletRequestBuilder feeRequest(String apiKey, String address) {
+        MockHttpServletRequestBuilder request = get("/delivery/feeRequest")
+                .param("city", "Tartu")
+                .param("vehicleType", "Bike")
+                .with(mockRequest -> {
+                    mockRequest.setRemoteAddr(address);
+                    return mockRequest;
+                });
+        return apiKey == null ? request : request.header("X-API-Key", apiKey);
+    }
+
+    private double decisions(String outcome) {
+        return meterRegistry.get(AdmissionControl.DECISIONS).tag("outcome", outcome).counter().count();
+    }
+}
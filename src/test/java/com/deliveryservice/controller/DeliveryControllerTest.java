@@ -1,17 +1,39 @@
 package com.deliveryservice.controller;
 
+import com.deliveryservice.exceptions.BatchTooLargeException;
+import com.deliveryservice.exceptions.VehicleTypeNotFoundException;
+import com.deliveryservice.exceptions.VehicleUsageForbiddenException;
+import com.deliveryservice.service.LatestWeatherCache;
+import com.deliveryservice.service.StationRegistry;
+import com.deliveryservice.service.SurchargeRollups;
+import com.deliveryservice.service.TariffRegistry;
+import com.deliveryservice.service.WeatherHistoryIndex;
 import jakarta.servlet.ServletException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import org.awaitility.Awaitility;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.jdbc.Sql;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -21,6 +43,28 @@ class DeliveryControllerTest {
 
     @Autowired
     private MockMvc mockMvc;
+    @Autowired
+    private LatestWeatherCache latestWeatherCache;
+    @Autowired
+    private WeatherHistoryIndex weatherHistoryIndex;
+    @Autowired
+    private TariffRegistry tariffRegistry;
+    @Autowired
+    private StationRegistry stationRegistry;
+    @Autowired
+    private SurchargeRollups surchargeRollups;
+    @Autowired
+    private DeliveryController deliveryController;
+
+    // @Sql scripts run before this, so the in-memory snapshots have to pick up the seeded rows
+    @BeforeEach
+    void reloadSnapshots() {
+        latestWeatherCache.reload();
+        weatherHistoryIndex.reload();
+        tariffRegistry.reload();
+        stationRegistry.reload();
+    }
+
     @Sql(value = "/GeneralRulesFee.sql")
     @Test
     void calculateDeliveryFeeTartuBike() throws Exception {
@@ -28,7 +72,7 @@ class DeliveryControllerTest {
                         .param("city", "Tartu")
                         .param("vehicleType", "Bike"))
                 .andExpect(status().isOk())
-                .andExpect(content().string("4.0"));
+                .andExpect(content().string("{\"fee\":4.0}"));
     }
     @Sql(value = "/GeneralRulesFee.sql")
     @Test
@@ -37,7 +81,22 @@ class DeliveryControllerTest {
                         .param("city", "Tallinn")
                         .param("vehicleType", "Car"))
                 .andExpect(status().isOk())
-                .andExpect(content().string("4.0"));
+                .andExpect(content().string("{\"fee\":4.0}"));
+    }
+    @Sql(value = "/GeneralRulesFee.sql")
+    @Test
+    void calculateDeliveryFeeByCoordinatesUsesNearestStation() throws Exception {
+        // Tartu city centre, closest to the Tõravere station
+        mockMvc.perform(get("/delivery/feeRequest")
+                        .param("lat", "58.378")
+                        .param("lon", "26.729")
+                        .param("vehicleType", "Bike"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"fee\":4.0}"));
+        mockMvc.perform(get("/delivery/feeRequest")
+                        .param("lat", "58.378")
+                        .param("vehicleType", "Bike"))
+                .andExpect(status().isBadRequest());
     }
     @Sql(value = "/VehicleForbidden.sql")
     @Test
@@ -49,4 +108,250 @@ class DeliveryControllerTest {
                 .andExpect(status().isBadRequest());
         }, "Usage of selected vehicle type is forbidden");
     }
+
+    @Sql(value = "/VehicleForbidden.sql")
+    @Test
+    void refusedFeesCarryNoCachingHeaders() {
+        MockHttpServletResponse forbidden = new MockHttpServletResponse();
+        Assertions.assertThrows(VehicleUsageForbiddenException.class, () -> deliveryController.calculateDeliveryFee(
+                "Tartu", null, null, "Bike", null, new ServletWebRequest(feeRequest(), forbidden)));
+        assertNoCachingHeaders(forbidden);
+
+        MockHttpServletResponse unknownVehicle = new MockHttpServletResponse();
+        Assertions.assertThrows(VehicleTypeNotFoundException.class, () -> deliveryController.calculateDeliveryFee(
+                "Tartu", null, null, "Plane", null, new ServletWebRequest(feeRequest(), unknownVehicle)));
+        assertNoCachingHeaders(unknownVehicle);
+    }
+
+    private static MockHttpServletRequest feeRequest() {
+        return new MockHttpServletRequest("GET", "/delivery/feeRequest");
+    }
+
+    private static void assertNoCachingHeaders(MockHttpServletResponse response) {
+        Assertions.assertNull(response.getHeader("ETag"));
+        Assertions.assertNull(response.getHeader("Last-Modified"));
+        Assertions.assertNull(response.getHeader("Cache-Control"));
+    }
+    @Sql(value = "/HistoricalFee.sql")
+    @Test
+    void calculateDeliveryFeeUsesObservationInEffectAtDatetime() throws Exception {
+        mockMvc.perform(get("/delivery/feeRequest")
+                        .param("city", "Tartu")
+                        .param("vehicleType", "Bike")
+                        .param("datetime", "2023-03-26T08:59:59Z"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"fee\":4.0}"));
+        mockMvc.perform(get("/delivery/feeRequest")
+                        .param("city", "Tartu")
+                        .param("vehicleType", "Bike")
+                        .param("datetime", "2023-03-26T09:30:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"fee\":3.0}"));
+    }
+    @Sql(value = "/HistoricalFee.sql")
+    @Test
+    void surchargeRollupsAreQueriedPerHourAndDay() throws Exception {
+        surchargeRollups.rebuild();
+        mockMvc.perform(get("/delivery/analytics/surcharges")
+                        .param("city", "Tartu")
+                        .param("vehicleType", "Bike")
+                        .param("from", "2023-03-26T00:00:00Z")
+                        .param("to", "2023-03-27T00:00:00Z")
+                        .param("granularity", "hour"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].start").value("2023-03-26T08:00:00Z"))
+                .andExpect(jsonPath("$[0].averageSurcharge").value(1.5))
+                .andExpect(jsonPath("$[0].coveredHours").value(1.0))
+                .andExpect(jsonPath("$[2].averageSurcharge").value(1.0));
+        mockMvc.perform(get("/delivery/analytics/surcharges")
+                        .param("city", "Tartu")
+                        .param("vehicleType", "Bike")
+                        .param("from", "2023-03-01T00:00:00Z")
+                        .param("to", "2023-04-01T00:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].observations").value(3))
+                .andExpect(jsonPath("$[0].averageSurcharge").value(1.0))
+                .andExpect(jsonPath("$[0].forbiddenHours").value(0.0));
+        mockMvc.perform(get("/delivery/analytics/surcharges")
+                        .param("city", "Tartu")
+                        .param("vehicleType", "Bike")
+                        .param("from", "2000-01-01T00:00:00Z")
+                        .param("to", "2023-01-01T00:00:00Z")
+                        .param("granularity", "hour"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Sql(value = "/HistoricalFee.sql")
+    @Test
+    void tariffSimulationComparesProposalWithCurrentTariff() throws Exception {
+        mockMvc.perform(post("/delivery/simulation")
+                        .param("from", "2023-03-01T00:00:00Z")
+                        .param("to", "2023-04-01T00:00:00Z")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"vehicleFees\":{\"Bike\":1.0},"
+                                + "\"rules\":{\"forbiddenPhenomena\":{\"BIKE\":[\"snow_or_sleet\"]}}}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.observations").value(3))
+                .andExpect(jsonPath("$.total.quotes").value(9))
+                .andExpect(jsonPath("$.total.currentRevenue").value(32.5))
+                .andExpect(jsonPath("$.total.revenueDelta").value(-3.0))
+                .andExpect(jsonPath("$.total.forbiddenDelta").value(1))
+                .andExpect(jsonPath("$.stations.length()").value(3))
+                .andExpect(jsonPath("$.stations[?(@.vehicleType == 'Bike')].city").value("Tartu-Tõravere"))
+                .andExpect(jsonPath("$.stations[?(@.vehicleType == 'Bike')].proposedRevenue").value(7.5))
+                .andExpect(jsonPath("$.stations[?(@.vehicleType == 'Car')].revenueDelta").value(0.0));
+        mockMvc.perform(post("/delivery/simulation")
+                        .param("from", "2023-03-01T00:00:00Z")
+                        .param("to", "2023-04-01T00:00:00Z")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"cityFees\":{\"Narva\":3.0}}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Sql(value = "/HistoricalFee.sql", statements = "INSERT INTO weather_data (id, station_name, wmo_code, "
+            + "air_temperature, wind_speed, weather_phenomenon, timestamp) VALUES (next value for weather_data_seq, "
+            + "'Tallinn-Harku', '26038', 5.0, 3.0, 'Overcast', '2022-11-01T09:00:00Z')")
+    @Test
+    void calculateDeliveryFeeFromTheDatabaseForAStationWithoutHistoryInMemory() throws Exception {
+        // Older than the history window of the newest observation, only in the database
+        Assertions.assertNull(weatherHistoryIndex.getHistory("Tallinn-Harku"));
+        mockMvc.perform(get("/delivery/feeRequest")
+                        .param("city", "Tallinn")
+                        .param("vehicleType", "Car")
+                        .param("datetime", "2022-11-02T12:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"fee\":4.0}"));
+    }
+
+    @Sql(value = "/HistoricalFee.sql")
+    @Test
+    void calculateDeliveryFeeBeforeFirstObservation() throws Exception {
+        Assertions.assertThrows(ServletException.class, () -> mockMvc.perform(get("/delivery/feeRequest")
+                .param("city", "Tartu")
+                .param("vehicleType", "Bike")
+                .param("datetime", "2023-03-26T07:00:00Z")));
+    }
+    @Sql(value = "/VehicleForbidden.sql")
+    @Test
+    void calculateDeliveryFeesReportsErrorsInline() throws Exception {
+        MvcResult result = mockMvc.perform(post("/delivery/feeRequest/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [{"city": "Tallinn", "vehicleType": "Scooter"},
+                                 {"city": "Tartu", "vehicleType": "Bike"},
+                                 {"city": "Narva", "vehicleType": "Car"},
+                                 {"city": "Pärnu", "vehicleType": "Boat"},
+                                 {"city": "Tallinn", "vehicleType": "Car", "datetime": "yesterday"},
+                                 {"city": "Tallinn", "vehicleType": "Car", "datetime": "2023-03-26T10:00:00Z"}]
+                                """))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().json("""
+                        [{"fee": 4.5},
+                         {"error": "Usage of selected vehicle type is forbidden"},
+                         {"error": "No weather data found for the specified city and datetime"},
+                         {"error": "No such vehicle type"},
+                         {"error": "Invalid datetime: yesterday"},
+                         {"fee": 4.0}]
+                        """, true));
+    }
+    @Sql(value = "/VehicleForbidden.sql")
+    @Test
+    void calculateDeliveryFeesAnswersANullQuoteInline() throws Exception {
+        MvcResult result = mockMvc.perform(post("/delivery/feeRequest/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [null, {"city": "Tallinn", "vehicleType": "Scooter"}]
+                                """))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().json("""
+                        [{"error": "city and vehicleType are required"},
+                         {"fee": 4.5}]
+                        """, true));
+    }
+    @Test
+    void calculateDeliveryFeesRefusesOversizedAndMalformedBatches() throws Exception {
+        // Refused at the first quote over the limit, the malformed rest is never read
+        String oversized = "[" + "null,".repeat(10_001) + "{";
+        mockMvc.perform(post("/delivery/feeRequest/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(oversized))
+                .andExpect(status().isBadRequest())
+                .andExpect(result -> Assertions.assertInstanceOf(BatchTooLargeException.class,
+                        result.getResolvedException()));
+        mockMvc.perform(post("/delivery/feeRequest/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"city\": \"Tallinn\", \"vehicleType\": \"Car\"}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/delivery/feeRequest/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"city\": \"Tallinn\""))
+                .andExpect(status().isBadRequest());
+    }
+    @Sql(value = "/GeneralRulesFee.sql")
+    @Test
+    void calculateDeliveryFeeAnswersConditionalRequests() throws Exception {
+        String eTag = mockMvc.perform(get("/delivery/feeRequest")
+                        .param("city", "Tallinn")
+                        .param("vehicleType", "Car"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("Last-Modified"))
+                .andExpect(header().string("Cache-Control", org.hamcrest.Matchers.startsWith("max-age=")))
+                .andExpect(header().exists("X-Tariff-Version"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/delivery/feeRequest")
+                        .param("city", "Tallinn")
+                        .param("vehicleType", "Car")
+                        .header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        mockMvc.perform(post("/delivery/vehicle/setFee")
+                        .param("vehicleType", "Car")
+                        .param("fee", "2.0"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/delivery/feeRequest")
+                        .param("city", "Tallinn")
+                        .param("vehicleType", "Car")
+                        .header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"fee\":4.5}"));
+    }
+
+    @Sql(value = "/GeneralRulesFee.sql")
+    @Test
+    void feeStreamSendsTheMatrixThenOnlyChangedEntries() throws Exception {
+        MvcResult result = mockMvc.perform(get("/delivery/fees/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        Awaitility.await().atMost(Duration.ofSeconds(10))
+                .until(() -> result.getResponse().getContentAsString(StandardCharsets.UTF_8).contains("event:snapshot"));
+        String snapshot = result.getResponse().getContentAsString(StandardCharsets.UTF_8);
+        Assertions.assertEquals(9, occurrences(snapshot, "\"vehicleType\""));
+        Assertions.assertTrue(snapshot.contains("\"city\":\"Tartu-Tõravere\",\"vehicleType\":\"Bike\",\"fee\":4.0"),
+                snapshot);
+
+        mockMvc.perform(post("/delivery/vehicle/setFee")
+                        .param("vehicleType", "Bike")
+                        .param("fee", "1.0"))
+                .andExpect(status().isOk());
+        Awaitility.await().atMost(Duration.ofSeconds(10))
+                .until(() -> result.getResponse().getContentAsString(StandardCharsets.UTF_8).contains("event:delta"));
+        String delta = result.getResponse().getContentAsString(StandardCharsets.UTF_8).substring(snapshot.length());
+        Assertions.assertEquals(3, occurrences(delta, "\"vehicleType\":\"Bike\""), delta);
+        Assertions.assertEquals(3, occurrences(delta, "\"vehicleType\""), delta);
+        Assertions.assertTrue(delta.contains("\"city\":\"Tartu-Tõravere\",\"vehicleType\":\"Bike\",\"fee\":4.5"), delta);
+    }
+
+    private static int occurrences(String text, String part) {
+        return text.split(java.util.regex.Pattern.quote(part), -1).length - 1;
+    }
 }
@@ -0,0 +1,67 @@
+package com.deliveryservice.controller;
+
+import com.deliveryservice.service.LatestWeatherCache;
+import com.deliveryservice.service.StationRegistry;
+import com.deliveryservice.service.TariffRegistry;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+
+/**
+ * Clients behind one proxy, here on the loopback address, are limited by their forwarded addresses. Runs on
+ * Tomcat, which applies X-Forwarded-For before the filters.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestPropertySource(locations = "/application-test.properties", properties = {
+        "spring.datasource.url=jdbc:h2:mem:forwarded-client-address-test",
+        "delivery.admission.enabled=true",
+        "delivery.admission.client-rate=0.1",
+        "delivery.admission.client-burst=2"})
+class ForwardedClientAddressTest {
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    @LocalServerPort
+    private int port;
+    @Autowired
+    private LatestWeatherCache latestWeatherCache;
+    @Autowired
+    private TariffRegistry tariffRegistry;
+    @Autowired
+    private StationRegistry stationRegistry;
+
+    @BeforeEach
+    void reloadSnapshots() {
+        latestWeatherCache.reload();
+        tariffRegistry.reload();
+        stationRegistry.reload();
+    }
+
+    @Sql(value = "/GeneralRulesFee.sql")
+    @Test
+    void clientsBehindOneProxyHaveTheirOwnBuckets() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            Assertions.assertEquals(200, feeRequest("203.0.113.7"));
+        }
+        Assertions.assertEquals(429, feeRequest("203.0.113.7"));
+        // Same proxy, another client
+        Assertions.assertEquals(200, feeRequest("203.0.113.8"));
+        Assertions.assertEquals(200, feeRequest("203.0.113.8"));
+    }
+
+    private int feeRequest(String clientAddress) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port
+                        + "/delivery/feeRequest?city=Tartu&vehicleType=Bike"))
+                .header("X-Forwarded-For", clientAddress)
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
@@ -0,0 +1,200 @@
+package com.deliveryservice.loadtest;
+
+import com.deliveryservice.WeatherFixtures;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Shows that admission control keeps well-behaved clients' tail latency flat while one client floods the
+ * fee endpoint.
+ * <p>
+ * Runs the service twice, with admission control disabled and enabled. Each run has two phases: first only
+ * the well-behaved partners, whose API keys are listed, send open-loop requests at a fixed rate each, then
+ * an abusive client adds back-to-back requests from many connections, each with a new made-up key. Half
+ * of all requests are historical ones older than the in-memory history, so the flood competes for request
+ * threads and database connections. Reported per run and phase are the partners' latency percentiles,
+ * measured from the scheduled send time, and the responses of both kinds of clients by status. Arguments,
+ * all optional, in this order: partners (4), rate per partner (20), abusive connections (200), phase
+ * duration in seconds (20). Run with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.deliveryservice.loadtest.AdmissionControlLoadRunner}.
+ */
+public class AdmissionControlLoadRunner {
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(5);
+    private static final String[] CITIES = {"Tallinn", "Tartu", "Pärnu"};
+    private static final int HISTORY_DAYS = 60;
+    private static final int INTERVAL_MINUTES = 10;
+
+    private final int partners;
+    private final int partnerRate;
+    private final int abusiveConnections;
+    private final Duration phase;
+    private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    AdmissionControlLoadRunner(int partners, int partnerRate, int abusiveConnections, Duration phase) {
+        this.partners = partners;
+        this.partnerRate = partnerRate;
+        this.abusiveConnections = abusiveConnections;
+        this.phase = phase;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new AdmissionControlLoadRunner(
+                args.length > 0 ? Integer.parseInt(args[0]) : 4,
+                args.length > 1 ? Integer.parseInt(args[1]) : 20,
+                args.length > 2 ? Integer.parseInt(args[2]) : 200,
+                Duration.ofSeconds(args.length > 3 ? Long.parseLong(args[3]) : 20)).run();
+    }
+
+    void run() throws InterruptedException {
+        for (boolean enabled : new boolean[]{false, true}) {
+            try (LoadTestApplication application = new LoadTestApplication(new String[0],
+                    "weather.history.retention=30d",
+                    "delivery.admission.enabled=" + enabled,
+                    "delivery.admission.api-keys=" + partnerKeys(),
+                    // Above the partners' rate, far below what the abusive partner sends
+                    "delivery.admission.client-rate=" + partnerRate * 2,
+                    "delivery.admission.client-burst=" + partnerRate * 2,
+                    "delivery.admission.target-latency=50ms")) {
+                application.seedWeather(HISTORY_DAYS, INTERVAL_MINUTES);
+                String baseUrl = application.baseUrl();
+                String mode = "admission control " + (enabled ? "on" : "off");
+                // Warms up the JIT and the connection pools
+                drive(baseUrl, Duration.ofSeconds(5), 0);
+                drive(baseUrl, phase, 0).print(mode + ", partners only");
+                drive(baseUrl, phase, abusiveConnections).print(mode + ", partners and an abusive client");
+            }
+        }
+    }
+
+    private String partnerKeys() {
+        return String.join(",", IntStream.range(0, partners).mapToObj(p -> "partner-" + p).toList());
+    }
+
+    private Result drive(String baseUrl, Duration duration, int abusive) throws InterruptedException {
+        Result result = new Result();
+        long end = System.nanoTime() + duration.toNanos();
+        Thread[] threads = new Thread[partners + abusive];
+        for (int p = 0; p < partners; p++) {
+            String key = "partner-" + p;
+            threads[p] = new Thread(() -> partner(baseUrl, key, end, result), key);
+        }
+        for (int a = 0; a < abusive; a++) {
+            int seed = a;
+            threads[partners + a] = new Thread(() -> abuser(baseUrl, seed, end, result), "abuser-" + a);
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return result;
+    }
+
+    // Open loop: requests go out on schedule, latency counts from the scheduled time
+    private void partner(String baseUrl, String key, long end, Result result) {
+        SplittableRandom random = new SplittableRandom(key.hashCode());
+        LongAdder outstanding = new LongAdder();
+        long period = TimeUnit.SECONDS.toNanos(1) / partnerRate;
+        for (long scheduled = System.nanoTime(); scheduled < end; scheduled += period) {
+            long delay = scheduled - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            long intended = scheduled;
+            outstanding.increment();
+            httpClient.sendAsync(request(baseUrl, key, random), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, failure) -> {
+                        result.partnerLatency.recordValue(
+                                Math.min((System.nanoTime() - intended) / 1000, HIGHEST_TRACKABLE_MICROS));
+                        result.count(result.partnerResponses, failure != null
+                                ? failure.getClass().getSimpleName() : Integer.toString(response.statusCode()));
+                        outstanding.decrement();
+                    });
+        }
+        while (outstanding.sum() > 0) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+    }
+
+    // Closed loop as fast as the server answers, ignoring Retry-After and rotating keys
+    private void abuser(String baseUrl, int seed, long end, Result result) {
+        SplittableRandom random = new SplittableRandom(seed);
+        for (long sent = 0; System.nanoTime() < end; sent++) {
+            String outcome;
+            try {
+                outcome = Integer.toString(httpClient.send(request(baseUrl, "abuser-" + seed + "-" + sent, random),
+                        HttpResponse.BodyHandlers.discarding()).statusCode());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                outcome = e.getClass().getSimpleName();
+            }
+            result.count(result.abuserResponses, outcome);
+        }
+    }
+
+    private static HttpRequest request(String baseUrl, String key, SplittableRandom random) {
+        String query = "city=" + URLEncoder.encode(CITIES[random.nextInt(CITIES.length)], StandardCharsets.UTF_8)
+                // Cars are never forbidden, so every error is caused by the load
+                + "&vehicleType=Car";
+        if (random.nextBoolean()) {
+            // Older than the in-memory history, answered from the database
+            Instant datetime = WeatherFixtures.NEWEST_OBSERVATION
+                    .minus(Duration.ofDays(31 + random.nextInt(HISTORY_DAYS - 31)))
+                    .plusSeconds(random.nextInt(86_400));
+            query += "&datetime=" + datetime;
+        }
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/delivery/feeRequest?" + query))
+                .header("X-API-Key", key)
+                .timeout(Duration.ofSeconds(30))
+                .build();
+    }
+
+    private static final class Result {
+        private final Recorder partnerLatency = new Recorder(HIGHEST_TRACKABLE_MICROS, 3);
+        private final ConcurrentMap<String, LongAdder> partnerResponses = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, LongAdder> abuserResponses = new ConcurrentHashMap<>();
+
+        void count(ConcurrentMap<String, LongAdder> responses, String outcome) {
+            responses.computeIfAbsent(outcome, key -> new LongAdder()).increment();
+        }
+
+        void print(String title) {
+            Histogram latency = partnerLatency.getIntervalHistogram();
+            System.out.printf("%n%s%n", title);
+            System.out.printf("  partners: %,d requests, p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms%n",
+                    latency.getTotalCount(), latency.getValueAtPercentile(50) / 1000.0,
+                    latency.getValueAtPercentile(99) / 1000.0, latency.getValueAtPercentile(99.9) / 1000.0,
+                    latency.getMaxValue() / 1000.0);
+            System.out.println("  partner responses: " + summary(partnerResponses));
+            if (!abuserResponses.isEmpty()) {
+                System.out.println("  abusive responses: " + summary(abuserResponses));
+            }
+        }
+
+        private static String summary(Map<String, LongAdder> responses) {
+            return String.join(", ", responses.entrySet().stream()
+                    .sorted(Map.Entry.comparingByKey())
+                    .map(entry -> entry.getKey() + " x" + entry.getValue().sum())
+                    .toList());
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.deliveryservice.loadtest;
+
+import com.deliveryservice.WeatherFixtures;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Open-loop load generator for GET /delivery/feeRequest.
+ * <p>
+ * Starts the service against an in-memory database seeded with generated weather history (or targets a
+ * running instance with {@code url=...}) and sends requests at fixed target rates, one step per rate.
+ * Requests are scheduled independently of responses and latency is measured from the scheduled send
+ * time, so a stalled server shows up in the percentiles instead of slowing the load down. Every step
+ * reports HdrHistogram percentiles overall and per scenario, throughput, and errors by cause. The
+ * highest rate that was achieved within the p99 objective is reported as the sustainable rate.
+ * <p>
+ * Arguments are {@code name=value} pairs, all optional:
+ * <pre>
+ * rates=100,200,400,800   target requests per second, one step each
+ * duration=30s            measured time per step
+ * warmup=10s              unmeasured time before every step
+ * mix=latest:40,historical:35,forbidden:15,unknown:10
+ * days=90                 generated history per station
+ * interval=10m            time between generated observations
+ * retention=30d           in-memory history, older requests go to the database
+ * slo-p99=100ms           p99 objective for the sustainable rate
+ * max-outstanding=10000   requests in flight before the generator counts overload instead of sending
+ * seed=42                 random seed, runs with equal arguments send the same requests
+ * url=                    base URL of a running instance, nothing is started or seeded then
+ * hgrm=                   file to write the last step's percentile distribution to
+ * </pre>
+ * Run with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.deliveryservice.loadtest.FeeLoadGenerator -Dexec.args="rates=200,400 duration=20s"}.
+ */
+public class FeeLoadGenerator {
+    private static final String[] CITIES = {"Tallinn", "tallinn-harku", "Tartu", "Tartu-Tõravere", "Pärnu", "pärnu"};
+    private static final String[] VEHICLES = {"Car", "Scooter", "Bike", "car", "scooter", "bike"};
+    private static final String[] UNKNOWN_CITIES = {"Narva", "Helsinki", "Tallin"};
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    enum Scenario {
+        /** Current weather, canonical and alias city names, every vehicle. */
+        LATEST,
+        /** A random point in the seeded history. */
+        HISTORICAL,
+        /** A scooter when the seeded weather has glaze, which the service refuses. */
+        FORBIDDEN,
+        /** A city that has no tariff. */
+        UNKNOWN
+    }
+
+    private final Map<String, String> options;
+    private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final Map<Scenario, Integer> mix;
+    private final int[] cumulativeWeights;
+    private final int historySteps;
+    private final Duration interval;
+
+    FeeLoadGenerator(Map<String, String> options) {
+        this.options = options;
+        this.mix = parseMix(option("mix", "latest:40,historical:35,forbidden:15,unknown:10"));
+        this.cumulativeWeights = new int[Scenario.values().length];
+        int total = 0;
+        for (Scenario scenario : Scenario.values()) {
+            total += mix.getOrDefault(scenario, 0);
+            cumulativeWeights[scenario.ordinal()] = total;
+        }
+        this.interval = parseDuration(option("interval", "10m"));
+        this.historySteps = (int) (parseDuration(option("days", "90") + "d").toSeconds() / interval.toSeconds());
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected name=value, got " + arg);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        new FeeLoadGenerator(options).run();
+    }
+
+    void run() throws InterruptedException, IOException {
+        String url = options.get("url");
+        if (url != null) {
+            runSteps(url);
+            return;
+        }
+        // All requests come from one client, its rate limit would cap every step
+        try (LoadTestApplication application = new LoadTestApplication(new String[0],
+                "weather.history.retention=" + option("retention", "30d"), "delivery.admission.enabled=false")) {
+            long start = System.nanoTime();
+            application.seedWeather(Integer.parseInt(option("days", "90")), (int) interval.toMinutes());
+            System.out.printf("Seeded %,d observations per station in %,d ms%n", historySteps,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            runSteps(application.baseUrl());
+        }
+    }
+
+    private void runSteps(String baseUrl) throws InterruptedException, IOException {
+        Duration warmup = parseDuration(option("warmup", "10s"));
+        Duration duration = parseDuration(option("duration", "30s"));
+        long sloMicros = parseDuration(option("slo-p99", "100ms")).toNanos() / 1000;
+        SplittableRandom random = new SplittableRandom(Long.parseLong(option("seed", "42")));
+        int sustainable = 0;
+        Step last = null;
+        for (String rate : option("rates", "100,200,400,800").split(",")) {
+            int requestsPerSecond = Integer.parseInt(rate.trim());
+            drive(baseUrl, requestsPerSecond, warmup, random);
+            last = drive(baseUrl, requestsPerSecond, duration, random);
+            last.print(System.out, requestsPerSecond);
+            boolean kept = last.throughput() >= requestsPerSecond * 0.95
+                    && last.overall.getValueAtPercentile(99) <= sloMicros
+                    && last.errorRatio() < 0.01;
+            if (kept) {
+                sustainable = requestsPerSecond;
+            }
+        }
+        System.out.printf("%nSustainable: %,d req/s (p99 <= %s, >= 95%% of target rate, < 1%% transport errors)%n",
+                sustainable, option("slo-p99", "100ms"));
+        String hgrm = options.get("hgrm");
+        if (hgrm != null && last != null) {
+            try (PrintStream out = new PrintStream(hgrm, StandardCharsets.UTF_8)) {
+                last.overall.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+    }
+
+    private Step drive(String baseUrl, int requestsPerSecond, Duration duration, SplittableRandom random)
+            throws InterruptedException {
+        Step step = new Step(System.nanoTime());
+        Semaphore outstanding = new Semaphore(Integer.parseInt(option("max-outstanding", "10000")));
+        long periodNanos = TimeUnit.SECONDS.toNanos(1) / requestsPerSecond;
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        for (long scheduled = start; scheduled < end; scheduled += periodNanos) {
+            long delay = scheduled - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            Scenario scenario = pickScenario(random);
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/delivery/feeRequest?"
+                    + query(scenario, random))).timeout(Duration.ofSeconds(30)).build();
+            if (!outstanding.tryAcquire()) {
+                step.error(scenario, "client overload");
+                continue;
+            }
+            long intended = scheduled;
+            httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+                long micros = Math.min((System.nanoTime() - intended) / 1000, HIGHEST_TRACKABLE_MICROS);
+                outstanding.release();
+                if (failure != null) {
+                    step.error(scenario, failure.getClass().getSimpleName());
+                } else {
+                    step.record(scenario, response.statusCode(), micros);
+                }
+            });
+        }
+        // Lets the requests of this step finish before the next one starts
+        outstanding.acquire(Integer.parseInt(option("max-outstanding", "10000")));
+        return step;
+    }
+
+    private Scenario pickScenario(SplittableRandom random) {
+        int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (Scenario scenario : Scenario.values()) {
+            if (pick < cumulativeWeights[scenario.ordinal()]) {
+                return scenario;
+            }
+        }
+        throw new IllegalStateException("No scenario for " + pick);
+    }
+
+    private String query(Scenario scenario, SplittableRandom random) {
+        String city = CITIES[random.nextInt(CITIES.length)];
+        String vehicle = VEHICLES[random.nextInt(VEHICLES.length)];
+        return switch (scenario) {
+            case LATEST -> params(city, vehicle, null);
+            case HISTORICAL -> params(city, vehicle, observationTime(random.nextInt(historySteps))
+                    .plusSeconds(random.nextLong(interval.toSeconds())));
+            case FORBIDDEN -> params(city, "Scooter",
+                    observationTime(11 * random.nextInt(historySteps / 11) + WeatherFixtures.GLAZE_OFFSET));
+            case UNKNOWN -> params(UNKNOWN_CITIES[random.nextInt(UNKNOWN_CITIES.length)], vehicle, null);
+        };
+    }
+
+    private Instant observationTime(int stepsBack) {
+        return WeatherFixtures.NEWEST_OBSERVATION.minusSeconds(stepsBack * interval.toSeconds());
+    }
+
+    private static String params(String city, String vehicle, Instant datetime) {
+        String query = "city=" + URLEncoder.encode(city, StandardCharsets.UTF_8) + "&vehicleType=" + vehicle;
+        return datetime == null ? query : query + "&datetime=" + datetime;
+    }
+
+    private String option(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    private static Map<Scenario, Integer> parseMix(String mix) {
+        Map<Scenario, Integer> weights = new EnumMap<>(Scenario.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.split(":");
+            weights.put(Scenario.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+        }
+        return weights;
+    }
+
+    // Accepts 500ms, 30s, 10m, 2h and 90d
+    static Duration parseDuration(String value) {
+        String number = value.replaceAll("[a-z]+$", "");
+        String unit = value.substring(number.length());
+        long amount = Long.parseLong(number);
+        return switch (unit) {
+            case "ms" -> Duration.ofMillis(amount);
+            case "s" -> Duration.ofSeconds(amount);
+            case "m" -> Duration.ofMinutes(amount);
+            case "h" -> Duration.ofHours(amount);
+            case "d" -> Duration.ofDays(amount);
+            default -> throw new IllegalArgumentException("Unknown duration unit in " + value);
+        };
+    }
+
+    /**
+     * Latencies in microseconds and outcomes of one load step.
+     */
+    private static final class Step {
+        private final Recorder overallRecorder = new Recorder(HIGHEST_TRACKABLE_MICROS, 3);
+        private final Map<Scenario, Recorder> scenarioRecorders = new EnumMap<>(Scenario.class);
+        private final ConcurrentMap<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder transportErrors = new LongAdder();
+        private final LongAccumulator lastCompletion = new LongAccumulator(Math::max, Long.MIN_VALUE);
+        private final long startNanos;
+        private Histogram overall;
+
+        Step(long startNanos) {
+            this.startNanos = startNanos;
+            for (Scenario scenario : Scenario.values()) {
+                scenarioRecorders.put(scenario, new Recorder(HIGHEST_TRACKABLE_MICROS, 3));
+            }
+        }
+
+        void record(Scenario scenario, int status, long micros) {
+            overallRecorder.recordValue(micros);
+            scenarioRecorders.get(scenario).recordValue(micros);
+            completed.increment();
+            lastCompletion.accumulate(System.nanoTime());
+            outcomes.computeIfAbsent(scenario.name().toLowerCase() + " " + status, key -> new LongAdder()).increment();
+        }
+
+        void error(Scenario scenario, String cause) {
+            transportErrors.increment();
+            outcomes.computeIfAbsent(scenario.name().toLowerCase() + " " + cause, key -> new LongAdder()).increment();
+        }
+
+        // Completions per second until the last response arrived, an overloaded server stretches the step
+        double throughput() {
+            long elapsed = lastCompletion.get() - startNanos;
+            return elapsed <= 0 ? 0 : completed.sum() / (elapsed / 1e9);
+        }
+
+        double errorRatio() {
+            long total = completed.sum() + transportErrors.sum();
+            return total == 0 ? 0 : (double) transportErrors.sum() / total;
+        }
+
+        void print(PrintStream out, int target) {
+            overall = overallRecorder.getIntervalHistogram();
+            out.printf("%nTarget %,d req/s: %,.0f req/s completed, %,d transport errors%n",
+                    target, throughput(), transportErrors.sum());
+            out.printf("  %-12s %8s %9s %9s %9s %9s %9s %9s%n",
+                    "", "count", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "p99.99 ms", "max ms");
+            line(out, "all", overall);
+            for (Map.Entry<Scenario, Recorder> entry : scenarioRecorders.entrySet()) {
+                line(out, entry.getKey().name().toLowerCase(), entry.getValue().getIntervalHistogram());
+            }
+            String[] keys = outcomes.keySet().toArray(String[]::new);
+            Arrays.sort(keys);
+            out.println("  Responses: " + String.join(", ", Arrays.stream(keys)
+                    .map(key -> key + " x" + outcomes.get(key).sum())
+                    .toList()));
+        }
+
+        private static void line(PrintStream out, String name, Histogram histogram) {
+            out.printf("  %-12s %,8d %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n", name, histogram.getTotalCount(),
+                    millis(histogram, 50), millis(histogram, 90), millis(histogram, 99),
+                    millis(histogram, 99.9), millis(histogram, 99.99), histogram.getMaxValue() / 1000.0);
+        }
+
+        private static double millis(Histogram histogram, double percentile) {
+            return histogram.getValueAtPercentile(percentile) / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.deliveryservice.loadtest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opens many idle subscribers on the fee stream, then changes a fee and measures how long the delta
+ * takes to reach all of them.
+ * <p>
+ * Reports the live threads of the JVM, which also runs the clients, before and after subscribing, so
+ * it shows that idle subscribers hold no thread each, and the fan-out latency percentiles from the fee
+ * update to each subscriber's delta. Next to the readers, some clients subscribe and then stop reading
+ * without closing their connection, and extra cities make every delta large enough to fill their socket
+ * buffers, so their writes block. The write timeout is 2 s, after which they must no longer delay the
+ * others. Arguments, all optional: subscribers (2000), fee updates (5), clients that stop reading (4) and
+ * extra cities (0). Run with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.deliveryservice.loadtest.FeeStreamLoadRunner}.
+ */
+public class FeeStreamLoadRunner {
+
+    public static void main(String[] args) throws Exception {
+        int subscribers = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int updates = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int stalledClients = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int cities = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+        try (LoadTestApplication application = new LoadTestApplication(new String[0],
+                "server.tomcat.max-connections=" + (subscribers + stalledClients + 100),
+                "delivery.fees.stream.write-timeout=2s")) {
+            application.seedWeather(1, 60);
+            application.seedCities(cities);
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+
+            CountDownLatch subscribed = new CountDownLatch(subscribers);
+            AtomicLong[] deltaNanos = new AtomicLong[subscribers];
+            for (int i = 0; i < subscribers; i++) {
+                deltaNanos[i] = new AtomicLong(-1);
+                client.sendAsync(HttpRequest.newBuilder(URI.create(application.baseUrl() + "/delivery/fees/stream"))
+                                .build(),
+                        HttpResponse.BodyHandlers.fromLineSubscriber(new EventCounter(subscribed, deltaNanos[i])));
+            }
+            if (!subscribed.await(60, TimeUnit.SECONDS)) {
+                System.out.printf("Only %,d of %,d subscribers got their snapshot%n",
+                        subscribers - subscribed.getCount(), subscribers);
+            }
+            System.out.printf("%,d subscribers: %,d live threads before subscribing, %,d after%n",
+                    subscribers, threadsBefore, ManagementFactory.getThreadMXBean().getThreadCount());
+            List<Socket> stalled = new ArrayList<>();
+            for (int i = 0; i < stalledClients; i++) {
+                stalled.add(subscribeWithoutReading(URI.create(application.baseUrl())));
+            }
+
+            for (int update = 0; update < updates; update++) {
+                for (AtomicLong received : deltaNanos) {
+                    if (received.get() > 0) {
+                        received.set(0);
+                    }
+                }
+                long start = System.nanoTime();
+                client.send(HttpRequest.newBuilder(URI.create(application.baseUrl()
+                                + "/delivery/vehicle/setFee?vehicleType=Bike&fee=" + (1 + update % 2)))
+                        .POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.discarding());
+                long updated = System.nanoTime() - start;
+                long deadline = start + TimeUnit.SECONDS.toNanos(30);
+                // Subscribers without a snapshot or whose stream ended, at -1, are not waited for
+                while (Arrays.stream(deltaNanos).anyMatch(received -> received.get() == 0)
+                        && System.nanoTime() < deadline) {
+                    Thread.sleep(5);
+                }
+                long[] latencies = Arrays.stream(deltaNanos).mapToLong(AtomicLong::get)
+                        .filter(received -> received > 0).map(received -> received - start).sorted().toArray();
+                System.out.printf("Update %d answered in %.2f ms, delta at %,d subscribers: p50 %.2f ms, p99 %.2f ms, "
+                                + "max %.2f ms%n", update + 1, updated / 1e6, latencies.length,
+                        percentile(latencies, 0.5) / 1e6, percentile(latencies, 0.99) / 1e6,
+                        percentile(latencies, 1) / 1e6);
+            }
+            System.out.println("Stalled subscribers dropped: " + client.send(HttpRequest.newBuilder(URI.create(
+                    application.baseUrl() + "/actuator/metrics/delivery.fees.stream.stalled")).build(),
+                    HttpResponse.BodyHandlers.ofString()).body());
+            for (Socket socket : stalled) {
+                socket.close();
+            }
+        }
+    }
+
+    // A tiny receive buffer and no reads, the server's writes to it block once the buffers are full
+    private static Socket subscribeWithoutReading(URI baseUrl) throws IOException {
+        Socket socket = new Socket();
+        socket.setReceiveBufferSize(1024);
+        socket.connect(new InetSocketAddress(baseUrl.getHost(), baseUrl.getPort()));
+        OutputStream output = socket.getOutputStream();
+        output.write(("GET /delivery/fees/stream HTTP/1.1\r\nHost: " + baseUrl.getHost() + "\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        output.flush();
+        return socket;
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        return sorted.length == 0 ? Double.NaN
+                : sorted[Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    // Notes the first snapshot, -1 until then and after the stream ended, and when the next delta arrives,
+    // without blocking a thread
+    private static final class EventCounter implements Flow.Subscriber<String> {
+        private final CountDownLatch subscribed;
+        private final AtomicLong deltaNanos;
+
+        EventCounter(CountDownLatch subscribed, AtomicLong deltaNanos) {
+            this.subscribed = subscribed;
+            this.deltaNanos = deltaNanos;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (line.equals("event:snapshot")) {
+                if (deltaNanos.compareAndSet(-1, 0)) {
+                    subscribed.countDown();
+                }
+            } else if (line.equals("event:delta")) {
+                deltaNanos.compareAndSet(0, System.nanoTime());
+            }
+        }
+
+        // Dropped by the server, e.g. as too slow on an overloaded machine, no longer waited for
+        @Override
+        public void onError(Throwable throwable) {
+            deltaNanos.set(-1);
+        }
+
+        @Override
+        public void onComplete() {
+            deltaNanos.set(-1);
+        }
+    }
+}
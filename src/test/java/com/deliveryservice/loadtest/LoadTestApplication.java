@@ -0,0 +1,118 @@
+package com.deliveryservice.loadtest;
+
+import com.deliveryservice.DeliveryServiceApplication;
+import com.deliveryservice.WeatherFixtures;
+import com.deliveryservice.entity.WeatherData;
+import com.deliveryservice.model.StationLocation;
+import com.deliveryservice.repository.WeatherDataBulkWriter;
+import com.deliveryservice.service.LatestWeatherCache;
+import com.deliveryservice.service.StationRegistry;
+import com.deliveryservice.service.TariffRegistry;
+import com.deliveryservice.service.WeatherArchive;
+import com.deliveryservice.service.WeatherHistoryIndex;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Starts the service on a random port against its own in-memory database for load tests.
+ */
+final class LoadTestApplication implements AutoCloseable {
+    private final ConfigurableApplicationContext context;
+
+    /**
+     * @param profiles   Spring profiles to activate, may be empty.
+     * @param properties Additional properties as name=value.
+     */
+    LoadTestApplication(String[] profiles, String... properties) {
+        // DevTools would relaunch the calling main method in a restart class loader
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        List<String> all = new ArrayList<>(List.of(
+                "logging.level.com.zaxxer.hikari=warn",
+                "logging.level.com.zaxxer.hikari.HikariConfig=warn",
+                // Refused and unknown requests are part of the load, their stack traces are not
+                "logging.level.org.apache.catalina.core=off"));
+        all.addAll(List.of(properties));
+        context = new SpringApplicationBuilder(DeliveryServiceApplication.class)
+                .profiles(profiles)
+                .run(WeatherFixtures.arguments("load-test-" + System.nanoTime(), all));
+    }
+
+    String baseUrl() {
+        return "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    /**
+     * Stores {@code days} of observations for the tracked stations every {@code intervalMinutes}, see
+     * {@link WeatherFixtures#seedWeather(ConfigurableApplicationContext, int, int)}.
+     */
+    void seedWeather(int days, int intervalMinutes) {
+        WeatherFixtures.seedWeather(context, days * 24 * 60 / intervalMinutes, intervalMinutes);
+    }
+
+    /**
+     * Registers the given number of stations spread over Estonia, next to the tracked ones, which have no
+     * city of their own and are priced with the nearest one, and stores their observations like
+     * {@link #seedWeather(int, int)}.
+     */
+    void seedStations(int count, int days, int intervalMinutes) {
+        List<StationLocation> locations = new ArrayList<>(List.of(
+                new StationLocation("Tallinn-Harku", 59.398, 24.603),
+                new StationLocation("Tartu-Tõravere", 58.264, 26.466),
+                new StationLocation("Pärnu", 58.419, 24.470)));
+        for (int i = 0; i < count; i++) {
+            locations.add(new StationLocation(String.format("Station-%03d", i), 57.6 + (i % 10) * 0.2,
+                    22.0 + (i / 10 % 10) * 0.6));
+        }
+        WeatherFixtures.seedWeather(context, locations.subList(WeatherFixtures.STATIONS.length, locations.size())
+                .stream()
+                .map(StationLocation::getName)
+                .toList(), days * 24 * 60 / intervalMinutes, intervalMinutes);
+        context.getBean(StationRegistry.class).register(locations);
+    }
+
+    /**
+     * Moves the months before {@code weather.archive.after} to the archive and reloads the in-memory
+     * weather views.
+     *
+     * @return The number of observations moved.
+     */
+    int archiveWeather() {
+        int moved = context.getBean(WeatherArchive.class).archive();
+        context.getBean(LatestWeatherCache.class).reload();
+        context.getBean(WeatherHistoryIndex.class).reload();
+        return moved;
+    }
+
+    /**
+     * Adds the given number of cities, each with its own station and one observation at
+     * {@link WeatherFixtures#NEWEST_OBSERVATION}, and reloads the tariffs and the latest weather.
+     */
+    void seedCities(int count) {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<WeatherData> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String city = String.format("City-%05d", i);
+            jdbcTemplate.update("insert into city (id, city, fee) values (next value for city_seq, ?, ?)", city, 2.0);
+            WeatherData row = new WeatherData();
+            row.setStationName(city);
+            row.setWmoCode("26038");
+            row.setAirTemperature(5.0);
+            row.setWindSpeed(3.0);
+            row.setWeatherPhenomenon("Overcast");
+            row.setTimestamp(WeatherFixtures.NEWEST_OBSERVATION);
+            rows.add(row);
+        }
+        context.getBean(WeatherDataBulkWriter.class).insert(rows);
+        context.getBean(TariffRegistry.class).reload();
+        context.getBean(LatestWeatherCache.class).reload();
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
@@ -0,0 +1,160 @@
+package com.deliveryservice.loadtest;
+
+import com.deliveryservice.service.ObservationsFeedStub;
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures cold start to ready: the time from launching a fresh JVM until {@code /actuator/health/readiness}
+ * reports UP, that is until the tariffs are loaded and the startup import of the (local, recorded) feed
+ * has warmed the weather snapshot. The time until the port first answers is reported alongside.
+ * <p>
+ * The service is started from a plain class path, as class data sharing cannot archive classes loaded
+ * from the nested jars of the executable jar, in four variants: as is, with Spring AOT bean definitions,
+ * and both again with an AppCDS archive written by a training run of the variant. Build the class path
+ * with {@code mvn -Paot package -DskipTests} first, then run
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.deliveryservice.loadtest.StartupBenchmark}
+ * with the number of runs per variant as optional argument.
+ */
+public class StartupBenchmark {
+    private static final Path WORK = Path.of("target", "startup");
+    private static final Duration TIMEOUT = Duration.ofMinutes(2);
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        String classPath = classPath();
+        Files.createDirectories(WORK);
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        try (ObservationsFeedStub feed = new ObservationsFeedStub()) {
+            List<String> results = new ArrayList<>();
+            for (boolean aot : new boolean[]{false, true}) {
+                for (boolean cds : new boolean[]{false, true}) {
+                    String variant = (aot ? "aot" : "jit") + (cds ? "+cds" : "");
+                    List<String> jvmOptions = new ArrayList<>(List.of("-Dspring.aot.enabled=" + aot));
+                    if (cds) {
+                        Path archive = WORK.resolve(variant + ".jsa");
+                        Files.deleteIfExists(archive);
+                        List<String> training = new ArrayList<>(jvmOptions);
+                        training.add("-XX:ArchiveClassesAtExit=" + archive);
+                        start(client, classPath, training, feed, variant + "-training");
+                        if (!Files.exists(archive)) {
+                            throw new IllegalStateException("No archive written, see " + WORK.resolve(variant + "-training.log"));
+                        }
+                        jvmOptions.add("-XX:SharedArchiveFile=" + archive);
+                    }
+                    long[] listening = new long[runs];
+                    long[] ready = new long[runs];
+                    for (int run = 0; run < runs; run++) {
+                        long[] times = start(client, classPath, jvmOptions, feed, variant + "-" + run);
+                        listening[run] = times[0];
+                        ready[run] = times[1];
+                    }
+                    results.add(String.format("%-8s listening %6d ms, ready median %6d ms, min %6d ms",
+                            variant, median(listening), median(ready), Arrays.stream(ready).min().orElse(0)));
+                    System.out.println(results.get(results.size() - 1));
+                }
+            }
+            System.out.println();
+            System.out.printf("Cold start to ready, %d runs per variant, JDK %s, %d CPUs%n", runs,
+                    Runtime.version(), Runtime.getRuntime().availableProcessors());
+            results.forEach(System.out::println);
+        }
+    }
+
+    /**
+     * Starts the service, waits until it is ready and stops it, so a training run writes its archive.
+     *
+     * @return Milliseconds from launch until the port answered and until it was ready.
+     */
+    private static long[] start(HttpClient client, String classPath, List<String> jvmOptions,
+                                ObservationsFeedStub feed, String name) throws IOException, InterruptedException {
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-Dfile.encoding=UTF-8");
+        command.addAll(jvmOptions);
+        command.addAll(List.of("-cp", classPath, "com.deliveryservice.DeliveryServiceApplication",
+                "--server.port=" + port,
+                "--weather.import.url=" + feed.url(),
+                "--spring.main.banner-mode=off",
+                "--logging.level.com.zaxxer.hikari.HikariConfig=info"));
+        HttpRequest readiness = HttpRequest.newBuilder(
+                URI.create("http://localhost:" + port + "/actuator/health/readiness")).build();
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(WORK.resolve(name + ".log").toFile())
+                .start();
+        long listening = -1;
+        try {
+            while (true) {
+                if (!process.isAlive() || System.nanoTime() - start > TIMEOUT.toNanos()) {
+                    throw new IllegalStateException("Service did not become ready, see " + WORK.resolve(name + ".log"));
+                }
+                try {
+                    HttpResponse<Void> response = client.send(readiness, HttpResponse.BodyHandlers.discarding());
+                    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    if (listening < 0) {
+                        listening = elapsed;
+                    }
+                    if (response.statusCode() == 200) {
+                        return new long[]{listening, elapsed};
+                    }
+                } catch (IOException e) {
+                    // Not listening yet
+                }
+                Thread.sleep(5);
+            }
+        } finally {
+            // A graceful exit, the class data archive is written on the way out
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    // The plain application jar kept by the repackaging, with the classes generated by Spring AOT, and the
+    // dependencies copied by the aot profile. Class data sharing does not accept class directories.
+    private static String classPath() throws IOException {
+        Path lib = Path.of("target", "lib");
+        List<String> entries = new ArrayList<>();
+        try (Stream<Path> files = Files.list(Path.of("target"))) {
+            files.map(Path::toString).filter(file -> file.endsWith(".jar.original")).forEach(entries::add);
+        }
+        if (entries.size() != 1 || !Files.isDirectory(lib)) {
+            throw new IllegalStateException("Build with mvn -Paot package -DskipTests first");
+        }
+        try (Stream<Path> jars = Files.list(lib)) {
+            // A stable order, an archive is only used with the class path it was written for
+            jars.map(Path::toString).filter(jar -> jar.endsWith(".jar")).sorted().forEach(entries::add);
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,80 @@
+package com.deliveryservice.loadtest;
+
+import com.deliveryservice.WeatherFixtures;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulates a tariff proposal over a year of observations of all stations and reports how long it takes.
+ * <p>
+ * The year is split like in production: the last {@code weather.history.retention} (90 days) is in memory,
+ * the months older than half a year before the newest observation are moved to the archive, and the rest
+ * is only in the database. Arguments, all optional: stations next to the tracked ones (37), days (365),
+ * minutes between observations (60) and simulation runs (5). Run with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.deliveryservice.loadtest.TariffSimulationLoadRunner}.
+ */
+public class TariffSimulationLoadRunner {
+    private static final String PROPOSAL = """
+            {"vehicleFees":{"Bike":1.0},"cityFees":{"Tartu":3.0},
+             "rules":{"freezingThreshold":-12.0,"forbiddenPhenomena":{"BIKE":["SNOW_OR_SLEET"]}}}""";
+
+    public static void main(String[] args) throws Exception {
+        int stations = args.length > 0 ? Integer.parseInt(args[0]) : 37;
+        int days = args.length > 1 ? Integer.parseInt(args[1]) : 365;
+        int intervalMinutes = args.length > 2 ? Integer.parseInt(args[2]) : 60;
+        int runs = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        Path archive = Files.createTempDirectory("tariff-simulation-load-test");
+        // The archive cut-off is relative to now, the generated observations end at a fixed time
+        Duration archiveAfter = Duration.between(WeatherFixtures.NEWEST_OBSERVATION.minus(Duration.ofDays(180)),
+                Instant.now());
+        try (LoadTestApplication application = new LoadTestApplication(new String[0],
+                "weather.archive.directory=" + archive,
+                "weather.archive.after=" + archiveAfter.toHours() + "h",
+                "weather.simulation.max-range=" + (days + 1) + "d")) {
+            long seedStart = System.nanoTime();
+            application.seedWeather(days, intervalMinutes);
+            application.seedStations(stations, days, intervalMinutes);
+            int archived = application.archiveWeather();
+            System.out.printf("Seeded %d stations with %d days every %d minutes in %d ms, %,d observations archived%n",
+                    stations + WeatherFixtures.STATIONS.length, days, intervalMinutes,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - seedStart), archived);
+
+            Instant to = WeatherFixtures.NEWEST_OBSERVATION.plusSeconds(1);
+            HttpRequest request = HttpRequest.newBuilder(URI.create(application.baseUrl() + "/delivery/simulation?from="
+                            + to.minus(Duration.ofDays(days)) + "&to=" + to))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(PROPOSAL))
+                    .build();
+            HttpClient client = HttpClient.newHttpClient();
+            ObjectMapper objectMapper = new ObjectMapper();
+            long[] elapsed = new long[runs];
+            for (int run = 0; run < runs; run++) {
+                long start = System.nanoTime();
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                elapsed[run] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                if (response.statusCode() != 200) {
+                    throw new IllegalStateException("Simulation answered " + response.statusCode() + ": " + response.body());
+                }
+                JsonNode result = objectMapper.readTree(response.body());
+                System.out.printf("Run %d: %,d observations of %d stations in %d ms, %d ms in the simulator%n", run + 1,
+                        result.get("observations").asLong(), result.get("stations").findValuesAsText("station").stream()
+                                .distinct().count(), elapsed[run],
+                        result.get("elapsedMillis").asLong());
+            }
+            long[] sorted = elapsed.clone();
+            Arrays.sort(sorted);
+            System.out.printf("%d runs, JDK %s, %d CPUs: median %d ms, min %d ms%n", runs, Runtime.version(),
+                    Runtime.getRuntime().availableProcessors(), sorted[runs / 2], sorted[0]);
+        }
+    }
+}
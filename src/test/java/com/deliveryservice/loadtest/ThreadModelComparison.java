@@ -0,0 +1,118 @@
+package com.deliveryservice.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares request handling on Tomcat's platform thread pool with the virtual-threads profile.
+ * <p>
+ * For every concurrency level, that many clients send fee requests back to back for a fixed time, half
+ * of them for historical weather older than the in-memory history so they block on JDBC. Reported are
+ * the achieved requests per second, which at saturation is the maximum sustainable rate, and the p99
+ * latency. Both modes run with the connection pool and connector limits of the virtual-threads profile,
+ * so only the thread model differs. The virtual thread run is skipped below JDK 21. Run the main method
+ * from the IDE or with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.deliveryservice.loadtest.ThreadModelComparison}.
+ */
+public class ThreadModelComparison {
+    private static final int[] CONCURRENCY = {64, 256, 1024};
+    private static final long WARMUP_MILLIS = 3_000;
+    private static final long MEASURE_MILLIS = 10_000;
+    // As in application-virtual-threads.properties, passed to both runs
+    private static final String[] POOL_SETTINGS = {
+            "spring.datasource.hikari.maximum-pool-size=20",
+            "spring.datasource.hikari.connection-timeout=2000",
+            "server.tomcat.max-connections=20000",
+            "server.tomcat.accept-count=1000"};
+
+    public static void main(String[] args) throws Exception {
+        run("platform", new String[0]);
+        if (Runtime.version().feature() >= 21) {
+            run("virtual", new String[]{"virtual-threads"});
+        } else {
+            System.out.println("Skipping virtual threads, running on JDK " + Runtime.version());
+        }
+    }
+
+    private static void run(String mode, String[] profiles) throws Exception {
+        List<String> properties = new ArrayList<>(List.of(POOL_SETTINGS));
+        properties.add("weather.history.retention=30d");
+        properties.add("delivery.admission.enabled=false");
+        try (LoadTestApplication application = new LoadTestApplication(profiles, properties.toArray(String[]::new))) {
+            application.seedWeather(60, 10);
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            List<HttpRequest> requests = List.of(
+                    HttpRequest.newBuilder(URI.create(application.baseUrl()
+                            + "/delivery/feeRequest?city=Tallinn&vehicleType=Car")).build(),
+                    HttpRequest.newBuilder(URI.create(application.baseUrl()
+                            + "/delivery/feeRequest?city=Tartu&vehicleType=Car&datetime=2023-02-10T12:30:00Z")).build());
+            for (int concurrency : CONCURRENCY) {
+                drive(client, requests, concurrency, WARMUP_MILLIS);
+                Result result = drive(client, requests, concurrency, MEASURE_MILLIS);
+                System.out.printf("%-8s concurrency %5d: %,9.0f req/s, p99 %8.2f ms, %d errors%n",
+                        mode, concurrency, result.requests * 1000.0 / MEASURE_MILLIS,
+                        result.p99Nanos / 1e6, result.errors);
+            }
+        }
+    }
+
+    private static Result drive(HttpClient client, List<HttpRequest> requests, int concurrency, long millis)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + millis * 1_000_000;
+        List<long[]> latencies = new ArrayList<>();
+        int[] counts = new int[concurrency];
+        AtomicLong errors = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(concurrency);
+        for (int worker = 0; worker < concurrency; worker++) {
+            long[] samples = new long[1 << 16];
+            latencies.add(samples);
+            int id = worker;
+            Thread thread = new Thread(() -> {
+                int n = 0;
+                try {
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(requests.get((id + n) & 1),
+                                    HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() != 200) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                        samples[n++ & (samples.length - 1)] = System.nanoTime() - start;
+                    }
+                } finally {
+                    counts[id] = n;
+                    done.countDown();
+                }
+            });
+            thread.start();
+        }
+        done.await();
+
+        long total = 0;
+        long[] all = new long[0];
+        for (int worker = 0; worker < concurrency; worker++) {
+            int n = Math.min(counts[worker], latencies.get(worker).length);
+            total += counts[worker];
+            int offset = all.length;
+            all = Arrays.copyOf(all, offset + n);
+            System.arraycopy(latencies.get(worker), 0, all, offset, n);
+        }
+        Arrays.sort(all);
+        long p99 = all.length == 0 ? 0 : all[(int) Math.min(all.length - 1, Math.ceil(all.length * 0.99) - 1)];
+        return new Result(total, p99, errors.get());
+    }
+
+    private record Result(long requests, long p99Nanos, long errors) {
+    }
+}
@@ -0,0 +1,49 @@
+package com.deliveryservice.model;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class AdaptiveConcurrencyLimitTest {
+    private static final long MILLI = 1_000_000L;
+    private static final long TARGET = 100 * MILLI;
+
+    @Test
+    void admitsUpToTheLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10, TARGET, 0.5, 0);
+        Assertions.assertTrue(limit.tryAcquire());
+        Assertions.assertTrue(limit.tryAcquire());
+        Assertions.assertFalse(limit.tryAcquire());
+        limit.release(MILLI, MILLI);
+        Assertions.assertEquals(1, limit.getInFlight());
+        Assertions.assertTrue(limit.tryAcquire());
+    }
+
+    @Test
+    void decreasesOncePerTargetLatencyAndIncreasesUnderFastLoad() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(16, 2, 20, TARGET, 0.5, 0);
+        for (int i = 0; i < 16; i++) {
+            Assertions.assertTrue(limit.tryAcquire());
+        }
+        long now = TARGET;
+        // A burst of slow completions is one decrease
+        for (int i = 0; i < 8; i++) {
+            limit.release(2 * TARGET, now);
+        }
+        Assertions.assertEquals(8, limit.getLimit());
+        limit.release(2 * TARGET, now + TARGET);
+        Assertions.assertEquals(4, limit.getLimit());
+        for (int i = 0; i < 100; i++) {
+            limit.release(2 * TARGET, now + (i + 2) * TARGET);
+            limit.tryAcquire();
+        }
+        Assertions.assertEquals(2, limit.getLimit());
+
+        // Fast completions with the limit in use raise it by one per limit completions
+        now += 200 * TARGET;
+        for (int i = 0; i < 2 + 3; i++) {
+            limit.release(MILLI, now);
+            Assertions.assertTrue(limit.tryAcquire());
+        }
+        Assertions.assertEquals(4, limit.getLimit());
+    }
+}
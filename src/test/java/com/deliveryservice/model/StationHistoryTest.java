@@ -0,0 +1,63 @@
+package com.deliveryservice.model;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class StationHistoryTest {
+    private static final long HOUR = 3600;
+
+    @Test
+    void floorFindsObservationInEffect() {
+        StationHistory history = new StationHistory(1000 * HOUR);
+        for (int i = 0; i < 200; i++) {
+            history.append(i * HOUR, i, 0, PhenomenonCode.NONE);
+        }
+        StationHistory.Columns columns = history.columns();
+
+        Assertions.assertEquals(200, columns.size());
+        Assertions.assertEquals(-1, columns.floor(-1));
+        Assertions.assertEquals(0, columns.floor(0));
+        Assertions.assertEquals(41, columns.floor(41 * HOUR + 1800));
+        Assertions.assertEquals(199, columns.floor(500 * HOUR));
+    }
+
+    @Test
+    void outOfOrderObservationsAreInsertedOrReplaced() {
+        StationHistory history = new StationHistory(1000 * HOUR);
+        history.append(0, 1, 0, PhenomenonCode.NONE);
+        history.append(2 * HOUR, 3, 0, PhenomenonCode.NONE);
+        history.append(HOUR, 2, 0, PhenomenonCode.RAIN);
+        history.append(2 * HOUR, 4, 0, PhenomenonCode.SNOW_OR_SLEET);
+        StationHistory.Columns columns = history.columns();
+
+        Assertions.assertEquals(3, columns.size());
+        Assertions.assertEquals(PhenomenonCode.RAIN, columns.phenomenonCode(columns.floor(HOUR)));
+        Assertions.assertEquals(4, columns.airTemperature(columns.floor(2 * HOUR)));
+    }
+
+    @Test
+    void retentionBoundsTheHistory() {
+        StationHistory history = new StationHistory(100 * HOUR);
+        for (int i = 0; i < 10_000; i++) {
+            history.append(i * HOUR, 0, 0, PhenomenonCode.NONE);
+        }
+        StationHistory.Columns columns = history.columns();
+
+        Assertions.assertTrue(columns.size() <= 300, "retained " + columns.size());
+        Assertions.assertEquals(9_999 * HOUR, columns.epochSecond(columns.size() - 1));
+        Assertions.assertTrue(columns.epochSecond(0) >= (9_999 - 300) * HOUR);
+    }
+
+    @Test
+    void publishedViewIsNotAffectedByLaterAppends() {
+        StationHistory history = new StationHistory(1000 * HOUR);
+        history.append(0, 1, 0, PhenomenonCode.NONE);
+        StationHistory.Columns before = history.columns();
+        history.append(HOUR, 2, 0, PhenomenonCode.NONE);
+        history.append(HOUR / 2, 3, 0, PhenomenonCode.NONE);
+
+        Assertions.assertEquals(1, before.size());
+        Assertions.assertEquals(0, before.floor(10 * HOUR));
+        Assertions.assertEquals(3, history.columns().size());
+    }
+}
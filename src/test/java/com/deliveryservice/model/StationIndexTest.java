@@ -0,0 +1,51 @@
+package com.deliveryservice.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class StationIndexTest {
+
+    @Test
+    void findNearestMatchesExhaustiveSearch() {
+        Random random = new Random(42);
+        List<StationLocation> stations = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            stations.add(new StationLocation("station-" + i, random.nextDouble() * 180 - 90,
+                    random.nextDouble() * 360 - 180));
+        }
+        StationIndex index = new StationIndex(stations);
+
+        for (int i = 0; i < 2000; i++) {
+            double latitude = random.nextDouble() * 180 - 90;
+            double longitude = random.nextDouble() * 360 - 180;
+            Assertions.assertEquals(nearest(stations, latitude, longitude, false),
+                    index.findNearest(latitude, longitude));
+            Assertions.assertEquals(nearest(stations, latitude, longitude, true),
+                    index.findNearest(latitude, longitude, name -> name.endsWith("7")));
+        }
+    }
+
+    @Test
+    void findNearestAcrossTheAntimeridian() {
+        StationIndex index = new StationIndex(List.of(
+                new StationLocation("west", 0, -179.5),
+                new StationLocation("east", 0, 170)));
+
+        Assertions.assertEquals("west", index.findNearest(0, 179.9).getName());
+        Assertions.assertNull(StationIndex.EMPTY.findNearest(0, 0));
+        Assertions.assertNull(index.findNearest(0, 0, name -> false));
+    }
+
+    private static StationLocation nearest(List<StationLocation> stations, double latitude, double longitude,
+                                           boolean filtered) {
+        return stations.stream()
+                .filter(station -> !filtered || station.getName().endsWith("7"))
+                .min(Comparator.comparingDouble(station -> StationIndex.distanceKm(latitude, longitude,
+                        station.getLatitude(), station.getLongitude())))
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,86 @@
+package com.deliveryservice.model;
+
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class SurchargeRollupTest {
+    private static final long HOUR = 3600;
+    private static final long DAY = 24 * HOUR;
+    private static final long FORBIDDEN = -1;
+    //                                           CAR SCOOTER BIKE OTHER
+    private static final long[] MILD = new long[]{0, 0, 50, 0};
+    private static final long[] STORM = new long[]{0, 100, FORBIDDEN, 0};
+
+    @Test
+    void forbiddenTimeIsSplitOverTheBucketsAnObservationSpans() {
+        SurchargeRollup rollup = new SurchargeRollup(1000 * HOUR, 6 * HOUR);
+        rollup.append(22 * HOUR + 1800, STORM);
+        rollup.append(DAY + HOUR, MILD);
+        rollup.append(DAY + 2 * HOUR, MILD);
+
+        List<SurchargeRollup.Bucket> hours = rollup.query(SurchargeRollup.Granularity.HOUR, VehicleClass.BIKE,
+                Instant.EPOCH, Instant.ofEpochSecond(2 * DAY));
+        Assertions.assertEquals(List.of(22 * HOUR, 23 * HOUR, DAY, DAY + HOUR, DAY + 2 * HOUR),
+                hours.stream().map(bucket -> bucket.start().getEpochSecond()).toList());
+        Assertions.assertEquals(1800, hours.get(0).forbiddenSeconds());
+        Assertions.assertEquals(1, hours.get(0).forbiddenObservations());
+        Assertions.assertEquals(0, hours.get(0).pricedObservations());
+        Assertions.assertEquals(3600, hours.get(2).forbiddenSeconds());
+        Assertions.assertEquals(0, hours.get(3).forbiddenSeconds());
+        Assertions.assertEquals(3600, hours.get(3).coveredSeconds());
+        Assertions.assertEquals(50, hours.get(3).surchargeCents());
+        // The newest observation is not in effect for any known time yet
+        Assertions.assertEquals(0, hours.get(4).coveredSeconds());
+
+        List<SurchargeRollup.Bucket> days = rollup.query(SurchargeRollup.Granularity.DAY, VehicleClass.BIKE,
+                Instant.EPOCH, Instant.ofEpochSecond(2 * DAY));
+        Assertions.assertEquals(2, days.size());
+        Assertions.assertEquals(5400, days.get(0).forbiddenSeconds());
+        Assertions.assertEquals(3600, days.get(1).forbiddenSeconds());
+        Assertions.assertEquals(2, days.get(1).observations());
+        Assertions.assertEquals(100, days.get(1).surchargeCents());
+
+        SurchargeRollup.Bucket scooter = rollup.query(SurchargeRollup.Granularity.DAY, VehicleClass.SCOOTER,
+                Instant.EPOCH, Instant.ofEpochSecond(DAY)).get(0);
+        Assertions.assertEquals(0, scooter.forbiddenSeconds());
+        Assertions.assertEquals(100, scooter.surchargeCents());
+    }
+
+    @Test
+    void gapsAreCappedAndOlderObservationsIgnored() {
+        SurchargeRollup rollup = new SurchargeRollup(1000 * HOUR, 2 * HOUR);
+        rollup.append(0, STORM);
+        rollup.append(10 * HOUR, MILD);
+        Assertions.assertFalse(rollup.append(5 * HOUR, MILD));
+        Assertions.assertFalse(rollup.append(10 * HOUR, MILD));
+
+        SurchargeRollup.Bucket day = rollup.query(SurchargeRollup.Granularity.DAY, VehicleClass.BIKE,
+                Instant.EPOCH, Instant.ofEpochSecond(DAY)).get(0);
+        Assertions.assertEquals(2, day.observations());
+        Assertions.assertEquals(2 * HOUR, day.coveredSeconds());
+        Assertions.assertEquals(2 * HOUR, day.forbiddenSeconds());
+    }
+
+    @Test
+    void hourlyBucketsAreRetainedAndDailyBucketsKept() {
+        SurchargeRollup rollup = new SurchargeRollup(48 * HOUR, HOUR);
+        for (long hour = 0; hour < 24 * 30; hour++) {
+            rollup.append(hour * HOUR, MILD);
+        }
+
+        List<SurchargeRollup.Bucket> hours = rollup.query(SurchargeRollup.Granularity.HOUR, VehicleClass.BIKE,
+                Instant.EPOCH, Instant.ofEpochSecond(30 * DAY));
+        Assertions.assertTrue(hours.size() >= 48 && hours.size() < 24 * 30, "Kept " + hours.size() + " hours");
+        Assertions.assertEquals(29 * DAY + 23 * HOUR, hours.get(hours.size() - 1).start().getEpochSecond());
+        List<SurchargeRollup.Bucket> days = rollup.query(SurchargeRollup.Granularity.DAY, VehicleClass.BIKE,
+                Instant.EPOCH, Instant.ofEpochSecond(30 * DAY));
+        Assertions.assertEquals(30, days.size());
+        Assertions.assertEquals(24, days.get(0).observations());
+        Assertions.assertEquals(DAY, days.get(0).coveredSeconds());
+        // Bucket starts in [from, to)
+        Assertions.assertEquals(1, rollup.query(SurchargeRollup.Granularity.DAY, VehicleClass.BIKE,
+                Instant.ofEpochSecond(DAY - 1), Instant.ofEpochSecond(DAY + 1)).size());
+    }
+}
@@ -0,0 +1,30 @@
+package com.deliveryservice.model;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class TariffSnapshotTest {
+    private final TariffSnapshot tariffs = new TariffSnapshot(Instant.EPOCH,
+            List.of(new CityTariff(0, "Pärnu", 150), new CityTariff(1, "Tallinn-Harku", 250)),
+            List.of(new VehicleTariff(0, "Bike", 50, VehicleClass.BIKE), new VehicleTariff(1, "Car", 150, VehicleClass.CAR)),
+            Map.of("Tallinn", "Tallinn-Harku"));
+
+    @Test
+    void versionIdentifiesTheFeesNotTheInstance() {
+        TariffSnapshot sameFees = new TariffSnapshot(Instant.now(), tariffs.getCities(), tariffs.getVehicles(),
+                Map.of("Tallinn", "Tallinn-Harku"));
+        Assertions.assertEquals(tariffs.getVersion(), sameFees.getVersion());
+        Assertions.assertTrue(tariffs.getVersion() >= 0);
+
+        TariffSnapshot updated = tariffs.withCityFee(tariffs.findCity("Pärnu"), 175, Instant.now());
+        Assertions.assertNotEquals(tariffs.getVersion(), updated.getVersion());
+        TariffSnapshot reverted = updated.withCityFee(updated.findCity("Pärnu"), 150, Instant.now());
+        Assertions.assertEquals(tariffs.getVersion(), reverted.getVersion());
+
+        Assertions.assertNotEquals(tariffs.getVersion(),
+                tariffs.withVehicleFee(tariffs.findVehicle("Car"), 250, Instant.now()).getVersion());
+    }
+}
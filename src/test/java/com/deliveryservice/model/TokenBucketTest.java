@@ -0,0 +1,57 @@
+package com.deliveryservice.model;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class TokenBucketTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void admitsTheBurstThenTheRate() {
+        TokenBucket bucket = new TokenBucket(10, 3, 0);
+        Assertions.assertEquals(0, bucket.tryTake(0));
+        Assertions.assertEquals(0, bucket.tryTake(0));
+        Assertions.assertEquals(0, bucket.tryTake(0));
+        Assertions.assertEquals(SECOND / 10, bucket.tryTake(0));
+        Assertions.assertFalse(bucket.isFull(0));
+
+        Assertions.assertEquals(0, bucket.tryTake(SECOND / 10));
+        Assertions.assertEquals(SECOND / 10, bucket.tryTake(SECOND / 10));
+        // Idle time refills the bucket up to the burst, not beyond
+        Assertions.assertTrue(bucket.isFull(10 * SECOND));
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals(0, bucket.tryTake(10 * SECOND));
+        }
+        Assertions.assertTrue(bucket.tryTake(10 * SECOND) > 0);
+    }
+
+    @Test
+    void concurrentTakersGetExactlyTheBurst() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(1, 1000, 0);
+        AtomicInteger admitted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 1000; i++) {
+                    if (bucket.tryTake(0) == 0) {
+                        admitted.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assertions.assertEquals(1000, admitted.get());
+    }
+}
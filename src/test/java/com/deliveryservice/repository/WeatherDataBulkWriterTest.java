@@ -0,0 +1,70 @@
+package com.deliveryservice.repository;
+
+import com.deliveryservice.entity.WeatherData;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@SpringBootTest
+@TestPropertySource(locations = "/application-test.properties",
+        properties = "spring.datasource.url=jdbc:h2:mem:weather-bulk-writer-test")
+class WeatherDataBulkWriterTest {
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private WeatherDataRepository weatherDataRepository;
+
+    @Test
+    void rowsOfAFailedBatchAreCountedOnce() {
+        weatherDataRepository.deleteAll();
+        List<WeatherData> rows = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            WeatherData row = new WeatherData();
+            row.setStationName("Pärnu");
+            row.setWmoCode("41803");
+            row.setAirTemperature(1.0 * i);
+            row.setWindSpeed(2.0);
+            row.setWeatherPhenomenon("Light rain");
+            row.setTimestamp(Instant.parse("2023-03-01T00:00:00Z").plusSeconds(i * 3600L));
+            rows.add(row);
+        }
+        WeatherDataBulkWriter bulkWriter = new WeatherDataBulkWriter(new FailingOnceJdbcTemplate(dataSource),
+                transactionTemplate);
+
+        // The batch fails after its rows went to the database, as if a concurrent writer had won a key
+        Assertions.assertEquals(10, bulkWriter.insertNew(rows));
+        Assertions.assertEquals(10, weatherDataRepository.count());
+    }
+
+    private static class FailingOnceJdbcTemplate extends JdbcTemplate {
+        private boolean failed;
+
+        FailingOnceJdbcTemplate(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize,
+                                       ParameterizedPreparedStatementSetter<T> pss) {
+            int[][] counts = super.batchUpdate(sql, batchArgs, batchSize, pss);
+            if (!failed) {
+                failed = true;
+                throw new DuplicateKeyException("Unique index or primary key violation");
+            }
+            return counts;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.deliveryservice.repository;
+
+import com.deliveryservice.DeliveryServiceApplication;
+import com.deliveryservice.entity.WeatherData;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Measures how many weather_data rows per second the persistence paths insert into the in-memory H2
+ * database. Run the main method from the IDE or with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.deliveryservice.repository.WeatherDataPersistenceBenchmark}.
+ */
+public class WeatherDataPersistenceBenchmark {
+    private static final int ROWS = 50_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(DeliveryServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("weather.import.url=http://localhost:9/observations.php",
+                        "spring.datasource.url=jdbc:h2:mem:persistence-benchmark",
+                        "logging.level.root=warn")
+                .run(args)) {
+            WeatherDataRepository repository = context.getBean(WeatherDataRepository.class);
+            WeatherDataBulkWriter bulkWriter = context.getBean(WeatherDataBulkWriter.class);
+
+            long offset = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                List<WeatherData> rows = rows(offset, ROWS);
+                offset += ROWS;
+                long start = System.nanoTime();
+                repository.saveAll(rows);
+                report("saveAll", round, start);
+            }
+            for (int round = 0; round < ROUNDS; round++) {
+                List<WeatherData> rows = rows(offset, ROWS);
+                offset += ROWS;
+                long start = System.nanoTime();
+                bulkWriter.insert(rows);
+                report("bulkWriter", round, start);
+            }
+        }
+    }
+
+    static List<WeatherData> rows(long offset, int count) {
+        List<WeatherData> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            WeatherData row = new WeatherData();
+            row.setStationName("Station " + (i % 100));
+            row.setWmoCode("26" + (i % 100));
+            row.setAirTemperature(-5.0 + i % 20);
+            row.setWindSpeed((double) (i % 25));
+            row.setWeatherPhenomenon(i % 7 == 0 ? "Light snow shower" : "Overcast");
+            row.setTimestamp(Instant.ofEpochSecond(1_600_000_000L + (offset + i) * 60));
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    static void report(String path, int round, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.printf("%-12s round %d: %,.0f rows/s%n", path, round, ROWS / seconds);
+    }
+}
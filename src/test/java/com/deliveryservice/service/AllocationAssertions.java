@@ -0,0 +1,40 @@
+package com.deliveryservice.service;
+
+import java.lang.management.ManagementFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+
+/**
+ * Measures the heap allocated by the current thread, skipping the test on JVMs that cannot.
+ */
+final class AllocationAssertions {
+    /** Leaves room for the measurement itself, a single boxed value per call would be megabytes. */
+    private static final long TOLERANCE_BYTES = 1024;
+    private static final int MEASUREMENTS = 3;
+
+    private AllocationAssertions() {
+    }
+
+    /**
+     * Runs the work once to warm it up, then again while measuring, and fails if it still allocates after
+     * {@value #MEASUREMENTS} measured runs. Code compiled earlier in the same JVM for other callers can
+     * deoptimize during a run, which materializes its scalar-replaced objects once; the next run is clean.
+     */
+    static void assertNoAllocation(String description, Runnable work) {
+        Assumptions.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        work.run();
+        long allocated = Long.MAX_VALUE;
+        for (int run = 0; run < MEASUREMENTS && allocated >= TOLERANCE_BYTES; run++) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            work.run();
+            allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        }
+
+        Assertions.assertTrue(allocated < TOLERANCE_BYTES, description + " allocated " + allocated + " bytes");
+    }
+}
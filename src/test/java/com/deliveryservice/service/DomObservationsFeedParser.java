@@ -0,0 +1,44 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.entity.WeatherData;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * The DOM based parsing the importer used before {@link ObservationsFeedParser}, kept as a baseline for
+ * comparisons.
+ */
+class DomObservationsFeedParser {
+
+    List<WeatherData> parse(InputStream input, Predicate<String> trackedStation) throws Exception {
+        List<WeatherData> weatherDataList = new ArrayList<>();
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        DocumentBuilder builder = factory.newDocumentBuilder();
+        Document doc = builder.parse(input);
+
+        NodeList stationList = doc.getElementsByTagName("station");
+        for (int i = 0; i < stationList.getLength(); i++) {
+            Element station = (Element) stationList.item(i);
+            String name = station.getElementsByTagName("name").item(0).getTextContent();
+            if (trackedStation.test(name)) {
+                WeatherData weatherData = new WeatherData();
+                weatherData.setStationName(name);
+                weatherData.setWmoCode(station.getElementsByTagName("wmocode").item(0).getTextContent());
+                weatherData.setAirTemperature(Double.valueOf(station.getElementsByTagName("airtemperature").item(0).getTextContent()));
+                weatherData.setWindSpeed(Double.valueOf(station.getElementsByTagName("windspeed").item(0).getTextContent()));
+                weatherData.setWeatherPhenomenon(station.getElementsByTagName("phenomenon").item(0).getTextContent());
+                weatherData.setTimestamp(Instant.ofEpochSecond(Long.parseLong(doc.getDocumentElement().getAttribute("timestamp"))));
+                weatherDataList.add(weatherData);
+            }
+        }
+        return weatherDataList;
+    }
+}
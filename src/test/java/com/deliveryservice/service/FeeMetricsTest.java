@@ -0,0 +1,53 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.model.CityTariff;
+import com.deliveryservice.model.TariffSnapshot;
+import com.deliveryservice.model.VehicleClass;
+import com.deliveryservice.model.VehicleTariff;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class FeeMetricsTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final FeeMetrics metrics = new FeeMetrics(registry);
+    private final TariffSnapshot tariffs = new TariffSnapshot(Instant.EPOCH,
+            List.of(new CityTariff(0, "Pärnu", 150), new CityTariff(1, "Tallinn-Harku", 250)),
+            List.of(new VehicleTariff(0, "Bike", 50, VehicleClass.BIKE), new VehicleTariff(1, "Car", 150, VehicleClass.CAR)),
+            Map.of());
+
+    @Test
+    void recordsByCityVehicleAndOutcome() {
+        metrics.record(tariffs, "Tallinn-Harku", "car", FeeMetrics.Outcome.OK, 1_000);
+        metrics.record(tariffs, "Tallinn-Harku", "Car", FeeMetrics.Outcome.OK, 1_000);
+        metrics.record(tariffs, "Pärnu", "Bike", FeeMetrics.Outcome.FORBIDDEN, 1_000);
+        metrics.record(tariffs, "Narnia", "Dragon", FeeMetrics.Outcome.NOT_FOUND, 1_000);
+
+        Assertions.assertEquals(2, timerCount("Tallinn-Harku", "car", "ok"));
+        Assertions.assertEquals(1, timerCount("Pärnu", "bike", "forbidden"));
+        Assertions.assertEquals(1, timerCount(FeeMetrics.OTHER, FeeMetrics.OTHER, "not_found"));
+    }
+
+    @Test
+    void recordingDoesNotAllocate() {
+        AllocationAssertions.assertNoAllocation("Recording", () -> record(100_000));
+    }
+
+    private void record(int iterations) {
+        FeeMetrics.Outcome[] outcomes = FeeMetrics.Outcome.values();
+        for (int i = 0; i < iterations; i++) {
+            metrics.record(tariffs, (i & 1) == 0 ? "Pärnu" : "Tallinn-Harku", (i & 2) == 0 ? "Bike" : "Car",
+                    outcomes[i % outcomes.length], 1_000 + (i & 0xFFFF));
+        }
+    }
+
+    private long timerCount(String city, String vehicle, String outcome) {
+        return registry.get(FeeMetrics.FEE_REQUESTS)
+                .tags("city", city, "vehicle", vehicle, "outcome", outcome)
+                .timer()
+                .count();
+    }
+}
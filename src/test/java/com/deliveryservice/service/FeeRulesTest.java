@@ -0,0 +1,116 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.model.PhenomenonCode;
+import com.deliveryservice.model.VehicleClass;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class FeeRulesTest {
+    private final FeeRules rules = FeeRules.DEFAULT;
+
+    @Test
+    void carsOnlyPayTheBaseFee() {
+        Assertions.assertEquals(400, rules.feeCents(400, VehicleClass.CAR, -20, 30, PhenomenonCode.GLAZE_HAIL_OR_THUNDER));
+    }
+
+    @Test
+    void temperatureBands() {
+        Assertions.assertEquals(350, rules.feeCents(250, VehicleClass.SCOOTER, -10.1, 0, PhenomenonCode.NONE));
+        Assertions.assertEquals(300, rules.feeCents(250, VehicleClass.SCOOTER, -10, 0, PhenomenonCode.NONE));
+        Assertions.assertEquals(250, rules.feeCents(250, VehicleClass.SCOOTER, 0, 0, PhenomenonCode.NONE));
+        Assertions.assertEquals(250, rules.feeCents(250, VehicleClass.BIKE, Double.NaN, Double.NaN, PhenomenonCode.NONE));
+    }
+
+    @Test
+    void windOnlyAffectsBikes() {
+        Assertions.assertEquals(300, rules.feeCents(250, VehicleClass.BIKE, 5, 10, PhenomenonCode.NONE));
+        Assertions.assertEquals(300, rules.feeCents(250, VehicleClass.BIKE, 5, 20, PhenomenonCode.NONE));
+        Assertions.assertEquals(FeeRules.FORBIDDEN_BY_WIND, rules.feeCents(250, VehicleClass.BIKE, 5, 20.1, PhenomenonCode.NONE));
+        Assertions.assertEquals(250, rules.feeCents(250, VehicleClass.SCOOTER, 5, 25, PhenomenonCode.NONE));
+    }
+
+    @Test
+    void phenomenonSurcharges() {
+        Assertions.assertEquals(350, rules.feeCents(250, VehicleClass.BIKE, 5, 0, PhenomenonCode.SNOW_OR_SLEET));
+        Assertions.assertEquals(300, rules.feeCents(250, VehicleClass.SCOOTER, 5, 0, PhenomenonCode.RAIN));
+        Assertions.assertEquals(FeeRules.FORBIDDEN_BY_PHENOMENON,
+                rules.feeCents(250, VehicleClass.SCOOTER, 5, 0, PhenomenonCode.GLAZE_HAIL_OR_THUNDER));
+    }
+
+    @Test
+    void phenomenonClassification() {
+        Assertions.assertEquals(PhenomenonCode.SNOW_OR_SLEET, PhenomenonCode.classify("Light snow shower"));
+        Assertions.assertEquals(PhenomenonCode.RAIN, PhenomenonCode.classify("Moderate rain"));
+        Assertions.assertEquals(PhenomenonCode.GLAZE_HAIL_OR_THUNDER, PhenomenonCode.classify("Thunder"));
+        Assertions.assertEquals(PhenomenonCode.NONE, PhenomenonCode.classify("Overcast"));
+        Assertions.assertEquals(PhenomenonCode.NONE, PhenomenonCode.classify(null));
+    }
+
+    @Test
+    void builderChangesOnlyWhatIsSet() {
+        FeeRules changed = rules.toBuilder()
+                .coldThreshold(-5)
+                .windCents(VehicleClass.BIKE, 80)
+                .forbiddenInStrongWind(VehicleClass.BIKE, false)
+                .phenomenonCents(VehicleClass.SCOOTER, PhenomenonCode.GLAZE_HAIL_OR_THUNDER, 200)
+                .phenomenonCents(VehicleClass.BIKE, PhenomenonCode.RAIN, FeeRules.FORBIDDEN)
+                .build();
+
+        Assertions.assertEquals(350, changed.feeCents(250, VehicleClass.SCOOTER, -6, 0, PhenomenonCode.NONE));
+        Assertions.assertEquals(330, changed.feeCents(250, VehicleClass.BIKE, 5, 15, PhenomenonCode.NONE));
+        Assertions.assertEquals(250, changed.feeCents(250, VehicleClass.BIKE, 5, 25, PhenomenonCode.NONE));
+        Assertions.assertEquals(450, changed.feeCents(250, VehicleClass.SCOOTER, 5, 0,
+                PhenomenonCode.GLAZE_HAIL_OR_THUNDER));
+        Assertions.assertEquals(FeeRules.FORBIDDEN_BY_PHENOMENON,
+                changed.feeCents(250, VehicleClass.BIKE, 5, 0, PhenomenonCode.RAIN));
+        // Untouched rules keep their values
+        Assertions.assertEquals(300, changed.feeCents(250, VehicleClass.SCOOTER, -2, 0, PhenomenonCode.NONE));
+        Assertions.assertEquals(350, changed.feeCents(250, VehicleClass.BIKE, 5, 0, PhenomenonCode.SNOW_OR_SLEET));
+        Assertions.assertEquals(400, changed.feeCents(400, VehicleClass.CAR, -20, 30,
+                PhenomenonCode.GLAZE_HAIL_OR_THUNDER));
+    }
+
+    @Test
+    void builderLeavesItsSourceUnchanged() {
+        FeeRules.Builder builder = rules.toBuilder();
+        builder.coldCents(VehicleClass.SCOOTER, 500).freezingThreshold(5).build();
+        builder.phenomenonCents(VehicleClass.SCOOTER, PhenomenonCode.RAIN, 0).build();
+
+        Assertions.assertEquals(350, rules.feeCents(250, VehicleClass.SCOOTER, -10.1, 0, PhenomenonCode.NONE));
+        Assertions.assertEquals(250, rules.feeCents(250, VehicleClass.SCOOTER, 2, 0, PhenomenonCode.NONE));
+        Assertions.assertEquals(300, rules.feeCents(250, VehicleClass.SCOOTER, 5, 0, PhenomenonCode.RAIN));
+        // Rules built earlier do not see later changes of the builder
+        FeeRules first = builder.windCents(VehicleClass.BIKE, 80).build();
+        builder.windCents(VehicleClass.BIKE, 10).phenomenonCents(VehicleClass.BIKE, PhenomenonCode.RAIN, 0);
+        Assertions.assertEquals(330, first.feeCents(250, VehicleClass.BIKE, 5, 15, PhenomenonCode.NONE));
+        Assertions.assertEquals(300, first.feeCents(250, VehicleClass.BIKE, 5, 0, PhenomenonCode.RAIN));
+    }
+
+    @Test
+    void decimalRepresentationMatchesTheApi() {
+        Assertions.assertEquals("4.0", FeeRules.toDecimal(400).toString());
+        Assertions.assertEquals("4.5", FeeRules.toDecimal(450).toString());
+        Assertions.assertEquals("4.25", FeeRules.toDecimal(425).toString());
+    }
+
+    /**
+     * Covers the rule evaluation only. A whole quote still allocates its result, the fee as a BigDecimal and
+     * the response around it.
+     */
+    @Test
+    void feeEvaluationDoesNotAllocate() {
+        long[] sink = new long[1];
+        AllocationAssertions.assertNoAllocation("Fee evaluation", () -> sink[0] += evaluate(500_000));
+
+        Assertions.assertNotEquals(0, sink[0]);
+    }
+
+    private long evaluate(int iterations) {
+        VehicleClass[] classes = VehicleClass.values();
+        long sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            sink += rules.feeCents(200 + (i & 7), classes[i & 3], (i % 40) - 20, i % 25, (byte) (i & 3));
+        }
+        return sink;
+    }
+}
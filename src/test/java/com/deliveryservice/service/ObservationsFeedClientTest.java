@@ -0,0 +1,73 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.entity.WeatherData;
+import java.io.IOException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ObservationsFeedClientTest {
+    private ObservationsFeedStub stub;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        stub = new ObservationsFeedStub();
+    }
+
+    @AfterEach
+    void stopStub() {
+        stub.close();
+    }
+
+    @Test
+    void fetchesCompressedFeedAndRevalidates() throws Exception {
+        ObservationsFeedClient client = new ObservationsFeedClient(stub.url(), Duration.ofSeconds(1), Duration.ofSeconds(5),
+                new WeatherImportMetrics(new SimpleMeterRegistry()));
+
+        ObservationsFeedClient.Fetch first = client.fetch(name -> true);
+        client.markImported(first);
+        List<WeatherData> second = client.fetch(name -> true).observations();
+
+        Assertions.assertEquals(40, first.observations().size());
+        Assertions.assertEquals("gzip", stub.getLastAcceptEncoding());
+        Assertions.assertTrue(second.isEmpty());
+        Assertions.assertEquals(1, stub.getNotModified());
+    }
+
+    @Test
+    void feedThatWasNotImportedIsFetchedAgain() throws Exception {
+        ObservationsFeedClient client = new ObservationsFeedClient(stub.url(), Duration.ofSeconds(1), Duration.ofSeconds(5),
+                new WeatherImportMetrics(new SimpleMeterRegistry()));
+
+        client.fetch(name -> true);
+        // e.g. storing the observations failed
+        List<WeatherData> retried = client.fetch(name -> true).observations();
+
+        Assertions.assertEquals(40, retried.size());
+        Assertions.assertEquals(0, stub.getNotModified());
+    }
+
+    @Test
+    void slowServerTimesOut() {
+        stub.setDelayMillis(1_000);
+        ObservationsFeedClient client = new ObservationsFeedClient(stub.url(), Duration.ofSeconds(1), Duration.ofMillis(200),
+                new WeatherImportMetrics(new SimpleMeterRegistry()));
+
+        Assertions.assertThrows(IOException.class, () -> client.fetch(name -> true));
+    }
+
+    @Test
+    void stalledBodyTimesOut() {
+        stub.setBodyStallMillis(5_000);
+        ObservationsFeedClient client = new ObservationsFeedClient(stub.url(), Duration.ofSeconds(1), Duration.ofMillis(500),
+                new WeatherImportMetrics(new SimpleMeterRegistry()));
+
+        long start = System.nanoTime();
+        Assertions.assertThrows(IOException.class, () -> client.fetch(name -> true));
+        Assertions.assertTrue(System.nanoTime() - start < Duration.ofSeconds(3).toNanos());
+    }
+}
@@ -0,0 +1,85 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.entity.WeatherData;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ObservationsFeedParserTest {
+    private static final Set<String> STATIONS = Set.of("Tallinn-Harku", "Tartu-Tõravere", "Pärnu");
+
+    private final ObservationsFeedParser parser = new ObservationsFeedParser();
+
+    @Test
+    void parsesTrackedStationsOnly() throws Exception {
+        List<WeatherData> weatherData;
+        try (InputStream input = getClass().getResourceAsStream("/observations.xml")) {
+            weatherData = parser.parse(input, STATIONS::contains);
+        }
+
+        Assertions.assertEquals(3, weatherData.size());
+        WeatherData tartu = weatherData.stream()
+                .filter(data -> data.getStationName().equals("Tartu-Tõravere"))
+                .findFirst()
+                .orElseThrow();
+        Assertions.assertEquals("26242", tartu.getWmoCode());
+        Assertions.assertEquals(-2.1, tartu.getAirTemperature());
+        Assertions.assertEquals(4.7, tartu.getWindSpeed());
+        Assertions.assertEquals("Light snow shower", tartu.getWeatherPhenomenon());
+        Assertions.assertEquals(Instant.ofEpochSecond(1679823423), tartu.getTimestamp());
+    }
+
+    @Test
+    void matchesTheDomParser() throws Exception {
+        List<WeatherData> streamed;
+        List<WeatherData> dom;
+        try (InputStream input = getClass().getResourceAsStream("/observations.xml")) {
+            streamed = parser.parse(input, STATIONS::contains);
+        }
+        try (InputStream input = getClass().getResourceAsStream("/observations.xml")) {
+            dom = new DomObservationsFeedParser().parse(input, STATIONS::contains);
+        }
+
+        Assertions.assertEquals(dom.size(), streamed.size());
+        for (int i = 0; i < dom.size(); i++) {
+            Assertions.assertEquals(dom.get(i).getStationName(), streamed.get(i).getStationName());
+            Assertions.assertEquals(dom.get(i).getWmoCode(), streamed.get(i).getWmoCode());
+            Assertions.assertEquals(dom.get(i).getAirTemperature(), streamed.get(i).getAirTemperature());
+            Assertions.assertEquals(dom.get(i).getWindSpeed(), streamed.get(i).getWindSpeed());
+            Assertions.assertEquals(dom.get(i).getWeatherPhenomenon(), streamed.get(i).getWeatherPhenomenon());
+            Assertions.assertEquals(dom.get(i).getTimestamp(), streamed.get(i).getTimestamp());
+        }
+    }
+
+    @Test
+    void toleratesEmptyNumericValues() throws Exception {
+        String feed = """
+                <observations timestamp="1679823423">
+                    <station>
+                        <name>Kuressaare linn</name>
+                        <wmocode></wmocode>
+                        <phenomenon/>
+                        <airtemperature></airtemperature>
+                        <windspeed>n/a</windspeed>
+                    </station>
+                    <station>
+                        <name>Pärnu</name>
+                        <airtemperature>1.5</airtemperature>
+                        <windspeed>3.0</windspeed>
+                    </station>
+                </observations>
+                """;
+        List<WeatherData> weatherData = parser.parse(
+                new ByteArrayInputStream(feed.getBytes(StandardCharsets.UTF_8)), name -> true);
+
+        Assertions.assertEquals(2, weatherData.size());
+        Assertions.assertNull(weatherData.get(0).getAirTemperature());
+        Assertions.assertNull(weatherData.get(0).getWindSpeed());
+        Assertions.assertEquals(1.5, weatherData.get(1).getAirTemperature());
+    }
+}
@@ -0,0 +1,123 @@
+package com.deliveryservice.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local HTTP server serving the recorded observations feed, gzip compressed and with an ETag.
+ */
+public class ObservationsFeedStub implements AutoCloseable {
+    static final String ETAG = "\"1679823423\"";
+    private static final long FEED_TIMESTAMP = 1679823423;
+
+    private final HttpServer server;
+    private final byte[] recordedFeed;
+    private volatile byte[] feed;
+    private volatile String eTag = ETAG;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+    private volatile boolean honourValidators = true;
+    private volatile long delayMillis;
+    private volatile long bodyStallMillis;
+    private volatile String lastAcceptEncoding;
+
+    public ObservationsFeedStub() throws IOException {
+        try (InputStream input = getClass().getResourceAsStream("/observations.xml")) {
+            recordedFeed = input.readAllBytes();
+        }
+        feed = recordedFeed;
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/observations.php", this::handle);
+        server.start();
+    }
+
+    public String url() {
+        return "http://localhost:" + server.getAddress().getPort() + "/observations.php";
+    }
+
+    void setHonourValidators(boolean honourValidators) {
+        this.honourValidators = honourValidators;
+    }
+
+    void setDelayMillis(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    /**
+     * Sends the headers and half of the body right away and the rest after the given time.
+     */
+    void setBodyStallMillis(long bodyStallMillis) {
+        this.bodyStallMillis = bodyStallMillis;
+    }
+
+    /**
+     * Serves the recorded feed as if it had been published the given number of seconds later, with a new ETag.
+     */
+    void shiftTimestamp(long seconds) {
+        long timestamp = FEED_TIMESTAMP + seconds;
+        feed = new String(recordedFeed, StandardCharsets.UTF_8)
+                .replace("timestamp=\"" + FEED_TIMESTAMP + "\"", "timestamp=\"" + timestamp + "\"")
+                .getBytes(StandardCharsets.UTF_8);
+        eTag = "\"" + timestamp + "\"";
+    }
+
+    int getRequests() {
+        return requests.get();
+    }
+
+    int getNotModified() {
+        return notModified.get();
+    }
+
+    String getLastAcceptEncoding() {
+        return lastAcceptEncoding;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        lastAcceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        stall(delayMillis);
+        if (honourValidators && eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            notModified.incrementAndGet();
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(feed);
+        }
+        exchange.getResponseHeaders().add("Content-Type", "text/xml; charset=UTF-8");
+        exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        exchange.getResponseHeaders().add("ETag", eTag);
+        exchange.sendResponseHeaders(200, compressed.size());
+        try (OutputStream body = exchange.getResponseBody()) {
+            byte[] bytes = compressed.toByteArray();
+            body.write(bytes, 0, bytes.length / 2);
+            body.flush();
+            stall(bodyStallMillis);
+            body.write(bytes, bytes.length / 2, bytes.length - bytes.length / 2);
+        }
+    }
+
+    private static void stall(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
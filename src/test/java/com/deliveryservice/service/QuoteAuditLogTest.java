@@ -0,0 +1,139 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.model.CityTariff;
+import com.deliveryservice.model.VehicleClass;
+import com.deliveryservice.model.VehicleTariff;
+import com.deliveryservice.model.WeatherObservation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+class QuoteAuditLogTest {
+    private static final CityTariff TARTU = new CityTariff(0, "Tartu-Tõravere", 200);
+    private static final VehicleTariff BIKE = new VehicleTariff(0, "bike", 50, VehicleClass.BIKE);
+    private static final WeatherObservation SNOW = new WeatherObservation("Tartu-Tõravere", "26242", -2.1, 4.7,
+            "Light snow shower", Instant.parse("2023-03-26T09:00:00Z"), (byte) 0);
+    private static final WeatherObservation GLAZE = new WeatherObservation("Tartu-Tõravere", "26242", null, null,
+            "Glaze", Instant.parse("2023-03-26T10:00:00Z"), (byte) 0);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void quotesFromConcurrentThreadsAreWrittenInOrderAcrossSegments() throws Exception {
+        QuoteAuditLog auditLog = start(1024, QuoteAuditLog.WhenFull.BACK_OFF, Duration.ofSeconds(10));
+        int threads = 4;
+        int perThread = 5_000;
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int producer = t;
+            producers.add(new Thread(() -> {
+                // The tariff version carries the producer and its sequence, to check the order per thread
+                for (int i = 0; i < perThread; i++) {
+                    auditLog.record(null, TARTU, BIKE, producer * 1_000_000L + i, SNOW, 400 + i % 100);
+                }
+            }));
+        }
+        producers.forEach(Thread::start);
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        auditLog.close();
+
+        List<QuoteAuditReader.Quote> quotes = readAll();
+        Assertions.assertEquals(0, auditLog.getDropped());
+        Assertions.assertEquals(threads * perThread, quotes.size());
+        Assertions.assertTrue(QuoteAuditReader.segments(directory).size() > 1, "Segments were not rotated");
+        long[] next = new long[threads];
+        for (QuoteAuditReader.Quote quote : quotes) {
+            int producer = (int) (quote.tariffVersion() / 1_000_000);
+            Assertions.assertEquals(next[producer]++, quote.tariffVersion() % 1_000_000);
+        }
+
+        QuoteAuditReader.Quote first = quotes.get(0);
+        Assertions.assertNull(first.requestedAt());
+        Assertions.assertEquals("Tartu-Tõravere", first.city());
+        Assertions.assertEquals("Tartu-Tõravere", first.station());
+        Assertions.assertEquals("bike", first.vehicleType());
+        Assertions.assertEquals(250, first.cityFeeCents() + first.vehicleFeeCents());
+        Assertions.assertEquals(SNOW.getTimestamp(), first.observedAt());
+        Assertions.assertEquals(-2.1, first.airTemperature(), 1e-6);
+        Assertions.assertEquals("Light snow shower", first.weatherPhenomenon());
+        Assertions.assertEquals(new BigDecimal("4.0"), first.fee());
+    }
+
+    @Test
+    void forbiddenQuotesAndNewRunsAreReadBack() throws Exception {
+        QuoteAuditLog auditLog = start(64, QuoteAuditLog.WhenFull.BACK_OFF, Duration.ofSeconds(10));
+        auditLog.record("2023-03-26T10:30:00Z", TARTU, BIKE, 7, GLAZE, FeeRules.FORBIDDEN_BY_PHENOMENON);
+        auditLog.close();
+        // A restart continues with a new segment
+        QuoteAuditLog restarted = start(64, QuoteAuditLog.WhenFull.BACK_OFF, Duration.ofSeconds(10));
+        restarted.record(null, TARTU, BIKE, 8, SNOW, 450);
+        restarted.close();
+
+        List<QuoteAuditReader.Quote> quotes = readAll();
+        Assertions.assertEquals(2, QuoteAuditReader.segments(directory).size());
+        Assertions.assertEquals(2, quotes.size());
+        QuoteAuditReader.Quote forbidden = quotes.get(0);
+        Assertions.assertTrue(forbidden.isForbidden());
+        Assertions.assertEquals("phenomenon", forbidden.forbiddenReason());
+        Assertions.assertEquals(Instant.parse("2023-03-26T10:30:00Z"), forbidden.requestedAt());
+        Assertions.assertNull(forbidden.airTemperature());
+        Assertions.assertNull(forbidden.windSpeed());
+        Assertions.assertEquals(8, quotes.get(1).tariffVersion());
+    }
+
+    @Test
+    void droppedQuotesAreCounted() throws Exception {
+        QuoteAuditLog auditLog = start(2, QuoteAuditLog.WhenFull.DROP, Duration.ZERO);
+        for (int i = 0; i < 100_000; i++) {
+            auditLog.record(null, TARTU, BIKE, i, SNOW, 400);
+        }
+        auditLog.close();
+
+        long written = readAll().size();
+        Assertions.assertEquals(100_000, written + auditLog.getDropped());
+        Assertions.assertEquals(auditLog.getDropped(), registry.get(QuoteAuditLog.DROPPED).counter().count());
+    }
+
+    @Test
+    void recordingDoesNotAllocate() throws Exception {
+        QuoteAuditLog auditLog = start(1 << 16, QuoteAuditLog.WhenFull.DROP, Duration.ZERO);
+        try {
+            AllocationAssertions.assertNoAllocation("Recording", () -> {
+                for (int i = 0; i < 100_000; i++) {
+                    auditLog.record(null, TARTU, BIKE, i, SNOW, 400);
+                }
+            });
+        } finally {
+            auditLog.close();
+        }
+    }
+
+    private QuoteAuditLog start(int bufferSize, QuoteAuditLog.WhenFull whenFull, Duration backOffTimeout) {
+        QuoteAuditLog auditLog = new QuoteAuditLog(true, directory, bufferSize, DataSize.ofKilobytes(64), whenFull,
+                backOffTimeout, registry);
+        auditLog.start();
+        return auditLog;
+    }
+
+    private List<QuoteAuditReader.Quote> readAll() throws IOException {
+        List<QuoteAuditReader.Quote> quotes = new ArrayList<>();
+        for (Path segment : QuoteAuditReader.segments(directory)) {
+            QuoteAuditReader.read(segment, quotes::add);
+        }
+        return quotes;
+    }
+}
@@ -0,0 +1,124 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.DeliveryServiceApplication;
+import com.deliveryservice.repository.CityRepository;
+import com.deliveryservice.repository.ReplicaLeaseRepository;
+import com.deliveryservice.repository.SharedStateRepository;
+import com.deliveryservice.repository.VehicleRepository;
+import com.deliveryservice.repository.WeatherDataRepository;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Two replicas in one JVM, sharing one in-memory database as they would share a database server.
+ */
+class ReplicaCoordinationTest {
+    private static ObservationsFeedStub stub;
+    private static ConfigurableApplicationContext first;
+    private static ConfigurableApplicationContext second;
+
+    @BeforeAll
+    static void startReplicas() throws IOException {
+        stub = new ObservationsFeedStub();
+        first = startReplica("first");
+        // The startup import runs in the background, the second replica must not win the lease
+        awaitReadiness(first);
+        second = startReplica("second");
+        awaitReadiness(second);
+    }
+
+    @AfterAll
+    static void stopReplicas() {
+        second.close();
+        first.close();
+        stub.close();
+    }
+
+    @Test
+    void onlyTheLeaseHolderImportsAndOtherReplicasFollow() {
+        // Both replicas ran their startup import, only the first one fetched the feed
+        Assertions.assertEquals(1, stub.getRequests());
+        Assertions.assertEquals(40, first.getBean(WeatherDataRepository.class).count());
+        // Seeded once, the second replica found the tariffs
+        Assertions.assertEquals(3, first.getBean(CityRepository.class).count());
+        Assertions.assertEquals("first", first.getBean(ReplicaLeaseRepository.class)
+                .findOwner(ReplicaLease.WEATHER_IMPORT));
+        // The second replica took the time the seeded tariffs took effect from the first one
+        Assertions.assertEquals(first.getBean(TariffRegistry.class).current().getUpdatedAt(),
+                second.getBean(TariffRegistry.class).current().getUpdatedAt());
+
+        stub.shiftTimestamp(3600);
+        Assertions.assertEquals(0, second.getBean(weatherImporter.class).importWeatherData());
+        Assertions.assertEquals(40, first.getBean(weatherImporter.class).importWeatherData());
+        Assertions.assertEquals(2, stub.getRequests());
+
+        Instant imported = first.getBean(LatestWeatherCache.class).findLatest("Tartu-Tõravere").orElseThrow()
+                .getTimestamp();
+        second.getBean(ReplicaStateSync.class).poll();
+        Assertions.assertEquals(imported, second.getBean(LatestWeatherCache.class).findLatest("Tartu-Tõravere")
+                .orElseThrow().getTimestamp());
+        Assertions.assertTrue(second.getBean(WeatherHistoryIndex.class)
+                .findInEffectAt("Tartu-Tõravere", imported).isPresent());
+
+        first.getBean(weatherImporter.class).setCronExpression("0 0/5 * * * ?");
+        second.getBean(ReplicaStateSync.class).poll();
+        Assertions.assertEquals("0 0/5 * * * ?", second.getBean(weatherImporter.class).getCronExpression());
+        // Valid for Quartz but not for the scheduler, rejected before any replica sees it
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> first.getBean(weatherImporter.class).setCronExpression("0 0 12 * * ? 2030"));
+        Assertions.assertEquals("0 0/5 * * * ?", first.getBean(weatherImporter.class).getCronExpression());
+        Assertions.assertEquals("0 0/5 * * * ?", first.getBean(SharedStateRepository.class).findAll()
+                .get(SharedStateRepository.IMPORT_CRON).value());
+
+        first.getBean(TariffRegistry.class).updateCityFee("Pärnu", 1.75);
+        second.getBean(ReplicaStateSync.class).poll();
+        Assertions.assertEquals(175, second.getBean(TariffRegistry.class).current().findCity("Pärnu").getFeeCents());
+        Assertions.assertEquals(first.getBean(TariffRegistry.class).current().getVersion(),
+                second.getBean(TariffRegistry.class).current().getVersion());
+        Assertions.assertEquals(first.getBean(TariffRegistry.class).current().getUpdatedAt(),
+                second.getBean(TariffRegistry.class).current().getUpdatedAt());
+        // A restarted replica publishes the tariffs with the same Last-Modified time
+        TariffRegistry restarted = new TariffRegistry(second.getBean(CityRepository.class),
+                second.getBean(VehicleRepository.class), second.getBean(SharedStateRepository.class),
+                second.getBean(TransactionTemplate.class));
+        restarted.reload();
+        Assertions.assertEquals(first.getBean(TariffRegistry.class).current().getUpdatedAt(),
+                restarted.current().getUpdatedAt());
+
+        // The first replica stops renewing its lease
+        first.getBean(JdbcTemplate.class).update("update replica_lease set expires_at = ? where name = ?",
+                Timestamp.from(Instant.now().minusSeconds(1)), ReplicaLease.WEATHER_IMPORT);
+        second.getBean(weatherImporter.class).importWeatherData();
+
+        Assertions.assertEquals("second", second.getBean(ReplicaLeaseRepository.class)
+                .findOwner(ReplicaLease.WEATHER_IMPORT));
+        Assertions.assertFalse(first.getBean(ReplicaLease.class).tryAcquireImport());
+    }
+
+    private static void awaitReadiness(ConfigurableApplicationContext replica) {
+        Awaitility.await().atMost(Duration.ofSeconds(30)).until(replica.getBean(SnapshotReadiness.class)::isReady);
+    }
+
+    private static ConfigurableApplicationContext startReplica(String replicaId) {
+        return new SpringApplicationBuilder(DeliveryServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:replica-coordination-test;DB_CLOSE_DELAY=-1",
+                        "--weather.import.url=" + stub.url(),
+                        "--weather.coordination.replica-id=" + replicaId,
+                        "--weather.coordination.lease-ttl=1h",
+                        "--weather.coordination.poll-interval=1h",
+                        "--spring.main.banner-mode=off");
+    }
+}
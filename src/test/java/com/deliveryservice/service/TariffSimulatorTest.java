@@ -0,0 +1,130 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.dto.TariffProposal;
+import com.deliveryservice.dto.TariffSimulationResponse;
+import com.deliveryservice.entity.WeatherData;
+import com.deliveryservice.model.ArchiveSegment;
+import com.deliveryservice.repository.WeatherDataBulkWriter;
+import com.deliveryservice.repository.WeatherDataRepository;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * Where the in-memory history, the archive and the database meet, every observation is priced exactly once.
+ */
+@SpringBootTest
+@TestPropertySource(locations = "/application-test.properties", properties = {
+        "spring.datasource.url=jdbc:h2:mem:tariff-simulator-test",
+        "weather.history.retention=30d"})
+class TariffSimulatorTest {
+    private static final Instant NEWEST = Instant.parse("2023-03-26T09:00:00Z");
+    private static final Path ARCHIVE = createArchiveDirectory();
+
+    @Autowired
+    private TariffSimulator tariffSimulator;
+    @Autowired
+    private WeatherDataRepository weatherDataRepository;
+    @Autowired
+    private WeatherDataBulkWriter bulkWriter;
+    @Autowired
+    private WeatherHistoryIndex weatherHistoryIndex;
+    @Autowired
+    private WeatherArchive weatherArchive;
+
+    // Observation times by station, each stored once in one of the sources or in two of them
+    private final Map<String, List<Instant>> observations = new HashMap<>();
+
+    @DynamicPropertySource
+    static void archiveDirectory(DynamicPropertyRegistry registry) {
+        registry.add("weather.archive.directory", ARCHIVE::toString);
+    }
+
+    @Test
+    void pricesEveryObservationOnceAcrossMemoryArchiveAndDatabase() throws IOException {
+        weatherDataRepository.deleteAll();
+        List<WeatherData> stored = new ArrayList<>();
+        // Pärnu: January archived, the rest in the database, the last 30 days also in memory
+        List<WeatherData> january = hourly("Pärnu", Instant.parse("2023-01-01T00:00:00Z"),
+                Instant.parse("2023-02-01T00:00:00Z"));
+        ArchiveSegment.write(ARCHIVE.resolve("P%C3%A4rnu").resolve("2023-01.wseg"), "Pärnu", january);
+        stored.addAll(hourly("Pärnu", Instant.parse("2023-02-01T00:00:00Z"), NEWEST.plusSeconds(1)));
+        // Backfilled into the archived month after it was archived, once new and once again
+        stored.addAll(hourly("Pärnu", Instant.parse("2023-01-15T00:30:00Z"), Instant.parse("2023-01-15T00:31:00Z")));
+        stored.add(january.get(24 * 14 + 1));
+        // Tartu: only in the database, older than the in-memory history of any station
+        stored.addAll(hourly("Tartu-Tõravere", Instant.parse("2023-02-01T00:00:00Z"),
+                Instant.parse("2023-02-11T00:00:00Z")));
+        // Tallinn: only recent observations, in the database and in memory
+        stored.addAll(hourly("Tallinn-Harku", Instant.parse("2023-03-20T00:00:00Z"), NEWEST.plusSeconds(1)));
+        bulkWriter.insert(stored);
+        weatherArchive.refreshCatalog();
+        weatherHistoryIndex.reload();
+
+        Assertions.assertNotNull(weatherHistoryIndex.getHistory("Pärnu"));
+        Assertions.assertNull(weatherHistoryIndex.getHistory("Tartu-Tõravere"));
+        Assertions.assertTrue(weatherArchive.contains("Pärnu",
+                Instant.parse("2023-01-15T01:00:00Z").getEpochSecond()));
+
+        assertPricedOnce(Instant.parse("2023-01-01T00:00:00Z"), Instant.parse("2023-04-01T00:00:00Z"));
+        // Starting and ending inside the archive, the database and the in-memory history
+        assertPricedOnce(Instant.parse("2023-01-15T00:00:00Z"), Instant.parse("2023-02-25T00:00:00Z"));
+        assertPricedOnce(Instant.parse("2023-01-31T12:00:00Z"), Instant.parse("2023-02-01T12:00:00Z"));
+        assertPricedOnce(Instant.parse("2023-02-24T08:00:00Z"), Instant.parse("2023-02-24T10:00:00Z"));
+        assertPricedOnce(Instant.parse("2023-03-01T00:00:00Z"), Instant.parse("2023-03-02T00:00:00Z"));
+    }
+
+    private void assertPricedOnce(Instant from, Instant to) {
+        TariffSimulationResponse response = tariffSimulator.simulate(new TariffProposal(), from, to);
+        long expected = 0;
+        for (Map.Entry<String, List<Instant>> station : observations.entrySet()) {
+            long inRange = station.getValue().stream().filter(time -> !time.isBefore(from) && time.isBefore(to))
+                    .count();
+            expected += inRange;
+            long quotes = response.getStations().stream()
+                    .filter(impact -> impact.getStation().equals(station.getKey()))
+                    .mapToLong(TariffSimulationResponse.Impact::getQuotes)
+                    .sum();
+            // One quote per vehicle type
+            Assertions.assertEquals(inRange * 3, quotes, station.getKey() + " from " + from + " to " + to);
+        }
+        Assertions.assertEquals(expected, response.getObservations(), "from " + from + " to " + to);
+    }
+
+    private List<WeatherData> hourly(String station, Instant from, Instant to) {
+        List<WeatherData> rows = new ArrayList<>();
+        for (Instant time = from; time.isBefore(to); time = time.plusSeconds(3600)) {
+            WeatherData row = new WeatherData();
+            row.setStationName(station);
+            row.setWmoCode("41803");
+            row.setAirTemperature(-5.0);
+            row.setWindSpeed(12.0);
+            row.setWeatherPhenomenon("Light snow shower");
+            row.setTimestamp(time);
+            rows.add(row);
+            observations.computeIfAbsent(station, name -> new ArrayList<>()).add(time);
+        }
+        return rows;
+    }
+
+    private static Path createArchiveDirectory() {
+        try {
+            return Files.createTempDirectory("tariff-simulator-test");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.entity.WeatherData;
+import com.deliveryservice.model.ArchiveSegment;
+import com.deliveryservice.model.WeatherObservation;
+import com.deliveryservice.repository.SharedStateRepository;
+import com.deliveryservice.repository.WeatherDataArchiver;
+import com.deliveryservice.repository.WeatherDataBulkWriter;
+import com.deliveryservice.repository.WeatherDataRepository;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@SpringBootTest
+@TestPropertySource(locations = "/application-test.properties",
+        properties = "spring.datasource.url=jdbc:h2:mem:weather-archive-test")
+class WeatherArchiveTest {
+    private static final Instant NOW = Instant.parse("2023-09-15T12:00:00Z");
+
+    @Autowired
+    private WeatherDataRepository weatherDataRepository;
+    @Autowired
+    private WeatherDataBulkWriter bulkWriter;
+    @Autowired
+    private WeatherDataArchiver archiver;
+    @Autowired
+    private ReplicaLease replicaLease;
+    @Autowired
+    private SharedStateRepository sharedState;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void movesOldMonthsToSegmentsAndAnswersFromThem() throws Exception {
+        weatherDataRepository.deleteAll();
+        List<WeatherData> rows = new ArrayList<>();
+        for (int i = 0; i < 24 * 31; i++) {
+            rows.add(row("Pärnu", Instant.parse("2023-01-01T00:00:00Z").plusSeconds(i * 3600L), -3.14, 12.25,
+                    i % 2 == 0 ? "Light snow shower" : null));
+        }
+        rows.add(row("Pärnu", "2023-02-10T06:00:00Z", null, 4.0, "Glaze"));
+        // Inside the archive window
+        rows.add(row("Pärnu", "2023-09-14T06:00:00Z", 11.0, 3.0, null));
+        bulkWriter.insert(rows);
+
+        WeatherArchive archive = newArchive();
+        long versionBefore = sharedState.findAll().get(SharedStateRepository.WEATHER_ARCHIVE).version();
+        Assertions.assertEquals(24 * 31 + 1, archive.archive());
+        Assertions.assertEquals(0, archive.archive());
+        Assertions.assertEquals(1, weatherDataRepository.count());
+        Assertions.assertTrue(sharedState.findAll().get(SharedStateRepository.WEATHER_ARCHIVE).version() > versionBefore);
+
+        Path january = directory.resolve("P%C3%A4rnu").resolve("2023-01.wseg");
+        ArchiveSegment segment = ArchiveSegment.open(january);
+        Assertions.assertEquals("Pärnu", segment.getStationName());
+        Assertions.assertEquals(24 * 31, segment.size());
+        Assertions.assertTrue(Files.size(january) < 24 * 31 * 9 + 64, "Segment takes " + Files.size(january));
+
+        WeatherHistoryIndex index = new WeatherHistoryIndex(weatherDataRepository, archive, Duration.ofDays(90));
+        index.reload();
+        WeatherObservation inEffect = index.findInEffectAt("Pärnu", Instant.parse("2023-01-05T10:30:00Z")).orElseThrow();
+        Assertions.assertEquals(Instant.parse("2023-01-05T10:00:00Z"), inEffect.getTimestamp());
+        Assertions.assertEquals(-3.1, inEffect.getAirTemperature(), 1e-9);
+        Assertions.assertEquals(12.3, inEffect.getWindSpeed(), 1e-9);
+        Assertions.assertEquals("Light snow shower", inEffect.getWeatherPhenomenon());
+        // After the last archived observation, before the first one left in the database
+        WeatherObservation glaze = index.findInEffectAt("Pärnu", Instant.parse("2023-05-01T00:00:00Z")).orElseThrow();
+        Assertions.assertEquals(Instant.parse("2023-02-10T06:00:00Z"), glaze.getTimestamp());
+        Assertions.assertNull(glaze.getAirTemperature());
+        Assertions.assertTrue(index.findInEffectAt("Pärnu", Instant.parse("2022-12-31T23:00:00Z")).isEmpty());
+
+        List<Instant> scanned = new ArrayList<>();
+        index.scan("Pärnu", Instant.parse("2023-01-31T22:00:00Z"), Instant.parse("2023-12-01T00:00:00Z"),
+                observation -> scanned.add(observation.getTimestamp()));
+        Assertions.assertEquals(List.of(Instant.parse("2023-01-31T22:00:00Z"), Instant.parse("2023-01-31T23:00:00Z"),
+                Instant.parse("2023-02-10T06:00:00Z"), Instant.parse("2023-09-14T06:00:00Z")), scanned);
+    }
+
+    @Test
+    void mergesRowsBackfilledIntoAnArchivedMonth() throws Exception {
+        weatherDataRepository.deleteAll();
+        bulkWriter.insert(List.of(row("Tartu-Tõravere", "2023-02-01T00:00:00Z", 1.0, 1.0, null),
+                row("Tartu-Tõravere", "2023-02-03T00:00:00Z", 3.0, 1.0, null)));
+        WeatherArchive archive = newArchive();
+        Assertions.assertEquals(2, archive.archive());
+
+        bulkWriter.insert(List.of(row("Tartu-Tõravere", "2023-02-02T00:00:00Z", 2.0, 1.0, null),
+                row("Tartu-Tõravere", "2023-02-03T00:00:00Z", 3.5, 1.0, null)));
+        List<Double> scanned = new ArrayList<>();
+        archive.scan("Tartu-Tõravere", Instant.parse("2023-02-01T00:00:00Z"), Instant.parse("2023-04-01T00:00:00Z"),
+                observation -> scanned.add(observation.getAirTemperature()));
+        Assertions.assertEquals(List.of(1.0, 3.0), scanned);
+
+        Assertions.assertEquals(2, archive.archive());
+        scanned.clear();
+        archive.scan("Tartu-Tõravere", Instant.parse("2023-02-01T00:00:00Z"), Instant.parse("2023-04-01T00:00:00Z"),
+                observation -> scanned.add(observation.getAirTemperature()));
+        Assertions.assertEquals(List.of(1.0, 2.0, 3.5), scanned);
+        Assertions.assertEquals(0, weatherDataRepository.count());
+    }
+
+    @Test
+    void keepsRowsInsertedWhileTheMonthIsArchived() throws Exception {
+        weatherDataRepository.deleteAll();
+        bulkWriter.insert(List.of(row("Kuressaare", "2023-02-01T00:00:00Z", 1.0, 1.0, null)));
+        // A backfill inserts into the month right after the archive job read it
+        WeatherDataArchiver racingArchiver = new WeatherDataArchiver(jdbcTemplate) {
+            private boolean inserted;
+
+            @Override
+            public List<WeatherData> findRange(Instant from, Instant to) {
+                List<WeatherData> rows = super.findRange(from, to);
+                if (!inserted) {
+                    inserted = true;
+                    bulkWriter.insert(List.of(row("Kuressaare", "2023-02-02T00:00:00Z", 2.0, 1.0, null)));
+                }
+                return rows;
+            }
+        };
+        WeatherArchive archive = newArchive(racingArchiver);
+        Assertions.assertEquals(1, archive.archive());
+        Assertions.assertEquals(1, weatherDataRepository.count());
+
+        Assertions.assertEquals(1, archive.archive());
+        List<Double> scanned = new ArrayList<>();
+        archive.scan("Kuressaare", Instant.parse("2023-02-01T00:00:00Z"), Instant.parse("2023-03-01T00:00:00Z"),
+                observation -> scanned.add(observation.getAirTemperature()));
+        Assertions.assertEquals(List.of(1.0, 2.0), scanned);
+        Assertions.assertEquals(0, weatherDataRepository.count());
+    }
+
+    private WeatherArchive newArchive() {
+        return newArchive(archiver);
+    }
+
+    private WeatherArchive newArchive(WeatherDataArchiver archiver) {
+        WeatherArchive archive = new WeatherArchive(archiver, replicaLease, sharedState, transactionTemplate,
+                directory, Duration.ofDays(180), Clock.fixed(NOW, ZoneOffset.UTC));
+        archive.refreshCatalog();
+        return archive;
+    }
+
+    private static WeatherData row(String station, String timestamp, Double airTemperature, Double windSpeed,
+                                   String phenomenon) {
+        return row(station, Instant.parse(timestamp), airTemperature, windSpeed, phenomenon);
+    }
+
+    private static WeatherData row(String station, Instant timestamp, Double airTemperature, Double windSpeed,
+                                   String phenomenon) {
+        WeatherData weatherData = new WeatherData();
+        weatherData.setStationName(station);
+        weatherData.setWmoCode("41803");
+        weatherData.setAirTemperature(airTemperature);
+        weatherData.setWindSpeed(windSpeed);
+        weatherData.setWeatherPhenomenon(phenomenon);
+        weatherData.setTimestamp(timestamp);
+        return weatherData;
+    }
+}
@@ -0,0 +1,94 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.repository.WeatherDataRepository;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+@SpringBootTest
+@TestPropertySource(locations = "/application-test.properties",
+        properties = "spring.datasource.url=jdbc:h2:mem:weather-backfill-test")
+class WeatherBackfillTest {
+    @Autowired
+    private WeatherBackfill weatherBackfill;
+    @Autowired
+    private WeatherDataRepository weatherDataRepository;
+    @Autowired
+    private WeatherHistoryIndex weatherHistoryIndex;
+    @Autowired
+    private StationRegistry stationRegistry;
+
+    @TempDir
+    Path archive;
+
+    @Test
+    void backfillSkipsDuplicatesAndResumesFromCheckpoint() throws Exception {
+        byte[] feed;
+        try (InputStream input = getClass().getResourceAsStream("/observations.xml")) {
+            feed = input.readAllBytes();
+        }
+        Files.write(archive.resolve("2023-03-26T09.xml"), feed);
+        Files.createDirectory(archive.resolve("gz"));
+        try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(archive.resolve("gz/copy.xml.gz")))) {
+            output.write(feed);
+        }
+        Files.writeString(archive.resolve("2020.csv"), """
+                station_name,timestamp,air_temperature,wind_speed,weather_phenomenon,latitude,longitude
+                Tartu-Tõravere,2020-01-01T00:00:00Z,-3.5,4.0,Light snow shower,58.2641,26.47
+                "Tartu-Tõravere",1577840400,-3.0,4.2,"Snow, heavy",58.2641,26.47
+                Tartu-Tõravere,2020-01-01T01:00:00Z,-3.0,4.2,Snow,58.2641,26.47
+                Tartu-Tõravere,yesterday,-3.0,4.2,,58.2641,26.47
+                Nowhere,2020-01-01T00:00:00Z,,,,,
+                """, StandardCharsets.UTF_8);
+        Path checkpoint = archive.resolve(".backfill-checkpoint");
+        // Nothing listens on the configured feed URL, so the startup import stored nothing
+        Assertions.assertEquals(0, weatherDataRepository.count());
+
+        WeatherBackfill.Result first = weatherBackfill.run(archive, checkpoint);
+        // 40 stations per snapshot, also those without air temperature or wind speed, and three CSV lines,
+        // one without weather. The gzip copy and the third CSV line repeat stored keys
+        Assertions.assertEquals(3, first.files());
+        Assertions.assertEquals(40 + 3, first.inserted());
+        Assertions.assertEquals(40 + 1, first.duplicates());
+        // An unreadable timestamp
+        Assertions.assertEquals(1, first.skipped());
+        Assertions.assertEquals(first.inserted(), weatherDataRepository.count());
+        Assertions.assertEquals("Snow, heavy", weatherDataRepository
+                .findFirstByStationNameAndTimestampLessThanEqualOrderByTimestampDesc("Tartu-Tõravere",
+                        Instant.parse("2020-01-01T01:30:00Z"))
+                .orElseThrow().getWeatherPhenomenon());
+        Assertions.assertEquals(-3.0, weatherHistoryIndex
+                .findInEffectAt("Tartu-Tõravere", Instant.parse("2020-01-01T01:30:00Z")).orElseThrow()
+                .getAirTemperature(), 1e-9);
+        Assertions.assertEquals(40, stationRegistry.getStations().size());
+
+        WeatherBackfill.Result resumed = weatherBackfill.run(archive, checkpoint);
+        Assertions.assertEquals(0, resumed.files());
+
+        Files.delete(checkpoint);
+        WeatherBackfill.Result repeated = weatherBackfill.run(archive, checkpoint);
+        Assertions.assertEquals(3, repeated.files());
+        Assertions.assertEquals(0, repeated.inserted());
+    }
+
+    @Test
+    void commandRefusesAnInMemoryDatabase() {
+        Assertions.assertThrows(IllegalStateException.class, () -> new WeatherBackfillCommand(weatherBackfill, null,
+                Path.of("observations"), "", "jdbc:h2:mem:weather"));
+        Assertions.assertThrows(IllegalStateException.class, () -> new WeatherBackfillCommand(weatherBackfill, null,
+                Path.of("observations"), "", ""));
+        Assertions.assertDoesNotThrow(() -> new WeatherBackfillCommand(weatherBackfill, null,
+                Path.of("observations"), "", "jdbc:h2:file:/data/weather"));
+    }
+}
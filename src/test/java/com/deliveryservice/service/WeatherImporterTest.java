@@ -0,0 +1,112 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.repository.WeatherDataRepository;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+
+@SpringBootTest
+@TestPropertySource(locations = "/application-test.properties",
+        properties = "spring.datasource.url=jdbc:h2:mem:weather-import-test")
+class WeatherImporterTest {
+    private static final ObservationsFeedStub STUB = startStub();
+
+    @Autowired
+    private weatherImporter weatherImporter;
+    @Autowired
+    private WeatherDataRepository weatherDataRepository;
+    @Autowired
+    private LatestWeatherCache latestWeatherCache;
+    @Autowired
+    private StationRegistry stationRegistry;
+    @Autowired
+    private TariffRegistry tariffRegistry;
+    @Autowired
+    private SnapshotReadiness snapshotReadiness;
+
+    @DynamicPropertySource
+    static void feedUrl(DynamicPropertyRegistry registry) {
+        registry.add("weather.import.url", STUB::url);
+    }
+
+    @AfterAll
+    static void stopStub() {
+        STUB.close();
+    }
+
+    // The startup import runs in the background
+    @BeforeEach
+    void awaitReadiness() {
+        Awaitility.await().atMost(Duration.ofSeconds(30)).until(snapshotReadiness::isReady);
+        Assertions.assertEquals(Status.UP, snapshotReadiness.health().getStatus());
+    }
+
+    @Test
+    void repeatedImportsOfTheSameFeedPersistNothing() {
+        // The startup import has stored every station, also those without air temperature or wind speed
+        Assertions.assertEquals(40, weatherDataRepository.count());
+        Assertions.assertTrue(latestWeatherCache.findLatest("Tartu-Tõravere").isPresent());
+
+        Assertions.assertEquals(0, weatherImporter.importWeatherData());
+        Assertions.assertTrue(STUB.getNotModified() >= 1);
+
+        STUB.setHonourValidators(false);
+        Assertions.assertEquals(0, weatherImporter.importWeatherData());
+        Assertions.assertEquals(40, weatherDataRepository.count());
+    }
+
+    @Test
+    void everyStationOfTheFeedIsRegisteredWithItsPosition() {
+        Assertions.assertEquals(40, stationRegistry.getStations().size());
+        // Tartu linn reports no wind speed, its observations are stored but the closest active station is Tõravere
+        Assertions.assertEquals("Tartu-Tõravere", stationRegistry.findNearestStation(58.378, 26.72));
+        Assertions.assertEquals("Võru", stationRegistry.findNearestStation(57.84, 27.0));
+        Assertions.assertEquals("Tartu-Tõravere", stationRegistry.findNearestCity(tariffRegistry.current(), 57.84, 27.0));
+        Assertions.assertEquals("Tallinn linn",
+                stationRegistry.resolveStationName(tariffRegistry.current(), "tallinn linn"));
+        Assertions.assertEquals("Tallinn-Harku",
+                stationRegistry.resolveStationName(tariffRegistry.current(), "Tallinn"));
+    }
+
+    // Leaves a new feed in the database, the next context starts from the stub again
+    @DirtiesContext
+    @Test
+    void overlappingImportsRunOneAfterTheOther() throws Exception {
+        STUB.shiftTimestamp(3600);
+        STUB.setDelayMillis(500);
+        int notModified = STUB.getNotModified();
+        try {
+            CompletableFuture<Integer> overlapping = CompletableFuture.supplyAsync(weatherImporter::importWeatherData);
+            int imported = weatherImporter.importWeatherData();
+
+            // The later import waited and asked for the feed with the new ETag
+            Assertions.assertEquals(40, imported + overlapping.get(30, TimeUnit.SECONDS));
+            Assertions.assertEquals(notModified + 1, STUB.getNotModified());
+            Assertions.assertEquals(80, weatherDataRepository.count());
+        } finally {
+            STUB.setDelayMillis(0);
+        }
+    }
+
+    private static ObservationsFeedStub startStub() {
+        try {
+            return new ObservationsFeedStub();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.deliveryservice.service;
+
+import com.deliveryservice.entity.WeatherData;
+import com.deliveryservice.repository.ReplicaLeaseRepository;
+import com.deliveryservice.repository.SharedStateRepository;
+import com.deliveryservice.repository.WeatherDataBulkWriter;
+import com.deliveryservice.repository.WeatherDataDownsampler;
+import com.deliveryservice.repository.WeatherDataRepository;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+@SpringBootTest
+@TestPropertySource(locations = "/application-test.properties",
+        properties = "spring.datasource.url=jdbc:h2:mem:weather-retention-test")
+class WeatherRetentionJobTest {
+    private static final Instant NOW = Instant.parse("2023-06-01T12:00:00Z");
+
+    @Autowired
+    private WeatherDataRepository weatherDataRepository;
+    @Autowired
+    private WeatherDataBulkWriter bulkWriter;
+    @Autowired
+    private WeatherDataDownsampler downsampler;
+    @Autowired
+    private ReplicaLease replicaLease;
+    @Autowired
+    private ReplicaLeaseRepository leaseRepository;
+    @Autowired
+    private SharedStateRepository sharedState;
+
+    @Test
+    void keepsTheLastObservationPerStationAndHourBeyondTheRawWindow() {
+        weatherDataRepository.deleteAll();
+        List<WeatherData> rows = new ArrayList<>();
+        for (String station : List.of("Pärnu", "Tallinn-Harku")) {
+            rows.add(row(station, "2023-02-01T08:00:00Z"));
+            rows.add(row(station, "2023-02-01T08:20:00Z"));
+            rows.add(row(station, "2023-02-01T08:40:00Z"));
+            rows.add(row(station, "2023-02-01T09:10:00Z"));
+            // Inside the raw window
+            rows.add(row(station, "2023-05-31T10:00:00Z"));
+            rows.add(row(station, "2023-05-31T10:30:00Z"));
+        }
+        bulkWriter.insert(rows);
+
+        WeatherRetentionJob job = newJob(replicaLease);
+        Assertions.assertEquals(4, job.run());
+        Assertions.assertEquals(0, job.run());
+        Assertions.assertEquals("2023-05-02T12:00:00Z", sharedState.findAll()
+                .get(SharedStateRepository.WEATHER_RETENTION).value());
+
+        // Another replica stands by while the lease is held
+        ReplicaLease otherReplica = new ReplicaLease(leaseRepository, Duration.ofHours(1), "other-replica");
+        bulkWriter.insert(List.of(row("Pärnu", "2023-02-01T08:50:00Z")));
+        Assertions.assertEquals(0, newJob(otherReplica).run());
+        Assertions.assertEquals(9, weatherDataRepository.count());
+
+        // A restarted job continues from the shared mark, so the late row before it stays
+        Assertions.assertEquals(0, newJob(replicaLease).run());
+        Assertions.assertEquals(9, weatherDataRepository.count());
+
+        List<Instant> kept = weatherDataRepository.findAllByOrderByTimestampAsc().stream()
+                .filter(weatherData -> weatherData.getStationName().equals("Pärnu"))
+                .map(WeatherData::getTimestamp)
+                .toList();
+        Assertions.assertEquals(List.of(Instant.parse("2023-02-01T08:40:00Z"), Instant.parse("2023-02-01T08:50:00Z"),
+                Instant.parse("2023-02-01T09:10:00Z"), Instant.parse("2023-05-31T10:00:00Z"),
+                Instant.parse("2023-05-31T10:30:00Z")), kept);
+    }
+
+    private WeatherRetentionJob newJob(ReplicaLease lease) {
+        return new WeatherRetentionJob(downsampler, lease, sharedState, Duration.ofDays(30), Duration.ofHours(6),
+                Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    private static WeatherData row(String station, String timestamp) {
+        WeatherData weatherData = new WeatherData();
+        weatherData.setStationName(station);
+        weatherData.setAirTemperature(1.0);
+        weatherData.setWindSpeed(2.0);
+        weatherData.setWeatherPhenomenon("Overcast");
+        weatherData.setTimestamp(Instant.parse(timestamp));
+        return weatherData;
+    }
+}
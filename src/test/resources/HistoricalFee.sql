@@ -0,0 +1,16 @@
+delete from city;
+delete from vehicle_type;
+delete from weather_data;
+
+INSERT INTO city (id, city, fee) VALUES
+                                 (next value for city_seq, 'Tallinn-Harku', 2.5),
+                                 (next value for city_seq, 'Tartu-Tõravere', 2.0),
+                                 (next value for city_seq, 'Pärnu', 1.5);
+INSERT INTO vehicle_type (id, vehicle, fee) VALUES
+                                            (next value for vehicle_type_seq, 'Car', 1.5),
+                                            (next value for vehicle_type_seq, 'Scooter', 1.0),
+                                            (next value for vehicle_type_seq, 'Bike', 0.5);
+INSERT INTO weather_data (id, station_name, wmo_code, air_temperature, wind_speed, weather_phenomenon, timestamp)
+VALUES (next value for weather_data_seq, 'Tartu-Tõravere', '26242', -2.1, 4.7, 'Light snow shower', '2023-03-26T08:00:00Z'),
+       (next value for weather_data_seq, 'Tartu-Tõravere', '26242', -2.1, 4.7, 'Overcast', '2023-03-26T09:00:00Z'),
+       (next value for weather_data_seq, 'Tartu-Tõravere', '26242', 1.2, 12.0, 'Light rain', '2023-03-26T10:00:00Z');